@@ -1,6 +1,7 @@
 package com.cirsim;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.ListIterator;
 import java.util.Map;
@@ -10,6 +11,7 @@ import java.util.Map;
  */
 public abstract class AElement {
 
+    protected final String elementPath;
     protected final String path;
     protected final Map<String, String> imports = new HashMap<>();
     protected final String type;
@@ -23,9 +25,10 @@ public abstract class AElement {
 
         tokenIterator = _tokenListIterator;
         circuitFactory = _circuitFactory;
+        elementPath = _path;
 
         // figure out the package path and element type we're supposed to be representing...
-        int lastPeriod = _path.lastIndexOf( '\n' );
+        int lastPeriod = _path.lastIndexOf( '.' );
         String dPath = (lastPeriod >= 0) ? _path.substring( 0, lastPeriod ) : "";
         String dType = (lastPeriod >= 0) ? _path.substring( lastPeriod + 1 ) : _path;
 
@@ -72,17 +75,17 @@ public abstract class AElement {
         if( isNextToken( TokenType.LABEL ) ) {
 
             Token labelToken = tokenIterator.next();
-            label = tokenIterator.next().getValue();
+            label = labelToken.getValue();
             indent = labelToken.getColumn();
 
-            // the token must be a type, matching what we're supposed to be
-            if( isNextToken( TokenType.TYPE ) ) {
+            // the label must name the element we're supposed to be...
+            if( !dType.equals( label ) ) {
+                _circuitFactory.postError( "Expected '" + dType + "' element, not '" + label + "'", labelToken );
+            }
 
-                Token typeToken = tokenIterator.next();
-                type = typeToken.getValue();
-                if( !"Run".equals( type ) ) {
-                    _circuitFactory.postError( "Expected '" + dType + "' type, not '" + type + "'", typeToken );
-                }
+            // the token must be a type...
+            if( isNextToken( TokenType.TYPE ) ) {
+                type = tokenIterator.next().getValue();
             }
             else {
                 _circuitFactory.postError( "Expected type token", peekNextToken() );
@@ -100,6 +103,24 @@ public abstract class AElement {
     }
 
 
+    /**
+     * Creates a new instance of this class with the same path, imports, type, label, and indent as the given original.  The new instance has no
+     * tokens of its own.
+     *
+     * @param _original the element to copy
+     */
+    protected AElement( final AElement _original ) {
+        tokenIterator = Collections.<Token>emptyList().listIterator();
+        circuitFactory = _original.circuitFactory;
+        elementPath = _original.elementPath;
+        path = _original.path;
+        imports.putAll( _original.imports );
+        type = _original.type;
+        label = _original.label;
+        indent = _original.indent;
+    }
+
+
     protected Circuit loadCircuit() throws IOException {
 
         // get the type associated with the "use" statement, and load it...
@@ -110,30 +131,54 @@ public abstract class AElement {
             if( !typeToken.is( TokenType.TYPE ))
                 circuitFactory.postError( "Expected type, got '" + typeToken.getType() + "'", typeToken );
 
-            String elementType = typeToken.getValue();
-            if( !circuitFactory.hasType( elementType ) )
-                elementType = imports.get( elementType );
-
-            if( circuitFactory.hasType( elementType ) ) {
-                AElement element = circuitFactory.load( elementType );
-                if( element instanceof Circuit ) {
-                    return (Circuit) element;
-                }
-                else {
-                    circuitFactory.postError( "Expected Circuit element, got '" + element.getClass().getName() + "'", typeToken );
-                }
+            return loadCircuit( typeToken );
+        }
+        else {
+            circuitFactory.postError( "Missing type after element", tokenIterator.previous() );
+        }
+        return null;
+    }
+
+
+    /**
+     * Loads and returns the circuit element of the type in the given token, or returns null (after posting an error) if there is no such circuit
+     * element.  The type may be fully qualified, imported, or in the same package as this element.
+     *
+     * @param _typeToken the token containing the type of the circuit element to load
+     * @return the circuit element loaded, or null if it could not be loaded
+     * @throws IOException on any I/O problem reading the circuit element's source
+     */
+    protected Circuit loadCircuit( final Token _typeToken ) throws IOException {
+
+        String elementType = resolveType( _typeToken.getValue() );
+        if( elementType != null ) {
+            AElement element = circuitFactory.load( elementType );
+            if( element instanceof Circuit ) {
+                return (Circuit) element;
             }
-            else {
-                circuitFactory.postError( "Unknown type: " + elementType, typeToken );
+            else if( element != null ) {
+                circuitFactory.postError( "Expected Circuit element, got '" + element.getClass().getName() + "'", _typeToken );
             }
         }
         else {
-            circuitFactory.postError( "Missing type after element", tokenIterator.previous() );
+            circuitFactory.postError( "Unknown type: " + _typeToken.getValue(), _typeToken );
         }
         return null;
     }
 
 
+    /**
+     * Returns the fully qualified element path for the given type, which may be fully qualified already, imported, or in the same package as this
+     * element, or null if it's none of these.
+     *
+     * @param _type the type to resolve
+     * @return the fully qualified element path for the given type, or null if it can't be resolved
+     */
+    protected String resolveType( final String _type ) {
+        return circuitFactory.resolveType( _type, path, imports );
+    }
+
+
     /**
      * Returns true if the next element in the token list iterator is of the given type.  The iterator's cursor is not affected.  If there is no
      * next element, returns false.
@@ -177,6 +222,17 @@ public abstract class AElement {
     }
 
 
+    /**
+     * Returns the fully qualified path (package and element name, such as "com.slightlyloony.sim.test.utility.AlkalineBattery") this element was
+     * loaded from.
+     *
+     * @return the fully qualified path this element was loaded from
+     */
+    public String getElementPath() {
+        return elementPath;
+    }
+
+
     public String getPath() {
         return path;
     }
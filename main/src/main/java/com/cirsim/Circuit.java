@@ -4,47 +4,83 @@ import com.cirsim.components.Component;
 import com.cirsim.components.ComponentFactory;
 import com.cirsim.nets.Net;
 import com.cirsim.nets.NetFactory;
+import com.cirsim.util.Symbols;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
 
 /**
+ * A circuit: its components, nets, and subcircuit instances, each defined by a label.  The labels are interned as they're parsed, in a table of
+ * this circuit's own (see {@link Symbols}), so each label has a dense id, in the order the labels were defined; the components, nets, and
+ * subcircuit instances are held in arrays indexed by those ids, with a null wherever a label defines something else.  Lookups by label go through
+ * the table, and code that walks a circuit (as {@link com.cirsim.calc.CircuitGraph} does) can index the arrays directly.
+ *
  * @author Tom Dilatush  tom@dilatush.com
  */
 public class Circuit extends AElement {
 
-    private final Map< String, Component> components = new HashMap<>();
-    private final Map< String, Net> nets = new HashMap<>();
+    private final Symbols labels = new Symbols();
+    private Component[] components = new Component[8];   // the component with each label id, or null...
+    private Net[] nets = new Net[8];                     // the net with each label id, or null...
+    private Circuit[] subcircuits = new Circuit[8];      // the subcircuit instance with each label id, or null...
+    private final Set< String> exports = new LinkedHashSet<>();
 
 
-    protected Circuit( final ListIterator<Token> _tokenListIterator, final String _path, final CircuitFactory _circuitFactory ) {
+    protected Circuit( final ListIterator<Token> _tokenListIterator, final String _path, final CircuitFactory _circuitFactory ) throws IOException {
         super( _tokenListIterator, _path, _circuitFactory );
 
         // loop over the tokens we understand, which are in one of the following forms:
         //   1. label componentType value[, value]...
         //   2. label Net terminal[, terminal]...
-        //   3. keyword net | type | value[, value]...
+        //   3. label circuitType
+        //   4. keyword net | type | value[, value]...
         while( tokenIterator.hasNext() ) {
 
             Token nextToken = tokenIterator.next();
 
-            // if it's a label, we've got form (1) or (2) above...
-            if( nextToken.is( TokenType.LABEL )) {
+            // if it's an export, the values are the names of nets this circuit makes available to circuits that use it...
+            if( nextToken.is( TokenType.KEY_EXPORT ) ) {
+                String netName;
+                while( (netName = nextValue()) != null ) {
+                    if( hasNet( netName ) )
+                        exports.add( netName );
+                    else
+                        circuitFactory.postError( "Cannot export unknown net '" + netName + "'", nextToken );
+                }
+            }
+
+            // if it's a label, we've got form (1), (2), or (3) above...
+            else if( nextToken.is( TokenType.LABEL )) {
 
-                String label = nextToken.getValue();
+                int id = intern( nextToken.getValue() );
+                String label = labels.getName( id );
+                if( isDefined( id ) ) {
+                    circuitFactory.postError( "Duplicate label '" + label + "'", nextToken );
+                }
 
                 Component component = ComponentFactory.getInstance( tokenIterator, this );
                 if( component != null) {
-                    components.put( label, component );
+                    components[id] = component;
                 }
                 else {
-                    Net net = NetFactory.getInstance( tokenIterator, this );
+                    Net net = NetFactory.getInstance( label, tokenIterator, this );
                     if( net != null ) {
-
+                        nets[id] = net;
+                    }
+                    else if( isNextToken( TokenType.TYPE ) && (resolveType( peekNextToken().getValue() ) != null) ) {
+                        Circuit subcircuit = loadCircuit( tokenIterator.next() );
+                        if( subcircuit != null )
+                            subcircuits[id] = subcircuit;
                     }
                     else {
-                        circuitFactory.postError( "Labeled element is neither a component or a net", peekNextToken() );
+                        circuitFactory.postError( "Labeled element is not a component, a net, or a circuit", peekNextToken() );
                     }
                 }
 
@@ -53,13 +89,161 @@ public class Circuit extends AElement {
     }
 
 
-    public boolean hasNet( final String _name ) { return nets.containsKey( _name ); }
+    /**
+     * Creates a new instance of this class that is a deep copy of the given original: each of its components, nets, and subcircuit instances is
+     * copied, so that the copy shares nothing that can change with the original.  The given map takes each original net already copied (including
+     * those in subcircuit instances) to its copy.
+     */
+    private Circuit( final Circuit _original, final Map<Net, Net> _nets ) {
+        super( _original );
+
+        // the labels get the same ids as in the original...
+        for( int id = 0; id < _original.labels.size(); id++ )
+            intern( _original.labels.getName( id ) );
+
+        // copy the subcircuit instances first, as our nets may be joined to theirs...
+        for( int id = 0; id < labels.size(); id++ )
+            if( _original.subcircuits[id] != null )
+                subcircuits[id] = new Circuit( _original.subcircuits[id], _nets );
+
+        Map<Component, Component> copies = new IdentityHashMap<>();
+        for( int id = 0; id < labels.size(); id++ ) {
+            if( _original.components[id] != null ) {
+                components[id] = _original.components[id].copy( this );
+                copies.put( _original.components[id], components[id] );
+            }
+        }
 
-    public boolean hasComponent( final String _name ) { return components.containsKey( _name ); }
+        for( int id = 0; id < labels.size(); id++ )
+            if( _original.nets[id] != null )
+                nets[id] = NetFactory.copy( _original.nets[id], copies, _nets );
 
-    public Net getNet( final String _name ) { return nets.get( _name ); }
+        exports.addAll( _original.exports );
+    }
+
+
+    /**
+     * Returns a deep copy of this circuit, as a separate instance with its own components, nets, and subcircuit instances.
+     *
+     * @return a deep copy of this circuit
+     */
+    Circuit copy() {
+        return new Circuit( this, new IdentityHashMap<>() );
+    }
+
+
+    /**
+     * Returns the id of the given label, adding it to this circuit's labels (and growing the arrays indexed by label id to match) if it isn't there.
+     */
+    private int intern( final String _label ) {
+        int id = labels.intern( _label );
+        if( id >= components.length ) {
+            int capacity = 2 * components.length;
+            components = Arrays.copyOf( components, capacity );
+            nets = Arrays.copyOf( nets, capacity );
+            subcircuits = Arrays.copyOf( subcircuits, capacity );
+        }
+        return id;
+    }
+
+
+    private boolean isDefined( final int _id ) {
+        return (components[_id] != null) || (nets[_id] != null) || (subcircuits[_id] != null);
+    }
+
+
+    /**
+     * Returns the number of labels in this circuit, which is one more than the highest label id.  Each label defines a component, a net, or a
+     * subcircuit instance (or nothing, if its definition had errors).
+     *
+     * @return the number of labels in this circuit
+     */
+    public int getLabelCount() { return labels.size(); }
+
+    /**
+     * Returns the label with the given id.  Throws an <code>IndexOutOfBoundsException</code> if there's no such id.
+     *
+     * @param _id the id of the label
+     * @return the label with the given id
+     */
+    public String getLabel( final int _id ) { return labels.getName( _id ); }
+
+    /**
+     * Returns the id of the given label, or -1 if it isn't one of this circuit's labels.
+     *
+     * @param _label the label to find
+     * @return the id of the given label, or -1 if there is none
+     */
+    public int getLabelId( final String _label ) { return (_label == null) ? -1 : labels.find( _label ); }
+
+    public Component getComponent( final int _id ) { return components[_id]; }
+
+    public Net getNet( final int _id ) { return nets[_id]; }
+
+    public Circuit getSubcircuit( final int _id ) { return subcircuits[_id]; }
+
+    public boolean hasNet( final String _name ) { return getNet( _name ) != null; }
+
+    public boolean hasComponent( final String _name ) { return getComponent( _name ) != null; }
+
+    public Net getNet( final String _name ) {
+        int id = getLabelId( _name );
+        return (id < 0) ? null : nets[id];
+    }
+
+    public Component getComponent( final String _name ) {
+        int id = getLabelId( _name );
+        return (id < 0) ? null : components[id];
+    }
+
+    public boolean hasSubcircuit( final String _name ) { return getSubcircuit( _name ) != null; }
+
+    public Circuit getSubcircuit( final String _name ) {
+        int id = getLabelId( _name );
+        return (id < 0) ? null : subcircuits[id];
+    }
+
+    public boolean isExported( final String _name ) { return exports.contains( _name ); }
+
+    /**
+     * Returns an unmodifiable map of this circuit's components, keyed by their labels, in the order they were defined.  The map is made on each
+     * call, so code that walks circuits should index the components by label id instead (see {@link #getComponent(int)}).
+     *
+     * @return this circuit's components
+     */
+    public Map<String, Component> getComponents() { return toMap( components ); }
+
+    /**
+     * Returns an unmodifiable map of this circuit's nets, keyed by their labels, in the order they were defined.  The map is made on each call, so
+     * code that walks circuits should index the nets by label id instead (see {@link #getNet(int)}).
+     *
+     * @return this circuit's nets
+     */
+    public Map<String, Net> getNets() { return toMap( nets ); }
+
+    /**
+     * Returns an unmodifiable map of the circuits instantiated within this circuit, keyed by their instance labels, in the order they were defined.
+     * Each instance is a separately loaded circuit, with its own components and nets.  The map is made on each call, so code that walks circuits
+     * should index the instances by label id instead (see {@link #getSubcircuit(int)}).
+     *
+     * @return the subcircuit instances within this circuit
+     */
+    public Map<String, Circuit> getSubcircuits() { return toMap( subcircuits ); }
+
+    private <T> Map<String, T> toMap( final T[] _byId ) {
+        Map<String, T> result = new LinkedHashMap<>();
+        for( int id = 0; id < labels.size(); id++ )
+            if( _byId[id] != null )
+                result.put( labels.getName( id ), _byId[id] );
+        return Collections.unmodifiableMap( result );
+    }
 
-    public Component getComponent( final String _name ) { return components.get( _name ); }
+    /**
+     * Returns an unmodifiable view of the names of the nets this circuit exports, in the order they were exported.
+     *
+     * @return the names of the nets this circuit exports
+     */
+    public Set<String> getExports() { return Collections.unmodifiableSet( exports ); }
 }
 
 // TODO make facilities for composite components: see comment below
@@ -1,47 +1,189 @@
 package com.cirsim;
 
-import com.cirsim.util.Files;
 import com.cirsim.constants.Strings;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-
-// TODO: make this accept jars (.zim?) for source
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * @author Tom Dilatush  tom@dilatush.com
  */
-public class CircuitFactory {
-
+public class CircuitFactory implements Closeable {
 
-    private final List<File> sourceDirs = new ArrayList<>();
-    private final Map<String, File> sourceFiles = new HashMap<>();
+    // the source directories and archives, in the order they were added, each as a function finding the source of an element in it (or null)...
+    private final List<Function<String, ElementSource>> roots = new ArrayList<>();
+    private final List<SourceArchive> archives = new ArrayList<>();
+    private final SourceIndex sourceIndex = new SourceIndex();   // finds the source files in the source directories...
     private final StringBuilder messages = new StringBuilder();
+    private final Set<String> loading = new HashSet<>();   // the elements currently being loaded, to catch circuits that contain themselves...
+    private final Map<String, CompiledSource> preloaded = new HashMap<>();   // the elements tokenized ahead of a concurrent load...
+    private final Map<String, Parsed> parsed = new HashMap<>();         // the circuits parsed so far, to be copied rather than parsed again...
+    private final Deque<Map<String, Long>> reading = new ArrayDeque<>();   // the sources read by each element being parsed, with their times...
+    private final AtomicInteger tokenizations = new AtomicInteger();      // the number of sources tokenized, possibly concurrently...
+
+    private File cacheDir;   // the directory compiled sources are kept in, or null if they aren't...
+
+    private int parses;
+    private int cycles;   // the number of circuits found to contain themselves, which makes a parse depend on what's being loaded...
 
     private int errors;
     private int warnings;
 
 
     public AElement load( final String _elementPath ) throws IOException {
+        return loadElement( _elementPath );
+    }
+
+
+    /**
+     * Loads the element with the given path, and everything it uses, just as {@link #load(String)} does, but with the reading and tokenizing done
+     * concurrently on the given pool.  The element's dependencies (the elements it uses, the elements they use, and so on) are discovered a level
+     * at a time, from the types in the tokens of each level, and all the source files
+     * of each level are tokenized concurrently.  Finally the elements are built from the tokens, in the same order as {@link #load(String)} would
+     * build them: the messages posted while loading are the same, in the same order, however the work was divided.  Throws an
+     * <code>IllegalArgumentException</code> if the pool is missing, or there is no element with the given path.
+     *
+     * @param _elementPath the path of the element to load
+     * @param _pool the pool to read and tokenize the source files on
+     * @return the element loaded, or null if it couldn't be loaded
+     * @throws IOException on any I/O problem reading the source files
+     */
+    public AElement load( final String _elementPath, final ForkJoinPool _pool ) throws IOException {
+
+        if( _pool == null )
+            throw new IllegalArgumentException( "Pool is missing" );
+
+        if( getSource( _elementPath ) == null )
+            throw new IllegalArgumentException( "Run element does not exist: " + _elementPath );
+
+        try {
+            preload( _elementPath, _pool );
+            return loadElement( _elementPath );
+        }
+        finally {
+            preloaded.clear();
+        }
+    }
 
-        findSourceFiles();
-        if( !sourceFiles.containsKey( _elementPath ) )
+
+    private AElement loadElement( final String _elementPath ) throws IOException {
+
+        if( getSource( _elementPath ) == null )
             throw new IllegalArgumentException( "Run element does not exist: " + _elementPath );
 
-        // parse and tokenize our source file...
-        String source = Files.readFileAsUTF8String( sourceFiles.get( _elementPath ) );
-        CircuitTokens tokenizer = new CircuitTokens( source );
-        messages.append( tokenizer.getMessages() );
-        errors += tokenizer.getErrorsCount();
-        warnings += tokenizer.getWarningsCount();
-        List<Token> tokens = tokenizer.getTokens();
+        if( !loading.add( _elementPath ) ) {
+            postError( "Element " + _elementPath + " contains itself" );
+            cycles++;
+            return null;
+        }
+        try {
+
+            // a circuit parsed before is copied, with the messages its parse posted, unless any source it read has changed since...
+            Parsed previous = getParsed( _elementPath );
+            if( previous != null ) {
+                messages.append( previous.messages );
+                errors += previous.errors;
+                warnings += previous.warnings;
+                for( Map<String, Long> sources : reading )
+                    sources.putAll( previous.sources );
+                return previous.circuit.copy();
+            }
+
+            // otherwise parse it, keeping track of every source read while doing so (including those of the elements it loads in turn)...
+            Map<String, Long> sources = new HashMap<>();
+            reading.push( sources );
+            int messagesStart = messages.length();
+            int errorsStart = errors;
+            int warningsStart = warnings;
+            int cyclesStart = cycles;
+            AElement result;
+            try {
+                long modified = getSource( _elementPath ).lastModified();
+                for( Map<String, Long> reader : reading )
+                    reader.put( _elementPath, modified );
+                result = parse( _elementPath );
+                parses++;
+            }
+            finally {
+                reading.pop();
+            }
+
+            // a parse that found a circuit containing itself depended on what else was being loaded, so it can't be reused...
+            if( (result instanceof Circuit) && (cycles == cyclesStart) )
+                parsed.put( _elementPath, new Parsed( (Circuit) result, messages.substring( messagesStart ), errors - errorsStart,
+                        warnings - warningsStart, sources ) );
+            return result;
+        }
+        finally {
+            loading.remove( _elementPath );
+        }
+    }
+
+
+    /**
+     * Returns the circuit with the given path as parsed before, or null if it hasn't been parsed, or if any of the sources read while parsing it has
+     * been modified (or removed) since then, or if it uses an element that is being loaded (which would now contain itself).
+     */
+    private Parsed getParsed( final String _elementPath ) {
+
+        Parsed result = parsed.get( _elementPath );
+        if( result == null )
+            return null;
+
+        for( Map.Entry<String, Long> source : result.sources.entrySet() ) {
+            ElementSource file = getSource( source.getKey() );
+            if( (file == null) || (file.lastModified() != source.getValue())
+                    || (!source.getKey().equals( _elementPath ) && loading.contains( source.getKey() )) ) {
+                parsed.remove( _elementPath );
+                return null;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the number of source files parsed into elements so far.  A circuit that is used many times is parsed only once (unless its source is
+     * modified in the meantime); each later use gets a copy of it.
+     *
+     * @return the number of source files parsed into elements
+     */
+    public int getParses() {
+        return parses;
+    }
+
+
+    private AElement parse( final String _elementPath ) throws IOException {
+
+        // tokenize our source file (unless that was done ahead of time), streaming it rather than reading it all into memory first...
+        CompiledSource source = preloaded.get( _elementPath );
+        if( source == null )
+            source = tokenize( _elementPath );
+        List<Token> tokens = source.getTokens();
+        messages.append( source.getMessages() );
+        errors += source.getErrors();
+        warnings += source.getWarnings();
 
         // if we got an error, stop here...
-        if( tokenizer.isError() )
+        if( source.getErrors() > 0 )
             return null;
 
         // figure out what kind of a circuit element this file represents, by looking for the type following the first label...
@@ -80,8 +222,197 @@ public class CircuitFactory {
     }
 
 
+    /**
+     * Returns the tokens of the source file of the element with the given path.  If we have a cache directory, and it holds a compiled source made
+     * from a source with the same hash as the source file's, its tokens are read from there; otherwise the source file is tokenized, and (if we have
+     * a cache directory) compiled into it for next time.  This may be called concurrently.
+     */
+    private CompiledSource tokenize( final String _elementPath ) throws IOException {
+
+        ElementSource source = getSource( _elementPath );
+        if( cacheDir == null ) {
+            CompiledSource result = source.tokenize();
+            tokenizations.incrementAndGet();
+            return result;
+        }
+
+        // the hash needs all the source's bytes, so read them once and tokenize straight from them if the compiled source is stale...
+        ByteBuffer bytes = source.read();
+        byte[] hash = CompiledSource.hash( bytes );
+        File compiled = new File( cacheDir, _elementPath + Strings.COMPILED_FILE_EXT );
+        CompiledSource result = CompiledSource.read( compiled, hash );
+        if( result == null ) {
+            try {
+                result = new CompiledSource( new CircuitTokenStream( bytes ) );
+                tokenizations.incrementAndGet();
+            }
+            catch( UncheckedIOException _e ) {
+                throw _e.getCause();
+            }
+
+            // failing to write the compiled source just means tokenizing the source again next time...
+            try {
+                result.write( compiled, hash );
+            }
+            catch( IOException _e ) {
+                // ignore it...
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Sets the directory to keep compiled sources in, or null (the default) to keep none.  Each source file tokenized is compiled into a compact
+     * binary file in this directory, named for its element path; the next time the source file is needed, so long as its content hasn't changed,
+     * its tokens are read from there instead, without tokenizing it again.  The directory is created if it doesn't exist.
+     *
+     * @param _cacheDir the directory to keep compiled sources in, or null for none
+     */
+    public void setCacheDir( final File _cacheDir ) {
+        cacheDir = _cacheDir;
+    }
+
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+
+    /**
+     * Returns the number of source files tokenized so far.  This doesn't count the sources whose tokens were read from compiled sources instead
+     * (see {@link #setCacheDir(File)}).
+     *
+     * @return the number of source files tokenized
+     */
+    public int getTokenizations() {
+        return tokenizations.get();
+    }
+
+
+    /**
+     * Tokenizes the source files of the element with the given path and of all the elements it depends on, a level of the dependencies at a time,
+     * with all the files of each level tokenized concurrently on the given pool.
+     */
+    private void preload( final String _elementPath, final ForkJoinPool _pool ) throws IOException {
+
+        Set<String> found = new HashSet<>();
+        found.add( _elementPath );
+        List<String> level = (getParsed( _elementPath ) == null) ? Collections.singletonList( _elementPath ) : Collections.emptyList();
+        while( !level.isEmpty() ) {
+
+            // tokenize this level's source files...
+            final List<String> paths = level;
+            List<CompiledSource> sources;
+            try {
+                sources = _pool.submit( () -> paths.parallelStream().map( path -> {
+                    try {
+                        return tokenize( path );
+                    }
+                    catch( IOException _e ) {
+                        throw new UncheckedIOException( _e );
+                    }
+                } ).collect( Collectors.toList() ) ).get();
+            }
+            catch( InterruptedException _e ) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Loading was interrupted" );
+            }
+            catch( ExecutionException _e ) {
+                if( _e.getCause() instanceof UncheckedIOException )
+                    throw ((UncheckedIOException) _e.getCause()).getCause();
+                if( _e.getCause() instanceof RuntimeException )
+                    throw (RuntimeException) _e.getCause();
+                throw new IllegalStateException( "Loading failed", _e.getCause() );
+            }
+
+            // the next level is whatever this level depends on that we haven't already found, in the order it was found...
+            List<String> next = new ArrayList<>();
+            for( int i = 0; i < paths.size(); i++ ) {
+                preloaded.put( paths.get( i ), sources.get( i ) );
+                for( String dependency : getDependencies( sources.get( i ).getTokens() ) )
+                    if( found.add( dependency ) && (getParsed( dependency ) == null) )
+                        next.add( dependency );
+            }
+            level = next;
+        }
+    }
+
+
+    /**
+     * Returns the paths of the elements that the element with the given tokens may use: every type in the tokens that resolves (in the same way that
+     * {@link AElement} resolves types) to an element with a source file.  Any of them that turn out not to be used (as a component type that happens
+     * to share a name with an element) merely get tokenized for nothing.
+     */
+    private List<String> getDependencies( final List<Token> _tokens ) {
+
+        String path = "";
+        Map<String, String> imports = new HashMap<>();
+        List<String> result = new ArrayList<>();
+        for( int i = 0; i < _tokens.size(); i++ ) {
+
+            Token token = _tokens.get( i );
+            boolean valueFollows = (i + 1 < _tokens.size()) && _tokens.get( i + 1 ).is( TokenType.VALUE );
+            if( token.is( TokenType.KEY_PACKAGE ) && valueFollows )
+                path = _tokens.get( i + 1 ).getValue();
+            else if( token.is( TokenType.KEY_IMPORT ) && valueFollows ) {
+                String value = _tokens.get( i + 1 ).getValue();
+                imports.put( value.substring( value.lastIndexOf( '.' ) + 1 ), value );
+            }
+            else if( token.is( TokenType.TYPE ) ) {
+                String type = resolveType( token.getValue(), path, imports );
+                if( type != null )
+                    result.add( type );
+            }
+        }
+        return result;
+    }
+
+
     public void addDir( final File _root ) {
-        sourceDirs.add( _root );
+        roots.add( path -> FileSource.find( sourceIndex, _root, path ) );
+    }
+
+
+    /**
+     * Adds the given archive of source files (see {@link SourceArchive}) to the sources of elements.  Its central directory is read now, once;
+     * after that, its elements are found without touching the file system, and each one's source is streamed from the archive when it's needed.
+     * As with source directories, an element in a source added later wins over one in a source added earlier.  The archive is kept open until
+     * this instance is closed.
+     *
+     * @param _archive the archive to add (typically with a ".zim" extension)
+     * @throws IOException on any I/O problem opening the archive, or if it isn't a valid archive
+     */
+    public void addArchive( final File _archive ) throws IOException {
+        SourceArchive archive = new SourceArchive( _archive );
+        archives.add( archive );
+        roots.add( archive::find );
+    }
+
+
+    /**
+     * Closes any archives of source files added to this instance, and stops watching the source directories for new source files (see
+     * {@link SourceIndex}).  Nothing more can be loaded from the archives afterwards (they no longer have any elements, so an element that is also in
+     * a source directory is loaded from there instead); elements can still be loaded from the source directories.
+     *
+     * @throws IOException on any I/O problem closing the archives or the watch service
+     */
+    @Override
+    public void close() throws IOException {
+        List<Closeable> closeables = new ArrayList<>( archives );
+        closeables.add( sourceIndex );
+        IOException problem = null;
+        for( Closeable closeable : closeables ) {
+            try {
+                closeable.close();
+            }
+            catch( IOException _e ) {
+                problem = (problem == null) ? _e : problem;
+            }
+        }
+        archives.clear();
+        if( problem != null )
+            throw problem;
     }
 
 
@@ -135,7 +466,26 @@ public class CircuitFactory {
 
 
     protected boolean hasType( final String _type ) {
-        return sourceFiles.containsKey( _type );
+        return getSource( _type ) != null;
+    }
+
+
+    /**
+     * Returns the fully qualified element path for the given type, as used by an element in the given package with the given imports (keyed by
+     * their simple names); the type may be fully qualified already, imported, or in the same package as the element.  Returns null if it's none of
+     * these.
+     */
+    String resolveType( final String _type, final String _path, final Map<String, String> _imports ) {
+
+        if( hasType( _type ) )
+            return _type;
+
+        String imported = _imports.get( _type );
+        if( (imported != null) && hasType( imported ) )
+            return imported;
+
+        String local = ((_path == null) || _path.isEmpty()) ? _type : _path + "." + _type;
+        return hasType( local ) ? local : null;
     }
 
 
@@ -144,30 +494,43 @@ public class CircuitFactory {
     }
 
 
-    private void findSourceFiles() {
+    /**
+     * Returns the source of the element with the given path, or null if there isn't one.  The element's package is a directory (and its subpackages
+     * subdirectories) in one of our source directories or archives; if more than one of them has a source for the element, the one added last wins.
+     * The source directories are never explored: the source file is looked up directly (see {@link SourceIndex}).
+     */
+    private ElementSource getSource( final String _elementPath ) {
 
-        // for each root directory we have...
-        for( File root : sourceDirs ) {
-            exploreSourceTree( root, "" );
+        if( _elementPath == null )
+            return null;
+        for( int i = roots.size() - 1; i >= 0; i-- ) {
+            ElementSource result = roots.get( i ).apply( _elementPath );
+            if( result != null )
+                return result;
         }
+        return null;
     }
 
 
-    private void exploreSourceTree( File _node, String _path ) {
+    /**
+     * A circuit as parsed from its source, with the messages posted while parsing it, and the modification times of the sources read while parsing
+     * it, keyed by their element paths.
+     */
+    private static final class Parsed {
+
+        private final Circuit circuit;
+        private final String messages;
+        private final int errors;
+        private final int warnings;
+        private final Map<String, Long> sources;
 
-        // we're traversing the directory tree breadth-first, so enumerate the files and add them to our index...
-        File files[] = _node.listFiles( (node, name) -> { return new File( node, name ).isFile() && name.endsWith( Strings.SIM_FILE_EXT ); } );
-        for( File file : files ) {
-            String elementName = file.getName();
-            elementName = elementName.substring( 0, elementName.length() - Strings.SIM_FILE_EXT.length() );
-            String fqn = _path + "." + elementName;
-            sourceFiles.put( fqn, file );
-        }
 
-        // now enumerate the directories and recursively explore them...
-        files = _node.listFiles( (node, name) -> { return new File( node, name ).isDirectory(); } );
-        for( File file : files ) {
-            exploreSourceTree( file, _path.isEmpty() ? file.getName() : _path + "." + file.getName() );
+        private Parsed( final Circuit _circuit, final String _messages, final int _errors, final int _warnings, final Map<String, Long> _sources ) {
+            circuit = _circuit;
+            messages = _messages;
+            errors = _errors;
+            warnings = _warnings;
+            sources = _sources;
         }
     }
 }
@@ -0,0 +1,536 @@
+package com.cirsim;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Instances of this class produce tokens representing circuit elements by parsing the source code for that element in a single pass, reading it in
+ * fixed-size chunks from a {@link Readable} (such as a <code>Reader</code> or a <code>CharBuffer</code>) and producing each token only when it is
+ * asked for.  The source is never held in memory as a whole, so even a multi-megabyte generated netlist costs no more than a chunk and the token
+ * being accumulated.  The tokens, and the line and column tracking, are exactly those of {@link CircuitTokens}, which collects the tokens of an
+ * instance of this class into a list.
+ * <p>
+ * The source may also be given as the UTF-8 bytes of a buffer (typically a memory-mapped file), which are decoded straight into the chunks, with no
+ * intermediate byte array or string.  The tokens then don't hold their own values, but the offsets of their values in the buffer (see
+ * {@link Token}); only a value interrupted by a comment, which isn't a single run of the buffer, is copied.  The buffer's content must not change
+ * while the tokens are in use.
+ * <p>
+ * Unexpected occurrences in the source code will create either warnings or errors, with appropriate human-readable messages.  As the source is read
+ * lazily, the messages and counts are complete only once the tokens have been exhausted (that is, once {@link #hasNext()} has returned false).  Any
+ * <code>IOException</code> while reading is rethrown as an <code>UncheckedIOException</code>.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class CircuitTokenStream implements Iterator<Token> {
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final TokenType[] keywords = { TokenType.KEY_IMPORT, TokenType.KEY_EXPORT, TokenType.KEY_PACKAGE, TokenType.KEY_USE };
+    private static final int KEYWORD_PREFIX = "KEY_".length();
+
+    private final Readable source;                                          // the source of characters, or null if reading UTF-8 bytes...
+    private final ByteBuffer bytes;                                         // the UTF-8 bytes of the source, or null if reading characters...
+    private final CharsetDecoder decoder;                                   // the decoder for the UTF-8 bytes, or null if reading characters...
+    private final CharBuffer chunk = CharBuffer.allocate( CHUNK_SIZE );   // the chunk of the source currently being scanned...
+    private final StringBuilder accumulator = new StringBuilder();          // the accumulated characters for a token during scanning...
+    private final StringBuilder messages = new StringBuilder();             // any human-readable error or warning messages produced during parsing...
+    private final BitSet commentLines = new BitSet();                       // the (0 based) lines that begin inside an inline comment...
+
+    private State state = State.NORMAL;
+    private CoderResult malformed;    // the malformed bytes that stopped decoding, or null if none...
+    private Token next;               // the token scanned but not yet returned, or null if none...
+    private Token previous;           // the last token scanned, or null if none...
+    private boolean started;          // true once any character has been read from the source...
+    private boolean ended;            // true once the end of the source has been reached...
+    private boolean cleanEnd;         // true if the source ended with a newline that wasn't in a comment...
+    private char last;                // the last character read from the source...
+    private int line;                 // current line number during parsing (0 based)...
+    private int column;               // current column number during parsing (0 based)...
+    private int warnings;             // count of warnings that occurred during parsing...
+    private int errors;               // count of errors that occurred during parsing...
+    private int commentLength;        // the number of characters so far in an inline comment...
+    private int commentNewlines;      // the number of newlines so far in an inline comment...
+    private int commentLastNewline;   // the position of the last newline in an inline comment...
+    private boolean commentStar;      // true if the last character of an inline comment was a '*', which might start its terminator...
+    private int position;             // the offset in the UTF-8 bytes of the source of the character being scanned...
+    private int accumulatedFrom;      // the offset in the UTF-8 bytes of the source of the first accumulated character...
+    private int accumulatedTo;        // the offset in the UTF-8 bytes of the source just past the last accumulated character...
+    private boolean contiguous;       // true if the accumulated characters are a single run of the source, uninterrupted by comments...
+
+
+    /**
+     * Creates a new instance of this class that reads the circuit element source code from the given source.  Nothing is read until the first token
+     * is asked for.  Throws an <code>IllegalArgumentException</code> if the source is missing.
+     *
+     * @param _source the source of the circuit element source code to transform into equivalent tokens
+     */
+    public CircuitTokenStream( final Readable _source ) {
+
+        if( _source == null )
+            throw new IllegalArgumentException( "Source is missing" );
+
+        source = _source;
+        bytes = null;
+        decoder = null;
+        chunk.flip();
+    }
+
+
+    /**
+     * Creates a new instance of this class that decodes the circuit element source code from the UTF-8 bytes of the given buffer, from its position
+     * to its limit (which aren't changed).  Nothing is decoded until the first token is asked for.  Malformed UTF-8 causes an
+     * <code>UncheckedIOException</code> when it is reached.  Throws an <code>IllegalArgumentException</code> if the buffer is missing.
+     *
+     * @param _utf8 the buffer with the UTF-8 bytes of the circuit element source code to transform into equivalent tokens
+     */
+    public CircuitTokenStream( final ByteBuffer _utf8 ) {
+
+        if( _utf8 == null )
+            throw new IllegalArgumentException( "Source is missing" );
+
+        source = null;
+        bytes = _utf8.duplicate();
+        decoder = StandardCharsets.UTF_8.newDecoder();
+        position = bytes.position();
+        chunk.flip();
+    }
+
+
+    /**
+     * Creates a new instance of this class that reads a part of some circuit element source code from the given source, starting with the given
+     * (0 based) line, as though everything before that line had already been read, with the given token (or null, if none) as the last one read.
+     * The part must start at the beginning of a line that doesn't begin inside a comment.
+     */
+    CircuitTokenStream( final Readable _source, final int _line, final Token _previous ) {
+        this( _source );
+        line = _line;
+        previous = _previous;
+        started = true;
+        last = '\n';
+    }
+
+
+    /**
+     * Returns true if there is another token in the source, reading as much of the source as is needed to find it.
+     *
+     * @return true if there is another token
+     */
+    @Override
+    public boolean hasNext() {
+
+        while( (next == null) && !ended ) {
+
+            // if we've scanned all of the current chunk, read the next one; at the end of the source, finish up...
+            if( !chunk.hasRemaining() && !fill() ) {
+                finish();
+                ended = true;
+                break;
+            }
+
+            last = chunk.get();
+            started = true;
+            scan( last );
+            position += utf8Length( last );
+        }
+        return next != null;
+    }
+
+
+    /**
+     * Returns the next token in the source.  Throws a <code>NoSuchElementException</code> if there are no more tokens.
+     *
+     * @return the next token
+     */
+    @Override
+    public Token next() {
+
+        if( !hasNext() )
+            throw new NoSuchElementException();
+
+        Token result = next;
+        next = null;
+        return result;
+    }
+
+
+    /**
+     * Reads (or decodes) the next chunk of the source, returning false if the end of the source has been reached.
+     */
+    private boolean fill() {
+        try {
+            // decoding stops at malformed bytes, which are reported once the characters before them have been scanned...
+            if( bytes != null ) {
+                if( malformed != null )
+                    malformed.throwException();
+                chunk.clear();
+                CoderResult result = decoder.decode( bytes, chunk, true );
+                chunk.flip();
+                if( result.isError() ) {
+                    malformed = result;
+                    if( !chunk.hasRemaining() )
+                        malformed.throwException();
+                }
+                return chunk.hasRemaining();
+            }
+
+            int count;
+            do {
+                chunk.clear();
+                count = source.read( chunk );
+                chunk.flip();
+            } while( count == 0 );
+            return count > 0;
+        }
+        catch( IOException _e ) {
+            throw new UncheckedIOException( _e );
+        }
+    }
+
+
+    /**
+     * Scans the given character, which may be part of a comment.  A '/' can't be handled until we know whether it starts a comment, so it is held
+     * back until the character after it is scanned.
+     */
+    private void scan( final char _c ) {
+
+        switch( state ) {
+
+            case SLASH:
+                state = State.NORMAL;
+                if( _c == '/' ) {
+                    state = State.LINE_COMMENT;
+                    return;
+                }
+                if( _c == '*' ) {
+                    state = State.INLINE_COMMENT;
+                    commentLength = 0;
+                    commentNewlines = 0;
+                    commentStar = false;
+                    return;
+                }
+                handle( '/', position - 1 );
+                break;
+
+            // a line comment runs up to (but not including) the next newline...
+            case LINE_COMMENT:
+                if( _c != '\n' )
+                    return;
+                state = State.NORMAL;
+                break;
+
+            case INLINE_COMMENT:
+                scanInlineComment( _c );
+                return;
+        }
+
+        if( _c == '/' )
+            state = State.SLASH;
+        else
+            handle( _c, position );
+    }
+
+
+    /**
+     * Scans a character of an inline ( / * ... * / ) comment.  The comment may traverse any number of newlines (including zero), so the line and
+     * column trackers are only corrected once its terminator has been found.
+     */
+    private void scanInlineComment( final char _c ) {
+
+        // if we've found the terminator, correct the line and column trackers...
+        if( commentStar && (_c == '/') ) {
+            int length = commentLength - 1;   // the terminator's '*' isn't part of the comment...
+            if( commentNewlines == 0 )
+                column += length + 4;
+            else {
+                line += commentNewlines;
+                column = length - commentLastNewline;
+            }
+            state = State.NORMAL;
+            return;
+        }
+
+        if( _c == '\n' ) {
+            commentNewlines++;
+            commentLastNewline = commentLength;
+            commentLines.set( line + commentNewlines );
+        }
+        commentStar = (_c == '*');
+        commentLength++;
+    }
+
+
+    /**
+     * Handles the end of the source, which always behaves as though it were terminated by a newline.
+     */
+    private void finish() {
+
+        cleanEnd = (state == State.NORMAL) && (last == '\n');
+
+        // it's an error if there was no source at all...
+        if( !started ) {
+            postError( "No source to tokenize" );
+            return;
+        }
+
+        switch( state ) {
+
+            // a '/' at the very end isn't the start of a comment...
+            case SLASH:
+                handle( '/', position - 1 );
+                break;
+
+            // if we couldn't find the terminator of an inline comment, it's a warning...
+            case INLINE_COMMENT:
+                postWarning( "Unterminated '/*...*/' comment" );
+                state = State.NORMAL;
+                handle( '\n', position );
+                return;
+        }
+
+        state = State.NORMAL;
+        if( last != '\n' )
+            handle( '\n', position );
+    }
+
+
+    /**
+     * Handles the given character, which is not part of a comment, and is at the given offset in the UTF-8 bytes of the source.
+     */
+    private void handle( final char _c, final int _at ) {
+
+        // decide what to do based on the category of the current character...
+        if( Character.isWhitespace( _c ) ) {
+
+            // we only care about whitespace if the accumulator isn't empty...
+            if( accumulator.length() > 0 ) {
+
+                // if the accumulator equals a keyword, emit a keyword token...
+                TokenType keyword = keyword();
+                if( keyword != null ) {
+                    addToken( keyword );
+                }
+
+                // or else if we're expecting a type, emit a type token...
+                else if( expectingType() ) {
+                    addToken( TokenType.TYPE );
+                }
+
+                // or else if it's a newline, then we must have a value token to emit...
+                else if( _c == '\n' ) {
+                    addToken( TokenType.VALUE );
+                }
+
+                // otherwise the non-newline whitespace might be part of a value, so just accumulate it...
+                else {
+                    accumulate( _c, _at );
+                }
+            }
+        }
+
+        // else if we have a label terminator...
+        else if( _c == ':' ) {
+
+            // if the accumulator is empty, that's an error...
+            if( accumulator.length() == 0 )
+                postError( "Empty label" );
+
+            // otherwise, emit a label token...
+            else
+                addToken( TokenType.LABEL );
+        }
+
+        // else if we have a value separator...
+        else if( _c == ',' ) {
+
+            // then post a value token (an empty value is permissible)...
+            addToken( TokenType.VALUE );
+        }
+
+        // otherwise we just stuff it in the accumulator...
+        else {
+            accumulate( _c, _at );
+        }
+
+        // adjust the line and column tracking as required...
+        column++;
+        if( _c == '\n' ) {
+            line++;
+            column = 0;
+        }
+    }
+
+
+    /**
+     * Appends the given character, at the given offset in the UTF-8 bytes of the source, to the accumulator, keeping track of where the accumulated
+     * characters are in the source.
+     */
+    private void accumulate( final char _c, final int _at ) {
+
+        if( accumulator.length() == 0 ) {
+            accumulatedFrom = _at;
+            contiguous = true;
+        }
+        else if( _at != accumulatedTo )
+            contiguous = false;
+        accumulatedTo = _at + utf8Length( _c );
+        accumulator.append( _c );
+    }
+
+
+    /**
+     * Returns the number of bytes the given character takes in UTF-8; each half of a surrogate pair takes half of the pair's four bytes.
+     */
+    private static int utf8Length( final char _c ) {
+        return (_c < 0x80) ? 1 : (_c < 0x800) || Character.isSurrogate( _c ) ? 2 : 3;
+    }
+
+
+    /**
+     * Returns the keyword token type that the accumulator equals (ignoring case), or null if it isn't a keyword.  The accumulator is compared in
+     * place, so that no string is made of it.
+     */
+    private TokenType keyword() {
+
+        for( TokenType keyword : keywords ) {
+            String name = keyword.name();
+            if( accumulator.length() != name.length() - KEYWORD_PREFIX )
+                continue;
+            int i = 0;
+            while( (i < accumulator.length()) && (Character.toUpperCase( accumulator.charAt( i ) ) == name.charAt( i + KEYWORD_PREFIX )) )
+                i++;
+            if( i == accumulator.length() )
+                return keyword;
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns true if we're expecting a type token, meaning that the preceding token was a label, or the keyword "use".
+     */
+    private boolean expectingType() {
+        return (previous != null) && (previous.is( TokenType.LABEL ) || previous.is( TokenType.KEY_USE ));
+    }
+
+
+    /**
+     * Returns the error and warning messages (if any) generated so far while parsing the source.  Each message is terminated with a newline.
+     *
+     * @return the error and warning messages
+     */
+    public String getMessages() {
+        return messages.toString();
+    }
+
+
+    /**
+     * Returns true if any warnings have been generated so far while parsing the source.
+     *
+     * @return true if any warnings were generated
+     */
+    public boolean isWarning() {
+        return warnings > 0;
+    }
+
+
+    /**
+     * Returns true if any errors have been generated so far while parsing the source.
+     *
+     * @return true if any errors were generated
+     */
+    public boolean isError() {
+        return errors > 0;
+    }
+
+
+    /**
+     * Returns the count of warnings generated so far while parsing the source.
+     *
+     * @return the count of warnings generated
+     */
+    public int getWarningsCount() {
+        return warnings;
+    }
+
+
+    /**
+     * Returns the count of errors generated so far while parsing the source.
+     *
+     * @return the count of errors generated
+     */
+    public int getErrorsCount() {
+        return errors;
+    }
+
+
+    /**
+     * Returns the (0 based) lines of the source read so far that begin inside an inline comment.
+     */
+    BitSet getCommentLines() {
+        return commentLines;
+    }
+
+
+    /**
+     * Returns true if the tokens have been exhausted, and the source ended with a newline that wasn't in a comment, so that anything following it would
+     * be read just as though it started a source of its own (but for the last token read).
+     */
+    boolean isCleanEnd() {
+        return cleanEnd;
+    }
+
+
+    /**
+     * Returns a string in the form " at line [x], column [y]." for appending to warning or error messages.  The line and column numbers are 1 based.
+     */
+    private String ref() {
+        return " at line " + (line + 1) + ", column " + (column + 1) + ".";
+    }
+
+
+    private void postWarning( final String _msg ) {
+        messages.append( _msg ).append( ref() ).append( '\n' );
+        warnings++;
+    }
+
+
+    private void postError( final String _msg ) {
+        messages.append( _msg ).append( ref() ).append( '\n' );
+        errors++;
+    }
+
+
+    /**
+     * Makes a new token of the given <code>TokenType</code> the next token to return.  The rest of the parameters for the new token are taken from
+     * this instance's current state during parsing.
+     */
+    private void addToken( final TokenType _type ) {
+        int col = 1 + column - accumulator.length();
+        boolean fol = (previous == null) || (previous.getLine() < line + 1);
+
+        // when reading UTF-8 bytes, a value that's a single run of them is left where it is, less the (single byte) characters trimmed from its ends...
+        if( (bytes != null) && contiguous && (accumulator.length() > 0) ) {
+            int lead = 0;
+            int trail = accumulator.length();
+            while( (lead < trail) && (accumulator.charAt( lead ) <= ' ') )
+                lead++;
+            while( (trail > lead) && (accumulator.charAt( trail - 1 ) <= ' ') )
+                trail--;
+            next = new Token( _type, bytes, accumulatedFrom + lead, accumulatedTo - (accumulator.length() - trail), line + 1, col, fol );
+        }
+        else
+            next = new Token( _type, accumulator.toString().trim(), line + 1, col, fol );
+        previous = next;
+        accumulator.setLength( 0 );
+    }
+
+
+    private enum State { NORMAL, SLASH, LINE_COMMENT, INLINE_COMMENT }
+}
@@ -1,36 +1,41 @@
 package com.cirsim;
 
-import com.cirsim.util.S;
 import com.google.common.base.Strings;
-import com.google.common.collect.Sets;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 /**
  * Instances of this class produce tokens representing circuit elements, by parsing the source code for that element.  Unexpected occurrences in the
- * source code will create either warnings or errors, with appropriate human-readable messages.
+ * source code will create either warnings or errors, with appropriate human-readable messages.  The parsing itself is done by a
+ * {@link CircuitTokenStream}, reading directly from the given source without copying it; this class collects all of its tokens into a list.
+ * <p>
+ * For an edit-simulate loop, an instance can be updated with an edited version of its source (see {@link #update(String)}).  Only the lines that
+ * changed are tokenized again; the tokens before them are reused as they are, and the tokens after them with their line numbers shifted.  The
+ * updated instance also reports the labels of the statements (components, nets, and so on) that the edit changed, so that only those need be
+ * built (or stamped) again.
  *
  * @author Tom Dilatush  tom@dilatush.com
  */
 public class CircuitTokens {
 
 
-    private static final Set<String> keywords = Sets.newHashSet( "IMPORT", "EXPORT", "PACKAGE", "USE"  );
-
-
-    private final StringBuilder accumulator = new StringBuilder();  // the accumulated characters for a token during scanning...
-    private final String source;                                    // the given source with a guaranteed newline at the end...
-    private final List<Token> tokens = new ArrayList<>();           // the tokens equivalent to the given source...
-    private final StringBuilder messages = new StringBuilder();     // any human-readable error or warning messages produced during parsing...
-
-    private int line;         // current line number during parsing (0 based)...
-    private int column;       // current column number during parsing (0 based)...
-    private int index;        // index (within source) of current character during parsing...
-    private int warnings;     // count of warnings that occurred during parsing...
-    private int errors;       // count of errors that occurred during parsing...
+    private final String source;          // the source the tokens were parsed from, kept so that an edited version can be compared with it...
+    private final List<Token> tokens;     // the tokens equivalent to the given source...
+    private final String messages;
+    private final int errors;
+    private final int warnings;
+    private final BitSet commentLines;    // the (0 based) lines of the source that begin inside an inline comment...
+    private final Set<String> changed;    // the labels of the statements changed by the edit that made this instance...
+    private final boolean incremental;    // true if this instance was made by tokenizing only the lines changed by an edit...
 
 
     /**
@@ -42,259 +47,308 @@ public class CircuitTokens {
      */
     public CircuitTokens( final String _source ) {
 
-        // it's an error if no source is provided...
-        if( Strings.isNullOrEmpty( _source ) ) {
-            postError( "No source to tokenize" );
-            source = "";
-            return;
-        }
-
-        source = S.ensureTerminalNewline( _source );
+        // a missing source is treated as an empty one, which the stream reports as an error...
+        source = Strings.nullToEmpty( _source );
+        CircuitTokenStream stream = new CircuitTokenStream( CharBuffer.wrap( source ) );
+        List<Token> list = new ArrayList<>();
+        stream.forEachRemaining( list::add );
+        tokens = Collections.unmodifiableList( list );
+        messages = stream.getMessages();
+        errors = stream.getErrorsCount();
+        warnings = stream.getWarningsCount();
+        commentLines = stream.getCommentLines();
+        changed = Collections.unmodifiableSet( getStatements( tokens, 0, tokens.size() ).keySet() );
+        incremental = false;
+    }
 
-        // scan all the characters in the source code...
-        for( index = 0; index < source.length(); index++ ) {
 
-            // get the character we're currently evaluating...
-            char c = source.charAt( index );
+    private CircuitTokens( final String _source, final List<Token> _tokens, final CircuitTokenStream _stream, final BitSet _commentLines,
+                           final Set<String> _changed ) {
+        source = _source;
+        tokens = Collections.unmodifiableList( _tokens );
+        messages = _stream.getMessages();
+        errors = _stream.getErrorsCount();
+        warnings = _stream.getWarningsCount();
+        commentLines = _commentLines;
+        changed = Collections.unmodifiableSet( _changed );
+        incremental = true;
+    }
 
-            // handle special case of line comment: skip to next newline...
-            if( (c == '/') && (peekNext() == '/') ) {
-                index = source.indexOf( '\n', index + 2 ) - 1;
-                continue;
-            }
 
-            // handle special case of inline comment: skip to terminating "*/" or error...
-            if( (c == '/') && (peekNext() == '*' )) {
-                handleInlineComment();
-                continue;
-            }
+    private CircuitTokens( final CircuitTokens _tokens, final Set<String> _changed ) {
+        source = _tokens.source;
+        tokens = _tokens.tokens;
+        messages = _tokens.messages;
+        errors = _tokens.errors;
+        warnings = _tokens.warnings;
+        commentLines = _tokens.commentLines;
+        changed = Collections.unmodifiableSet( _changed );
+        incremental = false;
+    }
 
-            // decide what to do based on the category of the current character...
-            if( Character.isWhitespace( c ) ) {
-
-                // we only care about whitespace if the accumulator isn't empty...
-                if( accumulator.length() > 0  ) {
-
-                    // if the accumulator equals a keyword, emit a keyword token...
-                    String word = accumulator.toString().toUpperCase();
-                    if( keywords.contains( word ) ) {
-                        addToken( TokenType.valueOf( "KEY_" + word ) );
-                    }
-
-                    // or else if we're expecting a type, emit a type token...
-                    else if( expectingType() ) {
-                        addToken( TokenType.TYPE );
-                    }
-
-                    // or else if it's a newline, then we must have a value token to emit...
-                    else if( c == '\n' ) {
-                        addToken( TokenType.VALUE );
-                    }
-
-                    // otherwise the non-newline whitespace might be part of a value, so just accumulate it...
-                    else {
-                        accumulator.append( c );
-                    }
-                }
-            }
 
-            // else if we have a label terminator...
-            else if( c == ':' ) {
+    /**
+     * Returns a new instance of this class for the given edited version of this instance's source, with the same tokens and messages as
+     * {@link #CircuitTokens(String)} would produce for it.  The lines from the first one that differs to the last one that differs are tokenized
+     * again, and all the other tokens are reused.  That isn't possible if this instance has any messages (whose line numbers the edit might change),
+     * or if the edit begins on the first line, or inside an inline comment, or leaves the tokenizer in a different state at its end (as an edit that
+     * opens a comment does); then the whole of the edited source is tokenized again.  Either way, the new instance's
+     * {@link #getChangedLabels()} reports the labels of the statements whose tokens changed.
+     *
+     * @param _source the edited version of this instance's source
+     * @return a new instance for the edited source
+     */
+    public CircuitTokens update( final String _source ) {
+
+        String text = Strings.nullToEmpty( _source );
+
+        // find the characters that differ, as the longest common prefix and (not overlapping it) the longest common suffix...
+        int most = Math.min( source.length(), text.length() );
+        int prefix = 0;
+        while( (prefix < most) && (source.charAt( prefix ) == text.charAt( prefix )) )
+            prefix++;
+        int suffix = 0;
+        while( (suffix < most - prefix) && (source.charAt( source.length() - 1 - suffix ) == text.charAt( text.length() - 1 - suffix )) )
+            suffix++;
+
+        // widen the difference to whole lines, which are the same in both versions but for those in the middle...
+        int start = source.lastIndexOf( '\n', prefix - 1 ) + 1;
+        int oldEnd = source.length() - suffix;
+        if( (oldEnd > start) && (source.charAt( oldEnd - 1 ) != '\n') ) {
+            int newline = source.indexOf( '\n', oldEnd );
+            oldEnd = (newline < 0) ? source.length() : newline + 1;
+        }
+        int newEnd = text.length() - (source.length() - oldEnd);
+        int firstLine = countLines( source, 0, start );
+        int oldEndLine = firstLine + countLines( source, start, oldEnd );
+        int newEndLine = firstLine + countLines( text, start, newEnd );
+        boolean atEnd = (oldEnd == source.length());
+
+        if( (errors > 0) || (warnings > 0) || (start == 0) || commentLines.get( firstLine ) || (!atEnd && commentLines.get( oldEndLine )) )
+            return rebuild( text );
+
+        // tokenize the changed lines, picking up from the last token before them...
+        int from = firstOnLine( tokens, firstLine );
+        int to = firstOnLine( tokens, oldEndLine );
+        Token before = (from > 0) ? tokens.get( from - 1 ) : null;
+        CircuitTokenStream stream = new CircuitTokenStream( CharBuffer.wrap( text, start, newEnd ), firstLine, before );
+        List<Token> middle = new ArrayList<>();
+        stream.forEachRemaining( middle::add );
+
+        // the lines after them can only be reused if the tokenizer ends them in the same state as it did before the edit...
+        Token after = middle.isEmpty() ? before : middle.get( middle.size() - 1 );
+        Token oldAfter = (to > 0) ? tokens.get( to - 1 ) : null;
+        if( !atEnd && (!stream.isCleanEnd() || (expectsType( after ) != expectsType( oldAfter ))) )
+            return rebuild( text );
+
+        // splice the new tokens in, shifting the line numbers of those after them...
+        int shift = newEndLine - oldEndLine;
+        List<Token> result = new ArrayList<>( from + middle.size() + tokens.size() - to );
+        result.addAll( tokens.subList( 0, from ) );
+        result.addAll( middle );
+        for( Token token : tokens.subList( to, tokens.size() ) )
+            result.add( (shift == 0) ? token
+                    : new Token( token.getType(), token.getValue(), token.getLine() + shift, token.getColumn(), token.isFirstOnLine() ) );
+
+        // and likewise the lines that begin inside comments...
+        BitSet lines = commentLines.get( 0, firstLine );
+        lines.or( stream.getCommentLines().get( firstLine, newEndLine ) );
+        for( int line = commentLines.nextSetBit( oldEndLine ); line >= 0; line = commentLines.nextSetBit( line + 1 ) )
+            lines.set( line + shift );
+
+        return new CircuitTokens( text, result, stream, lines, getChanged( tokens, from, to, result, from, from + middle.size() ) );
+    }
 
-                // if the accumulator is empty, that's an error...
-                if( accumulator.length() == 0 )
-                    postError( "Empty label" );
 
-                // otherwise, emit a label token...
-                else
-                    addToken( TokenType.LABEL );
-            }
+    /**
+     * Returns a new instance of this class for the given edited version of this instance's source, tokenizing all of it.
+     */
+    private CircuitTokens rebuild( final String _source ) {
+        CircuitTokens result = new CircuitTokens( _source );
+        return new CircuitTokens( result, getChanged( tokens, 0, tokens.size(), result.tokens, 0, result.tokens.size() ) );
+    }
 
-            // else if we have a value separator...
-            else if( c == ',' ) {
 
-                // then post a value token (an empty value is permissible...
-                addToken( TokenType.VALUE );
-            }
+    /**
+     * Returns the labels of the statements that differ between the given old tokens (with the changed ones from the given start index up to the given
+     * end index) and new tokens (likewise).  A statement is a label and the tokens following it up to the next label or keyword.
+     */
+    private static Set<String> getChanged( final List<Token> _old, final int _oldFrom, final int _oldTo,
+                                           final List<Token> _new, final int _newFrom, final int _newTo ) {
+
+        Map<String, List<String>> before = getStatements( _old, _oldFrom, _oldTo );
+        Map<String, List<String>> after = getStatements( _new, _newFrom, _newTo );
+        Set<String> result = new LinkedHashSet<>();
+        for( String label : before.keySet() )
+            if( !Objects.equals( before.get( label ), getStatement( _new, label, after ) ) )
+                result.add( label );
+        for( String label : after.keySet() )
+            if( !Objects.equals( after.get( label ), getStatement( _old, label, before ) ) )
+                result.add( label );
+        return result;
+    }
 
-            // otherwise we just stuff it in the accumulator...
-            else {
-                accumulator.append( c );
-            }
 
-            // adjust the line and column tracking as required...
-            column++;
-            if( c == '\n' ) {
-                line++;
-                column = 0;
-            }
-        }
+    /**
+     * Returns the given label's statement from the given statements if it's there, or otherwise from anywhere in the given tokens (or null if it isn't
+     * in them either).
+     */
+    private static List<String> getStatement( final List<Token> _tokens, final String _label, final Map<String, List<String>> _statements ) {
+
+        if( _statements.containsKey( _label ) )
+            return _statements.get( _label );
+        for( int i = 0; i < _tokens.size(); i++ )
+            if( _tokens.get( i ).is( TokenType.LABEL ) && _label.equals( _tokens.get( i ).getValue() ) )
+                return getStatements( _tokens, i, i + 1 ).get( _label );
+        return null;
     }
 
 
     /**
-     * Handles all the details of an inline ( / * ... * / ) comment.  This is slighly more complicated than you might think, simply because the
-     * comment may traverse any number of newlines (inclduing zero) and that complicates the line and column tracking.
+     * Returns the statements (as the types and values of their tokens, keyed by their labels) that include any of the given tokens from the given
+     * start index up to the given end index, in the order they appear.
      */
-    private void handleInlineComment() {
-
-        // find the comment terminator...
-        int term = source.indexOf( "*/", index + 2 );
-        if( term >= 0 ) {
-
-            // correct the line and column trackers...
-            String comment = source.substring( index + 2, term );
-            int nlc = S.count( comment, '\n' );
-            if( nlc == 0 ) {
-                column += (term - index) + 2;
-            } else {
-                line += nlc;
-                column = comment.length() - comment.lastIndexOf( '\n' );
-            }
+    private static Map<String, List<String>> getStatements( final List<Token> _tokens, final int _from, final int _to ) {
 
-            index = term + 1;
-        }
+        // start with the statement that the first token is part of, if it isn't a statement of its own...
+        int i = _from;
+        while( (i > 0) && (i < _tokens.size()) && !startsStatement( _tokens.get( i ) ) )
+            i--;
 
-        // if we couldn't find the terminator, it's a warning...
-        else {
-            postWarning( "Unterminated '/*...*/' comment" );
-            index = source.length() - 2;
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        while( i < _to ) {
+            Token token = _tokens.get( i++ );
+            if( !token.is( TokenType.LABEL ) )
+                continue;
+            List<String> statement = new ArrayList<>();
+            statement.add( token.getValue() );
+            while( (i < _tokens.size()) && !startsStatement( _tokens.get( i ) ) ) {
+                statement.add( _tokens.get( i ).getType().name() );
+                statement.add( _tokens.get( i++ ).getValue() );
+            }
+            result.put( token.getValue(), statement );
         }
+        return result;
     }
 
 
-    /**
-     * Returns the list of tokens parsed from the source given when this instance was created.  The tokens are in the same order as the source code
-     * that generated them.
-     *
-     * @return an immutable list of tokens
-     */
-    public List<Token> getTokens() {
-        return Collections.unmodifiableList( tokens );
+    private static boolean startsStatement( final Token _token ) {
+        return !_token.is( TokenType.TYPE ) && !_token.is( TokenType.VALUE );
     }
 
 
-    /**
-     * Returns the error and warning messages (if any) generated while parsing the source code given when this instance was created.  Each message
-     * is terminated with a newline.
-     *
-     * @return the error and warning messages.
-     */
-    public String getMessages() {
-        return messages.toString();
+    private static boolean expectsType( final Token _token ) {
+        return (_token != null) && (_token.is( TokenType.LABEL ) || _token.is( TokenType.KEY_USE ));
     }
 
 
     /**
-     * Returns true if any warnings were generated while parsing the source given when this instance was created.
-     *
-     * @return true if any warnings were generated
+     * Returns the index of the first of the given tokens on or after the given (0 based) line, or the number of tokens if there is none.
      */
-    public boolean isWarning() {
-        return warnings > 0;
+    private static int firstOnLine( final List<Token> _tokens, final int _line ) {
+
+        int low = 0;
+        int high = _tokens.size();
+        while( low < high ) {
+            int mid = (low + high) >>> 1;
+            if( _tokens.get( mid ).getLine() - 1 < _line )
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
     }
 
 
-    /**
-     * Returns true if any errors were generated while parsing the source given when this instance was created.
-     *
-     * @return true if any errors were generated
-     */
-    public boolean isError() {
-        return errors > 0;
+    private static int countLines( final String _text, final int _from, final int _to ) {
+        int result = 0;
+        for( int i = _from; i < _to; i++ )
+            if( _text.charAt( i ) == '\n' )
+                result++;
+        return result;
     }
 
 
     /**
-     * Returns the count of warnings generated while parsing the source given when this instance was created.
+     * Returns the list of tokens parsed from the source given when this instance was created.  The tokens are in the same order as the source code
+     * that generated them.
      *
-     * @return the count of warnings generated
+     * @return an immutable list of tokens
      */
-    public int getWarningsCount() {
-        return warnings;
+    public List<Token> getTokens() {
+        return tokens;
     }
 
 
     /**
-     * Returns the count of errors generated while parsing the source given when this instance was created.
+     * Returns the labels of the statements (components, nets, and so on) that were added, removed, or changed by the edit that this instance was made
+     * for by {@link #update(String)}, in the order they appear.  For an instance made directly from a source, this is the labels of all its
+     * statements.
      *
-     * @return the count of errors generated
+     * @return an immutable set of the labels of the changed statements
      */
-    public int getErrorsCount() {
-        return errors;
+    public Set<String> getChangedLabels() {
+        return changed;
     }
 
 
     /**
-     * Returns true if we're expecting a type token, meaning that the preceding token was a label, or the keyword "use".
+     * Returns true if this instance was made by {@link #update(String)} tokenizing just the changed lines of an edited source, rather than all of it.
      *
-     * @return true if we're expecting a type token.
+     * @return true if only the changed lines were tokenized
      */
-    private boolean expectingType() {
-
-        if( tokens.size() == 0 )
-            return false;
-
-        Token prev = tokens.get( tokens.size() - 1 );
-        return prev.is( TokenType.LABEL ) || prev.is( TokenType.KEY_USE );
+    public boolean isIncremental() {
+        return incremental;
     }
 
 
     /**
-     * Returns a string in the form " at line [x], column [y]." for appending to warning or error messages.  The line and column numbers are 1 based.
+     * Returns the error and warning messages (if any) generated while parsing the source code given when this instance was created.  Each message
+     * is terminated with a newline.
      *
-     * @return the location reference string
+     * @return the error and warning messages.
      */
-    private String ref() {
-        return " at line " + (line + 1) + ", column " + (column + 1) + ".";
+    public String getMessages() {
+        return messages;
     }
 
 
     /**
-     * Returns the character at (index + 1), or the null character if the index is currently at the last position in the source.
+     * Returns true if any warnings were generated while parsing the source given when this instance was created.
      *
-     * @return the character at (index + 1)
+     * @return true if any warnings were generated
      */
-    private char peekNext() {
-        return ( index + 1 >= source.length() ) ? 0 : source.charAt( index + 1 );
+    public boolean isWarning() {
+        return warnings > 0;
     }
 
 
     /**
-     * Post a warning message.  The number of warnings is incremented, and a warning message consisting of the given string, location reference,
-     * and newline is appended to the messages.
+     * Returns true if any errors were generated while parsing the source given when this instance was created.
      *
-     * @param _msg the base warning message
+     * @return true if any errors were generated
      */
-    private void postWarning( final String _msg ) {
-        messages.append( _msg ).append( ref() ).append( '\n' );
-        warnings++;
+    public boolean isError() {
+        return errors > 0;
     }
 
 
     /**
-     * Post an error message.  The number of errors is incremented, and an error message consisting of the given string, location reference,
-     * and newline is appended to the messages.
+     * Returns the count of warnings generated while parsing the source given when this instance was created.
      *
-     * @param _msg the base error message
+     * @return the count of warnings generated
      */
-    private void postError( final String _msg ) {
-        messages.append( _msg ).append( ref() ).append( '\n' );
-        errors++;
+    public int getWarningsCount() {
+        return warnings;
     }
 
 
     /**
-     * Adds a new token of the given <code>TokenType</code> to the list of tokens held by this instance.  The rest of the parameters for the new
-     * token are taken from this instance's current state during parsing.
+     * Returns the count of errors generated while parsing the source given when this instance was created.
      *
-     * @param _type  the <code>TokenType</code> of the new token
+     * @return the count of errors generated
      */
-    private void addToken( final TokenType _type ) {
-        int col = 1 + column - accumulator.length();
-        String val = accumulator.toString().trim();
-        boolean fol = (tokens.size() == 0) || (tokens.get( tokens.size() - 1 ).getLine() < line + 1);
-        tokens.add( new Token( _type, val, line + 1, col, fol ) );
-        accumulator.setLength( 0 );
+    public int getErrorsCount() {
+        return errors;
     }
 }
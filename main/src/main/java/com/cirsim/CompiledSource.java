@@ -0,0 +1,220 @@
+package com.cirsim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The tokens of a circuit element source file, with the messages, errors, and warnings posted while tokenizing it.  An instance can be written to a
+ * compact binary file (a <i>compiled source</i>) along with a hash of the source it was made from, and read back again later instead of tokenizing
+ * the source again, so long as the source still has the same hash.
+ * <p>
+ * A compiled source holds a header (a magic number, the format version, and the SHA-256 hash of the source's bytes), then the messages and counts,
+ * then a table of the distinct token values, and finally the tokens themselves, each as its type, position, and the index of its value in the
+ * table.  A compiled source that can't be read, for whatever reason, is simply treated as missing.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+final class CompiledSource {
+
+    private static final int MAGIC = 0x53494D43;   // "SIMC"...
+    private static final int VERSION = 1;           // must change whenever the format (or the order of the token types) changes...
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final List<Token> tokens;
+    private final String messages;
+    private final int errors;
+    private final int warnings;
+
+
+    /**
+     * Creates a new instance of this class holding all the tokens of the given token stream, with its messages.
+     */
+    CompiledSource( final CircuitTokenStream _tokenizer ) {
+        List<Token> list = new ArrayList<>();
+        _tokenizer.forEachRemaining( list::add );
+        tokens = Collections.unmodifiableList( list );
+        messages = _tokenizer.getMessages();
+        errors = _tokenizer.getErrorsCount();
+        warnings = _tokenizer.getWarningsCount();
+    }
+
+
+    private CompiledSource( final List<Token> _tokens, final String _messages, final int _errors, final int _warnings ) {
+        tokens = Collections.unmodifiableList( _tokens );
+        messages = _messages;
+        errors = _errors;
+        warnings = _warnings;
+    }
+
+
+    /**
+     * Returns the SHA-256 hash of the remaining bytes of the given buffer, without changing its position.
+     */
+    static byte[] hash( final ByteBuffer _bytes ) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+            digest.update( _bytes.duplicate() );
+            return digest.digest();
+        }
+        catch( NoSuchAlgorithmException _e ) {
+            throw new IllegalStateException( "SHA-256 is not available", _e );
+        }
+    }
+
+
+    /**
+     * Returns the compiled source in the given file, if it was compiled from a source with the given hash, or null if it wasn't, or if the file is
+     * missing, unreadable, or corrupt.
+     */
+    static CompiledSource read( final File _file, final byte[] _hash ) {
+
+        if( !_file.isFile() )
+            return null;
+
+        // no count or length in a file can be more than its size, which keeps a corrupt file from making us allocate huge arrays...
+        long size = _file.length();
+        try( DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( _file ) ) ) ) {
+
+            if( (in.readInt() != MAGIC) || (in.readUnsignedShort() != VERSION) )
+                return null;
+            byte[] hash = new byte[in.readUnsignedByte()];
+            in.readFully( hash );
+            if( !Arrays.equals( hash, _hash ) )
+                return null;
+
+            String messages = readString( in, size );
+            int errors = in.readInt();
+            int warnings = in.readInt();
+
+            String[] values = new String[checked( in.readInt(), size )];
+            for( int i = 0; i < values.length; i++ )
+                values[i] = readString( in, size );
+
+            int count = checked( in.readInt(), size );
+            List<Token> tokens = new ArrayList<>( count );
+            for( int i = 0; i < count; i++ ) {
+                int type = in.readUnsignedByte();
+                int line = in.readInt();
+                int column = in.readInt();
+                boolean firstOnLine = in.readBoolean();
+                int value = in.readInt();
+                if( (type >= TYPES.length) || (value < -1) || (value >= values.length) )
+                    return null;
+                tokens.add( new Token( TYPES[type], (value < 0) ? null : values[value], line, column, firstOnLine ) );
+            }
+            return new CompiledSource( tokens, messages, errors, warnings );
+        }
+        catch( IOException | RuntimeException _e ) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Writes this instance to the given file, marked with the given hash of the source it was compiled from.  The file is written under another name
+     * and then moved into place, so that a reader never sees it half written.
+     */
+    void write( final File _file, final byte[] _hash ) throws IOException {
+
+        File dir = _file.getAbsoluteFile().getParentFile();
+        if( !dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory() )
+            throw new IOException( "Can't create directory " + dir );
+
+        File temp = File.createTempFile( _file.getName(), ".tmp", dir );
+        try {
+            try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) ) ) {
+
+                out.writeInt( MAGIC );
+                out.writeShort( VERSION );
+                out.writeByte( _hash.length );
+                out.write( _hash );
+
+                writeString( out, messages );
+                out.writeInt( errors );
+                out.writeInt( warnings );
+
+                // each distinct value is written just once, however many tokens have it...
+                Map<String, Integer> indices = new HashMap<>();
+                List<String> values = new ArrayList<>();
+                for( Token token : tokens )
+                    if( (token.getValue() != null) && (indices.putIfAbsent( token.getValue(), values.size() ) == null) )
+                        values.add( token.getValue() );
+                out.writeInt( values.size() );
+                for( String value : values )
+                    writeString( out, value );
+
+                out.writeInt( tokens.size() );
+                for( Token token : tokens ) {
+                    out.writeByte( token.getType().ordinal() );
+                    out.writeInt( token.getLine() );
+                    out.writeInt( token.getColumn() );
+                    out.writeBoolean( token.isFirstOnLine() );
+                    out.writeInt( (token.getValue() == null) ? -1 : indices.get( token.getValue() ) );
+                }
+            }
+            java.nio.file.Files.move( temp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        finally {
+            java.nio.file.Files.deleteIfExists( temp.toPath() );
+        }
+    }
+
+
+    // strings are written as their UTF-8 length and bytes, as writeUTF() can't handle more than 64k bytes...
+    private static void writeString( final DataOutputStream _out, final String _string ) throws IOException {
+        byte[] bytes = _string.getBytes( StandardCharsets.UTF_8 );
+        _out.writeInt( bytes.length );
+        _out.write( bytes );
+    }
+
+
+    private static String readString( final DataInputStream _in, final long _size ) throws IOException {
+        byte[] bytes = new byte[checked( _in.readInt(), _size )];
+        _in.readFully( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+
+    private static int checked( final int _count, final long _size ) throws IOException {
+        if( (_count < 0) || (_count > _size) )
+            throw new IOException( "Invalid count in compiled source: " + _count );
+        return _count;
+    }
+
+
+    List<Token> getTokens() {
+        return tokens;
+    }
+
+
+    String getMessages() {
+        return messages;
+    }
+
+
+    int getErrors() {
+        return errors;
+    }
+
+
+    int getWarnings() {
+        return warnings;
+    }
+}
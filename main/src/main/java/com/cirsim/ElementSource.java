@@ -0,0 +1,39 @@
+package com.cirsim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The source code of a circuit element, wherever it comes from: a source file in a source directory (see {@link FileSource}), or an entry in a
+ * source archive (see {@link SourceArchive}).
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+interface ElementSource {
+
+
+    /**
+     * Returns the time the source was last modified, in milliseconds since the epoch, or 0 if it no longer exists.
+     *
+     * @return the time the source was last modified
+     */
+    long lastModified();
+
+
+    /**
+     * Returns all the UTF-8 bytes of the source.
+     *
+     * @return the bytes of the source
+     * @throws IOException on any I/O problem reading the source
+     */
+    ByteBuffer read() throws IOException;
+
+
+    /**
+     * Returns the tokens of the source, read in whatever way is cheapest for it.
+     *
+     * @return the tokens of the source, with the messages posted while tokenizing it
+     * @throws IOException on any I/O problem reading the source
+     */
+    CompiledSource tokenize() throws IOException;
+}
@@ -0,0 +1,87 @@
+package com.cirsim;
+
+import com.google.common.base.Charsets;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The source code of a circuit element in a source file.  Big files are memory-mapped, and their UTF-8 bytes decoded straight from the mapping,
+ * with tokens that refer to the mapping rather than holding copies of their values; smaller files, for which mapping costs more than it saves, are
+ * read through a reader.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+final class FileSource implements ElementSource {
+
+    private static final long MAP_THRESHOLD = 1 << 20;   // source files at least this big are memory-mapped rather than read...
+
+    private final File file;
+
+
+    private FileSource( final File _file ) {
+        file = _file;
+    }
+
+
+    /**
+     * Returns the source of the element with the given path in the given source directory, found through the given index, or null if it has none.
+     */
+    static FileSource find( final SourceIndex _index, final File _root, final String _elementPath ) {
+        File file = _index.find( _root, _elementPath );
+        return (file == null) ? null : new FileSource( file );
+    }
+
+
+    @Override
+    public long lastModified() {
+        return file.lastModified();
+    }
+
+
+    @Override
+    public ByteBuffer read() throws IOException {
+
+        try( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+            long size = channel.size();
+            if( size > Integer.MAX_VALUE )
+                throw new IOException( "Source file is too big: " + file );
+            if( size >= MAP_THRESHOLD )
+                return channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+            return ByteBuffer.wrap( java.nio.file.Files.readAllBytes( file.toPath() ) );
+        }
+    }
+
+
+    @Override
+    public CompiledSource tokenize() throws IOException {
+
+        try {
+            long size = file.length();
+            if( (size >= MAP_THRESHOLD) && (size <= Integer.MAX_VALUE) ) {
+                try( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+                    return new CompiledSource( new CircuitTokenStream( channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ) ) );
+                }
+            }
+            try( Reader reader = new InputStreamReader( new FileInputStream( file ), Charsets.UTF_8 ) ) {
+                return new CompiledSource( new CircuitTokenStream( reader ) );
+            }
+        }
+        catch( UncheckedIOException _e ) {
+            throw _e.getCause();
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+}
@@ -0,0 +1,122 @@
+package com.cirsim;
+
+import com.cirsim.constants.Strings;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An archive (a zip file, conventionally with a ".zim" extension, though a jar will do just as well) of circuit element source files, laid out just as
+ * they would be in a source directory: the source of element <code>a.b.C</code> is the entry <code>a/b/C.sim</code>.  The archive's central
+ * directory is read just once, when the instance is created, into an index of its source files keyed by their element paths; after that, finding
+ * an element is a lookup in the index, and its source is streamed straight from the archive when it's needed, without extracting anything.  A
+ * library of thousands of elements thus costs one file to open, rather than thousands.
+ * <p>
+ * The archive stays open until the instance is closed, after which it has no sources at all.  It's read as it was when it was opened, so the time
+ * it was last modified then is the time every one of its sources was last modified.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+final class SourceArchive implements Closeable {
+
+    private final ZipFile zip;
+    private final long modified;
+    private final Map<String, ZipEntry> entries = new HashMap<>();   // the source file entries, keyed by their element paths...
+    private volatile boolean closed;
+
+
+    /**
+     * Creates a new instance of this class that reads the given archive.
+     *
+     * @param _archive the archive to read
+     * @throws IOException on any I/O problem opening the archive, or if it isn't a valid archive
+     */
+    SourceArchive( final File _archive ) throws IOException {
+
+        modified = _archive.lastModified();
+        zip = new ZipFile( _archive );
+        Enumeration<? extends ZipEntry> all = zip.entries();
+        while( all.hasMoreElements() ) {
+            ZipEntry entry = all.nextElement();
+            String name = entry.getName();
+            if( entry.isDirectory() || !name.endsWith( Strings.SIM_FILE_EXT ) )
+                continue;
+            String path = name.substring( 0, name.length() - Strings.SIM_FILE_EXT.length() ).replace( '/', '.' );
+            entries.put( path, entry );
+        }
+    }
+
+
+    /**
+     * Returns the source of the element with the given path in this archive, or null if it has none (as it doesn't once it's closed).
+     */
+    ElementSource find( final String _elementPath ) {
+        ZipEntry entry = closed ? null : entries.get( _elementPath );
+        return (entry == null) ? null : new Entry( entry );
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        zip.close();
+    }
+
+
+    /**
+     * The source of an element in this archive.
+     */
+    private final class Entry implements ElementSource {
+
+        private final ZipEntry entry;
+
+
+        private Entry( final ZipEntry _entry ) {
+            entry = _entry;
+        }
+
+
+        @Override
+        public long lastModified() {
+            return modified;
+        }
+
+
+        @Override
+        public ByteBuffer read() throws IOException {
+            try( InputStream in = zip.getInputStream( entry ) ) {
+                return ByteBuffer.wrap( ByteStreams.toByteArray( in ) );
+            }
+        }
+
+
+        @Override
+        public CompiledSource tokenize() throws IOException {
+            try( Reader reader = new InputStreamReader( zip.getInputStream( entry ), Charsets.UTF_8 ) ) {
+                return new CompiledSource( new CircuitTokenStream( reader ) );
+            }
+            catch( UncheckedIOException _e ) {
+                throw _e.getCause();
+            }
+        }
+
+
+        @Override
+        public String toString() {
+            return zip.getName() + "!" + entry.getName();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.cirsim;
+
+import com.cirsim.constants.Strings;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the source files of circuit elements for a circuit factory.  Packages map one to one to directories, so the source file of an element is
+ * found directly from its path (<code>a.b.C</code> is <code>a/b/C.sim</code> under a source directory), without listing any directories; a source
+ * tree of tens of thousands of files costs no more to start with than one of a handful.
+ * <p>
+ * The source files found not to exist are remembered, as element types are looked up over and over, most of them (the components) not elements
+ * at all.  To keep what's remembered up to date, the directory each missing file would be in (or, if that doesn't exist, the nearest directory
+ * above it that does) is watched by a <code>WatchService</code>, and a change to a directory's entries forgets everything remembered about the files
+ * in it.  A source file created is found as soon as the watch service reports it, which on some platforms may take a few seconds.  A source file
+ * that was found is always checked again, as it's about to be read anyway, and it mustn't be reported after it's removed.  If the platform can't
+ * watch a directory, nothing is remembered about the files in it.
+ * <p>
+ * No more than {@link #MAX_MISSING} missing files are remembered; past that, everything is forgotten (and every watch cancelled), and remembering
+ * starts over.  The watch service is made when it's first needed, and closed (with every watch cancelled) when this instance is closed, after which
+ * nothing more is remembered.  Instances of this class are threadsafe.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+final class SourceIndex implements Closeable {
+
+    static final int MAX_MISSING = 10000;   // the most missing source files remembered at once...
+
+    private final Set<Path> missing = new HashSet<>();                // the source files looked up that don't exist...
+    private final Map<Path, Set<Path>> watched = new HashMap<>();     // the missing source files, by the directory watched for them...
+    private final Map<Path, WatchKey> keys = new HashMap<>();         // the watch key of each directory watched...
+
+    private WatchService watcher;   // the watch service for all the directories watched, or null if we haven't (or can't) make one...
+    private boolean unwatchable;    // true if we couldn't make a watch service, or have been closed...
+
+
+    /**
+     * Returns the source file of the element with the given path in the given source directory, or null if it has none, or if the path isn't a
+     * valid element path.
+     */
+    File find( final File _root, final String _elementPath ) {
+
+        // each part of the path must be a name (not empty, and not something that would take us elsewhere in the file system)...
+        String[] parts = _elementPath.split( "\\.", -1 );
+        for( String part : parts )
+            if( part.isEmpty() || (part.indexOf( '/' ) >= 0) || (part.indexOf( '\\' ) >= 0) )
+                return null;
+
+        try {
+            Path file = _root.toPath().toAbsolutePath().normalize();
+            for( int i = 0; i < parts.length - 1; i++ )
+                file = file.resolve( parts[i] );
+            file = file.resolve( parts[parts.length - 1] + Strings.SIM_FILE_EXT );
+            return isFile( file ) ? file.toFile() : null;
+        }
+        catch( InvalidPathException _e ) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Returns true if the given source file exists, unless we remember that it doesn't.
+     */
+    private synchronized boolean isFile( final Path _file ) {
+
+        forgetChanged();
+        if( missing.contains( _file ) )
+            return false;
+
+        if( Files.isRegularFile( _file ) )
+            return true;
+
+        // start over if we're remembering too much...
+        if( missing.size() >= MAX_MISSING )
+            forgetAll();
+
+        // remember that it's missing if we can watch for it to be created...
+        Path dir = _file.getParent();
+        while( (dir != null) && !Files.isDirectory( dir ) )
+            dir = dir.getParent();
+        if( (dir != null) && watch( dir ) ) {
+            missing.add( _file );
+            watched.get( dir ).add( _file );
+        }
+        return false;
+    }
+
+
+    /**
+     * Starts watching the given directory's entries, if we aren't already.  Returns false if it can't be watched.
+     */
+    private boolean watch( final Path _dir ) {
+
+        if( keys.containsKey( _dir ) )
+            return true;
+
+        try {
+            if( (watcher == null) && !unwatchable )
+                watcher = FileSystems.getDefault().newWatchService();
+            if( watcher == null )
+                return false;
+            keys.put( _dir, _dir.register( watcher, StandardWatchEventKinds.ENTRY_CREATE ) );
+            watched.put( _dir, new HashSet<>() );
+            return true;
+        }
+        catch( IOException | UnsupportedOperationException | ClosedWatchServiceException _e ) {
+            if( watcher == null )
+                unwatchable = true;
+            return false;
+        }
+    }
+
+
+    /**
+     * Forgets what we remember about the files in each directory that the watch service has reported new entries in.
+     */
+    private void forgetChanged() {
+
+        if( watcher == null )
+            return;
+
+        WatchKey key;
+        while( (key = watcher.poll()) != null ) {
+
+            Path dir = (Path) key.watchable();
+            boolean overflow = false;
+            for( WatchEvent<?> event : key.pollEvents() )
+                overflow |= (event.kind() == StandardWatchEventKinds.OVERFLOW);
+
+            // if events were lost, we can't know what changed, so forget everything...
+            if( overflow ) {
+                missing.clear();
+                watched.values().forEach( Set::clear );
+            }
+            else
+                forget( dir );
+
+            // a directory that can no longer be watched (because it was removed, say) is forgotten altogether...
+            if( !key.reset() ) {
+                forget( dir );
+                watched.remove( dir );
+                keys.remove( dir );
+            }
+        }
+    }
+
+
+    private void forget( final Path _dir ) {
+        Set<Path> files = watched.get( _dir );
+        if( files == null )
+            return;
+        missing.removeAll( files );
+        files.clear();
+    }
+
+
+    /**
+     * Forgets everything we remember, and stops watching every directory.
+     */
+    private void forgetAll() {
+        keys.values().forEach( WatchKey::cancel );
+        keys.clear();
+        watched.clear();
+        missing.clear();
+    }
+
+
+    /**
+     * Forgets everything remembered, cancels every watch, and closes the watch service.  Source files can still be found afterwards, but nothing
+     * more is remembered.
+     *
+     * @throws IOException on any I/O problem closing the watch service
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        forgetAll();
+        unwatchable = true;
+        if( watcher != null ) {
+            WatchService closing = watcher;
+            watcher = null;
+            closing.close();
+        }
+    }
+}
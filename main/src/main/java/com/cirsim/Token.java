@@ -1,22 +1,50 @@
 package com.cirsim;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 /**
+ * A token of circuit element source code.  A token made by a {@link CircuitTokenStream} reading a memory-mapped source file doesn't hold its value,
+ * but the offsets of its value in the UTF-8 bytes of the source; the value is decoded only when it is first asked for.  Such a token keeps the
+ * source buffer (and thus its mapping) reachable.
+ *
  * @author Tom Dilatush  tom@dilatush.com
  */
 public class Token {
 
     private final TokenType type;
-    private final String value;
+    private final ByteBuffer source;   // the UTF-8 source the value is in, or null if the value was given...
+    private final int start;           // the offset of the first byte of the value in the source...
+    private final int end;             // the offset just past the last byte of the value in the source...
     private final int line;
     private final int column;
     private final boolean firstOnLine;
+    private String value;
 
 
     public Token( final TokenType _type, final String _value, final int _line, final int _column, final boolean _firstOnLine ) {
         type = _type;
         value = _value;
+        source = null;
+        start = 0;
+        end = 0;
+        line = _line;
+        column = _column;
+        firstOnLine = _firstOnLine;
+    }
+
+
+    /**
+     * Creates a new instance of this class whose value is the UTF-8 bytes of the given source, from the given start offset up to (but not including)
+     * the given end offset.  The source must not change while the instance is in use.
+     */
+    Token( final TokenType _type, final ByteBuffer _source, final int _start, final int _end, final int _line, final int _column,
+           final boolean _firstOnLine ) {
+        type = _type;
+        source = _source;
+        start = _start;
+        end = _end;
         line = _line;
         column = _column;
         firstOnLine = _firstOnLine;
@@ -34,6 +62,13 @@ public class Token {
 
 
     public String getValue() {
+
+        // decode a value in the source the first time it's asked for...
+        if( (value == null) && (source != null) ) {
+            ByteBuffer bytes = source.duplicate();
+            bytes.limit( end ).position( start );
+            value = StandardCharsets.UTF_8.decode( bytes ).toString();
+        }
         return value;
     }
 
@@ -60,12 +95,12 @@ public class Token {
                 Objects.equals( column, token.column ) &&
                 Objects.equals( firstOnLine, token.firstOnLine ) &&
                 Objects.equals( type, token.type ) &&
-                Objects.equals( value, token.value );
+                Objects.equals( getValue(), token.getValue() );
     }
 
 
     @Override
     public int hashCode() {
-        return Objects.hash( type, value, line, column, firstOnLine );
+        return Objects.hash( type, getValue(), line, column, firstOnLine );
     }
 }
@@ -0,0 +1,250 @@
+package com.cirsim.calc;
+
+import com.cirsim.components.FixedDCVoltageSource;
+import com.cirsim.matrices.ComplexTreeMatrix;
+import com.cirsim.matrices.ComplexTreeVector;
+import com.cirsim.matrices.IndexIterator;
+import com.cirsim.matrices.TreeMatrix;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the small-signal frequency response of a circuit (an <i>AC analysis</i>): the complex voltage at each node, at each of a series of
+ * frequencies, in response to a one volt AC input applied by one of the circuit's voltage sources, with every other source's AC value being zero.
+ * <p>
+ * The circuit is first solved at DC (see {@link NewtonSolver}), and each nonlinear component is linearized about that operating point.  At angular
+ * frequency &omega;, a capacitor's admittance is j&omega;C and an inductor's impedance is j&omega;L; since every reactive component's companion model
+ * (see {@link com.cirsim.components.ReactiveComponent}) is linear in its coefficient, the AC matrix is just G + j&omega;C, where G is the matrix
+ * assembled with a coefficient of zero and G + C the matrix assembled with a coefficient of one.  So the circuit is assembled just twice, when an
+ * instance is created, and the matrix at any frequency is then filled in (see {@link ComplexTreeMatrix}) with no stamping at all.
+ * <p>
+ * The matrices at the different frequencies all have the same pattern, and the solution at one frequency doesn't depend on the solution at any
+ * other, so a sweep analyzes the matrix at its first frequency just once (see {@link ComplexSparseLUFactorization}), and then solves the frequencies
+ * in parallel, each worker refactoring its own matrix with the one shared analysis.  Only a frequency at which the shared pivot order turns out to be
+ * unusable is analyzed afresh.
+ * <p>
+ * Instances of this class are immutable once constructed, and are therefore threadsafe.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class ACAnalysis {
+
+    private final CircuitGraph graph;
+    private final int size;
+    private final int[] nodeColumns;     // the column of each node's voltage, or -1 for reference nodes...
+    private final int[] entryRows;       // the row of each matrix entry...
+    private final int[] entryCols;       // the column of each matrix entry...
+    private final double[] conductances; // the real (G) part of each matrix entry...
+    private final double[] capacitances; // the part (C) of each matrix entry that is multiplied by j omega...
+    private final int inputRow;          // the row of the input source's branch equation...
+
+
+    /**
+     * Creates a new instance of this class to analyze the circuit with the given graph, with the AC input applied by the voltage source with the given
+     * label.  Throws an <code>IllegalArgumentException</code> if the graph or label is missing, there is no voltage source with the given label, or
+     * the circuit's DC equations are singular, or an <code>IllegalStateException</code> if the circuit's DC operating point can't be found.
+     *
+     * @param _graph the graph of the circuit to analyze
+     * @param _input the label of the voltage source applying the AC input
+     */
+    public ACAnalysis( final CircuitGraph _graph, final String _input ) {
+
+        if( (_graph == null) || (_input == null) )
+            throw new IllegalArgumentException( "Circuit graph or input is missing" );
+
+        graph = _graph;
+        CircuitGraph.Branch input = graph.getBranches().stream().filter( b -> b.getLabel().equals( _input ) ).findFirst().orElse( null );
+        if( (input == null) || !(input.getComponent() instanceof FixedDCVoltageSource) )
+            throw new IllegalArgumentException( "No voltage source labeled '" + _input + "'" );
+
+        // find the operating point, and assemble G and G + C about it...
+        double[] operatingPoint = new NewtonSolver( graph, NewtonOptions.DEFAULT ).solve();
+        MNAAssembler assembler = new MNAAssembler( graph );
+        double[] histories = new double[graph.getBranchCount()];
+        assembler.assemble( 0, histories, operatingPoint );
+        TreeMatrix matrix = assembler.getMatrix();
+        size = matrix.size();
+        int entries = matrix.entryCount();
+        entryRows = new int[entries];
+        entryCols = new int[entries];
+        conductances = new double[entries];
+        capacitances = new double[entries];
+        int[] slots = new int[entries];
+        int e = 0;
+        for( int r = 0; r < size; r++ ) {
+            IndexIterator it = matrix.rowIterator( r );
+            while( it.hasNext() ) {
+                it.next();
+                entryRows[e] = r;
+                entryCols[e] = it.key();
+                slots[e] = it.value();
+                conductances[e++] = matrix.getValue( it.value() );
+            }
+        }
+        assembler.assemble( 1, histories, operatingPoint );
+        for( e = 0; e < entries; e++ )
+            capacitances[e] = matrix.getValue( slots[e] ) - conductances[e];
+
+        inputRow = assembler.getBranchRows( input.getIndex() )[2];
+        nodeColumns = new int[graph.getNodeCount()];
+        for( int node = 0; node < nodeColumns.length; node++ )
+            nodeColumns[node] = assembler.getNodeColumn( node );
+    }
+
+
+    /**
+     * Runs the analysis at the given number of frequencies per decade, spaced logarithmically from the given start frequency to the given stop
+     * frequency (both in hertz, and both included), in parallel on the common fork/join pool.  Throws an <code>IllegalArgumentException</code> if
+     * the start frequency isn't positive, the stop frequency is less than the start, there are no points per decade, or the equations are singular at
+     * any frequency.
+     *
+     * @param _start the first frequency
+     * @param _stop the last frequency
+     * @param _pointsPerDecade the number of frequencies in each decade
+     * @return the results of the analysis
+     */
+    public ACResult run( final double _start, final double _stop, final int _pointsPerDecade ) {
+
+        if( !(_start > 0) || !(_stop >= _start) )
+            throw new IllegalArgumentException( "Invalid frequency range: " + _start + " to " + _stop );
+
+        if( _pointsPerDecade < 1 )
+            throw new IllegalArgumentException( "Invalid points per decade: " + _pointsPerDecade );
+
+        double decades = Math.log10( _stop / _start );
+        int points = (int) Math.round( decades * _pointsPerDecade ) + 1;
+        double[] frequencies = new double[points];
+        for( int i = 0; i < points; i++ )
+            frequencies[i] = (i == points - 1) ? _stop : _start * Math.pow( 10, (double) i / _pointsPerDecade );
+        return run( frequencies, ForkJoinPool.commonPool() );
+    }
+
+
+    /**
+     * Runs the analysis at each of the given frequencies (in hertz), in parallel on the given fork/join pool.  Throws an
+     * <code>IllegalArgumentException</code> if the frequencies or pool are missing, there are no frequencies, any frequency is negative, or the
+     * equations are singular at any frequency.
+     *
+     * @param _frequencies the frequencies to analyze the circuit at
+     * @param _pool the fork/join pool to solve the frequencies in
+     * @return the results of the analysis
+     */
+    public ACResult run( final double[] _frequencies, final ForkJoinPool _pool ) {
+
+        if( (_frequencies == null) || (_frequencies.length == 0) )
+            throw new IllegalArgumentException( "Frequencies are missing" );
+
+        if( _pool == null )
+            throw new IllegalArgumentException( "Fork/join pool is missing" );
+
+        for( double frequency : _frequencies )
+            if( !(frequency >= 0) )
+                throw new IllegalArgumentException( "Invalid frequency: " + frequency );
+
+        double[] frequencies = _frequencies.clone();
+        int n = frequencies.length;
+        double[][] real = new double[n][];
+        double[][] imaginary = new double[n][];
+        ComplexTreeVector excitation = new ComplexTreeVector( 1, size );
+        excitation.set( inputRow, 1, 0 );
+
+        // analyze the matrix at the first frequency, and solve it there...
+        Worker first = new Worker();
+        first.load( frequencies[0] );
+        first.factorization = new ComplexSparseLUFactorization( first.matrix );
+        ComplexSparseLUFactorization shared = first.factorization;
+        AtomicInteger analyses = new AtomicInteger( 1 );
+        solve( first, excitation, 0, real, imaginary );
+
+        // then solve the rest in parallel, each worker with its own matrix and factors, but sharing the analysis...
+        ConcurrentLinkedQueue<Worker> idle = new ConcurrentLinkedQueue<>();
+        idle.add( first );
+        try {
+            _pool.submit( () -> IntStream.range( 1, n ).parallel().forEach( i -> {
+
+                Worker worker = idle.poll();
+                if( worker == null ) {
+                    worker = new Worker();
+                    worker.factorization = new ComplexSparseLUFactorization( shared );
+                }
+                worker.load( frequencies[i] );
+                if( !worker.factorization.refactor( worker.matrix ) ) {
+                    worker.factorization = new ComplexSparseLUFactorization( worker.matrix );
+                    analyses.incrementAndGet();
+                }
+                solve( worker, excitation, i, real, imaginary );
+                idle.add( worker );
+            } ) ).get();
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "AC analysis was interrupted" );
+        }
+        catch( ExecutionException e ) {
+            if( e.getCause() instanceof RuntimeException )
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException( "AC analysis failed", e.getCause() );
+        }
+
+        return new ACResult( graph, frequencies, real, imaginary, analyses.get() );
+    }
+
+
+    /**
+     * Solves the given worker's factored matrix for the given excitation, and saves the node voltages as the results for the given frequency index.
+     */
+    private void solve( final Worker _worker, final ComplexTreeVector _excitation, final int _index, final double[][] _real,
+                        final double[][] _imaginary ) {
+
+        double[] x = _worker.factorization.solve( _excitation );
+        double[] re = new double[nodeColumns.length];
+        double[] im = new double[nodeColumns.length];
+        for( int node = 0; node < re.length; node++ )
+            if( nodeColumns[node] >= 0 ) {
+                re[node] = x[nodeColumns[node] << 1];
+                im[node] = x[(nodeColumns[node] << 1) + 1];
+            }
+        _real[_index] = re;
+        _imaginary[_index] = im;
+    }
+
+
+    public CircuitGraph getGraph() {
+        return graph;
+    }
+
+
+    /**
+     * A complex matrix with the circuit's pattern, and the factorization of its values at the latest frequency.  Every worker's matrix is built by
+     * creating the same entries in the same order, so the value store slots of its entries are the same as every other worker's, as sharing an
+     * analysis requires.
+     */
+    private class Worker {
+
+        private final ComplexTreeMatrix matrix;
+        private final int[] slots;
+        private ComplexSparseLUFactorization factorization;
+
+
+        private Worker() {
+            matrix = new ComplexTreeMatrix( size );
+            slots = new int[entryRows.length];
+            for( int e = 0; e < slots.length; e++ )
+                slots[e] = matrix.getSlot( entryRows[e], entryCols[e] );
+        }
+
+
+        /**
+         * Fills in the matrix's values at the given frequency: G + j omega C.
+         */
+        private void load( final double _frequency ) {
+            double omega = 2 * Math.PI * _frequency;
+            for( int e = 0; e < slots.length; e++ )
+                matrix.putValue( slots[e], conductances[e], omega * capacitances[e] );
+        }
+    }
+}
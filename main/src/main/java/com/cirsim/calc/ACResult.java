@@ -0,0 +1,97 @@
+package com.cirsim.calc;
+
+/**
+ * Instances of this class hold the results of an {@link ACAnalysis}: at each frequency, the complex voltage at each node of the circuit's graph in
+ * response to a one volt (zero phase) AC input.  Since the input is one volt, each node's voltage is also the transfer function from the input to
+ * that node.  Instances are immutable.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class ACResult {
+
+    private final CircuitGraph graph;
+    private final double[] frequencies;
+    private final double[][] real;          // the real part of each node's voltage, indexed by frequency and then node...
+    private final double[][] imaginary;     // the imaginary part of each node's voltage, indexed by frequency and then node...
+    private final int analyses;
+
+
+    ACResult( final CircuitGraph _graph, final double[] _frequencies, final double[][] _real, final double[][] _imaginary, final int _analyses ) {
+        graph = _graph;
+        frequencies = _frequencies;
+        real = _real;
+        imaginary = _imaginary;
+        analyses = _analyses;
+    }
+
+
+    /**
+     * Returns the number of frequencies in these results.
+     *
+     * @return the number of frequencies
+     */
+    public int size() {
+        return frequencies.length;
+    }
+
+
+    /**
+     * Returns the frequency (in hertz) at the given index.
+     *
+     * @param _index the index of the frequency
+     * @return the frequency at the given index
+     */
+    public double getFrequency( final int _index ) {
+        return frequencies[_index];
+    }
+
+
+    public double getReal( final int _index, final int _node ) {
+        return real[_index][_node];
+    }
+
+
+    public double getImaginary( final int _index, final int _node ) {
+        return imaginary[_index][_node];
+    }
+
+
+    /**
+     * Returns the magnitude of the voltage at the given node, at the frequency with the given index.
+     *
+     * @param _index the index of the frequency
+     * @param _node the node
+     * @return the magnitude of the node's voltage
+     */
+    public double getMagnitude( final int _index, final int _node ) {
+        return Math.hypot( real[_index][_node], imaginary[_index][_node] );
+    }
+
+
+    /**
+     * Returns the phase (in degrees) of the voltage at the given node, at the frequency with the given index.
+     *
+     * @param _index the index of the frequency
+     * @param _node the node
+     * @return the phase of the node's voltage
+     */
+    public double getPhase( final int _index, final int _node ) {
+        return Math.toDegrees( Math.atan2( imaginary[_index][_node], real[_index][_node] ) );
+    }
+
+
+    /**
+     * Returns the number of times a matrix was analyzed (had its pivot order chosen from scratch) during the sweep: one for the shared analysis, plus
+     * one for each frequency at which the shared pivot order was unusable.
+     *
+     * @return the number of analyses
+     */
+    public int getAnalyses() {
+        return analyses;
+    }
+
+
+    public CircuitGraph getGraph() {
+        return graph;
+    }
+}
@@ -0,0 +1,508 @@
+package com.cirsim.calc;
+
+import com.cirsim.matrices.MatrixStuff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Implements {@link Factorization} by permuting the matrix into block triangular form (the coarse part of the Dulmage-Mendelsohn decomposition) and
+ * then factoring only the square blocks on the diagonal.  Circuits assembled from loosely coupled subcircuits often have matrices in which the
+ * coupling between groups of unknowns runs in only one direction (for example, a stage whose output drives the next stage's input, but not vice
+ * versa).  For those circuits each diagonal block is far smaller than the whole matrix, and factoring the blocks is far cheaper than factoring the
+ * whole thing.  For a fully coupled circuit there is just one block, and this degenerates (at some small extra cost) to an ordinary LU.
+ * <p>
+ * The decomposition has two steps.  First, a maximum transversal (a matching of rows to columns, using the augmenting path algorithm of Duff's
+ * MC21) permutes the rows so that every diagonal entry is nonzero.  Then the strongly connected components of the directed graph of the permuted
+ * matrix (with an edge from column j to column k whenever the row matched to j has an entry in column k) are found with Tarjan's algorithm.  Each
+ * component is one diagonal block, and Tarjan's algorithm emits the components in an order that makes the permuted matrix block lower triangular
+ * (equivalently, block upper triangular in reverse order).
+ * <p>
+ * Blocks that don't depend on each other are factored in parallel, and are solved in parallel: the blocks are grouped into levels, where each
+ * block depends only on blocks in earlier levels, and all the blocks in a level are solved concurrently.
+ * <p>
+ * Instances of this class are immutable once constructed, and are therefore threadsafe.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class BlockTriangularFactorization implements Factorization {
+
+    private final int size;
+    private final Block[] blocks;       // in Tarjan order (dependencies before dependents)...
+    private final int[][] levels;       // the indices of the blocks in each level, in solving order...
+
+
+    /**
+     * Creates a new instance of this class that holds the block triangular factorization of the given square matrix, with the diagonal blocks
+     * factored in double precision.
+     *
+     * @param _matrix the square matrix to factor
+     */
+    public BlockTriangularFactorization( final double[][] _matrix ) {
+        this( _matrix, FactorPrecision.DOUBLE );
+    }
+
+
+    /**
+     * Creates a new instance of this class that holds the block triangular factorization of the given square matrix, with the diagonal blocks
+     * factored in the given precision.  Throws an <code>IllegalArgumentException</code> if the matrix is missing, is not square, or is singular
+     * (either structurally, meaning that no maximum transversal exists, or numerically, in one of the diagonal blocks).
+     *
+     * @param _matrix the square matrix to factor
+     * @param _precision the precision to factor the diagonal blocks in
+     */
+    public BlockTriangularFactorization( final double[][] _matrix, final FactorPrecision _precision ) {
+
+        if( (_matrix == null) || (_matrix.length == 0) )
+            throw new IllegalArgumentException( "Matrix is missing or empty" );
+
+        size = _matrix.length;
+
+        // get the column indices of the nonzero entries in each row, and the row indices of the nonzero entries in each column...
+        int[][] rowPattern = new int[size][];
+        int[][] colPattern;
+        int[] colCounts = new int[size];
+        for( int i = 0; i < size; i++ ) {
+            if( (_matrix[i] == null) || (_matrix[i].length != size) )
+                throw new IllegalArgumentException( "Matrix is not square at row " + i );
+            int count = 0;
+            for( int j = 0; j < size; j++ )
+                if( _matrix[i][j] != MatrixStuff.PURE_ZERO )
+                    count++;
+            rowPattern[i] = new int[count];
+            count = 0;
+            for( int j = 0; j < size; j++ )
+                if( _matrix[i][j] != MatrixStuff.PURE_ZERO ) {
+                    rowPattern[i][count++] = j;
+                    colCounts[j]++;
+                }
+        }
+        colPattern = new int[size][];
+        for( int j = 0; j < size; j++ )
+            colPattern[j] = new int[colCounts[j]];
+        Arrays.fill( colCounts, 0 );
+        for( int i = 0; i < size; i++ )
+            for( int j : rowPattern[i] )
+                colPattern[j][colCounts[j]++] = i;
+
+        // match rows to columns, then find the diagonal blocks...
+        int[] colMatch = maximumTransversal( colPattern );
+        List<int[]> components = stronglyConnectedComponents( rowPattern, colMatch );
+
+        // note which block each column (and its matched row) belongs to...
+        int[] blockOf = new int[size];
+        for( int b = 0; b < components.size(); b++ )
+            for( int col : components.get( b ) )
+                blockOf[col] = b;
+        int[] blockOfRow = new int[size];
+        for( int col = 0; col < size; col++ )
+            blockOfRow[colMatch[col]] = blockOf[col];
+
+        // build the blocks (but don't factor them yet)...
+        blocks = new Block[components.size()];
+        for( int b = 0; b < blocks.length; b++ )
+            blocks[b] = new Block( components.get( b ), colMatch, _matrix, rowPattern, colPattern, blockOf, blockOfRow, b );
+
+        // group the blocks into levels, where each block depends only on blocks in earlier levels...
+        int[] level = new int[blocks.length];
+        int levelCount = 0;
+        for( int b = 0; b < blocks.length; b++ ) {
+            for( int dep : blocks[b].dependencies )
+                level[b] = Math.max( level[b], level[dep] + 1 );
+            levelCount = Math.max( levelCount, level[b] + 1 );
+        }
+        int[] levelSizes = new int[levelCount];
+        for( int b = 0; b < blocks.length; b++ )
+            levelSizes[level[b]]++;
+        levels = new int[levelCount][];
+        for( int l = 0; l < levelCount; l++ )
+            levels[l] = new int[levelSizes[l]];
+        Arrays.fill( levelSizes, 0 );
+        for( int b = 0; b < blocks.length; b++ )
+            levels[level[b]][levelSizes[level[b]]++] = b;
+
+        // factor all the diagonal blocks, which are completely independent of each other...
+        IntStream.range( 0, blocks.length ).parallel().forEach( ( b ) -> blocks[b].factor( _matrix, _precision ) );
+    }
+
+
+    /**
+     * Returns the number of rows (and columns) in the factored matrix.
+     *
+     * @return the number of rows (and columns) in the factored matrix
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns the number of diagonal blocks the matrix was decomposed into.
+     *
+     * @return the number of diagonal blocks
+     */
+    public int getBlockCount() {
+        return blocks.length;
+    }
+
+
+    /**
+     * Returns the number of rows (and columns) in the largest diagonal block, which dominates the cost of the factorization.
+     *
+     * @return the size of the largest diagonal block
+     */
+    public int getLargestBlockSize() {
+        int result = 0;
+        for( Block block : blocks )
+            result = Math.max( result, block.cols.length );
+        return result;
+    }
+
+
+    /**
+     * Returns the number of levels of blocks; all the blocks within a level are independent of each other, and are solved concurrently.
+     *
+     * @return the number of levels of blocks
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+
+    /**
+     * Solves the system Ax = b, where A is the factored matrix and b is the given array of constants, and returns x in a new array.  Throws an
+     * <code>IllegalArgumentException</code> if the given array is missing or is not the same length as the size of the factored matrix.
+     *
+     * @param _constants the right-hand side (b) of the system to solve
+     * @return the solution (x) of the system
+     */
+    @Override
+    public double[] solve( final double[] _constants ) {
+
+        if( (_constants == null) || (_constants.length != size) )
+            throw new IllegalArgumentException( "Constants missing or of wrong length" );
+
+        double[] x = new double[size];
+        for( int[] level : levels )
+            forEach( level, ( b ) -> blocks[b].solve( _constants, x ) );
+        return x;
+    }
+
+
+    /**
+     * Solves the system A<sup>T</sup>x = b, where A is the factored matrix and b is the given array of constants, and returns x in a new array.
+     * Throws an <code>IllegalArgumentException</code> if the given array is missing or is not the same length as the size of the factored matrix.
+     *
+     * @param _constants the right-hand side (b) of the system to solve
+     * @return the solution (x) of the transposed system
+     */
+    @Override
+    public double[] solveTransposed( final double[] _constants ) {
+
+        if( (_constants == null) || (_constants.length != size) )
+            throw new IllegalArgumentException( "Constants missing or of wrong length" );
+
+        // transposing reverses the direction of every dependency, so we solve the levels in reverse order...
+        double[] x = new double[size];
+        for( int l = levels.length - 1; l >= 0; l-- )
+            forEach( levels[l], ( b ) -> blocks[b].solveTransposed( _constants, x ) );
+        return x;
+    }
+
+
+    /**
+     * Runs the given action on each of the given blocks, concurrently if there is more than one.
+     *
+     * @param _blocks the indices of the blocks to run the action on
+     * @param _action the action to run
+     */
+    private static void forEach( final int[] _blocks, final IntConsumer _action ) {
+        if( _blocks.length == 1 )
+            _action.accept( _blocks[0] );
+        else
+            Arrays.stream( _blocks ).parallel().forEach( _action );
+    }
+
+
+    /**
+     * Finds a maximum transversal of the matrix with the given column pattern, using depth-first augmenting paths (Duff's MC21 algorithm), with a
+     * cheap assignment pass first.  Returns an array whose element j is the row matched to column j.  Throws an
+     * <code>IllegalArgumentException</code> if the matrix is structurally singular (meaning some column can't be matched to any row).
+     *
+     * @param _colPattern the row indices of the nonzero entries in each column
+     * @return the row matched to each column
+     */
+    private static int[] maximumTransversal( final int[][] _colPattern ) {
+
+        int n = _colPattern.length;
+        int[] colMatch = new int[n];
+        int[] rowMatch = new int[n];
+        int[] visited = new int[n];     // the column whose search last visited each row...
+        int[] cheap = new int[n];       // the next position to try in each column's cheap assignment pass...
+        int[] stack = new int[n];       // the columns on the current augmenting path...
+        int[] position = new int[n];    // the next position to search in each column on the path...
+        int[] via = new int[n];         // the row leading from each column on the path to the next...
+        Arrays.fill( rowMatch, -1 );
+        Arrays.fill( visited, -1 );
+
+        for( int c = 0; c < n; c++ ) {
+
+            int depth = 0;
+            stack[0] = c;
+            position[0] = 0;
+            int found = -1;
+
+            while( depth >= 0 ) {
+
+                int col = stack[depth];
+
+                // first the cheap assignment: any unmatched row in this column ends the search...
+                int[] rows = _colPattern[col];
+                while( cheap[col] < rows.length ) {
+                    int row = rows[cheap[col]++];
+                    if( rowMatch[row] == -1 ) {
+                        found = row;
+                        break;
+                    }
+                }
+                if( found >= 0 )
+                    break;
+
+                // otherwise extend the path through an unvisited matched row, or back up if there are none...
+                int row = -1;
+                while( position[depth] < rows.length ) {
+                    int candidate = rows[position[depth]++];
+                    if( visited[candidate] != c ) {
+                        row = candidate;
+                        break;
+                    }
+                }
+                if( row < 0 ) {
+                    depth--;
+                    continue;
+                }
+                visited[row] = c;
+                via[depth] = row;
+                depth++;
+                stack[depth] = rowMatch[row];
+                position[depth] = 0;
+            }
+
+            if( found < 0 )
+                throw new IllegalArgumentException( "Matrix is structurally singular at column " + c );
+
+            // augment along the path...
+            for( int d = depth; d >= 0; d-- ) {
+                int row = (d == depth) ? found : via[d];
+                colMatch[stack[d]] = row;
+                rowMatch[row] = stack[d];
+            }
+        }
+
+        return colMatch;
+    }
+
+
+    /**
+     * Finds the strongly connected components of the directed graph with an edge from column j to column k whenever the row matched to column j has
+     * a nonzero entry in column k, using an iterative form of Tarjan's algorithm.  The components are returned in the order Tarjan's algorithm emits
+     * them, which is such that every edge leaving a component goes to a component earlier in the list.
+     *
+     * @param _rowPattern the column indices of the nonzero entries in each row
+     * @param _colMatch the row matched to each column
+     * @return the columns in each strongly connected component
+     */
+    private static List<int[]> stronglyConnectedComponents( final int[][] _rowPattern, final int[] _colMatch ) {
+
+        int n = _colMatch.length;
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] position = new int[n];
+        int[] callStack = new int[n];
+        int[] componentStack = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill( index, -1 );
+        List<int[]> result = new ArrayList<>();
+        int nextIndex = 0;
+        int componentTop = 0;
+
+        for( int root = 0; root < n; root++ ) {
+
+            if( index[root] >= 0 )
+                continue;
+
+            int callTop = 0;
+            callStack[0] = root;
+            index[root] = low[root] = nextIndex++;
+            position[root] = 0;
+            componentStack[componentTop++] = root;
+            onStack[root] = true;
+
+            while( callTop >= 0 ) {
+
+                int v = callStack[callTop];
+                int[] edges = _rowPattern[_colMatch[v]];
+
+                // visit the next unexplored edge, if there is one...
+                if( position[v] < edges.length ) {
+                    int w = edges[position[v]++];
+                    if( index[w] < 0 ) {
+                        index[w] = low[w] = nextIndex++;
+                        position[w] = 0;
+                        componentStack[componentTop++] = w;
+                        onStack[w] = true;
+                        callStack[++callTop] = w;
+                    }
+                    else if( onStack[w] )
+                        low[v] = Math.min( low[v], index[w] );
+                    continue;
+                }
+
+                // all edges explored; if this is a component's root, pop the component...
+                if( low[v] == index[v] ) {
+                    int start = componentTop;
+                    do {
+                        start--;
+                        onStack[componentStack[start]] = false;
+                    } while( componentStack[start] != v );
+                    result.add( Arrays.copyOfRange( componentStack, start, componentTop ) );
+                    componentTop = start;
+                }
+
+                // return to the caller...
+                callTop--;
+                if( callTop >= 0 ) {
+                    int u = callStack[callTop];
+                    low[u] = Math.min( low[u], low[v] );
+                }
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * One diagonal block of the block triangular form, along with the off-diagonal entries coupling it to other blocks.
+     */
+    private static class Block {
+
+        private final int[] cols;             // the columns (unknowns) in this block...
+        private final int[] rows;             // the rows (equations) in this block, rows[i] matched to cols[i]...
+        private final int[] dependencies;     // the blocks this block's rows have entries in...
+
+        // the entries in this block's rows that are outside the block, for the gather in solve()...
+        private final int[][] rowCouplingCols;
+        private final double[][] rowCouplingValues;
+
+        // the entries in this block's columns that are outside the block, for the gather in solveTransposed()...
+        private final int[][] colCouplingRows;
+        private final double[][] colCouplingValues;
+
+        private Factorization factors;
+
+
+        private Block( final int[] _cols, final int[] _colMatch, final double[][] _matrix, final int[][] _rowPattern, final int[][] _colPattern,
+                       final int[] _blockOf, final int[] _blockOfRow, final int _self ) {
+
+            cols = _cols;
+            rows = new int[cols.length];
+            for( int i = 0; i < cols.length; i++ )
+                rows[i] = _colMatch[cols[i]];
+
+            rowCouplingCols = new int[rows.length][];
+            rowCouplingValues = new double[rows.length][];
+            boolean[] depends = new boolean[_self];
+            for( int i = 0; i < rows.length; i++ ) {
+                int[] pattern = _rowPattern[rows[i]];
+                int count = 0;
+                for( int col : pattern )
+                    if( _blockOf[col] != _self )
+                        count++;
+                rowCouplingCols[i] = new int[count];
+                rowCouplingValues[i] = new double[count];
+                count = 0;
+                for( int col : pattern )
+                    if( _blockOf[col] != _self ) {
+                        rowCouplingCols[i][count] = col;
+                        rowCouplingValues[i][count++] = _matrix[rows[i]][col];
+                        depends[_blockOf[col]] = true;
+                    }
+            }
+            int count = 0;
+            for( boolean d : depends )
+                if( d )
+                    count++;
+            dependencies = new int[count];
+            count = 0;
+            for( int b = 0; b < depends.length; b++ )
+                if( depends[b] )
+                    dependencies[count++] = b;
+
+            colCouplingRows = new int[cols.length][];
+            colCouplingValues = new double[cols.length][];
+            for( int j = 0; j < cols.length; j++ ) {
+                int[] pattern = _colPattern[cols[j]];
+                count = 0;
+                for( int row : pattern )
+                    if( _blockOfRow[row] != _self )
+                        count++;
+                colCouplingRows[j] = new int[count];
+                colCouplingValues[j] = new double[count];
+                count = 0;
+                for( int row : pattern )
+                    if( _blockOfRow[row] != _self ) {
+                        colCouplingRows[j][count] = row;
+                        colCouplingValues[j][count++] = _matrix[row][cols[j]];
+                    }
+            }
+        }
+
+
+        private void factor( final double[][] _matrix, final FactorPrecision _precision ) {
+            double[][] block = new double[rows.length][cols.length];
+            for( int i = 0; i < rows.length; i++ )
+                for( int j = 0; j < cols.length; j++ )
+                    block[i][j] = _matrix[rows[i]][cols[j]];
+            factors = new LUFactorization( block, _precision );
+        }
+
+
+        private void solve( final double[] _constants, final double[] _x ) {
+
+            // gather the right-hand side, less the contributions of the (already solved) blocks we depend on...
+            double[] b = new double[rows.length];
+            for( int i = 0; i < rows.length; i++ ) {
+                double sum = _constants[rows[i]];
+                for( int k = 0; k < rowCouplingCols[i].length; k++ )
+                    sum -= rowCouplingValues[i][k] * _x[rowCouplingCols[i][k]];
+                b[i] = sum;
+            }
+
+            double[] x = factors.solve( b );
+            for( int j = 0; j < cols.length; j++ )
+                _x[cols[j]] = x[j];
+        }
+
+
+        private void solveTransposed( final double[] _constants, final double[] _x ) {
+
+            // in the transposed system the unknowns are indexed by rows, and the equations by columns...
+            double[] b = new double[cols.length];
+            for( int j = 0; j < cols.length; j++ ) {
+                double sum = _constants[cols[j]];
+                for( int k = 0; k < colCouplingRows[j].length; k++ )
+                    sum -= colCouplingValues[j][k] * _x[colCouplingRows[j][k]];
+                b[j] = sum;
+            }
+
+            double[] x = factors.solveTransposed( b );
+            for( int i = 0; i < rows.length; i++ )
+                _x[rows[i]] = x[i];
+        }
+    }
+}
@@ -0,0 +1,753 @@
+package com.cirsim.calc;
+
+import com.cirsim.Circuit;
+import com.cirsim.components.Component;
+import com.cirsim.components.FixedDCVoltageSource;
+import com.cirsim.components.NonlinearComponent;
+import com.cirsim.components.ReactiveComponent;
+import com.cirsim.components.Resistor;
+import com.cirsim.nets.Net;
+import com.cirsim.nets.Terminal;
+import com.cirsim.util.Symbols;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Instances of this class represent the topology of a circuit as a graph, which is the common starting point for both nodal and mesh analysis.  The
+ * nodes of the graph are the circuit's nets, and the branches are its two-terminal components, each directed from its terminal 1 (or "+") to its
+ * terminal 2 (or "-").  The graph may have more than one connected part; each part has its own reference node (the net named "ground" or "gnd" if
+ * the part has one, otherwise the part's first net), since there is no relationship at all between the voltages in different parts.
+ * <p>
+ * A spanning forest of the graph is computed when an instance is created.  The branches not in the forest (the "links") each close exactly one
+ * independent loop, the <i>fundamental loops</i> used as the unknowns in mesh analysis.  The number of independent loops is always the number of
+ * branches, less the number of nodes, plus the number of connected parts.
+ * <p>
+ * A hierarchical circuit is flattened into a single graph: the components and nets of each subcircuit instance are named by prefixing them with
+ * the instance label (for instance, "Battery.Rint"), and each exported net is merged with the net it's joined to in the enclosing circuit.  Each
+ * top-level subcircuit instance is a <i>domain</i>; the nodes and branches entirely inside an instance belong to its domain, while those at the
+ * top level (including the merged exported nets) belong to no domain, and form the interface between the domains.  See
+ * {@link SchurFactorization} for what this is good for.
+ * <p>
+ * If a {@link PortModelCache} is supplied, each subcircuit instance that can be reduced to a port model (see {@link PortModel}) is not flattened;
+ * instead it appears in the graph as a {@link PortInstance}, connecting the nodes its exported nets are joined to, and its interior nodes and
+ * branches don't appear at all.  Port instances can only be used by nodal analysis, so a graph that has any has no fundamental loops.
+ * <p>
+ * Resistors with no resistance specified (which default to infinite resistance) are open circuits, and are left out of the graph entirely.  Reactive
+ * components (capacitors and inductors) and nonlinear components (diodes) are branches like any other, but only nodal analysis can handle them, so
+ * a graph that has any can't be analyzed by mesh analysis.
+ * <p>
+ * Instances of this class are immutable.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class CircuitGraph {
+
+    private final Symbols nodeNames = new Symbols();   // the name of each node, by its index...
+    private final List<Branch> branches = new ArrayList<>();
+    private final List<Loop> loops = new ArrayList<>();
+    private final List<PortInstance> portInstances = new ArrayList<>();
+    private final boolean[] references;  // true for the reference node of each connected part...
+    private final int[] parentBranch;    // the tree branch leading to each node from the reference, or -1 for reference nodes and port connections...
+    private final int[] parentNode;      // the node at the other end of the parent branch, or -1 for the reference nodes...
+    private final int[] treeOrder;       // the nodes in breadth-first order from their references, for walking down the forest...
+    private final int[] partOf;          // the connected part each node belongs to...
+    private final int partCount;
+    private final int[] nodeDomains;     // the domain (top-level subcircuit instance) each node is interior to, or -1 for the top level...
+    private final List<String> domainNames = new ArrayList<>();
+
+
+    /**
+     * Creates a new instance of this class representing the topology of the given circuit.  Throws an <code>IllegalArgumentException</code> if the
+     * circuit contains a component that isn't supported, a component with an unconnected terminal, a resistor with a resistance that isn't
+     * positive, or two nodes with the same (flattened) name.
+     *
+     * @param _circuit the circuit to represent
+     */
+    public CircuitGraph( final Circuit _circuit ) {
+        this( _circuit, null );
+    }
+
+
+    /**
+     * Creates a new instance of this class representing the topology of the given circuit, with any subcircuit instances that can be reduced to
+     * port models (through the given cache) represented as port instances.  Throws an <code>IllegalArgumentException</code> if the circuit
+     * contains a component that isn't supported, a component with an unconnected terminal, a resistor with a resistance that isn't positive, or
+     * two nodes with the same (flattened) name.
+     *
+     * @param _circuit the circuit to represent
+     * @param _cache the cache of port models to use, or null to flatten every subcircuit instance
+     */
+    public CircuitGraph( final Circuit _circuit, final PortModelCache _cache ) {
+
+        if( _circuit == null )
+            throw new IllegalArgumentException( "Circuit is missing" );
+
+        // flatten the circuit's hierarchy into lists of nets and components...
+        Flattener flat = new Flattener( _cache );
+        flat.add( _circuit, "", -1 );
+
+        // nets joined across subcircuit boundaries are one node, represented by the first (and therefore outermost) of them...
+        int[] roots = new int[flat.nets.size()];
+        for( int i = 0; i < roots.length; i++ )
+            roots[i] = i;
+        for( int i = 0; i < roots.length; i++ ) {
+
+            // a reduced instance's exported nets may be joined to nets further inside it, which aren't in the graph...
+            if( flat.reducedNets.contains( flat.nets.get( i ) ) )
+                continue;
+
+            for( Net joined : flat.nets.get( i ).getJoinedNets() ) {
+                Integer j = flat.netIndices.get( joined );
+                if( j == null )
+                    throw new IllegalArgumentException( "Net '" + flat.netNames.get( i ) + "' is joined to a net outside the circuit" );
+                int ri = root( roots, i );
+                int rj = root( roots, j );
+                roots[Math.max( ri, rj )] = Math.min( ri, rj );
+            }
+        }
+        Map<Net, Integer> nodeIndices = new HashMap<>();
+        int[] netNodes = new int[roots.length];
+        List<Integer> domains = new ArrayList<>();
+        for( int i = 0; i < roots.length; i++ ) {
+            int root = root( roots, i );
+            if( root == i ) {
+                netNodes[i] = nodeNames.intern( flat.netNames.get( i ) );
+                if( netNodes[i] != nodeNames.size() - 1 )
+                    throw new IllegalArgumentException( "Node name '" + flat.netNames.get( i ) + "' is used more than once" );
+                domains.add( flat.netDomains.get( i ) );
+            }
+            else
+                netNodes[i] = netNodes[root];
+            nodeIndices.put( flat.nets.get( i ), netNodes[i] );
+        }
+        nodeDomains = new int[domains.size()];
+        for( int i = 0; i < nodeDomains.length; i++ )
+            nodeDomains[i] = domains.get( i );
+        domainNames.addAll( flat.domainNames );
+
+        // the port instances connect the nodes their ports are joined to...
+        for( int p = 0; p < flat.portModels.size(); p++ ) {
+            Net[] ports = flat.portNets.get( p );
+            int[] nodes = new int[ports.length];
+            for( int i = 0; i < ports.length; i++ )
+                nodes[i] = nodeIndices.get( ports[i] );
+            portInstances.add( new PortInstance( flat.portLabels.get( p ), flat.portModels.get( p ), nodes ) );
+        }
+
+        // the branches are the two-terminal components...
+        for( int c = 0; c < flat.components.size(); c++ ) {
+
+            String label = flat.componentLabels.get( c );
+            Component component = flat.components.get( c );
+
+            if( !(component instanceof Resistor) && !(component instanceof FixedDCVoltageSource) && !(component instanceof ReactiveComponent)
+                    && !(component instanceof NonlinearComponent) )
+                throw new IllegalArgumentException( "Component '" + label + "' is not supported in circuit analysis" );
+
+            // an unspecified resistance is an open circuit, which isn't part of the graph at all...
+            if( component instanceof Resistor ) {
+                double ohms = ((Resistor) component).getResistance().getValue();
+                if( ohms == Double.POSITIVE_INFINITY )
+                    continue;
+                if( !(ohms > 0) )
+                    throw new IllegalArgumentException( "Resistor '" + label + "' has invalid resistance: " + ohms );
+            }
+
+            int a = node( label, component.getTerminals().get( 0 ), nodeIndices );
+            int b = node( label, component.getTerminals().get( 1 ), nodeIndices );
+            branches.add( new Branch( branches.size(), label, component, a, b, flat.componentDomains.get( c ) ) );
+        }
+
+        // build the spanning forest, breadth-first from each part's reference node...
+        int n = nodeNames.size();
+        List<List<Integer>> incident = new ArrayList<>();
+        for( int i = 0; i < n; i++ )
+            incident.add( new ArrayList<>() );
+        for( Branch branch : branches ) {
+            incident.get( branch.a ).add( branch.index );
+            if( branch.b != branch.a )
+                incident.get( branch.b ).add( branch.index );
+        }
+        List<List<PortInstance>> incidentPorts = new ArrayList<>();
+        for( int i = 0; i < n; i++ )
+            incidentPorts.add( new ArrayList<>() );
+        for( PortInstance instance : portInstances )
+            for( int node : instance.nodes )
+                incidentPorts.get( node ).add( instance );
+
+        references = new boolean[n];
+        parentBranch = new int[n];
+        parentNode = new int[n];
+        treeOrder = new int[n];
+        partOf = new int[n];
+        Arrays.fill( partOf, -1 );
+        boolean[] inTree = new boolean[branches.size()];
+        int[] depth = new int[n];
+        int orderCount = 0;
+        int parts = 0;
+        for( int pass = 0; pass < 2; pass++ ) {
+            for( int root = 0; root < n; root++ ) {
+
+                // on the first pass, only grounds may be roots; on the second pass, any node not yet reached...
+                if( (partOf[root] >= 0) || ((pass == 0) && !isGroundName( nodeNames.getName( root ) )) )
+                    continue;
+
+                partOf[root] = parts;
+                references[root] = true;
+                parentBranch[root] = -1;
+                parentNode[root] = -1;
+                treeOrder[orderCount++] = root;
+                for( int head = orderCount - 1; head < orderCount; head++ ) {
+                    int node = treeOrder[head];
+                    for( int bi : incident.get( node ) ) {
+                        Branch branch = branches.get( bi );
+                        int other = (branch.a == node) ? branch.b : branch.a;
+                        if( partOf[other] >= 0 )
+                            continue;
+                        partOf[other] = parts;
+                        parentBranch[other] = bi;
+                        parentNode[other] = node;
+                        depth[other] = depth[node] + 1;
+                        inTree[bi] = true;
+                        treeOrder[orderCount++] = other;
+                    }
+
+                    // a port instance connects all of its nodes, though not through any branch...
+                    for( PortInstance instance : incidentPorts.get( node ) ) {
+                        for( int other : instance.nodes ) {
+                            if( partOf[other] >= 0 )
+                                continue;
+                            partOf[other] = parts;
+                            parentBranch[other] = -1;
+                            parentNode[other] = node;
+                            depth[other] = depth[node] + 1;
+                            treeOrder[orderCount++] = other;
+                        }
+                    }
+                }
+                parts++;
+            }
+        }
+        partCount = parts;
+
+        // each link closes one fundamental loop (but the loops through port instances aren't made of branches, so we don't look for any)...
+        if( portInstances.isEmpty() )
+            for( Branch link : branches )
+                if( !inTree[link.index] )
+                    loops.add( fundamentalLoop( link, depth ) );
+    }
+
+
+    private static int root( final int[] _roots, final int _i ) {
+        int result = _i;
+        while( _roots[result] != result )
+            result = _roots[result];
+        return result;
+    }
+
+
+    /**
+     * Returns the node index of the net the given terminal of the component with the given label is wired to.
+     */
+    private static int node( final String _label, final Terminal _terminal, final Map<Net, Integer> _nodeIndices ) {
+
+        if( (_terminal.getWire() == null) || (_terminal.getWire().getNet() == null) )
+            throw new IllegalArgumentException( "Component '" + _label + "' has a terminal that isn't connected to any net" );
+
+        Integer result = _nodeIndices.get( _terminal.getWire().getNet() );
+        if( result == null )
+            throw new IllegalArgumentException( "Component '" + _label + "' is connected to a net outside the circuit" );
+        return result;
+    }
+
+
+    /**
+     * Returns the fundamental loop closed by the given link: the link itself (traversed in its own direction, from a to b), followed by the path
+     * through the spanning forest from b back to a.
+     */
+    private Loop fundamentalLoop( final Branch _link, final int[] _depth ) {
+
+        List<Integer> up = new ArrayList<>();      // branches from b up toward the common ancestor...
+        List<Integer> upSigns = new ArrayList<>();
+        List<Integer> down = new ArrayList<>();    // branches from a up toward the common ancestor (traversed downward)...
+        List<Integer> downSigns = new ArrayList<>();
+
+        int u = _link.b;
+        int v = _link.a;
+        while( u != v ) {
+            if( _depth[u] >= _depth[v] ) {
+                Branch branch = branches.get( parentBranch[u] );
+                up.add( branch.index );
+                upSigns.add( (branch.a == u) ? 1 : -1 );      // traversing from u up to its parent...
+                u = parentNode[u];
+            }
+            else {
+                Branch branch = branches.get( parentBranch[v] );
+                down.add( branch.index );
+                downSigns.add( (branch.b == v) ? 1 : -1 );    // traversing from the parent down to v...
+                v = parentNode[v];
+            }
+        }
+
+        int size = 1 + up.size() + down.size();
+        int[] loopBranches = new int[size];
+        int[] signs = new int[size];
+        loopBranches[0] = _link.index;
+        signs[0] = 1;
+        int k = 1;
+        for( int i = 0; i < up.size(); i++, k++ ) {
+            loopBranches[k] = up.get( i );
+            signs[k] = upSigns.get( i );
+        }
+        for( int i = down.size() - 1; i >= 0; i--, k++ ) {
+            loopBranches[k] = down.get( i );
+            signs[k] = downSigns.get( i );
+        }
+        return new Loop( loopBranches, signs );
+    }
+
+
+    private static boolean isGroundName( final String _name ) {
+        return "ground".equalsIgnoreCase( _name ) || "gnd".equalsIgnoreCase( _name );
+    }
+
+
+    public int getNodeCount() {
+        return nodeNames.size();
+    }
+
+
+    public String getNodeName( final int _node ) {
+        return nodeNames.getName( _node );
+    }
+
+
+    /**
+     * Returns true if the given node is the reference node (whose voltage is zero by definition) of its connected part.
+     *
+     * @param _node the node to check
+     * @return true if the given node is a reference node
+     */
+    public boolean isReference( final int _node ) {
+        return references[_node];
+    }
+
+
+    /**
+     * Returns the index of the node with the given name (such as "Vcc", or "B1.n1" for a node inside subcircuit instance B1), or -1 if there is no
+     * such node.  A node made of nets joined across subcircuit boundaries has the name of the outermost of them.
+     *
+     * @param _name the name of the node to find
+     * @return the index of the node with the given name, or -1 if there is none
+     */
+    public int getNode( final String _name ) {
+        return (_name == null) ? -1 : nodeNames.find( _name );
+    }
+
+
+    /**
+     * Returns the domain the given node is interior to, or -1 if it's at the top level (or is an exported net of a top-level subcircuit instance,
+     * merged with a top-level net).
+     *
+     * @param _node the node to get the domain of
+     * @return the domain of the given node
+     */
+    public int getNodeDomain( final int _node ) {
+        return nodeDomains[_node];
+    }
+
+
+    /**
+     * Returns the number of domains (top-level subcircuit instances) in the graph.
+     *
+     * @return the number of domains in the graph
+     */
+    public int getDomainCount() {
+        return domainNames.size();
+    }
+
+
+    public String getDomainName( final int _domain ) {
+        return domainNames.get( _domain );
+    }
+
+
+    public int getBranchCount() {
+        return branches.size();
+    }
+
+
+    public Branch getBranch( final int _branch ) {
+        return branches.get( _branch );
+    }
+
+
+    public List<Branch> getBranches() {
+        return Collections.unmodifiableList( branches );
+    }
+
+
+    /**
+     * Returns the subcircuit instances represented by port models, rather than flattened into the graph.
+     *
+     * @return the port instances in the graph
+     */
+    public List<PortInstance> getPortInstances() {
+        return Collections.unmodifiableList( portInstances );
+    }
+
+
+    /**
+     * Returns the number of connected parts of the graph, each of which has its own reference node.
+     *
+     * @return the number of connected parts of the graph
+     */
+    public int getPartCount() {
+        return partCount;
+    }
+
+
+    /**
+     * Returns the fundamental loops of the graph, one per link (branch not in the spanning forest).  A graph with port instances has no fundamental
+     * loops.
+     *
+     * @return the fundamental loops of the graph
+     */
+    public List<Loop> getLoops() {
+        return Collections.unmodifiableList( loops );
+    }
+
+
+    /**
+     * Returns the number of branch unknowns the components of the graph add to nodal analysis (see
+     * {@link com.cirsim.components.Component#getBranchCount()}): one for each voltage source, and one for each inductor.
+     *
+     * @return the number of branch unknowns in the graph
+     */
+    public int getBranchUnknownCount() {
+        int result = 0;
+        for( Branch branch : branches )
+            result += branch.getComponent().getBranchCount();
+        return result;
+    }
+
+
+    /**
+     * Returns the number of reactive components (capacitors and inductors) in the graph.
+     *
+     * @return the number of reactive components in the graph
+     */
+    public int getReactiveCount() {
+        int result = 0;
+        for( Branch branch : branches )
+            if( branch.isReactive() )
+                result++;
+        return result;
+    }
+
+
+    /**
+     * Returns the number of nonlinear components (such as diodes) in the graph; if there are any, the circuit can only be solved iteratively (see
+     * {@link NewtonSolver}).
+     *
+     * @return the number of nonlinear components in the graph
+     */
+    public int getNonlinearCount() {
+        int result = 0;
+        for( Branch branch : branches )
+            if( branch.isNonlinear() )
+                result++;
+        return result;
+    }
+
+
+    /**
+     * Returns the number of voltage sources in the graph.
+     *
+     * @return the number of voltage sources in the graph
+     */
+    public int getVoltageSourceCount() {
+        int result = 0;
+        for( Branch branch : branches )
+            if( branch.isVoltageSource() )
+                result++;
+        return result;
+    }
+
+
+    /**
+     * Returns the nodes in breadth-first order from their part's reference node, so that every node comes after the node at the other end of its
+     * parent branch in the spanning forest.
+     *
+     * @return the nodes in breadth-first order
+     */
+    int[] getTreeOrder() {
+        return treeOrder;
+    }
+
+
+    /**
+     * Returns the index of the spanning forest branch connecting the given node to its parent, or -1 if the given node is a reference node (or is
+     * connected to its parent through a port instance).
+     *
+     * @param _node the node to get the parent branch of
+     * @return the parent branch of the given node
+     */
+    int getParentBranch( final int _node ) {
+        return parentBranch[_node];
+    }
+
+
+    /**
+     * A branch of the graph: one two-terminal component, directed from its terminal 1 (node a) to its terminal 2 (node b).
+     */
+    public static class Branch {
+
+        private final int index;
+        private final String label;
+        private final Component component;
+        private final int a;
+        private final int b;
+        private final int domain;
+
+
+        private Branch( final int _index, final String _label, final Component _component, final int _a, final int _b, final int _domain ) {
+            index = _index;
+            label = _label;
+            component = _component;
+            a = _a;
+            b = _b;
+            domain = _domain;
+        }
+
+
+        public int getIndex() {
+            return index;
+        }
+
+
+        public String getLabel() {
+            return label;
+        }
+
+
+        public Component getComponent() {
+            return component;
+        }
+
+
+        public int getA() {
+            return a;
+        }
+
+
+        public int getB() {
+            return b;
+        }
+
+
+        /**
+         * Returns the domain (top-level subcircuit instance) this branch is in, or -1 if it's at the top level.
+         *
+         * @return the domain this branch is in
+         */
+        public int getDomain() {
+            return domain;
+        }
+
+
+        public boolean isVoltageSource() {
+            return component instanceof FixedDCVoltageSource;
+        }
+
+
+        public boolean isReactive() {
+            return component instanceof ReactiveComponent;
+        }
+
+
+        public boolean isNonlinear() {
+            return component instanceof NonlinearComponent;
+        }
+
+
+        /**
+         * Returns the resistance of this branch, which is zero for anything other than a resistor.
+         *
+         * @return the resistance of this branch
+         */
+        public double getResistance() {
+            return (component instanceof Resistor) ? ((Resistor) component).getResistance().getValue() : 0;
+        }
+
+
+        /**
+         * Returns the voltage of this branch's source (positive at node a), which is zero for anything other than a voltage source.
+         *
+         * @return the voltage of this branch's source
+         */
+        public double getVolts() {
+            return (component instanceof FixedDCVoltageSource) ? ((FixedDCVoltageSource) component).getVolts() : 0;
+        }
+    }
+
+
+    /**
+     * A loop of the graph: the branches traversed, with a sign for each that is +1 if the loop traverses the branch in its own direction, and -1
+     * if it traverses it in the opposite direction.
+     */
+    public static class Loop {
+
+        private final int[] branches;
+        private final int[] signs;
+
+
+        private Loop( final int[] _branches, final int[] _signs ) {
+            branches = _branches;
+            signs = _signs;
+        }
+
+
+        public int size() {
+            return branches.length;
+        }
+
+
+        public int getBranch( final int _i ) {
+            return branches[_i];
+        }
+
+
+        public int getSign( final int _i ) {
+            return signs[_i];
+        }
+    }
+
+
+    /**
+     * A subcircuit instance represented by its port model: the model, and the node each of its ports is connected to.
+     */
+    public static class PortInstance {
+
+        private final String label;
+        private final PortModel model;
+        private final int[] nodes;
+
+
+        private PortInstance( final String _label, final PortModel _model, final int[] _nodes ) {
+            label = _label;
+            model = _model;
+            nodes = _nodes;
+        }
+
+
+        public String getLabel() {
+            return label;
+        }
+
+
+        public PortModel getModel() {
+            return model;
+        }
+
+
+        /**
+         * Returns the node the given port of this instance is connected to.
+         *
+         * @param _port the index of the port (in the model's port order)
+         * @return the node the given port is connected to
+         */
+        public int getNode( final int _port ) {
+            return nodes[_port];
+        }
+    }
+
+
+    /**
+     * Collects the nets and components of a circuit and all its subcircuit instances, recursively, with their hierarchical names and domains.
+     */
+    private static class Flattener {
+
+        private final List<Net> nets = new ArrayList<>();
+        private final List<String> netNames = new ArrayList<>();
+        private final List<Integer> netDomains = new ArrayList<>();
+        private final Map<Net, Integer> netIndices = new HashMap<>();
+        private final List<Component> components = new ArrayList<>();
+        private final List<String> componentLabels = new ArrayList<>();
+        private final List<Integer> componentDomains = new ArrayList<>();
+        private final List<String> domainNames = new ArrayList<>();
+        private final List<PortModel> portModels = new ArrayList<>();
+        private final List<String> portLabels = new ArrayList<>();
+        private final List<Net[]> portNets = new ArrayList<>();
+        private final Set<Net> reducedNets = new HashSet<>();
+        private final PortModelCache cache;
+
+
+        private Flattener( final PortModelCache _cache ) {
+            cache = _cache;
+        }
+
+
+        private void add( final Circuit _circuit, final String _prefix, final int _domain ) {
+
+            for( int id = 0; id < _circuit.getLabelCount(); id++ ) {
+                Net net = _circuit.getNet( id );
+                if( net != null ) {
+                    netIndices.put( net, nets.size() );
+                    nets.add( net );
+                    netNames.add( _prefix + _circuit.getLabel( id ) );
+                    netDomains.add( _domain );
+                }
+            }
+
+            for( int id = 0; id < _circuit.getLabelCount(); id++ ) {
+                Component component = _circuit.getComponent( id );
+                if( component != null ) {
+                    components.add( component );
+                    componentLabels.add( _prefix + _circuit.getLabel( id ) );
+                    componentDomains.add( _domain );
+                }
+            }
+
+            // each top-level instance is a new domain; instances nested deeper are part of their top-level instance's domain...
+            for( int id = 0; id < _circuit.getLabelCount(); id++ ) {
+                Circuit subcircuit = _circuit.getSubcircuit( id );
+                if( subcircuit == null )
+                    continue;
+                String label = _circuit.getLabel( id );
+
+                // if the instance reduces to a port model, we only need its exported nets...
+                PortModel model = (cache == null) ? null : cache.get( subcircuit );
+                if( model != null ) {
+                    Net[] ports = new Net[model.getPortCount()];
+                    for( int i = 0; i < ports.length; i++ ) {
+                        ports[i] = subcircuit.getNet( model.getPort( i ) );
+                        reducedNets.add( ports[i] );
+                        netIndices.put( ports[i], nets.size() );
+                        nets.add( ports[i] );
+                        netNames.add( _prefix + label + "." + model.getPort( i ) );
+                        netDomains.add( _domain );
+                    }
+                    portModels.add( model );
+                    portLabels.add( _prefix + label );
+                    portNets.add( ports );
+                    continue;
+                }
+
+                int domain = _domain;
+                if( domain < 0 ) {
+                    domain = domainNames.size();
+                    domainNames.add( label );
+                }
+                add( subcircuit, _prefix + label + ".", domain );
+            }
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.cirsim.calc;
+
+import com.cirsim.matrices.ComplexTreeMatrix;
+import com.cirsim.matrices.ComplexTreeVector;
+import com.cirsim.matrices.MatrixStuff;
+
+import java.util.Arrays;
+
+/**
+ * The complex counterpart of {@link SparseLUFactorization}: an LU decomposition of a sparse {@link ComplexTreeMatrix}, split into an
+ * <i>analysis</i> phase (choosing the pivot order, and working out the fill-in, by the same {@link SparseLUAnalysis} as the real factorization uses)
+ * and a <i>refactoring</i> phase (computing new factors with the same pivot order), so that the analysis can be reused for many matrices with the
+ * same pattern, as the matrices of an AC sweep are at every frequency.
+ * <p>
+ * The analysis is immutable once made, and may be shared: an instance created from another (see
+ * {@link #ComplexSparseLUFactorization(ComplexSparseLUFactorization)}) shares its analysis, but has its own factors, so that each of several threads
+ * can refactor and solve its own matrices in parallel with just one analysis between them all.  As with {@link SparseLUFactorization}, refactoring
+ * gives up (returning false) if a pivot is too small in comparison with the entries below it, and the caller must then create a new instance for that
+ * matrix, which analyzes it afresh.
+ * <p>
+ * The factors are held in compressed rows laid out by the analysis, with the real and imaginary parts of each entry interleaved, so the memory used
+ * (apart from one working row) and the time spent are both proportional to the number of possibly nonzero entries of the factors.  Instances of this
+ * class are mutable (refactoring changes them), and are not threadsafe.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class ComplexSparseLUFactorization {
+
+    private static final double PIVOT_THRESHOLD = 1e-3;   // the smallest acceptable ratio of a pivot's magnitude to the largest below it...
+
+    private static final SparseLUAnalysis.Arithmetic COMPLEX = new SparseLUAnalysis.Arithmetic() {
+
+        @Override
+        public int width() {
+            return 2;
+        }
+
+        @Override
+        public double magnitude( final double[] _values, final int _index ) {
+            return magnitude2( _values, _index );
+        }
+
+        @Override
+        public void divide( final double[] _a, final int _ai, final double[] _b, final int _bi ) {
+            double br = _b[_bi << 1];
+            double bi = _b[(_bi << 1) + 1];
+            double d = br * br + bi * bi;
+            double ar = _a[_ai << 1];
+            double ai = _a[(_ai << 1) + 1];
+            _a[_ai << 1] = (ar * br + ai * bi) / d;
+            _a[(_ai << 1) + 1] = (ai * br - ar * bi) / d;
+        }
+
+        @Override
+        public void subtractProduct( final double[] _a, final int _ai, final double[] _m, final int _mi, final double[] _b, final int _bi ) {
+            double mr = _m[_mi << 1];
+            double mi = _m[(_mi << 1) + 1];
+            double br = _b[_bi << 1];
+            double bi = _b[(_bi << 1) + 1];
+            _a[_ai << 1] -= mr * br - mi * bi;
+            _a[(_ai << 1) + 1] -= mr * bi + mi * br;
+        }
+    };
+
+    private final SparseLUAnalysis analysis;
+    private final double[][] lu;       // the compressed rows of the combined L and U factors, in pivot order, interleaved...
+    private final double[] work;       // a working row, in full and interleaved, all zeros between refactorings...
+    private int factorizations;
+    private boolean valid;
+
+
+    /**
+     * Creates a new instance of this class that analyzes and factors the given matrix.  Throws an <code>IllegalArgumentException</code> if the
+     * matrix is missing or is singular.
+     *
+     * @param _matrix the matrix to factor
+     */
+    public ComplexSparseLUFactorization( final ComplexTreeMatrix _matrix ) {
+
+        if( _matrix == null )
+            throw new IllegalArgumentException( "Matrix is missing" );
+
+        lu = new double[_matrix.size()][];
+        analysis = new SparseLUAnalysis( _matrix.size(), _matrix.entryCount(), _matrix::rowIterator, _matrix::getValue, COMPLEX, lu );
+        work = new double[analysis.size << 1];
+        factorizations = 1;
+        valid = true;
+    }
+
+
+    /**
+     * Creates a new instance of this class that shares the analysis (pivot order and fill-in) of the given instance, but has its own factors, which
+     * don't exist until a matrix is refactored (see {@link #refactor(ComplexTreeMatrix)}).  Throws an <code>IllegalArgumentException</code> if the
+     * given instance is missing.
+     *
+     * @param _analyzed the instance whose analysis to share
+     */
+    public ComplexSparseLUFactorization( final ComplexSparseLUFactorization _analyzed ) {
+
+        if( _analyzed == null )
+            throw new IllegalArgumentException( "Analyzed factorization is missing" );
+
+        analysis = _analyzed.analysis;
+        lu = new double[analysis.size][];
+        for( int i = 0; i < analysis.size; i++ )
+            lu[i] = new double[analysis.filled[i].length << 1];
+        work = new double[analysis.size << 1];
+        valid = false;
+    }
+
+
+    /**
+     * Computes the factors of the given matrix, which must have the same pattern of entries (in the same value store slots) as the matrix the
+     * analysis was made from, reusing its pivot order and fill-in.  Returns false (leaving this instance unusable until it is successfully refactored)
+     * if any pivot is too small to use; the caller should then create a new instance for the given matrix.  Throws an
+     * <code>IllegalArgumentException</code> if the matrix is missing, or isn't the same size or doesn't have the same number of entries as the analyzed
+     * matrix.
+     *
+     * @param _matrix the matrix to factor
+     * @return true if the matrix was factored, or false if the pivot order wasn't usable for it
+     */
+    public boolean refactor( final ComplexTreeMatrix _matrix ) {
+
+        SparseLUAnalysis an = analysis;
+        if( (_matrix == null) || !an.matches( _matrix.size(), _matrix.entryCount() ) )
+            throw new IllegalArgumentException( "Matrix is missing or doesn't match the analyzed matrix" );
+
+        // compute the factors a row at a time, in the working row: load the row's values, eliminate each column of L with the finished rows above,
+        // and then gather the row's possibly nonzero entries back into its compressed row...
+        valid = false;
+        double threshold = PIVOT_THRESHOLD * PIVOT_THRESHOLD;
+        double[] x = work;
+        for( int i = 0; i < an.size; i++ ) {
+
+            int[] cols = an.filled[i];
+            int[] entries = an.entries[i];
+            int[] slots = an.entrySlots[i];
+            for( int e = 0; e < entries.length; e++ )
+                _matrix.getValue( slots[e], x, cols[entries[e]] << 1 );
+
+            int d = an.diagonals[i];
+            for( int p = 0; p < d; p++ ) {
+
+                // the multiplier for column k, checking that the pivot isn't too small in comparison with the entry it eliminates...
+                int k = cols[p];
+                double[] pivotRow = lu[k];
+                int pd = an.diagonals[k];
+                double pr = pivotRow[pd << 1];
+                double pi = pivotRow[(pd << 1) + 1];
+                double pivot = pr * pr + pi * pi;
+                double ar = x[k << 1];
+                double ai = x[(k << 1) + 1];
+                if( pivot < threshold * (ar * ar + ai * ai) ) {
+                    clear( cols );
+                    return false;
+                }
+                double mr = (ar * pr + ai * pi) / pivot;
+                double mi = (ai * pr - ar * pi) / pivot;
+                x[k << 1] = mr;
+                x[(k << 1) + 1] = mi;
+                if( (mr == MatrixStuff.PURE_ZERO) && (mi == MatrixStuff.PURE_ZERO) )
+                    continue;
+
+                int[] pivotCols = an.filled[k];
+                for( int q = pd + 1; q < pivotCols.length; q++ ) {
+                    int j = pivotCols[q];
+                    double ur = pivotRow[q << 1];
+                    double ui = pivotRow[(q << 1) + 1];
+                    x[j << 1] -= mr * ur - mi * ui;
+                    x[(j << 1) + 1] -= mr * ui + mi * ur;
+                }
+            }
+
+            double[] row = lu[i];
+            for( int p = 0; p < cols.length; p++ ) {
+                int j = cols[p];
+                row[p << 1] = x[j << 1];
+                row[(p << 1) + 1] = x[(j << 1) + 1];
+                x[j << 1] = MatrixStuff.PURE_ZERO;
+                x[(j << 1) + 1] = MatrixStuff.PURE_ZERO;
+            }
+            if( magnitude2( row, d ) == MatrixStuff.PURE_ZERO )
+                return false;
+        }
+        valid = true;
+        factorizations++;
+        return true;
+    }
+
+
+    /**
+     * Zeroes the entries of the working row in the given columns (the only ones a row's elimination touches), after giving up on a refactoring.
+     */
+    private void clear( final int[] _cols ) {
+        for( int j : _cols )
+            Arrays.fill( work, j << 1, (j << 1) + 2, MatrixStuff.PURE_ZERO );
+    }
+
+
+    /**
+     * Solves the system Ax = b, where A is the factored matrix and b is the given array of constants, and returns x in a new array; both hold the
+     * real and imaginary parts of each entry interleaved.  Throws an <code>IllegalArgumentException</code> if the given array is missing or is not
+     * twice the size of the factored matrix, or an <code>IllegalStateException</code> if there are no factors.
+     *
+     * @param _constants the right-hand side (b) of the system to solve, interleaved
+     * @return the solution (x) of the system, interleaved
+     */
+    public double[] solve( final double[] _constants ) {
+
+        checkValid();
+        if( (_constants == null) || (_constants.length != analysis.size << 1) )
+            throw new IllegalArgumentException( "Constants missing or of wrong length" );
+
+        // apply the row permutation...
+        double[] x = new double[analysis.size << 1];
+        for( int i = 0; i < analysis.size; i++ ) {
+            x[i << 1] = _constants[analysis.pivots[i] << 1];
+            x[(i << 1) + 1] = _constants[(analysis.pivots[i] << 1) + 1];
+        }
+        substitute( x );
+        return x;
+    }
+
+
+    /**
+     * Solves the system Ax = b, as {@link #solve(double[])} does, for a sparse right-hand side.  Throws an <code>IllegalArgumentException</code> if
+     * the given vector is missing or is not the same length as the size of the factored matrix, or an <code>IllegalStateException</code> if there are
+     * no factors.
+     *
+     * @param _constants the right-hand side (b) of the system to solve
+     * @return the solution (x) of the system, interleaved
+     */
+    public double[] solve( final ComplexTreeVector _constants ) {
+
+        checkValid();
+        if( (_constants == null) || (_constants.length() != analysis.size) )
+            throw new IllegalArgumentException( "Constants missing or of wrong length" );
+
+        double[] x = new double[analysis.size << 1];
+        _constants.scatter( x, analysis.positions );
+        substitute( x );
+        return x;
+    }
+
+
+    /**
+     * Solves LUx = b in place, given b in pivot order.
+     */
+    private void substitute( final double[] _x ) {
+
+        // forward substitution with the unit lower triangular factor, a row at a time...
+        int size = analysis.size;
+        for( int i = 0; i < size; i++ ) {
+            double[] row = lu[i];
+            int[] cols = analysis.filled[i];
+            double sr = _x[i << 1];
+            double si = _x[(i << 1) + 1];
+            for( int p = 0; p < analysis.diagonals[i]; p++ ) {
+                int j = cols[p];
+                double lr = row[p << 1];
+                double li = row[(p << 1) + 1];
+                double xr = _x[j << 1];
+                double xi = _x[(j << 1) + 1];
+                sr -= lr * xr - li * xi;
+                si -= lr * xi + li * xr;
+            }
+            _x[i << 1] = sr;
+            _x[(i << 1) + 1] = si;
+        }
+
+        // backward substitution with the upper triangular factor...
+        for( int i = size - 1; i >= 0; i-- ) {
+            double[] row = lu[i];
+            int[] cols = analysis.filled[i];
+            int d = analysis.diagonals[i];
+            double sr = _x[i << 1];
+            double si = _x[(i << 1) + 1];
+            for( int p = d + 1; p < cols.length; p++ ) {
+                int j = cols[p];
+                double ur = row[p << 1];
+                double ui = row[(p << 1) + 1];
+                double xr = _x[j << 1];
+                double xi = _x[(j << 1) + 1];
+                sr -= ur * xr - ui * xi;
+                si -= ur * xi + ui * xr;
+            }
+            double pr = row[d << 1];
+            double pi = row[(d << 1) + 1];
+            double dd = pr * pr + pi * pi;
+            _x[i << 1] = (sr * pr + si * pi) / dd;
+            _x[(i << 1) + 1] = (si * pr - sr * pi) / dd;
+        }
+    }
+
+
+    /**
+     * Returns the squared magnitude of the given value in an interleaved array.
+     */
+    private static double magnitude2( final double[] _values, final int _index ) {
+        double re = _values[_index << 1];
+        double im = _values[(_index << 1) + 1];
+        return re * re + im * im;
+    }
+
+
+    private void checkValid() {
+        if( !valid )
+            throw new IllegalStateException( "There is no factorization to solve with" );
+    }
+
+
+    /**
+     * Returns the number of rows (and columns) in the factored matrix.
+     *
+     * @return the number of rows (and columns) in the factored matrix
+     */
+    public int size() {
+        return analysis.size;
+    }
+
+
+    /**
+     * Returns the number of possibly nonzero entries in the factors (including the diagonal), which is the number of entries in the factored matrix
+     * plus the fill-in.
+     *
+     * @return the number of possibly nonzero entries in the factors
+     */
+    public int getFactorEntryCount() {
+        return analysis.getFactorEntryCount();
+    }
+
+
+    /**
+     * Returns the number of times a matrix has been factored by this instance, including the first time (if it was created by analyzing a matrix).
+     *
+     * @return the number of times a matrix has been factored
+     */
+    public int getFactorizations() {
+        return factorizations;
+    }
+}
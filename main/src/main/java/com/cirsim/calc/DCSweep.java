@@ -0,0 +1,183 @@
+package com.cirsim.calc;
+
+import com.cirsim.components.FixedDCVoltageSource;
+import com.cirsim.components.Resistor;
+import com.cirsim.components.TolerancedComponent;
+import com.cirsim.matrices.TreeMatrix;
+
+/**
+ * Sweeps the value of one component of a circuit (a voltage source's voltage, or a resistor's resistance) across a range, solving for the circuit's
+ * DC operating point at each of a series of evenly spaced values, and hands each point's node voltages to a {@link DCSweepListener} as soon as it is
+ * computed.  Nothing is held from one point to the next except the previous solution, so sweeps of tens of thousands of points need no more memory
+ * than one.
+ * <p>
+ * The swept component is stamped with each point's value in place of its nominal value (see
+ * {@link TolerancedComponent#stampValue(com.cirsim.calc.StampTarget, int[], double)}), so any value may be swept (even from a nominal value of
+ * zero), the matrix's pattern never changes, and each point costs far less than solving a circuit from scratch:
+ * <ul>
+ *     <li>The matrix is analyzed (its pivot order and fill-in chosen) only once, for the first point.  When a resistor is swept, the matrix's values
+ *     change at every point, but each point just refactors them with the same pivot order (see {@link SparseLUFactorization}).  When a source is
+ *     swept, the matrix doesn't change at all, and every point after the first is nothing but a pair of triangular solves.</li>
+ *     <li>Each point starts from the previous point's solution: it solves for the <i>correction</i> to that solution needed to satisfy the new
+ *     equations, from the residual the previous solution leaves in them.  Neighboring points are close, so the correction is small, and so is the
+ *     rounding error it carries.  If the circuit has nonlinear components, the previous solution is the starting point for the Newton iterations
+ *     at the next point (see {@link NewtonSolver}), which then usually converge in a few iterations without refactoring the Jacobian.</li>
+ * </ul>
+ * Instances of this class are mutable (they record the counts from the last sweep), and are not threadsafe.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class DCSweep {
+
+    private final CircuitGraph graph;
+    private final int branch;
+    private final boolean resistor;
+    private final double[] componentValues;   // the value of each toleranced component, with the swept one's changing at each point...
+    private final MNAAssembler assembler;
+    private final int[] nodeColumns;
+    private int analyses;
+    private int factorizations;
+
+
+    /**
+     * Creates a new instance of this class to sweep the component with the given label in the circuit with the given graph.  Throws an
+     * <code>IllegalArgumentException</code> if the graph or label is missing, or if the labeled component isn't a voltage source or resistor.
+     *
+     * @param _graph the graph of the circuit to sweep
+     * @param _label the label of the component to sweep
+     */
+    public DCSweep( final CircuitGraph _graph, final String _label ) {
+
+        if( (_graph == null) || (_label == null) )
+            throw new IllegalArgumentException( "Circuit graph or label is missing" );
+
+        graph = _graph;
+        CircuitGraph.Branch swept = graph.getBranches().stream().filter( b -> b.getLabel().equals( _label ) ).findFirst().orElse( null );
+        if( (swept == null) || !((swept.getComponent() instanceof FixedDCVoltageSource) || (swept.getComponent() instanceof Resistor)) )
+            throw new IllegalArgumentException( "No voltage source or resistor labeled '" + _label + "'" );
+
+        branch = swept.getIndex();
+        resistor = swept.getComponent() instanceof Resistor;
+        componentValues = new double[graph.getBranchCount()];
+        for( CircuitGraph.Branch b : graph.getBranches() )
+            if( b.getComponent() instanceof TolerancedComponent )
+                componentValues[b.getIndex()] = ((TolerancedComponent) b.getComponent()).getNominalValue();
+
+        assembler = new MNAAssembler( graph );
+        nodeColumns = new int[graph.getNodeCount()];
+        for( int node = 0; node < nodeColumns.length; node++ )
+            nodeColumns[node] = assembler.getNodeColumn( node );
+    }
+
+
+    /**
+     * Sweeps the component's value from the given start to the given stop value (inclusive) in the given number of evenly spaced points, calling the
+     * given listener with the results of each point as it is computed.  Throws an <code>IllegalArgumentException</code> if the listener is missing,
+     * if there are fewer than two points, if a resistor would be swept through a value that isn't positive, or if the circuit's equations are singular
+     * at any point.
+     *
+     * @param _start the component's value at the first point
+     * @param _stop the component's value at the last point
+     * @param _points the number of points
+     * @param _listener the listener to hand each point's results to
+     */
+    public void run( final double _start, final double _stop, final int _points, final DCSweepListener _listener ) {
+
+        if( _listener == null )
+            throw new IllegalArgumentException( "Listener is missing" );
+
+        if( _points < 2 )
+            throw new IllegalArgumentException( "A sweep needs at least two points: " + _points );
+
+        if( resistor && !((_start > 0) && (_stop > 0)) )
+            throw new IllegalArgumentException( "Resistance must be positive: " + _start + " to " + _stop );
+
+        double[] voltages = new double[nodeColumns.length];
+        double[] values = null;
+        NewtonSolver newton = (graph.getNonlinearCount() > 0) ? new NewtonSolver( graph, NewtonOptions.DEFAULT ) : null;
+        SparseLUFactorization factorization = null;
+        TreeMatrix matrix = assembler.getMatrix();
+        analyses = 0;
+        factorizations = 0;
+
+        for( int i = 0; i < _points; i++ ) {
+
+            // compute the value from the ends each time, so the rounding errors don't accumulate...
+            double value = (i == _points - 1) ? _stop : _start + (_stop - _start) * i / (_points - 1);
+            componentValues[branch] = value;
+
+            // a nonlinear circuit is solved by Newton's method, starting from the previous point's solution...
+            if( newton != null ) {
+                values = newton.solveValues( values, componentValues );
+                analyses = newton.getAnalyses();
+                factorizations = newton.getFactorizations();
+                point( i, value, values, voltages, _listener );
+                continue;
+            }
+
+            assembler.assembleValues( componentValues, null );
+
+            // factor the first point, and refactor every point when the matrix changes (that is, when sweeping a resistor)...
+            if( factorization == null ) {
+                factorization = new SparseLUFactorization( matrix );
+                analyses++;
+                factorizations++;
+            }
+            else if( resistor ) {
+                if( !factorization.refactor( matrix ) ) {
+                    factorization = new SparseLUFactorization( matrix );
+                    analyses++;
+                }
+                factorizations++;
+            }
+
+            // solve from scratch for the first point, and for the correction to the previous solution thereafter...
+            double[] constants = assembler.getConstants();
+            if( values == null )
+                values = factorization.solve( constants );
+            else {
+                double[] residual = matrix.multiply( values );
+                for( int r = 0; r < residual.length; r++ )
+                    residual[r] = constants[r] - residual[r];
+                double[] correction = factorization.solve( residual );
+                for( int r = 0; r < values.length; r++ )
+                    values[r] += correction[r];
+            }
+
+            point( i, value, values, voltages, _listener );
+        }
+    }
+
+
+    private void point( final int _index, final double _value, final double[] _values, final double[] _voltages, final DCSweepListener _listener ) {
+        for( int node = 0; node < _voltages.length; node++ )
+            _voltages[node] = (nodeColumns[node] < 0) ? 0 : _values[nodeColumns[node]];
+        _listener.point( _index, _value, _voltages );
+    }
+
+
+    /**
+     * Returns the number of times the last sweep analyzed the matrix (chose a pivot order from scratch), which is normally one.
+     *
+     * @return the number of times the last sweep analyzed the matrix
+     */
+    public int getAnalyses() {
+        return analyses;
+    }
+
+
+    /**
+     * Returns the number of times the last sweep factored the matrix, which (for a linear circuit) is one for a source sweep, and the number of points
+     * for a resistor sweep.
+     *
+     * @return the number of times the last sweep factored the matrix
+     */
+    public int getFactorizations() {
+        return factorizations;
+    }
+
+
+    public CircuitGraph getGraph() {
+        return graph;
+    }
+}
@@ -0,0 +1,22 @@
+package com.cirsim.calc;
+
+/**
+ * Implemented by classes that receive the results of a {@link DCSweep}, one point at a time, as the sweep computes them.  The sweep holds no results
+ * itself, so a listener that writes each point out (see {@link DCSweepWriter}) lets a sweep of any length run in a fixed amount of memory.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+@FunctionalInterface
+public interface DCSweepListener {
+
+
+    /**
+     * Called once for each point of a sweep, in order, with the swept value and the voltage at each node of the circuit's graph at that value.  The
+     * array of voltages is reused for the next point, so implementations that keep the voltages must copy them.
+     *
+     * @param _index the index of the point, starting at zero
+     * @param _value the value of the swept component at this point
+     * @param _voltages the voltage at each node, indexed by node
+     */
+    void point( final int _index, final double _value, final double[] _voltages );
+}
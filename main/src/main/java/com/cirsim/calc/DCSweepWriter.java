@@ -0,0 +1,82 @@
+package com.cirsim.calc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A {@link DCSweepListener} that writes each point of a sweep to an {@link Appendable} as a line of comma-separated values, as it arrives: first the
+ * swept value, then the voltage at each of the chosen nodes.  A header line with the column names is written before the first point.  Any
+ * <code>IOException</code> while writing is rethrown as an <code>UncheckedIOException</code>, which ends the sweep.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class DCSweepWriter implements DCSweepListener {
+
+    private final Appendable out;
+    private final String valueName;
+    private final String[] names;
+    private final int[] nodes;
+    private final StringBuilder line;
+
+
+    /**
+     * Creates a new instance of this class that writes the voltages at the nodes with the given names (or at every node, if none are given) of the
+     * given graph to the given output, with the swept value in a column with the given name.  Throws an <code>IllegalArgumentException</code> if
+     * any argument is missing, or if there is no node with one of the given names.
+     *
+     * @param _out the output to write to
+     * @param _graph the graph of the swept circuit
+     * @param _valueName the name of the swept value's column
+     * @param _nodes the names of the nodes whose voltages are written
+     */
+    public DCSweepWriter( final Appendable _out, final CircuitGraph _graph, final String _valueName, final String... _nodes ) {
+
+        if( (_out == null) || (_graph == null) || (_valueName == null) || (_nodes == null) )
+            throw new IllegalArgumentException( "Output, graph, value name, or nodes missing" );
+
+        out = _out;
+        valueName = _valueName;
+        if( _nodes.length == 0 ) {
+            names = new String[_graph.getNodeCount()];
+            nodes = new int[names.length];
+            for( int i = 0; i < names.length; i++ ) {
+                names[i] = _graph.getNodeName( i );
+                nodes[i] = i;
+            }
+        }
+        else {
+            names = _nodes.clone();
+            nodes = new int[names.length];
+            for( int i = 0; i < names.length; i++ ) {
+                nodes[i] = _graph.getNode( names[i] );
+                if( nodes[i] < 0 )
+                    throw new IllegalArgumentException( "No node named '" + names[i] + "'" );
+            }
+        }
+        line = new StringBuilder();
+    }
+
+
+    @Override
+    public void point( final int _index, final double _value, final double[] _voltages ) {
+
+        line.setLength( 0 );
+        if( _index == 0 ) {
+            line.append( valueName );
+            for( String name : names )
+                line.append( ',' ).append( name );
+            line.append( '\n' );
+        }
+        line.append( _value );
+        for( int node : nodes )
+            line.append( ',' ).append( _voltages[node] );
+        line.append( '\n' );
+
+        try {
+            out.append( line );
+        }
+        catch( IOException _e ) {
+            throw new UncheckedIOException( _e );
+        }
+    }
+}
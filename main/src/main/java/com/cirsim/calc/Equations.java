@@ -0,0 +1,156 @@
+package com.cirsim.calc;
+
+/**
+ * The system of linear equations representing a circuit, in one of the formulations (see {@link Formulation}), as an augmented matrix ready for a
+ * {@link Solver}.  Whatever the formulation, the solution can be translated back into the voltage at every node and the current through every
+ * branch of the circuit's graph, so that results from either formulation may be used (and compared) interchangeably.
+ * <p>
+ * Each unknown is also assigned to a domain (see {@link CircuitGraph}) if it's interior to a single top-level subcircuit instance, so that
+ * hierarchical circuits may be solved by domain decomposition (see {@link #solveByDomains(SolverOptions)}).
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public abstract class Equations {
+
+    protected final CircuitGraph graph;
+    protected final double[][] augmented;
+    protected final String[] unknowns;
+    protected final int[] domains;       // the domain each unknown is interior to, or -1 for the interface...
+
+
+    protected Equations( final CircuitGraph _graph, final int _size ) {
+
+        if( _graph == null )
+            throw new IllegalArgumentException( "Circuit graph is missing" );
+
+        graph = _graph;
+        augmented = new double[_size][_size + 1];
+        unknowns = new String[_size];
+        domains = new int[_size];
+    }
+
+
+    /**
+     * Returns the formulation of these equations.
+     *
+     * @return the formulation of these equations
+     */
+    public abstract Formulation getFormulation();
+
+
+    /**
+     * Returns the voltage at each node of the circuit's graph (relative to its part's reference node), given the solution to these equations.
+     *
+     * @param _values the solution to these equations
+     * @return the voltage at each node, indexed by node
+     */
+    public abstract double[] getNodeVoltages( final double[] _values );
+
+
+    /**
+     * Returns the current through each branch of the circuit's graph (flowing from its node a to its node b), given the solution to these equations.
+     *
+     * @param _values the solution to these equations
+     * @return the current through each branch, indexed by branch
+     */
+    public abstract double[] getBranchCurrents( final double[] _values );
+
+
+    /**
+     * Returns the number of unknowns (and equations) in this system.
+     *
+     * @return the number of unknowns in this system
+     */
+    public int size() {
+        return unknowns.length;
+    }
+
+
+    /**
+     * Returns a copy of the augmented matrix (m rows of m+1 columns) representing these equations.
+     *
+     * @return the augmented matrix representing these equations
+     */
+    public double[][] getAugmented() {
+        double[][] result = new double[augmented.length][];
+        for( int i = 0; i < augmented.length; i++ )
+            result[i] = augmented[i].clone();
+        return result;
+    }
+
+
+    /**
+     * Returns a description of the unknown in the given column of the augmented matrix, such as "V(out)" or "I(loop R3)".
+     *
+     * @param _index the column of the unknown to describe
+     * @return the description of the unknown
+     */
+    public String getUnknown( final int _index ) {
+        return unknowns[_index];
+    }
+
+
+    /**
+     * Returns the domain the unknown in the given column is interior to, or -1 if it's part of the interface between domains.
+     *
+     * @param _index the column of the unknown
+     * @return the domain of the unknown
+     */
+    public int getDomain( final int _index ) {
+        return domains[_index];
+    }
+
+
+    public CircuitGraph getGraph() {
+        return graph;
+    }
+
+
+    /**
+     * Solves these equations with the given options and returns the solution.  A circuit may have no unknowns at all in some formulation (for
+     * instance, mesh analysis of a circuit with no loops), in which case the (empty) solution is trivially exact.
+     *
+     * @param _options the options controlling how the system will be solved
+     * @return the solution to these equations
+     */
+    public Solution solve( final SolverOptions _options ) {
+        if( augmented.length == 0 )
+            return new Solution( new double[0], 0, 0, 0, true );
+        return new Solver( augmented, _options ).solve();
+    }
+
+
+    public Solution solve() {
+        return solve( SolverOptions.DEFAULT );
+    }
+
+
+    /**
+     * Solves these equations by domain decomposition (see {@link SchurFactorization}), with iterative refinement according to the given options, and
+     * returns the solution.  For a circuit with no subcircuit instances, this is no different than {@link #solve(SolverOptions)}.
+     *
+     * @param _options the options controlling the factorization precision and refinement
+     * @return the solution to these equations
+     */
+    public Solution solveByDomains( final SolverOptions _options ) {
+
+        int m = augmented.length;
+        if( m == 0 )
+            return new Solution( new double[0], 0, 0, 0, true );
+
+        double[][] matrix = new double[m][];
+        double[] constants = new double[m];
+        for( int i = 0; i < m; i++ ) {
+            matrix[i] = new double[m];
+            System.arraycopy( augmented[i], 0, matrix[i], 0, m );
+            constants[i] = augmented[i][m];
+        }
+        return Solver.refine( new SchurFactorization( matrix, domains, _options.getPrecision() ), matrix, constants, _options );
+    }
+
+
+    protected void checkValues( final double[] _values ) {
+        if( (_values == null) || (_values.length != unknowns.length) )
+            throw new IllegalArgumentException( "Values missing or of wrong length" );
+    }
+}
@@ -0,0 +1,13 @@
+package com.cirsim.calc;
+
+/**
+ * The precision used to hold (and compute) the factors of a matrix.  Single precision factors take half the memory and are faster to compute, but
+ * are only useful in combination with iterative refinement (see {@link Solver}), which recovers double precision accuracy in the solution so long
+ * as the matrix isn't too badly conditioned.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public enum FactorPrecision {
+
+    SINGLE, DOUBLE
+}
@@ -0,0 +1,40 @@
+package com.cirsim.calc;
+
+/**
+ * Implemented by classes that hold a factorization of a square matrix, and that can use that factorization to solve systems of linear equations
+ * with that matrix as the coefficients.  The expensive part of solving a system (the factorization) is done once, when the instance is created;
+ * each subsequent solution costs only a forward and backward substitution.  This is what makes it cheap to solve for many right-hand sides, or to
+ * iteratively refine a solution.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public interface Factorization {
+
+
+    /**
+     * Returns the number of rows (and columns) in the factored matrix.
+     *
+     * @return the number of rows (and columns) in the factored matrix
+     */
+    int size();
+
+
+    /**
+     * Solves the system Ax = b, where A is the factored matrix and b is the given array of constants, and returns x in a new array.  Throws an
+     * <code>IllegalArgumentException</code> if the given array is missing or is not the same length as the size of the factored matrix.
+     *
+     * @param _constants the right-hand side (b) of the system to solve
+     * @return the solution (x) of the system
+     */
+    double[] solve( final double[] _constants );
+
+
+    /**
+     * Solves the system A<sup>T</sup>x = b, where A is the factored matrix and b is the given array of constants, and returns x in a new array.
+     * Throws an <code>IllegalArgumentException</code> if the given array is missing or is not the same length as the size of the factored matrix.
+     *
+     * @param _constants the right-hand side (b) of the system to solve
+     * @return the solution (x) of the transposed system
+     */
+    double[] solveTransposed( final double[] _constants );
+}
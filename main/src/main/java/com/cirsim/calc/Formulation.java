@@ -0,0 +1,13 @@
+package com.cirsim.calc;
+
+/**
+ * The formulations of a circuit's equations that {@link FormulationChoice} may choose between.  Nodal analysis applies Kirchoff's current law at
+ * each node, with the node voltages (plus the currents through voltage sources) as unknowns; mesh analysis applies Kirchoff's voltage law around
+ * each independent loop, with the loop currents as unknowns.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public enum Formulation {
+
+    NODAL, MESH
+}
@@ -0,0 +1,239 @@
+package com.cirsim.calc;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Instances of this class choose between nodal and mesh analysis (see {@link Formulation}) for a particular circuit, and record why.  The choice is
+ * made from the circuit's graph alone, before any equations are built:
+ * <ul>
+ *     <li>Nodal analysis needs one unknown per node (less one reference node per connected part), plus one per voltage source.</li>
+ *     <li>Mesh analysis needs one unknown per independent loop: the number of branches, less the number of nodes, plus the number of parts.</li>
+ * </ul>
+ * The formulation with fewer unknowns is chosen.  If they tie, the formulation with the lower predicted fill is chosen, where the predicted fill
+ * is the number of entries in the L and U factors that symbolic elimination (in natural order, with no pivoting) of each formulation's nonzero
+ * pattern would produce.  If those tie as well, nodal analysis is chosen, as its unknowns are the node voltages most users are interested in.
+ * Nodal analysis is always chosen for a graph with port instances (see {@link CircuitGraph}) or reactive components, as mesh analysis can't use
+ * them.  Neither formulation can solve a circuit with nonlinear components, which must be solved by {@link NewtonSolver}.
+ * <p>
+ * Instances of this class are immutable.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class FormulationChoice {
+
+    private final CircuitGraph graph;
+    private final Formulation formulation;
+    private final int nodalUnknowns;
+    private final int meshUnknowns;
+    private final int nodalFill;
+    private final int meshFill;
+    private final String reason;
+
+
+    /**
+     * Creates a new instance of this class that chooses the formulation for the given circuit graph.  Throws an
+     * <code>IllegalArgumentException</code> if the graph is missing, or has any nonlinear components.
+     *
+     * @param _graph the graph of the circuit to choose a formulation for
+     */
+    public FormulationChoice( final CircuitGraph _graph ) {
+
+        if( _graph == null )
+            throw new IllegalArgumentException( "Circuit graph is missing" );
+
+        if( _graph.getNonlinearCount() > 0 )
+            throw new IllegalArgumentException( "Neither formulation can solve nonlinear components; use a NewtonSolver" );
+
+        graph = _graph;
+        boolean meshPossible = graph.getPortInstances().isEmpty() && (graph.getReactiveCount() == 0);
+        nodalUnknowns = NodalEquations.unknownCount( graph );
+        meshUnknowns = meshPossible ? MeshEquations.unknownCount( graph ) : -1;
+        nodalFill = predictedFill( nodalPattern( graph ) );
+        meshFill = meshPossible ? predictedFill( meshPattern( graph ) ) : -1;
+
+        String nodalCounts = nodalUnknowns + " nodal unknowns (" + (graph.getNodeCount() - graph.getPartCount()) + " non-reference nodes + "
+                + graph.getBranchUnknownCount() + " branch unknowns)";
+        String counts = nodalCounts + " vs. " + meshUnknowns + " mesh unknowns (" + graph.getBranchCount() + " branches - " + graph.getNodeCount()
+                + " nodes + " + graph.getPartCount() + " parts)";
+        String fills = "predicted fill " + nodalFill + " nodal vs. " + meshFill + " mesh";
+
+        if( !meshPossible ) {
+            formulation = Formulation.NODAL;
+            reason = "NODAL because mesh analysis can't use the " + graph.getPortInstances().size() + " subcircuit port models or the "
+                    + graph.getReactiveCount() + " reactive components: " + nodalCounts;
+        }
+        else if( nodalUnknowns != meshUnknowns ) {
+            formulation = (nodalUnknowns < meshUnknowns) ? Formulation.NODAL : Formulation.MESH;
+            reason = formulation + " has fewer unknowns: " + counts;
+        }
+        else if( nodalFill != meshFill ) {
+            formulation = (nodalFill < meshFill) ? Formulation.NODAL : Formulation.MESH;
+            reason = formulation + " has lower fill with equal unknowns: " + counts + "; " + fills;
+        }
+        else {
+            formulation = Formulation.NODAL;
+            reason = "NODAL by default with equal unknowns and fill: " + counts + "; " + fills;
+        }
+    }
+
+
+    /**
+     * Builds and returns the equations for the circuit, in the chosen formulation.
+     *
+     * @return the equations for the circuit
+     */
+    public Equations build() {
+        return (formulation == Formulation.NODAL) ? new NodalEquations( graph ) : new MeshEquations( graph );
+    }
+
+
+    /**
+     * Returns the nonzero pattern (one bit set per row) of the nodal equations for the given graph, in the same order as {@link NodalEquations}.
+     */
+    private static List<BitSet> nodalPattern( final CircuitGraph _graph ) {
+
+        int[] columns = new int[_graph.getNodeCount()];
+        int size = 0;
+        for( int node = 0; node < columns.length; node++ )
+            columns[node] = _graph.isReference( node ) ? -1 : size++;
+
+        List<BitSet> result = new ArrayList<>();
+        for( int i = 0; i < NodalEquations.unknownCount( _graph ); i++ )
+            result.add( new BitSet() );
+
+        for( CircuitGraph.Branch branch : _graph.getBranches() ) {
+            int a = columns[branch.getA()];
+            int b = columns[branch.getB()];
+            if( branch.getComponent().getBranchCount() > 0 ) {
+                int s = size;
+                size += branch.getComponent().getBranchCount();
+                link( result, a, s );
+                link( result, b, s );
+            }
+            else {
+                if( a >= 0 )
+                    result.get( a ).set( a );
+                if( b >= 0 )
+                    result.get( b ).set( b );
+                link( result, a, b );
+            }
+        }
+        for( CircuitGraph.PortInstance instance : _graph.getPortInstances() )
+            for( int i = 0; i < instance.getModel().getPortCount(); i++ )
+                for( int j = 0; j < instance.getModel().getPortCount(); j++ ) {
+                    int a = columns[instance.getNode( i )];
+                    int b = columns[instance.getNode( j )];
+                    if( a >= 0 )
+                        result.get( a ).set( a );
+                    link( result, a, b );
+                }
+        return result;
+    }
+
+
+    /**
+     * Returns the nonzero pattern (one bit set per row) of the mesh equations for the given graph, in the same order as {@link MeshEquations}.
+     */
+    private static List<BitSet> meshPattern( final CircuitGraph _graph ) {
+
+        int[][] signs = MeshEquations.branchSigns( _graph );
+        List<BitSet> result = new ArrayList<>();
+        for( int i = 0; i < MeshEquations.unknownCount( _graph ); i++ )
+            result.add( new BitSet() );
+
+        for( CircuitGraph.Branch branch : _graph.getBranches() ) {
+            if( branch.isVoltageSource() )
+                continue;
+            BitSet loops = new BitSet();
+            int[] s = signs[branch.getIndex()];
+            for( int l = 0; l < s.length; l++ )
+                if( s[l] != 0 )
+                    loops.set( l );
+            for( int l = loops.nextSetBit( 0 ); l >= 0; l = loops.nextSetBit( l + 1 ) )
+                result.get( l ).or( loops );
+        }
+        return result;
+    }
+
+
+    private static void link( final List<BitSet> _pattern, final int _a, final int _b ) {
+        if( (_a < 0) || (_b < 0) )
+            return;
+        _pattern.get( _a ).set( _b );
+        _pattern.get( _b ).set( _a );
+    }
+
+
+    /**
+     * Returns the number of entries in the L and U factors of a matrix with the given (symmetric) nonzero pattern, by symbolic elimination in
+     * natural order: eliminating each unknown connects all of its remaining neighbors to each other.
+     *
+     * @param _pattern the nonzero pattern, one bit set per row
+     * @return the predicted number of entries in the factors
+     */
+    private static int predictedFill( final List<BitSet> _pattern ) {
+
+        List<BitSet> rows = new ArrayList<>();
+        for( BitSet row : _pattern )
+            rows.add( (BitSet) row.clone() );
+
+        int result = 0;
+        for( int k = 0; k < rows.size(); k++ ) {
+            BitSet neighbors = (BitSet) rows.get( k ).clone();
+            neighbors.clear( 0, k + 1 );
+            result += 1 + 2 * neighbors.cardinality();    // the diagonal, plus the column of L and the row of U...
+            for( int j = neighbors.nextSetBit( 0 ); j >= 0; j = neighbors.nextSetBit( j + 1 ) )
+                rows.get( j ).or( neighbors );
+        }
+        return result;
+    }
+
+
+    public Formulation getFormulation() {
+        return formulation;
+    }
+
+
+    public int getNodalUnknowns() {
+        return nodalUnknowns;
+    }
+
+
+    /**
+     * Returns the number of unknowns mesh analysis would need, or -1 if mesh analysis isn't possible for the circuit (because it has port
+     * instances or reactive components).
+     *
+     * @return the number of unknowns mesh analysis would need
+     */
+    public int getMeshUnknowns() {
+        return meshUnknowns;
+    }
+
+
+    public int getNodalFill() {
+        return nodalFill;
+    }
+
+
+    public int getMeshFill() {
+        return meshFill;
+    }
+
+
+    /**
+     * Returns a human-readable explanation of why the formulation was chosen, including the counts it was based on.
+     *
+     * @return an explanation of why the formulation was chosen
+     */
+    public String getReason() {
+        return reason;
+    }
+
+
+    @Override
+    public String toString() {
+        return reason;
+    }
+}
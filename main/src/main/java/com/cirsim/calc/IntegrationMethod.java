@@ -0,0 +1,20 @@
+package com.cirsim.calc;
+
+/**
+ * The methods a {@link TransientAnalysis} can use to integrate the states of a circuit's reactive components over time.  Both are second order
+ * accurate and A-stable, but they differ in how they treat fast transients:
+ * <ul>
+ *     <li>{@link #TRAPEZOIDAL} has the smaller truncation error (about a third of Gear-2's), but doesn't damp components of the solution that are
+ *     much faster than the step size, so it can show "ringing" from one time point to the next after an abrupt change.</li>
+ *     <li>{@link #GEAR2} (the second order backward differentiation formula) damps such components strongly, at the cost of somewhat smaller
+ *     steps for the same accuracy.</li>
+ * </ul>
+ * Both methods take their first step by backward Euler (the first order backward differentiation formula), as neither has the history it needs
+ * until then.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public enum IntegrationMethod {
+
+    TRAPEZOIDAL, GEAR2
+}
@@ -0,0 +1,275 @@
+package com.cirsim.calc;
+
+import com.cirsim.matrices.MatrixStuff;
+
+/**
+ * Implements {@link Factorization} with a dense LU decomposition (Doolittle form, with partial pivoting by rows).  The factors may be held (and
+ * computed) in either single or double precision; see {@link FactorPrecision}.  The matrix given to the constructor is never modified.
+ * <p>
+ * Instances of this class are immutable once constructed, and are therefore threadsafe.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class LUFactorization implements Factorization {
+
+    private final int size;
+    private final FactorPrecision precision;
+    private final double[][] lu64;   // the combined L and U factors, when in double precision (otherwise null)...
+    private final float[][]  lu32;   // the combined L and U factors, when in single precision (otherwise null)...
+    private final int[] pivots;      // pivots[i] is the row of the original matrix that ended up in row i...
+
+
+    /**
+     * Creates a new instance of this class that holds the double precision LU factorization of the given square matrix.
+     *
+     * @param _matrix the square matrix to factor
+     */
+    public LUFactorization( final double[][] _matrix ) {
+        this( _matrix, FactorPrecision.DOUBLE );
+    }
+
+
+    /**
+     * Creates a new instance of this class that holds the LU factorization of the given square matrix, in the given precision.  Throws an
+     * <code>IllegalArgumentException</code> if the matrix is missing, is not square, or is singular.
+     *
+     * @param _matrix the square matrix to factor
+     * @param _precision the precision to hold and compute the factors in
+     */
+    public LUFactorization( final double[][] _matrix, final FactorPrecision _precision ) {
+
+        if( (_matrix == null) || (_matrix.length == 0) )
+            throw new IllegalArgumentException( "Matrix is missing or empty" );
+
+        if( _precision == null )
+            throw new IllegalArgumentException( "Precision is missing" );
+
+        size = _matrix.length;
+        precision = _precision;
+        pivots = new int[size];
+        for( int i = 0; i < size; i++ ) {
+            if( (_matrix[i] == null) || (_matrix[i].length != size) )
+                throw new IllegalArgumentException( "Matrix is not square at row " + i );
+            pivots[i] = i;
+        }
+
+        if( precision == FactorPrecision.DOUBLE ) {
+            lu64 = new double[size][];
+            for( int i = 0; i < size; i++ )
+                lu64[i] = _matrix[i].clone();
+            lu32 = null;
+            factor64();
+        }
+        else {
+            lu32 = new float[size][size];
+            for( int i = 0; i < size; i++ )
+                for( int j = 0; j < size; j++ )
+                    lu32[i][j] = (float) _matrix[i][j];
+            lu64 = null;
+            factor32();
+        }
+    }
+
+
+    /**
+     * Factors the matrix in place, in double precision.
+     */
+    private void factor64() {
+
+        for( int k = 0; k < size; k++ ) {
+
+            // find the row with the largest magnitude in this column, and swap it into the pivot position...
+            int p = k;
+            for( int i = k + 1; i < size; i++ )
+                if( Math.abs( lu64[i][k] ) > Math.abs( lu64[p][k] ) )
+                    p = i;
+            if( lu64[p][k] == MatrixStuff.PURE_ZERO )
+                throw new IllegalArgumentException( "Matrix is singular at column " + k );
+            swap( k, p );
+
+            // eliminate below the pivot, leaving the multipliers (the L factor) in place of the eliminated entries...
+            double[] pivotRow = lu64[k];
+            for( int i = k + 1; i < size; i++ ) {
+                double[] row = lu64[i];
+                if( row[k] == MatrixStuff.PURE_ZERO )
+                    continue;
+                double m = row[k] / pivotRow[k];
+                row[k] = m;
+                for( int j = k + 1; j < size; j++ )
+                    row[j] -= m * pivotRow[j];
+            }
+        }
+    }
+
+
+    /**
+     * Factors the matrix in place, in single precision.
+     */
+    private void factor32() {
+
+        for( int k = 0; k < size; k++ ) {
+
+            // find the row with the largest magnitude in this column, and swap it into the pivot position...
+            int p = k;
+            for( int i = k + 1; i < size; i++ )
+                if( Math.abs( lu32[i][k] ) > Math.abs( lu32[p][k] ) )
+                    p = i;
+            if( lu32[p][k] == 0.0f )
+                throw new IllegalArgumentException( "Matrix is singular (in single precision) at column " + k );
+            swap( k, p );
+
+            // eliminate below the pivot, leaving the multipliers (the L factor) in place of the eliminated entries...
+            float[] pivotRow = lu32[k];
+            for( int i = k + 1; i < size; i++ ) {
+                float[] row = lu32[i];
+                if( row[k] == 0.0f )
+                    continue;
+                float m = row[k] / pivotRow[k];
+                row[k] = m;
+                for( int j = k + 1; j < size; j++ )
+                    row[j] -= m * pivotRow[j];
+            }
+        }
+    }
+
+
+    /**
+     * Swaps the two given rows of the factors being computed, tracking the swap in the pivots.
+     *
+     * @param _a one row to swap
+     * @param _b the other row to swap
+     */
+    private void swap( final int _a, final int _b ) {
+
+        if( _a == _b )
+            return;
+
+        if( lu64 != null ) {
+            double[] t = lu64[_a];
+            lu64[_a] = lu64[_b];
+            lu64[_b] = t;
+        }
+        else {
+            float[] t = lu32[_a];
+            lu32[_a] = lu32[_b];
+            lu32[_b] = t;
+        }
+        int t = pivots[_a];
+        pivots[_a] = pivots[_b];
+        pivots[_b] = t;
+    }
+
+
+    /**
+     * Returns the number of rows (and columns) in the factored matrix.
+     *
+     * @return the number of rows (and columns) in the factored matrix
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns the precision the factors are held in.
+     *
+     * @return the precision the factors are held in
+     */
+    public FactorPrecision getPrecision() {
+        return precision;
+    }
+
+
+    /**
+     * Solves the system Ax = b, where A is the factored matrix and b is the given array of constants, and returns x in a new array.  Throws an
+     * <code>IllegalArgumentException</code> if the given array is missing or is not the same length as the size of the factored matrix.  The
+     * substitutions are always accumulated in double precision, even when the factors are held in single precision.
+     *
+     * @param _constants the right-hand side (b) of the system to solve
+     * @return the solution (x) of the system
+     */
+    @Override
+    public double[] solve( final double[] _constants ) {
+
+        checkConstants( _constants );
+
+        // apply the row permutation...
+        double[] x = new double[size];
+        for( int i = 0; i < size; i++ )
+            x[i] = _constants[pivots[i]];
+
+        // forward substitution with the unit lower triangular factor...
+        for( int i = 1; i < size; i++ ) {
+            double sum = x[i];
+            for( int j = 0; j < i; j++ )
+                sum -= lu( i, j ) * x[j];
+            x[i] = sum;
+        }
+
+        // backward substitution with the upper triangular factor...
+        for( int i = size - 1; i >= 0; i-- ) {
+            double sum = x[i];
+            for( int j = i + 1; j < size; j++ )
+                sum -= lu( i, j ) * x[j];
+            x[i] = sum / lu( i, i );
+        }
+
+        return x;
+    }
+
+
+    /**
+     * Solves the system A<sup>T</sup>x = b, where A is the factored matrix and b is the given array of constants, and returns x in a new array.
+     * Throws an <code>IllegalArgumentException</code> if the given array is missing or is not the same length as the size of the factored matrix.
+     *
+     * @param _constants the right-hand side (b) of the system to solve
+     * @return the solution (x) of the transposed system
+     */
+    @Override
+    public double[] solveTransposed( final double[] _constants ) {
+
+        checkConstants( _constants );
+
+        // PA = LU, so A^T = U^T L^T P; first solve U^T y = b by forward substitution...
+        double[] y = _constants.clone();
+        for( int i = 0; i < size; i++ ) {
+            double sum = y[i];
+            for( int j = 0; j < i; j++ )
+                sum -= lu( j, i ) * y[j];
+            y[i] = sum / lu( i, i );
+        }
+
+        // then L^T z = y by backward substitution...
+        for( int i = size - 2; i >= 0; i-- ) {
+            double sum = y[i];
+            for( int j = i + 1; j < size; j++ )
+                sum -= lu( j, i ) * y[j];
+            y[i] = sum;
+        }
+
+        // and finally undo the permutation...
+        double[] x = new double[size];
+        for( int i = 0; i < size; i++ )
+            x[pivots[i]] = y[i];
+        return x;
+    }
+
+
+    /**
+     * Returns the entry at the given row and column of the combined factors (L below the diagonal, U on and above it), in double precision.
+     *
+     * @param _row the row of the entry to get
+     * @param _col the column of the entry to get
+     * @return the entry at the given row and column of the combined factors
+     */
+    private double lu( final int _row, final int _col ) {
+        return (lu64 != null) ? lu64[_row][_col] : lu32[_row][_col];
+    }
+
+
+    private void checkConstants( final double[] _constants ) {
+        if( (_constants == null) || (_constants.length != size) )
+            throw new IllegalArgumentException( "Constants missing or of wrong length" );
+    }
+}
@@ -0,0 +1,414 @@
+package com.cirsim.calc;
+
+import com.cirsim.components.NonlinearComponent;
+import com.cirsim.components.ReactiveComponent;
+import com.cirsim.components.TolerancedComponent;
+import com.cirsim.matrices.TreeMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Assembles a circuit's modified nodal analysis (MNA) equations into a sparse {@link TreeMatrix} and an array of constants.  The unknowns are the
+ * same as those of {@link NodalEquations}: the voltage at each node that isn't a reference node, followed by the branch unknowns of the components
+ * that have any (such as the current through each voltage source).
+ * <p>
+ * Everything that depends only on the circuit's topology is worked out once, when an instance is created: which unknown each node and branch maps
+ * to, and so which rows each component stamps into, and then (by having every component stamp once into a recording target) the matrix entry that
+ * each and every stamp lands in, as a flat array of slots in the matrix's value store.  That works because a component's stamps depend only on
+ * which of its terminals are reference nodes, never on its values, so the sequence of stamps is the same on every assembly.  Assembling the
+ * equations is then a single pass over the components (see {@link com.cirsim.components.Component#stamp(StampTarget, int[])}), with the n'th stamp
+ * simply adding its value to the n'th slot: no searches of the matrix's indices, and no allocation.  This matters because the equations are
+ * reassembled on every time step or Newton iteration, once component values depend on the solution.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class MNAAssembler {
+
+    private final CircuitGraph graph;
+    private final int size;
+    private final int[] nodeColumns;      // the column of each node's voltage, or -1 for reference nodes...
+    private final int[][] branchRows;     // the rows each branch stamps into...
+    private final String[] unknowns;
+    private final TreeMatrix matrix;
+    private final double[] constants;
+    private final int[] stampSlots;       // the value store slot of each stamp, in the order the stamps are made...
+    private final int[] entrySlots;       // the value store slot of each matrix entry, to zero them before assembly...
+    private final SlotTarget target;
+    private final double[] nominals;      // the nominal value of each branch's toleranced component, or NaN...
+    private final double[] scaled;        // the scaled value of each branch's toleranced component, for the assembly in progress...
+
+
+    /**
+     * Creates a new instance of this class that assembles the equations for the given circuit graph.  The equations are not assembled until
+     * {@link #assemble()} is called.  Throws an <code>IllegalArgumentException</code> if the graph is missing or has no unknowns.
+     *
+     * @param _graph the graph of the circuit to assemble equations for
+     */
+    public MNAAssembler( final CircuitGraph _graph ) {
+
+        if( _graph == null )
+            throw new IllegalArgumentException( "Circuit graph is missing" );
+
+        graph = _graph;
+
+        // assign the columns: the node voltages first, then the branch unknowns...
+        nodeColumns = new int[graph.getNodeCount()];
+        int[] branchColumns = new int[graph.getBranchCount()];
+        int column = 0;
+        for( int node = 0; node < nodeColumns.length; node++ )
+            nodeColumns[node] = graph.isReference( node ) ? -1 : column++;
+        for( CircuitGraph.Branch branch : graph.getBranches() ) {
+            branchColumns[branch.getIndex()] = column;
+            column += branch.getComponent().getBranchCount();
+        }
+        size = column;
+        if( size == 0 )
+            throw new IllegalArgumentException( "Circuit has no unknowns" );
+
+        unknowns = new String[size];
+        for( int node = 0; node < nodeColumns.length; node++ )
+            if( nodeColumns[node] >= 0 )
+                unknowns[nodeColumns[node]] = "V(" + graph.getNodeName( node ) + ")";
+        for( CircuitGraph.Branch branch : graph.getBranches() )
+            for( int k = 0; k < branch.getComponent().getBranchCount(); k++ )
+                unknowns[branchColumns[branch.getIndex()] + k] = "I(" + branch.getLabel() + ((k == 0) ? "" : "#" + k) + ")";
+
+        branchRows = NodalEquations.branchRows( graph, nodeColumns, branchColumns );
+        matrix = new TreeMatrix( size );
+        constants = new double[size];
+
+        // stamp once, recording the slot of every stamp's entry (creating the entries as we go)...
+        RecordingTarget recorder = new RecordingTarget();
+        NodalEquations.stamp( graph, recorder, nodeColumns, branchRows );
+        stampSlots = Arrays.copyOf( recorder.slots, recorder.count );
+        entrySlots = Arrays.stream( stampSlots ).distinct().toArray();
+        target = new SlotTarget();
+
+        nominals = new double[graph.getBranchCount()];
+        for( CircuitGraph.Branch branch : graph.getBranches() )
+            nominals[branch.getIndex()] = (branch.getComponent() instanceof TolerancedComponent)
+                    ? ((TolerancedComponent) branch.getComponent()).getNominalValue() : Double.NaN;
+        scaled = new double[nominals.length];
+    }
+
+
+    /**
+     * Assembles (or reassembles) the equations, by zeroing the matrix and constants and having every component (and port instance) stamp itself into
+     * the precomputed slots.  Throws an <code>IllegalStateException</code> if the components didn't make the same sequence of stamps as when this
+     * instance was created (which would mean a component's stamps depend on its values, which they must not).
+     */
+    public void assemble() {
+        assemble( 0, null );
+    }
+
+
+    /**
+     * Assembles (or reassembles) the equations at a time point of a time-domain analysis, as {@link #assemble()} does, except that each reactive
+     * component stamps its companion model: the derivative of its state is approximated as the given coefficient times its new state, plus its own
+     * history term (see {@link ReactiveComponent#stamp(StampTarget, int[], double, double)}).  If the histories are null, reactive components stamp
+     * their DC models instead.
+     *
+     * @param _coefficient the coefficient of each reactive component's new state in its derivative
+     * @param _histories the history term of each reactive component's derivative, indexed by branch, or null for DC
+     */
+    public void assemble( final double _coefficient, final double[] _histories ) {
+
+        if( (_histories != null) && (_histories.length != graph.getBranchCount()) )
+            throw new IllegalArgumentException( "Histories must have one entry per branch" );
+
+        assemble( _coefficient, _histories, null, null );
+    }
+
+
+    /**
+     * Assembles (or reassembles) the equations with varied component values, as {@link #assemble()} does, except that each toleranced component
+     * stamps with its value scaled by the given factor for its branch (see {@link TolerancedComponent#stamp(StampTarget, int[], double)}).  This is
+     * how Monte Carlo and worst case analyses vary the circuit.  Throws an <code>IllegalArgumentException</code> if the scale factors are missing or
+     * don't have one entry per branch.
+     *
+     * @param _scales the factor to scale each toleranced component's value by, indexed by branch
+     */
+    public void assemble( final double[] _scales ) {
+
+        if( (_scales == null) || (_scales.length != graph.getBranchCount()) )
+            throw new IllegalArgumentException( "Scales missing, or don't have one entry per branch" );
+
+        assemble( 0, null, scale( _scales ), null );
+    }
+
+
+    /**
+     * Assembles (or reassembles) the equations for an iteration of Newton's method (see {@link NewtonSolver}), as {@link #assemble(double[])} does,
+     * except that each nonlinear component stamps its linearization about the given solution (see
+     * {@link NonlinearComponent#stamp(StampTarget, int[], double[])}), so that the assembled matrix is the Jacobian of the circuit's equations there.
+     * Throws an <code>IllegalArgumentException</code> if the scale factors don't have one entry per branch, or the solution isn't the same length as
+     * the number of unknowns.
+     *
+     * @param _scales the factor to scale each toleranced component's value by, indexed by branch, or null for nominal values
+     * @param _values the solution to linearize nonlinear components about, or null for zero volts
+     */
+    public void assemble( final double[] _scales, final double[] _values ) {
+
+        if( (_scales != null) && (_scales.length != graph.getBranchCount()) )
+            throw new IllegalArgumentException( "Scales don't have one entry per branch" );
+
+        if( (_values != null) && (_values.length != size) )
+            throw new IllegalArgumentException( "Values don't have one entry per unknown" );
+
+        assemble( 0, null, (_scales == null) ? null : scale( _scales ), _values );
+    }
+
+
+    /**
+     * Assembles (or reassembles) the equations with the given values for the toleranced components, as {@link #assemble(double[], double[])} does
+     * with scaled values, except that each toleranced component stamps with the given value for its branch (see
+     * {@link TolerancedComponent#stampValue(StampTarget, int[], double)}).  This is how a DC sweep varies the circuit, as it may sweep a component
+     * whose nominal value is zero.  Throws an <code>IllegalArgumentException</code> if the component values are missing or don't have one entry per
+     * branch, or the solution isn't the same length as the number of unknowns.
+     *
+     * @param _componentValues the value of each toleranced component, indexed by branch (entries for other branches are ignored)
+     * @param _values the solution to linearize nonlinear components about, or null for zero volts
+     */
+    public void assembleValues( final double[] _componentValues, final double[] _values ) {
+
+        if( (_componentValues == null) || (_componentValues.length != graph.getBranchCount()) )
+            throw new IllegalArgumentException( "Component values missing, or don't have one entry per branch" );
+
+        if( (_values != null) && (_values.length != size) )
+            throw new IllegalArgumentException( "Values don't have one entry per unknown" );
+
+        assemble( 0, null, _componentValues, _values );
+    }
+
+
+    /**
+     * Assembles (or reassembles) the equations with reactive components stamping their companion models (as {@link #assemble(double, double[])}
+     * does) and nonlinear components stamping their linearizations about the given solution (as {@link #assemble(double[], double[])} does).  Throws
+     * an <code>IllegalArgumentException</code> if the histories don't have one entry per branch, or the solution isn't the same length as the number
+     * of unknowns.
+     *
+     * @param _coefficient the coefficient of each reactive component's new state in its derivative
+     * @param _histories the history term of each reactive component's derivative, indexed by branch, or null for DC
+     * @param _values the solution to linearize nonlinear components about, or null for zero volts
+     */
+    public void assemble( final double _coefficient, final double[] _histories, final double[] _values ) {
+
+        if( (_histories != null) && (_histories.length != graph.getBranchCount()) )
+            throw new IllegalArgumentException( "Histories must have one entry per branch" );
+
+        if( (_values != null) && (_values.length != size) )
+            throw new IllegalArgumentException( "Values don't have one entry per unknown" );
+
+        assemble( _coefficient, _histories, null, _values );
+    }
+
+
+    private void assemble( final double _coefficient, final double[] _histories, final double[] _componentValues, final double[] _values ) {
+
+        for( int slot : entrySlots )
+            matrix.putValue( slot, 0 );
+        Arrays.fill( constants, 0 );
+
+        target.next = 0;
+        NodalEquations.stamp( graph, target, nodeColumns, branchRows, _coefficient, _histories, _componentValues, _values );
+        if( target.next != stampSlots.length )
+            throw new IllegalStateException( "Components made " + target.next + " stamps, but " + stampSlots.length + " were expected" );
+    }
+
+
+    // the value of each toleranced component, scaled by its branch's factor...
+    private double[] scale( final double[] _scales ) {
+        for( int i = 0; i < scaled.length; i++ )
+            scaled[i] = nominals[i] * _scales[i];
+        return scaled;
+    }
+
+
+    /**
+     * Returns the number of stamps (coefficient additions) made by each assembly; several stamps may add to the same matrix entry.
+     *
+     * @return the number of stamps made by each assembly
+     */
+    public int getStampCount() {
+        return stampSlots.length;
+    }
+
+
+    /**
+     * Returns the assembled matrix.  This is the matrix itself, not a copy, and it is overwritten by every call to {@link #assemble()}.
+     *
+     * @return the assembled matrix
+     */
+    public TreeMatrix getMatrix() {
+        return matrix;
+    }
+
+
+    /**
+     * Returns the assembled constants (the right-hand side).  This is the array itself, not a copy, and it is overwritten by every call to
+     * {@link #assemble()}.
+     *
+     * @return the assembled constants
+     */
+    public double[] getConstants() {
+        return constants;
+    }
+
+
+    /**
+     * Returns the assembled equations as a dense augmented matrix (m rows of m+1 columns), suitable for a {@link Solver}.
+     *
+     * @return the assembled equations as a dense augmented matrix
+     */
+    public double[][] toAugmented() {
+        double[][] dense = matrix.toArray();
+        double[][] result = new double[size][];
+        for( int i = 0; i < size; i++ ) {
+            result[i] = Arrays.copyOf( dense[i], size + 1 );
+            result[i][size] = constants[i];
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the number of unknowns (and equations).
+     *
+     * @return the number of unknowns
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns a description of the unknown in the given column, such as "V(out)" or "I(V1)".
+     *
+     * @param _index the column of the unknown to describe
+     * @return the description of the unknown
+     */
+    public String getUnknown( final int _index ) {
+        return unknowns[_index];
+    }
+
+
+    /**
+     * Returns the column of the given node's voltage, or -1 if the node is a reference node.
+     *
+     * @param _node the node to get the column of
+     * @return the column of the given node's voltage
+     */
+    public int getNodeColumn( final int _node ) {
+        return nodeColumns[_node];
+    }
+
+
+    /**
+     * Returns the rows the given branch stamps into: the rows of the voltages at its terminals (-1 for the reference node), followed by those of its
+     * branch unknowns (see {@link com.cirsim.components.Component#stamp(StampTarget, int[])}).
+     *
+     * @param _branch the index of the branch
+     * @return the rows the given branch stamps into
+     */
+    public int[] getBranchRows( final int _branch ) {
+        return branchRows[_branch].clone();
+    }
+
+
+    public CircuitGraph getGraph() {
+        return graph;
+    }
+
+
+    /**
+     * Returns the voltage at each node of the circuit's graph, given the solution to the assembled equations.
+     *
+     * @param _values the solution to the assembled equations
+     * @return the voltage at each node, indexed by node
+     */
+    public double[] getNodeVoltages( final double[] _values ) {
+
+        if( (_values == null) || (_values.length != size) )
+            throw new IllegalArgumentException( "Values missing or of wrong length" );
+
+        double[] result = new double[nodeColumns.length];
+        for( int node = 0; node < result.length; node++ )
+            result[node] = (nodeColumns[node] < 0) ? 0 : _values[nodeColumns[node]];
+        return result;
+    }
+
+
+    /**
+     * Returns the current through each branch of the circuit's graph (from its terminal 1 to its terminal 2), given the solution to the assembled
+     * equations (at DC).  The current through a branch with branch unknowns is its first branch unknown; the current through a nonlinear component
+     * is given by its own I-V law at the voltage across it; the current through a capacitor, at DC, is zero.
+     *
+     * @param _values the solution to the assembled equations
+     * @return the current through each branch, indexed by branch
+     */
+    public double[] getBranchCurrents( final double[] _values ) {
+
+        double[] voltages = getNodeVoltages( _values );
+        double[] result = new double[graph.getBranchCount()];
+        for( CircuitGraph.Branch branch : graph.getBranches() ) {
+            int i = branch.getIndex();
+            double volts = voltages[branch.getA()] - voltages[branch.getB()];
+            if( branchRows[i].length > 2 )
+                result[i] = _values[branchRows[i][2]];
+            else if( branch.getComponent() instanceof NonlinearComponent )
+                result[i] = ((NonlinearComponent) branch.getComponent()).getCurrent( volts );
+            else if( branch.getResistance() > 0 )
+                result[i] = volts / branch.getResistance();
+            else
+                result[i] = 0;   // a capacitor, at DC...
+        }
+        return result;
+    }
+
+
+    /**
+     * The stamp target used once, when an instance is created, to find the matrix entry each stamp lands in.
+     */
+    private class RecordingTarget implements StampTarget {
+
+        private int[] slots = new int[16];
+        private int count;
+
+
+        @Override
+        public void add( final int _row, final int _col, final double _value ) {
+            if( count >= slots.length )
+                slots = Arrays.copyOf( slots, slots.length << 1 );
+            slots[count++] = matrix.getSlot( _row, _col );
+        }
+
+
+        @Override
+        public void addConstant( final int _row, final double _value ) {
+            // nothing to record; the constants are a plain array...
+        }
+    }
+
+
+    /**
+     * The stamp target used for every assembly, which adds the n'th stamp's value to the n'th precomputed slot.
+     */
+    private class SlotTarget implements StampTarget {
+
+        private int next;
+
+
+        @Override
+        public void add( final int _row, final int _col, final double _value ) {
+            if( next >= stampSlots.length )
+                throw new IllegalStateException( "Components made more stamps than the " + stampSlots.length + " expected" );
+            matrix.addValue( stampSlots[next++], _value );
+        }
+
+
+        @Override
+        public void addConstant( final int _row, final double _value ) {
+            constants[_row] += _value;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.cirsim.calc;
+
+/**
+ * The equations of a circuit formulated by mesh (or more precisely, loop) analysis.  There is one equation for each fundamental loop of the
+ * circuit's graph (see {@link CircuitGraph#getLoops()}), stating (by Kirchoff's voltage law) that the voltage drops around the loop sum to zero,
+ * with a current circulating around that loop as the corresponding unknown.  The current through any branch is the sum of the loop currents
+ * through it.  Each resistor contributes its resistance to every pair of loops passing through it, and each voltage source contributes its voltage
+ * to the constants of every loop passing through it.
+ * <p>
+ * Fundamental loops are used rather than the meshes (the "windows") of a planar drawing, because they exist for any circuit, planar or not, and
+ * are just as independent.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class MeshEquations extends Equations {
+
+
+    /**
+     * Creates a new instance of this class with the mesh equations for the given circuit graph.  Throws an <code>IllegalArgumentException</code> if
+     * the graph has any port instances.
+     *
+     * @param _graph the graph of the circuit to formulate equations for
+     */
+    public MeshEquations( final CircuitGraph _graph ) {
+        super( _graph, unknownCount( _graph ) );
+
+        // a loop is interior to a domain only if all its branches are...
+        int m = size();
+        for( int l = 0; l < m; l++ ) {
+            CircuitGraph.Loop loop = graph.getLoops().get( l );
+            unknowns[l] = "I(loop " + graph.getBranch( loop.getBranch( 0 ) ).getLabel() + ")";
+            domains[l] = graph.getBranch( loop.getBranch( 0 ) ).getDomain();
+            for( int i = 1; i < loop.size(); i++ )
+                if( graph.getBranch( loop.getBranch( i ) ).getDomain() != domains[l] )
+                    domains[l] = -1;
+        }
+
+        // find the loops (and the direction) each branch is traversed by...
+        int[][] signs = branchSigns( graph );
+
+        // stamp each branch into the matrix...
+        for( CircuitGraph.Branch branch : graph.getBranches() ) {
+            int[] s = signs[branch.getIndex()];
+            for( int l = 0; l < m; l++ ) {
+                if( s[l] == 0 )
+                    continue;
+                if( branch.isVoltageSource() )
+                    augmented[l][m] -= s[l] * branch.getVolts();
+                else
+                    for( int k = 0; k < m; k++ )
+                        if( s[k] != 0 )
+                            augmented[l][k] += s[l] * s[k] * branch.getResistance();
+            }
+        }
+    }
+
+
+    /**
+     * Returns, for each branch of the given graph, the sign of that branch in each fundamental loop: +1 if the loop traverses it in its own
+     * direction, -1 if in the opposite direction, and 0 if the loop doesn't pass through it.
+     *
+     * @param _graph the graph to get the branch signs for
+     * @return the branch signs, indexed by branch and then by loop
+     */
+    static int[][] branchSigns( final CircuitGraph _graph ) {
+
+        int[][] result = new int[_graph.getBranchCount()][_graph.getLoops().size()];
+        for( int l = 0; l < _graph.getLoops().size(); l++ ) {
+            CircuitGraph.Loop loop = _graph.getLoops().get( l );
+            for( int i = 0; i < loop.size(); i++ )
+                result[loop.getBranch( i )][l] = loop.getSign( i );
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the number of unknowns mesh analysis of the given graph requires: one for each independent loop, which is the number of branches, less
+     * the number of nodes, plus the number of connected parts.  Throws an <code>IllegalArgumentException</code> if the graph has any port instances.
+     *
+     * @param _graph the graph to count the unknowns for
+     * @return the number of unknowns
+     */
+    public static int unknownCount( final CircuitGraph _graph ) {
+        if( !_graph.getPortInstances().isEmpty() )
+            throw new IllegalArgumentException( "Mesh analysis can't use subcircuit port models" );
+        if( _graph.getReactiveCount() > 0 )
+            throw new IllegalArgumentException( "Mesh analysis can't use reactive components" );
+        if( _graph.getNonlinearCount() > 0 )
+            throw new IllegalArgumentException( "Mesh analysis can't use nonlinear components" );
+        return _graph.getBranchCount() - _graph.getNodeCount() + _graph.getPartCount();
+    }
+
+
+    @Override
+    public Formulation getFormulation() {
+        return Formulation.MESH;
+    }
+
+
+    @Override
+    public double[] getNodeVoltages( final double[] _values ) {
+
+        double[] currents = getBranchCurrents( _values );
+
+        // walk down the spanning forest from each reference node, adding up the voltage drops along the way...
+        double[] result = new double[graph.getNodeCount()];
+        for( int node : graph.getTreeOrder() ) {
+            int bi = graph.getParentBranch( node );
+            if( bi < 0 )
+                continue;
+            CircuitGraph.Branch branch = graph.getBranch( bi );
+            double drop = branch.isVoltageSource() ? branch.getVolts() : currents[bi] * branch.getResistance();   // from node a to node b...
+            result[node] = (branch.getA() == node)
+                    ? result[branch.getB()] + drop
+                    : result[branch.getA()] - drop;
+        }
+        return result;
+    }
+
+
+    @Override
+    public double[] getBranchCurrents( final double[] _values ) {
+
+        checkValues( _values );
+
+        double[] result = new double[graph.getBranchCount()];
+        for( int l = 0; l < _values.length; l++ ) {
+            CircuitGraph.Loop loop = graph.getLoops().get( l );
+            for( int i = 0; i < loop.size(); i++ )
+                result[loop.getBranch( i )] += loop.getSign( i ) * _values[l];
+        }
+        return result;
+    }
+}
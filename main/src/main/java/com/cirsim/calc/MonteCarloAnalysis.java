@@ -0,0 +1,235 @@
+package com.cirsim.calc;
+
+import com.cirsim.components.TolerancedComponent;
+import com.cirsim.values.Tolerance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Explores the effects of component tolerances on a circuit's DC operating point by Monte Carlo analysis: the circuit is solved many times, each
+ * time with the value of every toleranced component (see {@link TolerancedComponent}) sampled at random from within its tolerance band (see
+ * {@link ToleranceDistribution}), and the statistics of each node's voltage are accumulated.  If any limits are set on node voltages, the analysis
+ * also counts the runs in which every limited voltage was within its limits: the <i>yield</i>.
+ * <p>
+ * The runs are independent of each other, so they are divided into batches that are run in parallel on a {@link ForkJoinPool}.  Each worker thread
+ * has its own assembler and factorization (the matrix's pattern never changes from run to run, so each run after a worker's first just refactors
+ * with new values; see {@link SparseLUFactorization}), and each batch samples from its own random number stream, split from a single seeded
+ * generator before any batch starts.  So the results for a given seed are the same no matter how many threads run the batches, or in what order
+ * they finish.  As each batch finishes, the statistics of all the runs finished so far may be streamed to a {@link MonteCarloListener}.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class MonteCarloAnalysis {
+
+    private static final int BATCH_RUNS = 64;   // the number of runs in each batch...
+
+    private final CircuitGraph graph;
+    private final int[] varied;                              // the branches with toleranced components...
+    private final Tolerance[] tolerances;                    // the tolerance of each varied branch's component...
+    private final ToleranceDistribution[] distributions;     // the distribution of each varied branch's component's value...
+    private final List<double[]> limits = new ArrayList<>(); // the node, low limit and high limit of each limit...
+
+
+    /**
+     * Creates a new instance of this class to analyze the circuit with the given graph.  Throws an <code>IllegalArgumentException</code> if the graph
+     * is missing, has no unknowns, or has nonlinear components.
+     *
+     * @param _graph the graph of the circuit to analyze
+     */
+    public MonteCarloAnalysis( final CircuitGraph _graph ) {
+
+        if( _graph == null )
+            throw new IllegalArgumentException( "Circuit graph is missing" );
+
+        if( NodalEquations.unknownCount( _graph ) == 0 )
+            throw new IllegalArgumentException( "Circuit has no unknowns" );
+
+        if( _graph.getNonlinearCount() > 0 )
+            throw new IllegalArgumentException( "Circuit has nonlinear components, which Monte Carlo analysis doesn't support" );
+
+        graph = _graph;
+        List<Integer> branches = new ArrayList<>();
+        for( CircuitGraph.Branch branch : graph.getBranches() )
+            if( branch.getComponent() instanceof TolerancedComponent )
+                branches.add( branch.getIndex() );
+        varied = branches.stream().mapToInt( Integer::intValue ).toArray();
+        tolerances = new Tolerance[varied.length];
+        distributions = new ToleranceDistribution[varied.length];
+        for( int i = 0; i < varied.length; i++ ) {
+            TolerancedComponent component = (TolerancedComponent) graph.getBranch( varied[i] ).getComponent();
+            tolerances[i] = component.getTolerance();
+            distributions[i] = ToleranceDistribution.of( component );
+        }
+    }
+
+
+    /**
+     * Adds a limit on the voltage at the node with the given name: a run passes only if that voltage is within the given limits (inclusive).  Throws
+     * an <code>IllegalArgumentException</code> if there is no node with the given name, or the low limit is greater than the high limit.
+     *
+     * @param _node the name of the node to limit
+     * @param _low the lowest acceptable voltage at the node
+     * @param _high the highest acceptable voltage at the node
+     */
+    public void addLimit( final String _node, final double _low, final double _high ) {
+
+        int node = graph.getNode( _node );
+        if( node < 0 )
+            throw new IllegalArgumentException( "No node named '" + _node + "'" );
+
+        if( !(_low <= _high) )
+            throw new IllegalArgumentException( "Invalid limits: " + _low + " to " + _high );
+
+        limits.add( new double[] { node, _low, _high } );
+    }
+
+
+    /**
+     * Runs the analysis the given number of times, with random numbers from the given seed, in parallel on the common fork/join pool.
+     *
+     * @param _runs the number of runs
+     * @param _seed the seed for the random numbers
+     * @return the results of the analysis
+     */
+    public MonteCarloResult run( final int _runs, final long _seed ) {
+        return run( _runs, _seed, null, ForkJoinPool.commonPool() );
+    }
+
+
+    /**
+     * Runs the analysis the given number of times, with random numbers from the given seed, in parallel on the given fork/join pool, reporting
+     * progress to the given listener (if it isn't null) as each batch of runs finishes.  Throws an <code>IllegalArgumentException</code> if the
+     * number of runs is less than one, the pool is missing, or the circuit's equations are singular.
+     *
+     * @param _runs the number of runs
+     * @param _seed the seed for the random numbers
+     * @param _listener the listener to report progress to, or null for none
+     * @param _pool the fork/join pool to run the batches in
+     * @return the results of the analysis
+     */
+    public MonteCarloResult run( final int _runs, final long _seed, final MonteCarloListener _listener, final ForkJoinPool _pool ) {
+
+        if( _runs < 1 )
+            throw new IllegalArgumentException( "Invalid number of runs: " + _runs );
+
+        if( _pool == null )
+            throw new IllegalArgumentException( "Fork/join pool is missing" );
+
+        // split off a random number stream for each batch, before any batch starts, so that the results don't depend on the scheduling...
+        int batches = (_runs + BATCH_RUNS - 1) / BATCH_RUNS;
+        SplittableRandom seeded = new SplittableRandom( _seed );
+        SplittableRandom[] streams = new SplittableRandom[batches];
+        for( int b = 0; b < batches; b++ )
+            streams[b] = seeded.split();
+
+        Statistics[][] batchNodes = new Statistics[batches][];
+        long[] batchPasses = new long[batches];
+        ConcurrentLinkedQueue<ScaledSolver> idle = new ConcurrentLinkedQueue<>();
+        Progress progress = (_listener == null) ? null : new Progress( _listener );
+
+        try {
+            _pool.submit( () -> IntStream.range( 0, batches ).parallel().forEach( b -> {
+
+                ScaledSolver solver = idle.poll();
+                if( solver == null )
+                    solver = new ScaledSolver( graph );
+                int runs = Math.min( BATCH_RUNS, _runs - b * BATCH_RUNS );
+                batchNodes[b] = runBatch( solver, runs, streams[b], batchPasses, b );
+                idle.add( solver );
+
+                if( progress != null )
+                    progress.add( batchNodes[b], batchPasses[b] );
+            } ) ).get();
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Monte Carlo analysis was interrupted" );
+        }
+        catch( ExecutionException e ) {
+            if( e.getCause() instanceof RuntimeException )
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException( "Monte Carlo analysis failed", e.getCause() );
+        }
+
+        // merge the batches in order, so that the results are exactly reproducible...
+        Statistics[] nodes = newStatistics();
+        long passes = 0;
+        for( int b = 0; b < batches; b++ ) {
+            for( int node = 0; node < nodes.length; node++ )
+                nodes[node].merge( batchNodes[b][node] );
+            passes += batchPasses[b];
+        }
+        return new MonteCarloResult( graph, nodes, passes );
+    }
+
+
+    private Statistics[] newStatistics() {
+        Statistics[] result = new Statistics[graph.getNodeCount()];
+        for( int node = 0; node < result.length; node++ )
+            result[node] = new Statistics();
+        return result;
+    }
+
+
+    /**
+     * Runs a batch of the given number of runs with the given solver, with random numbers from the given stream, and returns the statistics of each
+     * node's voltage (leaving the number of runs that passed in the given batch's entry in the given array).
+     */
+    private Statistics[] runBatch( final ScaledSolver _solver, final int _runs, final SplittableRandom _random, final long[] _passes,
+                                   final int _batch ) {
+
+        Statistics[] result = newStatistics();
+        double[] scales = _solver.getScales();
+        long passes = 0;
+        for( int run = 0; run < _runs; run++ ) {
+
+            // vary the components, and solve...
+            for( int i = 0; i < varied.length; i++ )
+                scales[varied[i]] = distributions[i].sample( tolerances[i], _random );
+            double[] voltages = _solver.getAssembler().getNodeVoltages( _solver.solve() );
+
+            // accumulate the results...
+            for( int node = 0; node < voltages.length; node++ )
+                result[node].add( voltages[node] );
+            boolean pass = true;
+            for( double[] limit : limits ) {
+                double v = voltages[(int) limit[0]];
+                pass &= (v >= limit[1]) && (v <= limit[2]);
+            }
+            if( pass )
+                passes++;
+        }
+        _passes[_batch] = passes;
+        return result;
+    }
+
+
+    /**
+     * Accumulates the results of the batches as they finish, and reports them to a listener.
+     */
+    private class Progress {
+
+        private final MonteCarloListener listener;
+        private final Statistics[] nodes = newStatistics();
+        private long passes;
+
+
+        private Progress( final MonteCarloListener _listener ) {
+            listener = _listener;
+        }
+
+
+        private synchronized void add( final Statistics[] _nodes, final long _passes ) {
+            for( int node = 0; node < nodes.length; node++ )
+                nodes[node].merge( _nodes[node] );
+            passes += _passes;
+            listener.progress( new MonteCarloResult( graph, nodes, passes ) );
+        }
+    }
+}
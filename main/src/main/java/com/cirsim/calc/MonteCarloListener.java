@@ -0,0 +1,20 @@
+package com.cirsim.calc;
+
+/**
+ * Implemented by classes that want to follow the progress of a {@link MonteCarloAnalysis} as its runs complete.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+@FunctionalInterface
+public interface MonteCarloListener {
+
+
+    /**
+     * Called each time a batch of runs completes, with the results of all the runs completed so far.  Calls are made from the analysis's worker
+     * threads, but never more than one at a time, so implementations needn't be threadsafe; they should return quickly, though, as the other workers
+     * wait for them to finish before reporting their own progress.
+     *
+     * @param _soFar the results of all the runs completed so far
+     */
+    void progress( final MonteCarloResult _soFar );
+}
@@ -0,0 +1,76 @@
+package com.cirsim.calc;
+
+/**
+ * Instances of this class hold the results of some or all of the runs of a {@link MonteCarloAnalysis}: the statistics of the voltage at each node
+ * of the circuit's graph, and the number of runs that were within all the analysis's limits.  Instances are immutable.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class MonteCarloResult {
+
+    private final CircuitGraph graph;
+    private final Statistics[] nodes;
+    private final long runs;
+    private final long passes;
+
+
+    MonteCarloResult( final CircuitGraph _graph, final Statistics[] _nodes, final long _passes ) {
+        graph = _graph;
+        nodes = new Statistics[_nodes.length];
+        for( int i = 0; i < nodes.length; i++ )
+            nodes[i] = _nodes[i].copy();
+        runs = (nodes.length == 0) ? 0 : nodes[0].getCount();
+        passes = _passes;
+    }
+
+
+    public long getRuns() {
+        return runs;
+    }
+
+
+    /**
+     * Returns a copy of the statistics of the voltage at the given node of the circuit's graph.
+     *
+     * @param _node the index of the node
+     * @return the statistics of the voltage at the given node
+     */
+    public Statistics getStatistics( final int _node ) {
+        return nodes[_node].copy();
+    }
+
+
+    /**
+     * Returns a copy of the statistics of the voltage at the node with the given name (see {@link CircuitGraph#getNode(String)}).  Throws an
+     * <code>IllegalArgumentException</code> if there is no node with the given name.
+     *
+     * @param _node the name of the node
+     * @return the statistics of the voltage at the given node
+     */
+    public Statistics getStatistics( final String _node ) {
+        int node = graph.getNode( _node );
+        if( node < 0 )
+            throw new IllegalArgumentException( "No node named '" + _node + "'" );
+        return getStatistics( node );
+    }
+
+
+    /**
+     * Returns the number of runs in which every limited node's voltage was within its limits.
+     *
+     * @return the number of runs within all limits
+     */
+    public long getPasses() {
+        return passes;
+    }
+
+
+    /**
+     * Returns the fraction of runs in which every limited node's voltage was within its limits, or zero if there were no runs.
+     *
+     * @return the yield
+     */
+    public double getYield() {
+        return (runs == 0) ? 0 : (double) passes / runs;
+    }
+}
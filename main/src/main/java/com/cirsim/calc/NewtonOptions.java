@@ -0,0 +1,81 @@
+package com.cirsim.calc;
+
+/**
+ * Instances of this class hold the options controlling how a {@link NewtonSolver} goes about solving a nonlinear circuit.  Instances are immutable.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class NewtonOptions {
+
+    /**
+     * The default options: modified Newton, up to 100 iterations, a relative tolerance of one part per million and an absolute tolerance of a
+     * nanovolt (or nanoamp), and no nonlinear component's voltage changing by more than half a volt in one iteration.
+     */
+    public static final NewtonOptions DEFAULT = new NewtonOptions( true, 100, 1e-6, 1e-9, 0.5 );
+
+
+    private final boolean modified;
+    private final int maxIterations;
+    private final double relativeTolerance;
+    private final double absoluteTolerance;
+    private final double maxStep;
+
+
+    /**
+     * Creates a new instance of this class with the given options.  Throws an <code>IllegalArgumentException</code> if the maximum number of
+     * iterations isn't positive, or either tolerance or the maximum step isn't positive.
+     *
+     * @param _modified true to reuse the Jacobian's factorization from iteration to iteration until convergence slows (modified Newton), or false to
+     *                  refactor it on every iteration (full Newton)
+     * @param _maxIterations the most iterations to try before giving up
+     * @param _relativeTolerance the largest acceptable change in any unknown on the last iteration, relative to the magnitude of that unknown
+     * @param _absoluteTolerance the largest acceptable change in an unknown whose magnitude is near zero
+     * @param _maxStep the largest change in the voltage across any nonlinear component in one iteration; larger steps are damped to this
+     */
+    public NewtonOptions( final boolean _modified, final int _maxIterations, final double _relativeTolerance, final double _absoluteTolerance,
+                          final double _maxStep ) {
+
+        if( _maxIterations < 1 )
+            throw new IllegalArgumentException( "Invalid maximum iterations: " + _maxIterations );
+
+        if( !(_relativeTolerance > 0) )
+            throw new IllegalArgumentException( "Invalid relative tolerance: " + _relativeTolerance );
+
+        if( !(_absoluteTolerance > 0) )
+            throw new IllegalArgumentException( "Invalid absolute tolerance: " + _absoluteTolerance );
+
+        if( !(_maxStep > 0) )
+            throw new IllegalArgumentException( "Invalid maximum step: " + _maxStep );
+
+        modified = _modified;
+        maxIterations = _maxIterations;
+        relativeTolerance = _relativeTolerance;
+        absoluteTolerance = _absoluteTolerance;
+        maxStep = _maxStep;
+    }
+
+
+    public boolean isModified() {
+        return modified;
+    }
+
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+
+    public double getRelativeTolerance() {
+        return relativeTolerance;
+    }
+
+
+    public double getAbsoluteTolerance() {
+        return absoluteTolerance;
+    }
+
+
+    public double getMaxStep() {
+        return maxStep;
+    }
+}
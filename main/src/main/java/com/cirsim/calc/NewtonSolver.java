@@ -0,0 +1,243 @@
+package com.cirsim.calc;
+
+import com.cirsim.matrices.TreeMatrix;
+
+/**
+ * Solves a circuit's DC equations by Newton's method, which is needed once the circuit has nonlinear components (see
+ * {@link com.cirsim.components.NonlinearComponent}).  On each iteration the equations are assembled with every nonlinear component linearized about
+ * the latest solution x (see {@link MNAAssembler#assemble(double[], double[])}), giving the Jacobian J and the constants b there; the residual
+ * r = b - Jx is how far x is from satisfying the equations, and the next solution is x + J<sup>-1</sup>r.  Iteration stops when no unknown changes by
+ * more than the tolerance (see {@link NewtonOptions}).
+ * <p>
+ * Three things keep this fast and robust:
+ * <ul>
+ *     <li><i>Damping</i>: far from the solution, a Newton step can fling an exponential device's voltage wildly past it.  So if a step would change
+ *     the voltage across any nonlinear component by more than the maximum step, the whole step is scaled down until it doesn't.</li>
+ *     <li><i>Modified Newton</i>: factoring the Jacobian is by far the most expensive part of an iteration, and the Jacobian changes less and less as
+ *     the iterates converge.  So (unless the options say otherwise) the factorization is kept and reused for iteration after iteration, so long as
+ *     each step is under a quarter the size of the one before; when convergence slows, or after a damped step, the next iteration refactors.  The
+ *     factorization is even kept from one solution to the next, which suits sweeps, where each solution starts from the last.  Reusing the Jacobian
+ *     never changes the solution (only the residual decides that), just the path to it.</li>
+ *     <li><i>The linear fast path</i>: a circuit with no nonlinear components needs no iteration at all, just one assembly, factorization, and
+ *     solution.</li>
+ * </ul>
+ * Refactoring always reuses the pivot order and fill-in of the first factorization (see {@link SparseLUFactorization}).  Instances of this class are
+ * mutable (they keep the factorization and counts), and are not threadsafe.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class NewtonSolver {
+
+    private static final double SLOW_CONTRACTION = 0.25;   // the largest ratio of successive steps at which a stale Jacobian is still kept...
+
+    private final CircuitGraph graph;
+    private final NewtonOptions options;
+    private final MNAAssembler assembler;
+    private final boolean linear;
+    private final int[][] nonlinearRows;   // the rows of each nonlinear component's terminal voltages...
+
+    private SparseLUFactorization factorization;
+    private boolean stale;                 // true if the factorization isn't of the latest Jacobian...
+    private int iterations;
+    private int analyses;
+    private int factorizations;
+
+
+    /**
+     * Creates a new instance of this class to solve the circuit with the given graph, with the given options.  Throws an
+     * <code>IllegalArgumentException</code> if the graph or options are missing, or the graph has no unknowns.
+     *
+     * @param _graph the graph of the circuit to solve
+     * @param _options the options controlling the solution
+     */
+    public NewtonSolver( final CircuitGraph _graph, final NewtonOptions _options ) {
+
+        if( _graph == null )
+            throw new IllegalArgumentException( "Circuit graph is missing" );
+
+        if( _options == null )
+            throw new IllegalArgumentException( "Options are missing" );
+
+        graph = _graph;
+        options = _options;
+        assembler = new MNAAssembler( graph );
+        linear = (graph.getNonlinearCount() == 0);
+        nonlinearRows = graph.getBranches().stream().filter( CircuitGraph.Branch::isNonlinear )
+                .map( branch -> assembler.getBranchRows( branch.getIndex() ) ).toArray( int[][]::new );
+    }
+
+
+    /**
+     * Solves the circuit at its nominal values, starting from zero volts, and returns the solution.  Throws an <code>IllegalArgumentException</code>
+     * if the equations are singular, or an <code>IllegalStateException</code> if the iterations don't converge.
+     *
+     * @return the solution to the circuit's equations
+     */
+    public double[] solve() {
+        return solve( null, null );
+    }
+
+
+    /**
+     * Solves the circuit with its toleranced components' values scaled by the given factors (or at their nominal values, if the scales are null),
+     * starting from the given guess (or from zero volts, if the guess is null), and returns the solution.  A guess close to the solution (such as the
+     * solution at a neighboring point of a sweep) can save many iterations.  Throws an <code>IllegalArgumentException</code> if the guess or scales
+     * are the wrong length or the equations are singular, or an <code>IllegalStateException</code> if the iterations don't converge.
+     *
+     * @param _guess the solution to start from, or null for zero volts
+     * @param _scales the factor to scale each toleranced component's value by, indexed by branch, or null for nominal values
+     * @return the solution to the circuit's equations
+     */
+    public double[] solve( final double[] _guess, final double[] _scales ) {
+        return solve( _guess, _scales, null );
+    }
+
+
+    /**
+     * Solves the circuit with the given values for its toleranced components, as {@link #solve(double[], double[])} does with scaled values (see
+     * {@link MNAAssembler#assembleValues(double[], double[])}).  Throws an <code>IllegalArgumentException</code> if the guess or component values are
+     * missing or the wrong length, or the equations are singular, or an <code>IllegalStateException</code> if the iterations don't converge.
+     *
+     * @param _guess the solution to start from, or null for zero volts
+     * @param _componentValues the value of each toleranced component, indexed by branch
+     * @return the solution to the circuit's equations
+     */
+    public double[] solveValues( final double[] _guess, final double[] _componentValues ) {
+
+        if( _componentValues == null )
+            throw new IllegalArgumentException( "Component values are missing" );
+
+        return solve( _guess, null, _componentValues );
+    }
+
+
+    private double[] solve( final double[] _guess, final double[] _scales, final double[] _componentValues ) {
+
+        if( (_guess != null) && (_guess.length != assembler.size()) )
+            throw new IllegalArgumentException( "Guess doesn't have one entry per unknown" );
+
+        // with no nonlinear components, one solution is all it takes...
+        if( linear ) {
+            assemble( _scales, _componentValues, null );
+            factor( assembler.getMatrix() );
+            iterations++;
+            return factorization.solve( assembler.getConstants() );
+        }
+
+        double[] x = (_guess == null) ? new double[assembler.size()] : _guess.clone();
+        double previousStep = Double.POSITIVE_INFINITY;
+        for( int i = 0; i < options.getMaxIterations(); i++ ) {
+
+            iterations++;
+            assemble( _scales, _componentValues, x );
+            TreeMatrix matrix = assembler.getMatrix();
+            if( (factorization == null) || stale || !options.isModified() )
+                factor( matrix );
+
+            // the residual of the linearized equations at x, and the step that (for the factored Jacobian) removes it...
+            double[] residual = matrix.multiply( x );
+            double[] constants = assembler.getConstants();
+            for( int r = 0; r < residual.length; r++ )
+                residual[r] = constants[r] - residual[r];
+            double[] step = factorization.solve( residual );
+
+            // damp the step if it would move any nonlinear component's voltage too far...
+            double largest = 0;
+            for( int[] rows : nonlinearRows )
+                largest = Math.max( largest, Math.abs( value( step, rows[0] ) - value( step, rows[1] ) ) );
+            boolean damped = largest > options.getMaxStep();
+            double damping = damped ? options.getMaxStep() / largest : 1;
+
+            boolean converged = !damped;
+            double size = 0;
+            for( int r = 0; r < x.length; r++ ) {
+                double delta = damping * step[r];
+                x[r] += delta;
+                size = Math.max( size, Math.abs( delta ) );
+                if( Math.abs( delta ) > options.getRelativeTolerance() * Math.abs( x[r] ) + options.getAbsoluteTolerance() )
+                    converged = false;
+            }
+            if( converged )
+                return x;
+
+            // keep the factorization only while the steps are shrinking quickly...
+            stale = damped || !(size <= SLOW_CONTRACTION * previousStep);
+            previousStep = size;
+        }
+        throw new IllegalStateException( "Newton iterations didn't converge in " + options.getMaxIterations() + " iterations" );
+    }
+
+
+    /**
+     * Assembles the equations with the given component values, or if there are none, with the given scale factors.
+     */
+    private void assemble( final double[] _scales, final double[] _componentValues, final double[] _values ) {
+        if( _componentValues != null )
+            assembler.assembleValues( _componentValues, _values );
+        else
+            assembler.assemble( _scales, _values );
+    }
+
+
+    /**
+     * Factors the given matrix, refactoring with the existing pivot order if there is one.
+     */
+    private void factor( final TreeMatrix _matrix ) {
+        if( (factorization == null) || !factorization.refactor( _matrix ) ) {
+            factorization = new SparseLUFactorization( _matrix );
+            analyses++;
+        }
+        factorizations++;
+        stale = false;
+    }
+
+
+    private static double value( final double[] _values, final int _row ) {
+        return (_row < 0) ? 0 : _values[_row];
+    }
+
+
+    /**
+     * Returns the total number of iterations (including the single solution of the linear fast path) made by all solutions so far.
+     *
+     * @return the total number of iterations
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+
+    /**
+     * Returns the total number of times a matrix was analyzed (had a pivot order chosen from scratch) by all solutions so far.
+     *
+     * @return the total number of analyses
+     */
+    public int getAnalyses() {
+        return analyses;
+    }
+
+
+    /**
+     * Returns the total number of times a matrix was factored by all solutions so far.
+     *
+     * @return the total number of factorizations
+     */
+    public int getFactorizations() {
+        return factorizations;
+    }
+
+
+    /**
+     * Returns the assembler of the circuit's equations, which describes the unknowns in the solutions.
+     *
+     * @return the assembler of the circuit's equations
+     */
+    public MNAAssembler getAssembler() {
+        return assembler;
+    }
+
+
+    public CircuitGraph getGraph() {
+        return graph;
+    }
+}
@@ -0,0 +1,249 @@
+package com.cirsim.calc;
+
+import com.cirsim.components.Component;
+import com.cirsim.components.NonlinearComponent;
+import com.cirsim.components.ReactiveComponent;
+import com.cirsim.components.TolerancedComponent;
+
+import java.util.Arrays;
+
+/**
+ * The equations of a circuit formulated by (modified) nodal analysis.  There is one equation for each node that isn't a reference node, stating
+ * (by Kirchoff's current law) that the currents leaving the node sum to zero, with that node's voltage as the corresponding unknown.  Each
+ * resistor contributes its conductance between the voltages at its two nodes.  Voltage sources have no conductance to contribute, so each adds
+ * the current through it as an extra unknown, along with an extra equation fixing the difference between the voltages at its two nodes.  Other
+ * components stamp themselves in whatever way suits them (see {@link com.cirsim.components.Component#stamp(StampTarget, int[])}), adding as
+ * many branch unknowns as they need; here, where everything is at DC, capacitors are open circuits and inductors short circuits.  Each port
+ * instance (a subcircuit reduced to its port model) contributes its port admittances between the voltages at its ports, and its port currents to
+ * the constants.
+ * <p>
+ * These equations are linear, so they can't represent a circuit with nonlinear components (such as diodes), whose operating point must be found
+ * iteratively; such circuits are solved by {@link NewtonSolver} instead.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class NodalEquations extends Equations {
+
+    private final int[] nodeColumns;      // the column of each node's voltage, or -1 for reference nodes...
+    private final int[] sourceColumns;    // the column of each branch's first branch unknown, or -1 for branches without any...
+
+
+    /**
+     * Creates a new instance of this class with the nodal equations for the given circuit graph.  Throws an <code>IllegalArgumentException</code> if
+     * the graph has any nonlinear components.
+     *
+     * @param _graph the graph of the circuit to formulate equations for
+     */
+    public NodalEquations( final CircuitGraph _graph ) {
+        super( _graph, unknownCount( _graph ) );
+
+        if( graph.getNonlinearCount() > 0 )
+            throw new IllegalArgumentException( "Nodal equations can't solve nonlinear components; use a NewtonSolver" );
+
+        // assign the columns: the node voltages first, then the branch unknowns (such as voltage source currents)...
+        nodeColumns = new int[graph.getNodeCount()];
+        sourceColumns = new int[graph.getBranchCount()];
+        Arrays.fill( sourceColumns, -1 );
+        int column = 0;
+        for( int node = 0; node < nodeColumns.length; node++ ) {
+            if( graph.isReference( node ) )
+                nodeColumns[node] = -1;
+            else {
+                nodeColumns[node] = column;
+                domains[column] = graph.getNodeDomain( node );
+                unknowns[column++] = "V(" + graph.getNodeName( node ) + ")";
+            }
+        }
+        for( CircuitGraph.Branch branch : graph.getBranches() )
+            for( int k = 0; k < branch.getComponent().getBranchCount(); k++ ) {
+                if( k == 0 )
+                    sourceColumns[branch.getIndex()] = column;
+                domains[column] = branch.getDomain();
+                unknowns[column++] = "I(" + branch.getLabel() + ((k == 0) ? "" : "#" + k) + ")";
+            }
+
+        stamp( graph, augmented, nodeColumns, sourceColumns );
+    }
+
+
+    /**
+     * Stamps every branch and port instance of the given graph into the given augmented matrix, with the given columns for the node voltages (-1 for
+     * nodes that aren't unknowns) and branch unknowns.  This is shared with {@link PortModel}, which stamps every node, including the
+     * reference nodes.
+     *
+     * @param _graph the graph to stamp
+     * @param _augmented the augmented matrix to stamp into
+     * @param _nodeColumns the column of each node's voltage, or -1 for nodes that aren't unknowns
+     * @param _sourceColumns the column of each branch's first branch unknown (if it has any), indexed by branch
+     */
+    static void stamp( final CircuitGraph _graph, final double[][] _augmented, final int[] _nodeColumns, final int[] _sourceColumns ) {
+        stamp( _graph, new AugmentedTarget( _augmented ), _nodeColumns, branchRows( _graph, _nodeColumns, _sourceColumns ) );
+    }
+
+
+    /**
+     * Returns the rows each branch of the given graph stamps into (see {@link com.cirsim.components.Component#stamp(StampTarget, int[])}), given
+     * the columns of the node voltages and of the branch unknowns.
+     *
+     * @param _graph the graph to get the branch rows for
+     * @param _nodeColumns the column of each node's voltage, or -1 for nodes that aren't unknowns
+     * @param _sourceColumns the column of each branch's first branch unknown (if it has any), indexed by branch
+     * @return the rows each branch stamps into, indexed by branch
+     */
+    static int[][] branchRows( final CircuitGraph _graph, final int[] _nodeColumns, final int[] _sourceColumns ) {
+        int[][] result = new int[_graph.getBranchCount()][];
+        for( CircuitGraph.Branch branch : _graph.getBranches() ) {
+            int a = _nodeColumns[branch.getA()];
+            int b = _nodeColumns[branch.getB()];
+            int[] rows = new int[2 + branch.getComponent().getBranchCount()];
+            rows[0] = a;
+            rows[1] = b;
+            for( int k = 2; k < rows.length; k++ )
+                rows[k] = _sourceColumns[branch.getIndex()] + k - 2;
+            result[branch.getIndex()] = rows;
+        }
+        return result;
+    }
+
+
+    /**
+     * Stamps every branch (through its component's own stamp) and port instance of the given graph into the given target, with the given rows for
+     * each branch, and the given columns for the node voltages (-1 for nodes that aren't unknowns).
+     *
+     * @param _graph the graph to stamp
+     * @param _target the target to stamp into
+     * @param _nodeColumns the column of each node's voltage, or -1 for nodes that aren't unknowns
+     * @param _branchRows the rows each branch stamps into, indexed by branch
+     */
+    static void stamp( final CircuitGraph _graph, final StampTarget _target, final int[] _nodeColumns, final int[][] _branchRows ) {
+        stamp( _graph, _target, _nodeColumns, _branchRows, 0, null, null, null );
+    }
+
+
+    /**
+     * Stamps every branch and port instance of the given graph into the given target, as {@link #stamp(CircuitGraph, StampTarget, int[], int[][])}
+     * does, except that each reactive component stamps its companion model with the given coefficient and its own history (see
+     * {@link ReactiveComponent#stamp(StampTarget, int[], double, double)}), and each toleranced component stamps with its own given value (see
+     * {@link TolerancedComponent#stampValue(StampTarget, int[], double)}), and each nonlinear component stamps its linearization about the given
+     * solution (see {@link NonlinearComponent#stamp(StampTarget, int[], double[])}).  If the histories are null, reactive components stamp their DC
+     * models; if the component values are null, toleranced components stamp their nominal values; if the solution is null, nonlinear components
+     * stamp their linearizations about zero volts.
+     *
+     * @param _graph the graph to stamp
+     * @param _target the target to stamp into
+     * @param _nodeColumns the column of each node's voltage, or -1 for nodes that aren't unknowns
+     * @param _branchRows the rows each branch stamps into, indexed by branch
+     * @param _coefficient the coefficient of each reactive component's new state in its derivative
+     * @param _histories the history term of each reactive component's derivative, indexed by branch, or null for DC
+     * @param _componentValues the value of each toleranced component, indexed by branch, or null for nominal values
+     * @param _values the solution to linearize nonlinear components about, or null for zero volts
+     */
+    static void stamp( final CircuitGraph _graph, final StampTarget _target, final int[] _nodeColumns, final int[][] _branchRows,
+                       final double _coefficient, final double[] _histories, final double[] _componentValues, final double[] _values ) {
+
+        for( CircuitGraph.Branch branch : _graph.getBranches() ) {
+            Component component = branch.getComponent();
+            int[] rows = _branchRows[branch.getIndex()];
+            if( (_histories != null) && (component instanceof ReactiveComponent) )
+                ((ReactiveComponent) component).stamp( _target, rows, _coefficient, _histories[branch.getIndex()] );
+            else if( (_componentValues != null) && (component instanceof TolerancedComponent) )
+                ((TolerancedComponent) component).stampValue( _target, rows, _componentValues[branch.getIndex()] );
+            else if( component instanceof NonlinearComponent )
+                ((NonlinearComponent) component).stamp( _target, rows, _values );
+            else
+                component.stamp( _target, rows );
+        }
+
+        // each port instance draws the currents its model says it does, at the voltages on its ports...
+        for( CircuitGraph.PortInstance instance : _graph.getPortInstances() ) {
+            PortModel model = instance.getModel();
+            for( int i = 0; i < model.getPortCount(); i++ ) {
+                int row = _nodeColumns[instance.getNode( i )];
+                if( row < 0 )
+                    continue;
+                for( int j = 0; j < model.getPortCount(); j++ ) {
+                    int col = _nodeColumns[instance.getNode( j )];
+                    if( col >= 0 )
+                        _target.add( row, col, model.getAdmittance( i, j ) );
+                }
+                _target.addConstant( row, -model.getCurrent( i ) );
+            }
+        }
+    }
+
+
+    /**
+     * Returns the number of unknowns nodal analysis of the given graph requires: one for each node that isn't a reference node, and one for each
+     * branch unknown (such as the current through a voltage source).
+     *
+     * @param _graph the graph to count the unknowns for
+     * @return the number of unknowns
+     */
+    public static int unknownCount( final CircuitGraph _graph ) {
+        return _graph.getNodeCount() - _graph.getPartCount() + _graph.getBranchUnknownCount();
+    }
+
+
+    @Override
+    public Formulation getFormulation() {
+        return Formulation.NODAL;
+    }
+
+
+    @Override
+    public double[] getNodeVoltages( final double[] _values ) {
+
+        checkValues( _values );
+
+        double[] result = new double[nodeColumns.length];
+        for( int node = 0; node < result.length; node++ )
+            result[node] = (nodeColumns[node] < 0) ? 0 : _values[nodeColumns[node]];
+        return result;
+    }
+
+
+    @Override
+    public double[] getBranchCurrents( final double[] _values ) {
+
+        double[] voltages = getNodeVoltages( _values );
+        double[] result = new double[graph.getBranchCount()];
+        for( CircuitGraph.Branch branch : graph.getBranches() ) {
+            int i = branch.getIndex();
+            if( sourceColumns[i] >= 0 )
+                result[i] = _values[sourceColumns[i]];
+            else if( branch.getResistance() > 0 )
+                result[i] = (voltages[branch.getA()] - voltages[branch.getB()]) / branch.getResistance();
+            else
+                result[i] = 0;   // a capacitor, at DC...
+        }
+        return result;
+    }
+
+
+    /**
+     * A stamp target that stamps into a dense augmented matrix.
+     */
+    private static class AugmentedTarget implements StampTarget {
+
+        private final double[][] augmented;
+        private final int constants;
+
+
+        private AugmentedTarget( final double[][] _augmented ) {
+            augmented = _augmented;
+            constants = _augmented.length;
+        }
+
+
+        @Override
+        public void add( final int _row, final int _col, final double _value ) {
+            augmented[_row][_col] += _value;
+        }
+
+
+        @Override
+        public void addConstant( final int _row, final double _value ) {
+            augmented[_row][constants] += _value;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.cirsim.calc;
+
+import com.cirsim.Circuit;
+
+import java.util.Arrays;
+
+/**
+ * Instances of this class represent a linear, resistive circuit, as seen from its exported nets (its <i>ports</i>), by its Norton equivalent: the
+ * currents drawn into the circuit at its ports are I = YV + J, where V is the voltages on its ports, Y is the port admittance matrix, and J is the
+ * currents drawn with all the ports held at zero volts.  However many components and interior nets the circuit has, its model has just
+ * ports<sup>2</sup> + ports values, and may be stamped into an enclosing circuit's nodal equations in time proportional to that.
+ * <p>
+ * The model is computed by writing the nodal equations for every net in the circuit (with no reference node, since the circuit's voltages are
+ * relative to whatever it's connected to) with the ports ordered first, and then taking the Schur complement of the interior block: with the
+ * equations partitioned as
+ * <pre>
+ *     | App Api | | Vp |   | bp + I |
+ *     | Aip Aii | | xi | = | bi     |
+ * </pre>
+ * Y = App - Api Aii<sup>-1</sup> Aip, and J = Api Aii<sup>-1</sup> bi - bp.  Not every circuit has a Norton equivalent: if the interior block is
+ * singular (as when a voltage source is connected directly between two ports, so that the port voltages are constrained rather than free), the
+ * circuit can't be reduced.
+ * <p>
+ * Instances of this class are immutable.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class PortModel {
+
+    private final String[] ports;
+    private final double[][] admittance;
+    private final double[] currents;
+
+
+    /**
+     * Creates a new instance of this class with the given ports, port admittance matrix, and port currents.  Throws an
+     * <code>IllegalArgumentException</code> if any of these are missing, or if their sizes don't agree.
+     *
+     * @param _ports the names of the ports (the exported nets)
+     * @param _admittance the port admittance matrix (Y)
+     * @param _currents the currents drawn at the ports when they're all at zero volts (J)
+     */
+    public PortModel( final String[] _ports, final double[][] _admittance, final double[] _currents ) {
+
+        if( (_ports == null) || (_admittance == null) || (_currents == null) )
+            throw new IllegalArgumentException( "Ports, admittance, or currents missing" );
+
+        int p = _ports.length;
+        if( (_admittance.length != p) || (_currents.length != p) )
+            throw new IllegalArgumentException( "Admittance or currents don't match the " + p + " ports" );
+
+        ports = _ports.clone();
+        admittance = new double[p][];
+        for( int i = 0; i < p; i++ ) {
+            if( (_admittance[i] == null) || (_admittance[i].length != p) )
+                throw new IllegalArgumentException( "Admittance matrix is not square at row " + i );
+            admittance[i] = _admittance[i].clone();
+        }
+        currents = _currents.clone();
+    }
+
+
+    /**
+     * Returns the port model of the given circuit, with its ports being its exported nets (in the order they were exported).  Any subcircuit
+     * instances within the circuit are themselves reduced through the given cache, if there is one.  Throws an
+     * <code>IllegalArgumentException</code> if the circuit can't be analyzed (see {@link CircuitGraph}), if it has nonlinear or reactive
+     * components (a DC model of which would be wrong at any other frequency, or in any transient), or if it has no Norton equivalent.
+     *
+     * @param _circuit the circuit to reduce
+     * @param _cache the cache to reduce any subcircuit instances through, or null to flatten them
+     * @return the port model of the given circuit
+     */
+    public static PortModel reduce( final Circuit _circuit, final PortModelCache _cache ) {
+
+        CircuitGraph graph = new CircuitGraph( _circuit, _cache );
+        if( graph.getNonlinearCount() > 0 )
+            throw new IllegalArgumentException( "Circuit has nonlinear components, so it has no port model" );
+        if( graph.getReactiveCount() > 0 )
+            throw new IllegalArgumentException( "Circuit has reactive components, so its DC port model would lose its dynamics" );
+        String[] ports = _circuit.getExports().toArray( new String[0] );
+        int p = ports.length;
+        int n = graph.getNodeCount();
+
+        // assign the columns: the ports first, then the interior nodes, then the voltage source currents...
+        int[] nodeColumns = new int[n];
+        Arrays.fill( nodeColumns, -1 );
+        for( int i = 0; i < p; i++ ) {
+            int node = graph.getNode( ports[i] );
+            if( (node < 0) || (nodeColumns[node] >= 0) )
+                throw new IllegalArgumentException( "Exported net '" + ports[i] + "' is not a distinct port" );
+            nodeColumns[node] = i;
+        }
+        int column = p;
+        for( int node = 0; node < n; node++ )
+            if( nodeColumns[node] < 0 )
+                nodeColumns[node] = column++;
+        int[] sourceColumns = new int[graph.getBranchCount()];
+        for( CircuitGraph.Branch branch : graph.getBranches() ) {
+            int count = branch.getComponent().getBranchCount();
+            sourceColumns[branch.getIndex()] = (count > 0) ? column : -1;
+            column += count;
+        }
+
+        int size = column;
+        double[][] augmented = new double[size][size + 1];
+        NodalEquations.stamp( graph, augmented, nodeColumns, sourceColumns );
+
+        // start with App and -bp, then eliminate the interior (if there is any)...
+        double[][] y = new double[p][p];
+        double[] j = new double[p];
+        for( int r = 0; r < p; r++ ) {
+            System.arraycopy( augmented[r], 0, y[r], 0, p );
+            j[r] = -augmented[r][size];
+        }
+
+        int q = size - p;
+        if( q > 0 ) {
+            double[][] interior = new double[q][q];
+            for( int r = 0; r < q; r++ )
+                System.arraycopy( augmented[p + r], p, interior[r], 0, q );
+            LUFactorization lu;
+            try {
+                lu = new LUFactorization( interior );
+            }
+            catch( IllegalArgumentException e ) {
+                throw new IllegalArgumentException( "Circuit " + _circuit.getElementPath() + " has no Norton equivalent at its ports", e );
+            }
+
+            // one solve per port column of Aip, plus one for bi...
+            double[] rhs = new double[q];
+            for( int c = 0; c <= p; c++ ) {
+                int source = (c < p) ? c : size;
+                for( int r = 0; r < q; r++ )
+                    rhs[r] = augmented[p + r][source];
+                double[] x = lu.solve( rhs );
+                for( int r = 0; r < p; r++ ) {
+                    double sum = 0;
+                    for( int k = 0; k < q; k++ )
+                        sum += augmented[r][p + k] * x[k];
+                    if( c < p )
+                        y[r][c] -= sum;
+                    else
+                        j[r] += sum;
+                }
+            }
+        }
+        return new PortModel( ports, y, j );
+    }
+
+
+    public int getPortCount() {
+        return ports.length;
+    }
+
+
+    /**
+     * Returns the name of the given port: the name of the exported net, within the reduced circuit.
+     *
+     * @param _port the index of the port
+     * @return the name of the given port
+     */
+    public String getPort( final int _port ) {
+        return ports[_port];
+    }
+
+
+    /**
+     * Returns the given entry of the port admittance matrix: the change in the current drawn at port i per volt of change at port j.
+     *
+     * @param _i the port the current is drawn at
+     * @param _j the port the voltage is changed at
+     * @return the given entry of the port admittance matrix
+     */
+    public double getAdmittance( final int _i, final int _j ) {
+        return admittance[_i][_j];
+    }
+
+
+    /**
+     * Returns the current drawn into the circuit at the given port, when all the ports are at zero volts.
+     *
+     * @param _port the index of the port
+     * @return the current drawn at the given port with all ports at zero volts
+     */
+    public double getCurrent( final int _port ) {
+        return currents[_port];
+    }
+
+
+    /**
+     * Returns the currents drawn into the circuit at each port, given the voltages on each port.
+     *
+     * @param _voltages the voltage on each port
+     * @return the current drawn at each port
+     */
+    public double[] getCurrents( final double[] _voltages ) {
+
+        if( (_voltages == null) || (_voltages.length != ports.length) )
+            throw new IllegalArgumentException( "Voltages missing or of wrong length" );
+
+        double[] result = currents.clone();
+        for( int i = 0; i < ports.length; i++ )
+            for( int k = 0; k < ports.length; k++ )
+                result[i] += admittance[i][k] * _voltages[k];
+        return result;
+    }
+}
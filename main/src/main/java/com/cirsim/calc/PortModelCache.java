@@ -0,0 +1,99 @@
+package com.cirsim.calc;
+
+import com.cirsim.Circuit;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A cache of subcircuit port models (see {@link PortModel}), keyed by the fully qualified element path the subcircuit was loaded from (such as
+ * "com.slightlyloony.sim.test.utility.AlkalineBattery").  Every instance of an element is loaded from the same source, so they all share one port
+ * model: the first instance pays for the reduction, and every other instance costs just a lookup, plus the time to stamp ports<sup>2</sup> values
+ * into the enclosing circuit's equations.  Elements that can't be reduced are cached too, so that they aren't retried for every instance.
+ * <p>
+ * The cache doesn't know when an element's source changes; call {@link #invalidate(String)} or {@link #clear()} after reloading changed sources.
+ * <p>
+ * Instances of this class are threadsafe.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class PortModelCache {
+
+    private final ConcurrentHashMap<String, Optional<PortModel>> models = new ConcurrentHashMap<>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+
+    /**
+     * Returns the port model for the given subcircuit instance, reducing it (and caching the result) if its element hasn't been seen before, or
+     * null if the element can't be reduced.
+     *
+     * @param _circuit the subcircuit instance to get the port model for
+     * @return the port model for the given subcircuit, or null if it can't be reduced
+     */
+    public PortModel get( final Circuit _circuit ) {
+
+        if( _circuit == null )
+            throw new IllegalArgumentException( "Circuit is missing" );
+
+        String key = _circuit.getElementPath();
+        Optional<PortModel> cached = models.get( key );
+        if( cached != null ) {
+            hits.incrementAndGet();
+            return cached.orElse( null );
+        }
+        misses.incrementAndGet();
+
+        // reducing may recursively reduce nested subcircuits through this cache, so we can't do it inside computeIfAbsent()...
+        PortModel model;
+        try {
+            model = PortModel.reduce( _circuit, this );
+        }
+        catch( IllegalArgumentException e ) {
+            model = null;
+        }
+        Optional<PortModel> prior = models.putIfAbsent( key, Optional.ofNullable( model ) );
+        return (prior != null) ? prior.orElse( null ) : model;
+    }
+
+
+    /**
+     * Removes the port model for the element with the given fully qualified path, if there is one.
+     *
+     * @param _elementPath the fully qualified path of the element to forget
+     */
+    public void invalidate( final String _elementPath ) {
+        models.remove( _elementPath );
+    }
+
+
+    public void clear() {
+        models.clear();
+    }
+
+
+    public int size() {
+        return models.size();
+    }
+
+
+    /**
+     * Returns the number of lookups that found an element's port model (or its irreducibility) already cached.
+     *
+     * @return the number of cache hits
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+
+    /**
+     * Returns the number of lookups that had to reduce an element.
+     *
+     * @return the number of cache misses
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+}
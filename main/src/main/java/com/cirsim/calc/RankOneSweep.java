@@ -0,0 +1,86 @@
+package com.cirsim.calc;
+
+/**
+ * Instances of this class efficiently compute the solution of Ax = b as a single rank-one update to A (see {@link RankOneUpdate}) is swept through
+ * a range of values, as when sweeping the value of a single component.  This is the Sherman-Morrison formula specialized for a fixed pair of
+ * vectors u and v and a varying multiplier &delta;:
+ * <p>
+ *     x(&delta;) = x<sub>0</sub> - z &delta;(v&middot;x<sub>0</sub>) / (1 + &delta;(v&middot;z)), &nbsp; where x<sub>0</sub> = A<sup>-1</sup>b and
+ *     z = A<sup>-1</sup>u.
+ * <p>
+ * Creating an instance costs two solves with the original factorization; thereafter each point in the sweep costs O(n) for the whole solution, or
+ * O(1) for a single unknown.  No factorization is ever repeated.
+ * <p>
+ * Instances of this class are immutable, and are therefore threadsafe.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class RankOneSweep {
+
+    private final double[] x0;
+    private final double[] z;
+    private final double vx0;
+    private final double vz;
+
+
+    /**
+     * Creates a new instance of this class to sweep the given update (whose multiplier is ignored) on the matrix with the given factorization, with
+     * the given constants.  Throws an <code>IllegalArgumentException</code> if any argument is missing, if the constants are the wrong length, or if
+     * the update doesn't fit the factored matrix.
+     *
+     * @param _factorization the factorization of the original matrix (A)
+     * @param _constants the constants (b)
+     * @param _update the update giving the vectors u and v to sweep
+     */
+    public RankOneSweep( final Factorization _factorization, final double[] _constants, final RankOneUpdate _update ) {
+
+        if( (_factorization == null) || (_update == null) )
+            throw new IllegalArgumentException( "Factorization or update is missing" );
+
+        if( !_update.fits( _factorization.size() ) )
+            throw new IllegalArgumentException( "Update doesn't fit the factored matrix" );
+
+        RankOneUpdate unit = _update.withDelta( 1 );
+        x0 = _factorization.solve( _constants );
+        z = _factorization.solve( unit.scaledU( x0.length ) );
+        vx0 = unit.vDot( x0 );
+        vz = unit.vDot( z );
+    }
+
+
+    /**
+     * Returns the solution of the system with the update applied with the given multiplier.  Throws an <code>IllegalArgumentException</code> if
+     * the updated matrix is singular.
+     *
+     * @param _delta the multiplier for the update
+     * @return the solution of the updated system
+     */
+    public double[] solve( final double _delta ) {
+        double f = factor( _delta );
+        double[] result = new double[x0.length];
+        for( int i = 0; i < result.length; i++ )
+            result[i] = x0[i] - z[i] * f;
+        return result;
+    }
+
+
+    /**
+     * Returns the value of the given unknown in the solution of the system with the update applied with the given multiplier.  Throws an
+     * <code>IllegalArgumentException</code> if the updated matrix is singular.
+     *
+     * @param _index the index of the unknown to return
+     * @param _delta the multiplier for the update
+     * @return the value of the given unknown in the solution of the updated system
+     */
+    public double solve( final int _index, final double _delta ) {
+        return x0[_index] - z[_index] * factor( _delta );
+    }
+
+
+    private double factor( final double _delta ) {
+        double denominator = 1 + _delta * vz;
+        if( denominator == 0 )
+            throw new IllegalArgumentException( "Updated matrix is singular at delta " + _delta );
+        return _delta * vx0 / denominator;
+    }
+}
@@ -0,0 +1,169 @@
+package com.cirsim.calc;
+
+/**
+ * Instances of this class represent a rank-one change to a matrix, of the form &delta;uv<sup>T</sup>, where u and v are sparse vectors and &delta;
+ * is a scalar.  Changing the value of a single two-terminal component changes its "stamp" in the circuit's matrix by exactly such an update: for an
+ * admittance between nodes a and b, u = v = e<sub>a</sub> - e<sub>b</sub> (where e<sub>i</sub> is the i'th unit vector), and &delta; is the
+ * change in admittance.  See {@link UpdatedFactorization} for how these are used.
+ * <p>
+ * Instances of this class are immutable.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class RankOneUpdate {
+
+    private final int[] uIndices;
+    private final double[] uValues;
+    private final int[] vIndices;
+    private final double[] vValues;
+    private final double delta;
+
+
+    /**
+     * Creates a new instance of this class representing the update &delta;uv<sup>T</sup>, where the sparse vectors u and v are given as parallel
+     * arrays of indices and values.  Throws an <code>IllegalArgumentException</code> if any of the arrays are missing, or if the index and value
+     * arrays of either vector are of different lengths.
+     *
+     * @param _uIndices the indices of the nonzero entries of u
+     * @param _uValues the values of the nonzero entries of u
+     * @param _vIndices the indices of the nonzero entries of v
+     * @param _vValues the values of the nonzero entries of v
+     * @param _delta the scalar multiplier
+     */
+    public RankOneUpdate( final int[] _uIndices, final double[] _uValues, final int[] _vIndices, final double[] _vValues, final double _delta ) {
+
+        if( (_uIndices == null) || (_uValues == null) || (_uIndices.length != _uValues.length) )
+            throw new IllegalArgumentException( "Vector u is missing or malformed" );
+
+        if( (_vIndices == null) || (_vValues == null) || (_vIndices.length != _vValues.length) )
+            throw new IllegalArgumentException( "Vector v is missing or malformed" );
+
+        uIndices = _uIndices.clone();
+        uValues = _uValues.clone();
+        vIndices = _vIndices.clone();
+        vValues = _vValues.clone();
+        delta = _delta;
+    }
+
+
+    /**
+     * Returns a new instance of this class representing a change of the given amount in an admittance (conductance) connected between the two given
+     * nodes.  Either node (but not both) may be negative, meaning that side of the admittance is connected to the reference node, which has no row
+     * or column in the matrix.
+     *
+     * @param _a the row (and column) of one of the nodes the admittance is connected to, or negative for the reference node
+     * @param _b the row (and column) of the other node the admittance is connected to, or negative for the reference node
+     * @param _delta the change in admittance
+     * @return the rank-one update representing the change in admittance
+     */
+    public static RankOneUpdate admittance( final int _a, final int _b, final double _delta ) {
+
+        if( (_a < 0) && (_b < 0) )
+            throw new IllegalArgumentException( "Admittance connected only to the reference node" );
+
+        int[] indices;
+        double[] values;
+        if( _a < 0 ) {
+            indices = new int[] { _b };
+            values = new double[] { -1 };
+        }
+        else if( _b < 0 ) {
+            indices = new int[] { _a };
+            values = new double[] { 1 };
+        }
+        else {
+            indices = new int[] { _a, _b };
+            values = new double[] { 1, -1 };
+        }
+        return new RankOneUpdate( indices, values, indices, values, _delta );
+    }
+
+
+    /**
+     * Returns a new instance of this class with the same vectors u and v as this one, but with the given scalar multiplier.
+     *
+     * @param _delta the scalar multiplier for the new instance
+     * @return the new instance
+     */
+    public RankOneUpdate withDelta( final double _delta ) {
+        return new RankOneUpdate( uIndices, uValues, vIndices, vValues, _delta );
+    }
+
+
+    /**
+     * Returns a new dense array of the given length containing the vector u, scaled by &delta;.
+     *
+     * @param _length the length of the array to return
+     * @return the scaled vector u
+     */
+    double[] scaledU( final int _length ) {
+        double[] result = new double[_length];
+        for( int i = 0; i < uIndices.length; i++ )
+            result[uIndices[i]] += delta * uValues[i];
+        return result;
+    }
+
+
+    /**
+     * Returns a new dense array of the given length containing the vector v.
+     *
+     * @param _length the length of the array to return
+     * @return the vector v
+     */
+    double[] v( final int _length ) {
+        double[] result = new double[_length];
+        for( int i = 0; i < vIndices.length; i++ )
+            result[vIndices[i]] += vValues[i];
+        return result;
+    }
+
+
+    /**
+     * Returns the dot product of the vector v with the given dense vector, in time proportional to the number of nonzero entries in v.
+     *
+     * @param _x the dense vector
+     * @return the dot product of v and the given vector
+     */
+    double vDot( final double[] _x ) {
+        double sum = 0;
+        for( int i = 0; i < vIndices.length; i++ )
+            sum += vValues[i] * _x[vIndices[i]];
+        return sum;
+    }
+
+
+    /**
+     * Returns the dot product of the vector u, scaled by &delta;, with the given dense vector.
+     *
+     * @param _x the dense vector
+     * @return the dot product of &delta;u and the given vector
+     */
+    double scaledUDot( final double[] _x ) {
+        double sum = 0;
+        for( int i = 0; i < uIndices.length; i++ )
+            sum += uValues[i] * _x[uIndices[i]];
+        return delta * sum;
+    }
+
+
+    /**
+     * Returns true if all the indices of both u and v are less than the given size.
+     *
+     * @param _size the size to check against
+     * @return true if all the indices are valid for a matrix of the given size
+     */
+    boolean fits( final int _size ) {
+        for( int i : uIndices )
+            if( (i < 0) || (i >= _size) )
+                return false;
+        for( int i : vIndices )
+            if( (i < 0) || (i >= _size) )
+                return false;
+        return true;
+    }
+
+
+    public double getDelta() {
+        return delta;
+    }
+}
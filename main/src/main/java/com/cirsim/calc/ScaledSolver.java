@@ -0,0 +1,58 @@
+package com.cirsim.calc;
+
+import java.util.Arrays;
+
+/**
+ * Solves a circuit's DC equations over and over with varied component values (see
+ * {@link com.cirsim.components.TolerancedComponent}), as Monte Carlo and worst case analyses do.  Each instance has its own assembler and
+ * factorization, and since varying the values never changes the matrix's pattern, every solution after the first just refactors with the new
+ * values (see {@link SparseLUFactorization}).  Instances are meant to be used by one thread at a time, but reused by one thread after another.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+class ScaledSolver {
+
+    private final MNAAssembler assembler;
+    private final double[] scales;
+    private SparseLUFactorization factorization;
+
+
+    ScaledSolver( final CircuitGraph _graph ) {
+        assembler = new MNAAssembler( _graph );
+        scales = new double[_graph.getBranchCount()];
+        Arrays.fill( scales, 1 );
+    }
+
+
+    /**
+     * Returns the scale factor of each branch's component, indexed by branch, for the caller to set before solving.  This is the array itself, not a
+     * copy.  Every factor is initially one.
+     */
+    double[] getScales() {
+        return scales;
+    }
+
+
+    /**
+     * Assembles, factors and solves the circuit's equations with the current scale factors, and returns the solution.
+     */
+    double[] solve() {
+        assembler.assemble( scales );
+        if( (factorization == null) || !factorization.refactor( assembler.getMatrix() ) )
+            factorization = new SparseLUFactorization( assembler.getMatrix() );
+        return factorization.solve( assembler.getConstants() );
+    }
+
+
+    /**
+     * Returns the factorization of the equations most recently solved.
+     */
+    SparseLUFactorization getFactorization() {
+        return factorization;
+    }
+
+
+    MNAAssembler getAssembler() {
+        return assembler;
+    }
+}
@@ -0,0 +1,396 @@
+package com.cirsim.calc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Implements {@link Factorization} by domain decomposition: the unknowns are partitioned into domains, each of which is coupled to the others only
+ * through a (hopefully small) set of interface unknowns.  Hierarchical circuits partition this way naturally, with each subcircuit instance as a
+ * domain and the nets it exports as its interface (see {@link CircuitGraph}).  Ordering each domain's interior unknowns first and the interface
+ * unknowns last gives a matrix in bordered block diagonal form:
+ * <pre>
+ *     | A11          A1g |
+ *     |     A22      A2g |
+ *     |         ...  ... |
+ *     | Ag1 Ag2 ...  Agg |
+ * </pre>
+ * Each interior block Aii is factored independently (and in parallel), and is then used to eliminate its domain from the interface equations,
+ * leaving the Schur complement S = Agg - sum( Agi Aii<sup>-1</sup> Aig ), which is only as large as the interface.  Solving a system is then a
+ * matter of solving each domain's interior (in parallel), solving the Schur complement for the interface unknowns, and back-substituting those into
+ * each domain (in parallel again).
+ * <p>
+ * An interior block may be singular even when the whole matrix is not: for instance, when a subcircuit is nothing but a voltage source between two
+ * of its exported nets, its only interior unknown is the source's current, which appears only in interface equations.  Any domain whose interior
+ * block is singular is simply folded into the interface.
+ * <p>
+ * Instances of this class are immutable once constructed, and are therefore threadsafe.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class SchurFactorization implements Factorization {
+
+    private final int size;
+    private final Domain[] domains;
+    private final int[] interfaceIndices;      // the unknowns in the interface, in ascending order...
+    private final LUFactorization schur;       // the factored Schur complement, or null if there is no interface...
+    private final int foldedCount;             // the number of domains folded into the interface...
+
+
+    /**
+     * Creates a new instance of this class that holds the domain decomposition of the given square matrix, with all blocks factored in double
+     * precision.
+     *
+     * @param _matrix the square matrix to factor
+     * @param _domains the domain of each unknown (by column), or -1 for the interface
+     */
+    public SchurFactorization( final double[][] _matrix, final int[] _domains ) {
+        this( _matrix, _domains, FactorPrecision.DOUBLE );
+    }
+
+
+    /**
+     * Creates a new instance of this class that holds the domain decomposition of the given square matrix, with each unknown assigned to the given
+     * domain (or to the interface, for -1), and all blocks factored in the given precision.  Throws an <code>IllegalArgumentException</code> if the
+     * matrix is missing, is not square, or is singular, or if the domains are missing or of the wrong length.  Note that the domains are only a
+     * hint about the matrix's structure; if unknowns in different domains are in fact directly coupled, the factorization is simply inaccurate
+     * (which iterative refinement may or may not be able to overcome).
+     *
+     * @param _matrix the square matrix to factor
+     * @param _domains the domain of each unknown (by column), or -1 for the interface
+     * @param _precision the precision to factor the blocks in
+     */
+    public SchurFactorization( final double[][] _matrix, final int[] _domains, final FactorPrecision _precision ) {
+
+        if( (_matrix == null) || (_matrix.length == 0) )
+            throw new IllegalArgumentException( "Matrix is missing or empty" );
+
+        if( (_domains == null) || (_domains.length != _matrix.length) )
+            throw new IllegalArgumentException( "Domains missing or of wrong length" );
+
+        if( _precision == null )
+            throw new IllegalArgumentException( "Precision is missing" );
+
+        size = _matrix.length;
+        for( int i = 0; i < size; i++ )
+            if( (_matrix[i] == null) || (_matrix[i].length != size) )
+                throw new IllegalArgumentException( "Matrix is not square at row " + i );
+
+        // group the unknowns by domain...
+        Map<Integer, List<Integer>> groups = new TreeMap<>();
+        List<Integer> interfaceList = new ArrayList<>();
+        for( int i = 0; i < size; i++ ) {
+            if( _domains[i] < 0 )
+                interfaceList.add( i );
+            else
+                groups.computeIfAbsent( _domains[i], ( d ) -> new ArrayList<>() ).add( i );
+        }
+
+        // factor each domain's interior block, in parallel...
+        int[][] groupIndices = new int[groups.size()][];
+        int g = 0;
+        for( List<Integer> group : groups.values() )
+            groupIndices[g++] = toArray( group );
+        Domain[] candidates = new Domain[groupIndices.length];
+        forEach( candidates.length, ( d ) -> candidates[d] = Domain.factor( _matrix, groupIndices[d], _precision ) );
+
+        // fold any domains with singular interior blocks into the interface...
+        List<Domain> factored = new ArrayList<>();
+        int folded = 0;
+        for( int d = 0; d < candidates.length; d++ ) {
+            if( candidates[d] != null )
+                factored.add( candidates[d] );
+            else {
+                for( int i : groupIndices[d] )
+                    interfaceList.add( i );
+                folded++;
+            }
+        }
+        foldedCount = folded;
+        domains = factored.toArray( new Domain[factored.size()] );
+        interfaceList.sort( null );
+        interfaceIndices = toArray( interfaceList );
+
+        // eliminate each domain from the interface equations, in parallel...
+        forEach( domains.length, ( d ) -> domains[d].couple( _matrix, interfaceIndices ) );
+
+        // then assemble and factor the Schur complement...
+        int n = interfaceIndices.length;
+        if( n > 0 ) {
+            double[][] s = new double[n][n];
+            for( int i = 0; i < n; i++ )
+                for( int j = 0; j < n; j++ )
+                    s[i][j] = _matrix[interfaceIndices[i]][interfaceIndices[j]];
+            for( Domain domain : domains )
+                for( int i = 0; i < n; i++ )
+                    for( int j = 0; j < n; j++ )
+                        s[i][j] -= domain.contribution[i][j];
+            schur = new LUFactorization( s, _precision );
+        }
+        else
+            schur = null;
+
+        // the contributions aren't needed once the Schur complement is assembled...
+        for( Domain domain : domains )
+            domain.contribution = null;
+    }
+
+
+    /**
+     * Returns the number of rows (and columns) in the factored matrix.
+     *
+     * @return the number of rows (and columns) in the factored matrix
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns the number of domains that were factored independently (not counting any folded into the interface).
+     *
+     * @return the number of domains that were factored independently
+     */
+    public int getDomainCount() {
+        return domains.length;
+    }
+
+
+    /**
+     * Returns the number of unknowns in the interface, which is the size of the Schur complement.
+     *
+     * @return the number of unknowns in the interface
+     */
+    public int getInterfaceSize() {
+        return interfaceIndices.length;
+    }
+
+
+    /**
+     * Returns the number of domains that were folded into the interface because their interior blocks were singular.
+     *
+     * @return the number of domains folded into the interface
+     */
+    public int getFoldedCount() {
+        return foldedCount;
+    }
+
+
+    /**
+     * Solves the system Ax = b, where A is the factored matrix and b is the given array of constants, and returns x in a new array.  Throws an
+     * <code>IllegalArgumentException</code> if the given array is missing or is not the same length as the size of the factored matrix.
+     *
+     * @param _constants the right-hand side (b) of the system to solve
+     * @return the solution (x) of the system
+     */
+    @Override
+    public double[] solve( final double[] _constants ) {
+
+        checkConstants( _constants );
+
+        // solve each domain's interior as if the interface unknowns were zero...
+        double[][] interiors = new double[domains.length][];
+        forEach( domains.length, ( d ) -> interiors[d] = domains[d].lu.solve( gather( _constants, domains[d].indices ) ) );
+
+        // eliminate those from the interface constants, and solve the Schur complement for the interface unknowns...
+        double[] x = new double[size];
+        double[] xg = solveInterface( _constants, interiors, false );
+        scatter( xg, interfaceIndices, x );
+
+        // then correct each domain's interior for the actual interface unknowns...
+        forEach( domains.length, ( d ) -> {
+            Domain domain = domains[d];
+            double[] xd = interiors[d];
+            for( int i = 0; i < xd.length; i++ )
+                for( int j = 0; j < xg.length; j++ )
+                    xd[i] -= domain.x[i][j] * xg[j];
+            scatter( xd, domain.indices, x );
+        } );
+        return x;
+    }
+
+
+    /**
+     * Solves the system A<sup>T</sup>x = b, where A is the factored matrix and b is the given array of constants, and returns x in a new array.
+     * Throws an <code>IllegalArgumentException</code> if the given array is missing or is not the same length as the size of the factored matrix.
+     *
+     * @param _constants the right-hand side (b) of the system to solve
+     * @return the solution (x) of the transposed system
+     */
+    @Override
+    public double[] solveTransposed( final double[] _constants ) {
+
+        checkConstants( _constants );
+
+        // the transposed system has the same bordered block diagonal form, with the coupling blocks transposed and swapped...
+        double[][] interiors = new double[domains.length][];
+        forEach( domains.length, ( d ) -> interiors[d] = domains[d].lu.solveTransposed( gather( _constants, domains[d].indices ) ) );
+
+        double[] x = new double[size];
+        double[] xg = solveInterface( _constants, interiors, true );
+        scatter( xg, interfaceIndices, x );
+
+        forEach( domains.length, ( d ) -> {
+            Domain domain = domains[d];
+            double[] bd = gather( _constants, domain.indices );
+            for( int i = 0; i < bd.length; i++ )
+                for( int j = 0; j < xg.length; j++ )
+                    bd[i] -= domain.fromInterface[j][i] * xg[j];
+            scatter( domain.lu.solveTransposed( bd ), domain.indices, x );
+        } );
+        return x;
+    }
+
+
+    /**
+     * Returns the interface unknowns, given the constants and each domain's interior solution with the interface unknowns taken as zero.
+     *
+     * @param _constants the right-hand side of the system being solved
+     * @param _interiors the interior solution of each domain
+     * @param _transposed true if the transposed system is being solved
+     * @return the interface unknowns
+     */
+    private double[] solveInterface( final double[] _constants, final double[][] _interiors, final boolean _transposed ) {
+
+        if( schur == null )
+            return new double[0];
+
+        double[] g = gather( _constants, interfaceIndices );
+        for( int d = 0; d < domains.length; d++ ) {
+            Domain domain = domains[d];
+            double[] y = _interiors[d];
+            for( int i = 0; i < g.length; i++ )
+                for( int k = 0; k < y.length; k++ )
+                    g[i] -= (_transposed ? domain.toInterface[k][i] : domain.fromInterface[i][k]) * y[k];
+        }
+        return _transposed ? schur.solveTransposed( g ) : schur.solve( g );
+    }
+
+
+    private void checkConstants( final double[] _constants ) {
+        if( (_constants == null) || (_constants.length != size) )
+            throw new IllegalArgumentException( "Constants missing or of wrong length" );
+    }
+
+
+    private static double[] gather( final double[] _source, final int[] _indices ) {
+        double[] result = new double[_indices.length];
+        for( int i = 0; i < _indices.length; i++ )
+            result[i] = _source[_indices[i]];
+        return result;
+    }
+
+
+    private static void scatter( final double[] _source, final int[] _indices, final double[] _destination ) {
+        for( int i = 0; i < _indices.length; i++ )
+            _destination[_indices[i]] = _source[i];
+    }
+
+
+    private static int[] toArray( final List<Integer> _list ) {
+        int[] result = new int[_list.size()];
+        for( int i = 0; i < result.length; i++ )
+            result[i] = _list.get( i );
+        return result;
+    }
+
+
+    /**
+     * Runs the given action for each index from zero up to (but not including) the given count, concurrently if there is more than one.
+     *
+     * @param _count the number of indices to run the action for
+     * @param _action the action to run
+     */
+    private static void forEach( final int _count, final IntConsumer _action ) {
+        if( _count == 1 )
+            _action.accept( 0 );
+        else if( _count > 1 )
+            IntStream.range( 0, _count ).parallel().forEach( _action );
+    }
+
+
+    /**
+     * One domain: its interior unknowns, the factored interior block, and its coupling to the interface.
+     */
+    private static class Domain {
+
+        private final int[] indices;              // the domain's interior unknowns...
+        private final LUFactorization lu;         // the factored interior block...
+        private double[][] toInterface;           // the interior rows, interface columns block (Aig)...
+        private double[][] fromInterface;         // the interface rows, interior columns block (Agi)...
+        private double[][] x;                     // Aii^-1 Aig...
+        private double[][] contribution;          // Agi Aii^-1 Aig, until the Schur complement is assembled...
+
+
+        private Domain( final int[] _indices, final LUFactorization _lu ) {
+            indices = _indices;
+            lu = _lu;
+        }
+
+
+        /**
+         * Returns the domain with the given interior unknowns, with its interior block factored, or null if the interior block is singular.
+         */
+        private static Domain factor( final double[][] _matrix, final int[] _indices, final FactorPrecision _precision ) {
+
+            int n = _indices.length;
+            double[][] block = new double[n][n];
+            for( int i = 0; i < n; i++ )
+                for( int j = 0; j < n; j++ )
+                    block[i][j] = _matrix[_indices[i]][_indices[j]];
+            try {
+                return new Domain( _indices, new LUFactorization( block, _precision ) );
+            }
+            catch( IllegalArgumentException e ) {
+                return null;  // the interior block is singular, so this domain can't be eliminated on its own...
+            }
+        }
+
+
+        /**
+         * Extracts this domain's coupling to the given interface from the given matrix, and computes its contribution to the Schur complement.
+         */
+        private void couple( final double[][] _matrix, final int[] _interface ) {
+
+            int n = indices.length;
+            int g = _interface.length;
+            toInterface = new double[n][g];
+            fromInterface = new double[g][n];
+            for( int i = 0; i < n; i++ )
+                for( int j = 0; j < g; j++ ) {
+                    toInterface[i][j] = _matrix[indices[i]][_interface[j]];
+                    fromInterface[j][i] = _matrix[_interface[j]][indices[i]];
+                }
+
+            // solve for Aii^-1 Aig one interface column at a time, skipping the (usually many) columns this domain isn't coupled to...
+            x = new double[n][g];
+            double[] column = new double[n];
+            for( int j = 0; j < g; j++ ) {
+                boolean coupled = false;
+                for( int i = 0; i < n; i++ ) {
+                    column[i] = toInterface[i][j];
+                    coupled |= (column[i] != 0);
+                }
+                if( !coupled )
+                    continue;
+                double[] solved = lu.solve( column );
+                for( int i = 0; i < n; i++ )
+                    x[i][j] = solved[i];
+            }
+
+            contribution = new double[g][g];
+            for( int i = 0; i < g; i++ )
+                for( int k = 0; k < n; k++ ) {
+                    double f = fromInterface[i][k];
+                    if( f == 0 )
+                        continue;
+                    for( int j = 0; j < g; j++ )
+                        contribution[i][j] += f * x[k][j];
+                }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.cirsim.calc;
+
+import com.cirsim.components.Resistor;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Instances of this class hold the sensitivities of one output (the voltage at one node) of a circuit to the values of its toleranced components
+ * (see {@link com.cirsim.components.TolerancedComponent}), as computed by a {@link SensitivityAnalysis}.  Instances are immutable.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class Sensitivities {
+
+    private final CircuitGraph graph;
+    private final String node;
+    private final double output;
+    private final double[] derivatives;   // the derivative with respect to each branch's component's value...
+    private final double[] nominals;      // the nominal value of each branch's component, or NaN for components without one...
+
+
+    Sensitivities( final CircuitGraph _graph, final String _node, final double _output, final double[] _derivatives, final double[] _nominals ) {
+        graph = _graph;
+        node = _node;
+        output = _output;
+        derivatives = _derivatives;
+        nominals = _nominals;
+    }
+
+
+    public String getNode() {
+        return node;
+    }
+
+
+    /**
+     * Returns the value of the output at the nominal component values.
+     *
+     * @return the value of the output
+     */
+    public double getOutput() {
+        return output;
+    }
+
+
+    /**
+     * Returns the derivative of the output with respect to the value of the given branch's component (for instance, in volts per ohm for a
+     * resistor), or zero for a component without a toleranced value.
+     *
+     * @param _branch the index of the branch
+     * @return the derivative of the output with respect to the given branch's component's value
+     */
+    public double getDerivative( final int _branch ) {
+        return derivatives[_branch];
+    }
+
+
+    /**
+     * Returns the derivative of the output with respect to the scale factor of the given branch's component: the change in the output per unit of
+     * relative change in the component's value.  This is zero for a component whose nominal value is zero, as scaling it changes nothing.
+     *
+     * @param _branch the index of the branch
+     * @return the derivative of the output with respect to the given branch's component's scale factor
+     */
+    public double getScaleDerivative( final int _branch ) {
+        return Double.isNaN( nominals[_branch] ) ? 0 : derivatives[_branch] * nominals[_branch];
+    }
+
+
+    /**
+     * Returns the <i>normalized</i> sensitivity of the output to the value of the given branch's component: the relative change in the output per
+     * relative change in the value, (v/y)(dy/dv).  This is NaN if the output is zero.
+     *
+     * @param _branch the index of the branch
+     * @return the normalized sensitivity of the output to the given branch's component's value
+     */
+    public double getNormalized( final int _branch ) {
+        return (output == 0) ? Double.NaN : getScaleDerivative( _branch ) / output;
+    }
+
+
+    /**
+     * Returns the derivative of the output with respect to the resistance of every resistor in the circuit, in volts per ohm, keyed by the
+     * resistor's label, in branch order.
+     *
+     * @return the derivative of the output with respect to each resistor's resistance
+     */
+    public Map<String, Double> getResistorDerivatives() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for( CircuitGraph.Branch branch : graph.getBranches() )
+            if( branch.getComponent() instanceof Resistor )
+                result.put( branch.getLabel(), getDerivative( branch.getIndex() ) );
+        return Collections.unmodifiableMap( result );
+    }
+}
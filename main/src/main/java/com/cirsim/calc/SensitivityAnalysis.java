@@ -0,0 +1,160 @@
+package com.cirsim.calc;
+
+import com.cirsim.components.TolerancedComponent;
+
+import java.util.Arrays;
+
+/**
+ * Computes the sensitivities of a circuit's DC outputs (node voltages) to the values of its toleranced components (see
+ * {@link TolerancedComponent}), by the adjoint method.  Finite differences would take an extra solution of the circuit per component; the adjoint
+ * method instead takes, per output, a single extra substitution with the factorization already in hand.
+ * <p>
+ * If the circuit's equations are Ax = b and the output is c<sup>T</sup>x (for a node voltage, c picks out that node's column), then the
+ * derivative of the output with respect to any parameter p is -y<sup>T</sup>(A'x - b'), where y is the solution of the <i>adjoint</i> equations
+ * A<sup>T</sup>y = c, and A' and b' are the derivatives of A and b with respect to p.  So this analysis factors A and solves for x once, when an
+ * instance is created; then for each output it solves the adjoint equations with the same factorization (see
+ * {@link Factorization#solveTransposed(double[])}), and each component stamps the derivatives of its contribution with respect to its value (see
+ * {@link TolerancedComponent#stampDerivative(StampTarget, int[], double)}) into a target that forms the product with y and x directly.  Each
+ * component's product touches only the few entries it stamps, so the sensitivities to all the components cost little more than the one substitution.
+ * <p>
+ * Instances of this class are immutable once constructed, and are therefore threadsafe.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class SensitivityAnalysis {
+
+    private final CircuitGraph graph;
+    private final MNAAssembler assembler;
+    private final Factorization factorization;
+    private final double[] values;       // the solution at the nominal values...
+    private final double[] voltages;     // the node voltages at the nominal values...
+    private final int[] varied;          // the branches with toleranced components...
+    private final double[] nominals;     // the nominal value of each branch's component, or NaN if it isn't toleranced...
+
+
+    /**
+     * Creates a new instance of this class, which solves the circuit with the given graph at its nominal values.  Throws an
+     * <code>IllegalArgumentException</code> if the graph is missing, has nonlinear components, or the circuit's equations are singular.
+     *
+     * @param _graph the graph of the circuit to analyze
+     */
+    public SensitivityAnalysis( final CircuitGraph _graph ) {
+
+        if( _graph == null )
+            throw new IllegalArgumentException( "Circuit graph is missing" );
+
+        if( _graph.getNonlinearCount() > 0 )
+            throw new IllegalArgumentException( "Circuit has nonlinear components, which sensitivity analysis doesn't support" );
+
+        graph = _graph;
+        ScaledSolver solver = new ScaledSolver( graph );
+        values = solver.solve();
+        assembler = solver.getAssembler();
+        factorization = solver.getFactorization();
+        voltages = assembler.getNodeVoltages( values );
+
+        nominals = new double[graph.getBranchCount()];
+        Arrays.fill( nominals, Double.NaN );
+        varied = graph.getBranches().stream().filter( branch -> branch.getComponent() instanceof TolerancedComponent )
+                .mapToInt( CircuitGraph.Branch::getIndex ).toArray();
+        for( int branch : varied )
+            nominals[branch] = ((TolerancedComponent) graph.getBranch( branch ).getComponent()).getNominalValue();
+    }
+
+
+    /**
+     * Returns the sensitivities of the voltage at the node with the given name to the values of the circuit's toleranced components.  Throws an
+     * <code>IllegalArgumentException</code> if there is no node with the given name.
+     *
+     * @param _node the name of the node whose voltage is the output
+     * @return the sensitivities of the output
+     */
+    public Sensitivities getSensitivities( final String _node ) {
+
+        int node = graph.getNode( _node );
+        if( node < 0 )
+            throw new IllegalArgumentException( "No node named '" + _node + "'" );
+
+        return new Sensitivities( graph, _node, voltages[node], getDerivatives( node ), nominals );
+    }
+
+
+    /**
+     * Returns the derivative of the voltage at the given node with respect to the scale factor of each branch's component, indexed by branch (zero for
+     * components without a toleranced value, and for every component if the node is a reference node).
+     */
+    double[] getScaleDerivatives( final int _node ) {
+        double[] result = getDerivatives( _node );
+        for( int branch : varied )
+            result[branch] *= nominals[branch];
+        return result;
+    }
+
+
+    /**
+     * Returns the derivative of the voltage at the given node with respect to the value of each branch's component, indexed by branch (zero for
+     * components without a toleranced value, and for every component if the node is a reference node).
+     */
+    private double[] getDerivatives( final int _node ) {
+
+        double[] result = new double[graph.getBranchCount()];
+        int column = assembler.getNodeColumn( _node );
+        if( column < 0 )
+            return result;
+
+        double[] c = new double[assembler.size()];
+        c[column] = 1;
+        AdjointTarget target = new AdjointTarget( values, factorization.solveTransposed( c ) );
+        for( int branch : varied ) {
+            target.sum = 0;
+            TolerancedComponent component = (TolerancedComponent) graph.getBranch( branch ).getComponent();
+            component.stampDerivative( target, assembler.getBranchRows( branch ), nominals[branch] );
+            result[branch] = -target.sum;
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns a copy of the voltage at each node of the circuit's graph, at the nominal component values.
+     *
+     * @return the voltage at each node
+     */
+    public double[] getNodeVoltages() {
+        return voltages.clone();
+    }
+
+
+    public CircuitGraph getGraph() {
+        return graph;
+    }
+
+
+    /**
+     * A stamp target that accumulates y<sup>T</sup>(Ax - b) for whatever is stamped into it, given x and the adjoint solution y.
+     */
+    private static class AdjointTarget implements StampTarget {
+
+        private final double[] x;
+        private final double[] y;
+        private double sum;
+
+
+        private AdjointTarget( final double[] _x, final double[] _y ) {
+            x = _x;
+            y = _y;
+        }
+
+
+        @Override
+        public void add( final int _row, final int _col, final double _value ) {
+            sum += y[_row] * _value * x[_col];
+        }
+
+
+        @Override
+        public void addConstant( final int _row, final double _value ) {
+            sum -= y[_row] * _value;
+        }
+    }
+}
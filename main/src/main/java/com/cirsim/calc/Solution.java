@@ -0,0 +1,89 @@
+package com.cirsim.calc;
+
+/**
+ * Instances of this class hold the solution to a system of linear equations, along with some information about how accurate that solution is, and
+ * what it took to get it.  Instances are immutable.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class Solution {
+
+    private final double[] values;
+    private final double residual;
+    private final double backwardError;
+    private final int refinements;
+    private final boolean converged;
+
+
+    public Solution( final double[] _values, final double _residual, final double _backwardError, final int _refinements,
+                     final boolean _converged ) {
+        values = _values;
+        residual = _residual;
+        backwardError = _backwardError;
+        refinements = _refinements;
+        converged = _converged;
+    }
+
+
+    /**
+     * Returns a copy of the values (the unknowns) solved for, in the same order as the columns of the system's matrix.
+     *
+     * @return the values solved for
+     */
+    public double[] getValues() {
+        return values.clone();
+    }
+
+
+    /**
+     * Returns the value of the unknown in the given column of the system's matrix.
+     *
+     * @param _index the column of the unknown to return
+     * @return the value of the unknown in the given column
+     */
+    public double get( final int _index ) {
+        return values[_index];
+    }
+
+
+    /**
+     * Returns the infinity norm (the largest magnitude) of the residual vector b - Ax, computed in compensated (effectively doubled) precision.
+     *
+     * @return the infinity norm of the residual
+     */
+    public double getResidual() {
+        return residual;
+    }
+
+
+    /**
+     * Returns the normwise relative backward error of the solution: the residual scaled by ||A|| ||x|| + ||b|| (all infinity norms).  This is
+     * independent of the scale of the circuit's values, and a value of a few ulps (around 1e-16) means the solution is as good as double precision
+     * allows.
+     *
+     * @return the normwise relative backward error
+     */
+    public double getBackwardError() {
+        return backwardError;
+    }
+
+
+    /**
+     * Returns the number of iterative refinement steps taken after the initial solution.
+     *
+     * @return the number of iterative refinement steps taken
+     */
+    public int getRefinements() {
+        return refinements;
+    }
+
+
+    /**
+     * Returns true if the backward error reached the tolerance requested in the solver's options.
+     *
+     * @return true if the backward error reached the requested tolerance
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+}
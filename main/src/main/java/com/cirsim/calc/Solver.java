@@ -1,9 +1,11 @@
 package com.cirsim.calc;
 
+import com.cirsim.util.Numbers;
+
 /**
- * This class uses Gaussian-Jordan elimination to solve systems of linear equations that represent an electronic circuit.  The equations may come
- * from either nodal analysis (using Kirchoff's current law) or mesh analysis (using Kirchoff's voltage law).  The equations are presented to this
- * class as an autmented matrix, with 'm' rows and 'm+1' columns.
+ * This class solves systems of linear equations that represent an electronic circuit.  The equations may come from either nodal analysis (using
+ * Kirchoff's current law) or mesh analysis (using Kirchoff's voltage law).  The equations are presented to this class as an autmented matrix, with
+ * 'm' rows and 'm+1' columns.
  *
  * For nodal analysis, each row represents the current equation for a node, and each column the currents entering or leaving the node, expressed as
  * admittances associated with each node voltage.  One node (usually ground, the reference node) is omitted from the system of equations.
@@ -11,12 +13,181 @@ package com.cirsim.calc;
  * For mesh analysis, each row represents the voltage equation for an independent loop, and each column the voltage drops around the loop, expressed
  * as impedances associated with each current present in the loop.
  *
+ * The equations in either formulation are built from a circuit by {@link NodalEquations} or {@link MeshEquations}, and {@link FormulationChoice}
+ * picks whichever formulation needs fewer unknowns for a particular circuit.
+ *
  * The solver implemented by this class is actually a general-purpose solver for systems of linear equations, but was designed and optimized for the
- * purposes described above.
+ * purposes described above.  In particular, circuit matrices routinely mix milliohm and megohm values, so their pivots span many orders of magnitude
+ * and a single pass of LU decomposition can lose many digits of accuracy.  To recover them, the solver uses <i>iterative refinement</i>: after the
+ * initial solution x, it computes the residual r = b - Ax in compensated (effectively doubled) precision, solves for a correction with the same
+ * factorization, and adds it to x, repeating until the backward error is within the tolerance given in the {@link SolverOptions}.  Because the
+ * refinement corrects for the factorization's errors, the factorization itself may be done in single precision for speed (see
+ * {@link FactorPrecision}) without losing accuracy in the solution, so long as the matrix isn't too badly conditioned.
+ *
+ * Circuits built from loosely coupled subcircuits may be solved faster by permuting the matrix to block triangular form and factoring only the
+ * diagonal blocks (see {@link BlockTriangularFactorization}); this too is selected through the {@link SolverOptions}.
  *
  * @author Tom Dilatush  tom@dilatush.com
  */
 public class Solver {
 
+    private final double[][] matrix;     // the coefficients (the first m columns of the augmented matrix)...
+    private final double[] constants;    // the constants (the last column of the augmented matrix)...
+    private final SolverOptions options;
+
+
+    /**
+     * Creates a new instance of this class to solve the system represented by the given augmented matrix, with the default options.
+     *
+     * @param _augmented the augmented matrix (m rows of m+1 columns) representing the system to be solved
+     */
+    public Solver( final double[][] _augmented ) {
+        this( _augmented, SolverOptions.DEFAULT );
+    }
+
+
+    /**
+     * Creates a new instance of this class to solve the system represented by the given augmented matrix, with the given options.  Throws an
+     * <code>IllegalArgumentException</code> if the augmented matrix is missing, or doesn't have m+1 columns in each of its m rows, or if the
+     * options are missing.
+     *
+     * @param _augmented the augmented matrix (m rows of m+1 columns) representing the system to be solved
+     * @param _options the options controlling how the system will be solved
+     */
+    public Solver( final double[][] _augmented, final SolverOptions _options ) {
+
+        if( (_augmented == null) || (_augmented.length == 0) )
+            throw new IllegalArgumentException( "Augmented matrix is missing or empty" );
+
+        if( _options == null )
+            throw new IllegalArgumentException( "Options are missing" );
+
+        int m = _augmented.length;
+        matrix = new double[m][];
+        constants = new double[m];
+        for( int i = 0; i < m; i++ ) {
+
+            if( (_augmented[i] == null) || (_augmented[i].length != m + 1) )
+                throw new IllegalArgumentException( "Augmented matrix row " + i + " does not have " + (m + 1) + " columns" );
+
+            matrix[i] = new double[m];
+            System.arraycopy( _augmented[i], 0, matrix[i], 0, m );
+            constants[i] = _augmented[i][m];
+        }
+        options = _options;
+    }
+
+
+    /**
+     * Solves the system of equations this instance was created with, and returns the solution.  Throws an <code>IllegalArgumentException</code> if
+     * the system's matrix is singular.
+     *
+     * @return the solution to the system
+     */
+    public Solution solve() {
+        Factorization factorization = options.isBlockTriangular()
+                ? new BlockTriangularFactorization( matrix, options.getPrecision() )
+                : new LUFactorization( matrix, options.getPrecision() );
+        return refine( factorization, matrix, constants, options );
+    }
+
+
+    /**
+     * Solves the system Ax = b, where A is the given matrix, and the given factorization is a factorization of it (possibly an inaccurate one), and
+     * iteratively refines the solution according to the given options.  This is the heart of this class, exposed so that the refinement may be
+     * applied to factorizations that were obtained some other way.
+     *
+     * @param _factorization a factorization of the given matrix
+     * @param _matrix the matrix of coefficients (A)
+     * @param _constants the constants (b)
+     * @param _options the options controlling the refinement
+     * @return the refined solution
+     */
+    public static Solution refine( final Factorization _factorization, final double[][] _matrix, final double[] _constants,
+                                   final SolverOptions _options ) {
+
+        double normA = infinityNorm( _matrix );
+        double normB = infinityNorm( _constants );
+
+        // get our initial solution and its residual...
+        double[] x = _factorization.solve( _constants );
+        double[] r = residual( _matrix, _constants, x );
+        double rNorm = infinityNorm( r );
+        double error = backwardError( rNorm, normA, infinityNorm( x ), normB );
+
+        // refine until we're within tolerance, we run out of refinements, or we stop making progress...
+        int refinements = 0;
+        while( (error > _options.getTolerance()) && (refinements < _options.getMaxRefinements()) ) {
+
+            double[] d = _factorization.solve( r );
+            double[] nx = new double[x.length];
+            for( int i = 0; i < x.length; i++ )
+                nx[i] = x[i] + d[i];
+
+            double[] nr = residual( _matrix, _constants, nx );
+            double nrNorm = infinityNorm( nr );
+            double nError = backwardError( nrNorm, normA, infinityNorm( nx ), normB );
+            refinements++;
+
+            // if the correction didn't at least halve the error, we've stagnated (and may be diverging), so keep the better of the two...
+            boolean stagnated = nError > 0.5 * error;
+            if( nError < error ) {
+                x = nx;
+                r = nr;
+                rNorm = nrNorm;
+                error = nError;
+            }
+            if( stagnated )
+                break;
+        }
+
+        return new Solution( x, rNorm, error, refinements, error <= _options.getTolerance() );
+    }
+
+
+    /**
+     * Returns the residual b - Ax, computed in compensated precision.
+     *
+     * @param _matrix the matrix of coefficients (A)
+     * @param _constants the constants (b)
+     * @param _x the candidate solution (x)
+     * @return the residual
+     */
+    private static double[] residual( final double[][] _matrix, final double[] _constants, final double[] _x ) {
+
+        double[] negX = new double[_x.length];
+        for( int i = 0; i < _x.length; i++ )
+            negX[i] = -_x[i];
+
+        double[] r = new double[_constants.length];
+        for( int i = 0; i < r.length; i++ )
+            r[i] = Numbers.compensatedDotProduct( _constants[i], _matrix[i], negX );
+        return r;
+    }
+
+
+    private static double backwardError( final double _rNorm, final double _aNorm, final double _xNorm, final double _bNorm ) {
+        double scale = _aNorm * _xNorm + _bNorm;
+        return (scale == 0) ? 0 : _rNorm / scale;
+    }
+
+
+    private static double infinityNorm( final double[] _vector ) {
+        double result = 0;
+        for( double v : _vector )
+            result = Math.max( result, Math.abs( v ) );
+        return result;
+    }
+
 
+    private static double infinityNorm( final double[][] _matrix ) {
+        double result = 0;
+        for( double[] row : _matrix ) {
+            double sum = 0;
+            for( double v : row )
+                sum += Math.abs( v );
+            result = Math.max( result, sum );
+        }
+        return result;
+    }
 }
@@ -0,0 +1,86 @@
+package com.cirsim.calc;
+
+/**
+ * Instances of this class hold the options controlling how a {@link Solver} goes about solving a system of linear equations.  Instances are
+ * immutable.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class SolverOptions {
+
+    /**
+     * The default options: double precision factors, with up to five steps of iterative refinement toward a backward error of a few ulps.
+     */
+    public static final SolverOptions DEFAULT = new SolverOptions( FactorPrecision.DOUBLE, 5, 4 * Math.ulp( 1.0d ), false );
+
+    /**
+     * Options for the fastest factorization: single precision factors, with enough iterative refinement to recover double precision accuracy.
+     */
+    public static final SolverOptions FAST = new SolverOptions( FactorPrecision.SINGLE, 20, 4 * Math.ulp( 1.0d ), false );
+
+
+    private final FactorPrecision precision;
+    private final int maxRefinements;
+    private final double tolerance;
+    private final boolean blockTriangular;
+
+
+    /**
+     * Creates a new instance of this class with the given options, factoring the whole matrix with a single LU decomposition.
+     *
+     * @param _precision the precision to factor the matrix in
+     * @param _maxRefinements the maximum number of iterative refinement steps to take (zero for none at all)
+     * @param _tolerance the normwise relative backward error at which to stop refining
+     */
+    public SolverOptions( final FactorPrecision _precision, final int _maxRefinements, final double _tolerance ) {
+        this( _precision, _maxRefinements, _tolerance, false );
+    }
+
+
+    /**
+     * Creates a new instance of this class with the given options.  Throws an <code>IllegalArgumentException</code> if the precision is missing,
+     * the maximum number of refinements is negative, or the tolerance is negative.
+     *
+     * @param _precision the precision to factor the matrix in
+     * @param _maxRefinements the maximum number of iterative refinement steps to take (zero for none at all)
+     * @param _tolerance the normwise relative backward error at which to stop refining
+     * @param _blockTriangular true to permute the matrix to block triangular form and factor only its diagonal blocks (see
+     *                         {@link BlockTriangularFactorization})
+     */
+    public SolverOptions( final FactorPrecision _precision, final int _maxRefinements, final double _tolerance, final boolean _blockTriangular ) {
+
+        if( _precision == null )
+            throw new IllegalArgumentException( "Precision is missing" );
+
+        if( _maxRefinements < 0 )
+            throw new IllegalArgumentException( "Invalid maximum refinements: " + _maxRefinements );
+
+        if( !(_tolerance >= 0) )
+            throw new IllegalArgumentException( "Invalid tolerance: " + _tolerance );
+
+        precision = _precision;
+        maxRefinements = _maxRefinements;
+        tolerance = _tolerance;
+        blockTriangular = _blockTriangular;
+    }
+
+
+    public FactorPrecision getPrecision() {
+        return precision;
+    }
+
+
+    public int getMaxRefinements() {
+        return maxRefinements;
+    }
+
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+
+    public boolean isBlockTriangular() {
+        return blockTriangular;
+    }
+}
@@ -0,0 +1,245 @@
+package com.cirsim.calc;
+
+import com.cirsim.matrices.IndexIterator;
+import com.cirsim.matrices.MatrixStuff;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * The <i>analysis</i> phase of a sparse LU decomposition, shared by {@link SparseLUFactorization} and {@link ComplexSparseLUFactorization}: it
+ * chooses the pivot order by partial pivoting, and works out which entries of the factors can possibly be nonzero (the entries of the matrix, plus
+ * the <i>fill-in</i> created by elimination).  The factors are held in compressed rows: row i of the factors (in pivot order) holds just the values
+ * of its possibly nonzero entries, whose columns (in order) are <code>filled[i]</code>, with those of L before the diagonal and those of U after it.
+ * Analysis also records where each of the matrix's entries goes in those rows, along with its value store slot, so that loading a matrix's values
+ * needs no searches.
+ * <p>
+ * Choosing pivots needs the matrix's values, so analysis eliminates a compressed copy of them (read through the matrix's row iterators) as it
+ * goes, through an {@link Arithmetic} that knows how the values are held (real, or complex with interleaved parts); when it's done, that copy is the
+ * factors of the analyzed matrix.  Everything else here depends only on the pivot order and the matrix's pattern, so instances are immutable once
+ * made, and may be shared by any number of factorizations (and threads).
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+final class SparseLUAnalysis {
+
+    final int size;
+    final int entryCount;      // the number of entries in the analyzed matrix, to check refactored matrices against...
+    final int[] pivots;        // pivots[i] is the row of the original matrix that ended up in row i...
+    final int[] positions;     // positions[r] is the row that row r of the original matrix ended up in...
+    final int[][] filled;      // filled[i] is the columns, in order, of the possibly nonzero entries in row i of the factors...
+    final int[] diagonals;     // diagonals[i] is the index of the diagonal in filled[i]...
+    final int[][] entries;     // entries[i] is the index in filled[i] of each of the matrix's entries in row pivots[i]...
+    final int[][] entrySlots;  // entrySlots[i] is the value store slot of each of the matrix's entries in row pivots[i]...
+
+
+    /**
+     * Creates a new instance of this class that analyzes the matrix with the given size, number of entries, rows, and values, and fills the given
+     * array with its factors, in compressed rows in pivot order.  Throws an <code>IllegalArgumentException</code> if the matrix is singular.
+     *
+     * @param _size the number of rows (and columns) in the matrix
+     * @param _entryCount the number of entries in the matrix
+     * @param _rows the iterator over the entries (column keys and value store slots) of each row of the matrix, in column order
+     * @param _values the source of the matrix's values, by value store slot
+     * @param _arithmetic the arithmetic on the matrix's values
+     * @param _lu the array to fill with the compressed rows of the factors
+     */
+    SparseLUAnalysis( final int _size, final int _entryCount, final IntFunction<IndexIterator> _rows, final Values _values,
+                      final Arithmetic _arithmetic, final double[][] _lu ) {
+
+        size = _size;
+        entryCount = _entryCount;
+        int width = _arithmetic.width();
+
+        // get the matrix, row by row, in compressed rows that grow with the fill-in...
+        int[][] cols = new int[size][];
+        double[][] vals = new double[size][];
+        int[] lengths = new int[size];
+        int[][] slots = new int[size][];
+        for( int r = 0; r < size; r++ ) {
+            int[] c = new int[4];
+            int[] s = new int[4];
+            double[] v = new double[4 * width];
+            int n = 0;
+            IndexIterator it = _rows.apply( r );
+            while( it.hasNext() ) {
+                it.next();
+                if( n >= c.length ) {
+                    c = Arrays.copyOf( c, n << 1 );
+                    s = Arrays.copyOf( s, n << 1 );
+                    v = Arrays.copyOf( v, (n << 1) * width );
+                }
+                c[n] = it.key();
+                s[n] = it.value();
+                _values.get( it.value(), v, n++ * width );
+            }
+            cols[r] = c;
+            vals[r] = v;
+            lengths[r] = n;
+            slots[r] = Arrays.copyOf( s, n );
+        }
+        int[][] entryCols = new int[size][];
+        for( int r = 0; r < size; r++ )
+            entryCols[r] = Arrays.copyOf( cols[r], lengths[r] );
+
+        // eliminate, choosing each pivot by partial pivoting among the rows with an entry in its column, and tracking the fill-in; heads[r] is the
+        // index in row r of its first column not yet eliminated...
+        int[] heads = new int[size];
+        int[] rowAt = new int[size];
+        for( int i = 0; i < size; i++ )
+            rowAt[i] = i;
+        int[] mergedCols = new int[size];
+        double[] mergedVals = new double[size * width];
+        for( int k = 0; k < size; k++ ) {
+
+            int p = -1;
+            double best = 0;
+            for( int i = k; i < size; i++ ) {
+                int r = rowAt[i];
+                if( (heads[r] < lengths[r]) && (cols[r][heads[r]] == k) ) {
+                    double magnitude = _arithmetic.magnitude( vals[r], heads[r] );
+                    if( (p < 0) || (magnitude > best) ) {
+                        p = i;
+                        best = magnitude;
+                    }
+                }
+            }
+            if( (p < 0) || (best == MatrixStuff.PURE_ZERO) )
+                throw new IllegalArgumentException( "Matrix is singular at column " + k );
+            int t = rowAt[k];
+            rowAt[k] = rowAt[p];
+            rowAt[p] = t;
+
+            // eliminate column k from each row below the pivot that has it, merging the pivot row's columns to the right of the pivot into it...
+            int pr = rowAt[k];
+            int[] pivotCols = cols[pr];
+            double[] pivotVals = vals[pr];
+            int pivotLength = lengths[pr];
+            int pd = heads[pr];
+            for( int i = k + 1; i < size; i++ ) {
+                int r = rowAt[i];
+                int h = heads[r];
+                if( (h >= lengths[r]) || (cols[r][h] != k) )
+                    continue;
+
+                double[] v = vals[r];
+                _arithmetic.divide( v, h, pivotVals, pd );
+                int a = h + 1;
+                int b = pd + 1;
+                int n = 0;
+                while( (a < lengths[r]) || (b < pivotLength) ) {
+                    int ca = (a < lengths[r]) ? cols[r][a] : Integer.MAX_VALUE;
+                    int cb = (b < pivotLength) ? pivotCols[b] : Integer.MAX_VALUE;
+                    if( ca <= cb ) {
+                        mergedCols[n] = ca;
+                        System.arraycopy( v, a++ * width, mergedVals, n * width, width );
+                    }
+                    else {
+                        mergedCols[n] = cb;
+                        Arrays.fill( mergedVals, n * width, (n + 1) * width, MatrixStuff.PURE_ZERO );
+                    }
+                    if( cb <= ca )
+                        _arithmetic.subtractProduct( mergedVals, n, v, h, pivotVals, b++ );
+                    n++;
+                }
+
+                int length = h + 1 + n;
+                if( length > cols[r].length ) {
+                    int capacity = Math.min( size, Math.max( length, cols[r].length << 1 ) );
+                    cols[r] = Arrays.copyOf( cols[r], capacity );
+                    vals[r] = v = Arrays.copyOf( v, capacity * width );
+                }
+                System.arraycopy( mergedCols, 0, cols[r], h + 1, n );
+                System.arraycopy( mergedVals, 0, v, (h + 1) * width, n * width );
+                lengths[r] = length;
+                heads[r] = h + 1;
+            }
+        }
+
+        // save everything in pivot order...
+        pivots = rowAt;
+        positions = new int[size];
+        for( int i = 0; i < size; i++ )
+            positions[pivots[i]] = i;
+        filled = new int[size][];
+        diagonals = new int[size];
+        entries = new int[size][];
+        entrySlots = new int[size][];
+        for( int i = 0; i < size; i++ ) {
+            int r = pivots[i];
+            filled[i] = Arrays.copyOf( cols[r], lengths[r] );
+            diagonals[i] = heads[r];
+            entries[i] = new int[entryCols[r].length];
+            for( int e = 0; e < entries[i].length; e++ )
+                entries[i][e] = Arrays.binarySearch( filled[i], entryCols[r][e] );
+            entrySlots[i] = slots[r];
+            _lu[i] = Arrays.copyOf( vals[r], lengths[r] * width );
+        }
+    }
+
+
+    /**
+     * Returns true if the given matrix size and number of entries are those of the analyzed matrix.
+     *
+     * @param _size the number of rows (and columns) in a matrix
+     * @param _entryCount the number of entries in a matrix
+     * @return true if they match the analyzed matrix
+     */
+    boolean matches( final int _size, final int _entryCount ) {
+        return (_size == size) && (_entryCount == entryCount);
+    }
+
+
+    /**
+     * Returns the number of possibly nonzero entries in the factors (including the diagonal), which is the number of entries in the analyzed matrix
+     * plus the fill-in.
+     *
+     * @return the number of possibly nonzero entries in the factors
+     */
+    int getFactorEntryCount() {
+        int result = 0;
+        for( int[] row : filled )
+            result += row.length;
+        return result;
+    }
+
+
+    /**
+     * The source of a matrix's values, by value store slot.
+     */
+    interface Values {
+
+        /**
+         * Copies the value in the given slot into the given array, starting at the given index.
+         */
+        void get( final int _slot, final double[] _into, final int _index );
+    }
+
+
+    /**
+     * The arithmetic of elimination on arrays of values, which is all that analysis needs to know about how the values are held.  Each value takes
+     * {@link #width()} consecutive elements of an array, and values are referred to by their index (not the index of their first element).
+     */
+    interface Arithmetic {
+
+        /**
+         * Returns the number of elements of an array that each value takes.
+         */
+        int width();
+
+        /**
+         * Returns a measure of the magnitude of the given value, for comparing pivots.
+         */
+        double magnitude( final double[] _values, final int _index );
+
+        /**
+         * Divides value a by value b, leaving the quotient in a.
+         */
+        void divide( final double[] _a, final int _ai, final double[] _b, final int _bi );
+
+        /**
+         * Subtracts the product of value m and value b from value a, leaving the difference in a.
+         */
+        void subtractProduct( final double[] _a, final int _ai, final double[] _m, final int _mi, final double[] _b, final int _bi );
+    }
+}
@@ -0,0 +1,274 @@
+package com.cirsim.calc;
+
+import com.cirsim.matrices.MatrixStuff;
+import com.cirsim.matrices.TreeMatrix;
+
+/**
+ * Implements {@link Factorization} with an LU decomposition of a sparse {@link TreeMatrix} that is split into two phases, so that the first (and
+ * more expensive) phase can be reused for many matrices with the same pattern of entries, as circuit matrices are on every time step or Newton
+ * iteration of an analysis:
+ * <ul>
+ *     <li><i>Analysis</i> (when an instance is created) chooses the pivot order by partial pivoting, and works out which entries of the factors can
+ *     possibly be nonzero (the entries of the matrix, plus the <i>fill-in</i> created by elimination), which lays out a compressed row of the
+ *     factors for each pivot.  It also records where each of the matrix's entries goes in those rows, and its value store slot, so that loading the
+ *     matrix's values needs no searches.  This phase is shared with {@link ComplexSparseLUFactorization} (see {@link SparseLUAnalysis}).</li>
+ *     <li><i>Refactoring</i> (see {@link #refactor(TreeMatrix)}) computes new factors for new values, with the same pivot order, touching only the
+ *     entries that analysis found could be nonzero.</li>
+ * </ul>
+ * A pivot order that was good for one set of values can be poor (or impossible) for another.  Refactoring checks each pivot against the entries
+ * below it in its column, and if any is too small in comparison (by the same threshold test as SPICE's), it gives up and returns false; the caller
+ * must then create a new instance, which analyzes the new values afresh.
+ * <p>
+ * The factors are held in those compressed rows, so the memory used (apart from one working row) and the time spent are both proportional to the
+ * number of possibly nonzero entries of the factors.  Instances of this class are mutable (refactoring changes them), and are not threadsafe.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class SparseLUFactorization implements Factorization {
+
+    private static final double PIVOT_THRESHOLD = 1e-3;   // the smallest acceptable ratio of a pivot to the largest entry below it...
+
+    private static final SparseLUAnalysis.Arithmetic REAL = new SparseLUAnalysis.Arithmetic() {
+
+        @Override
+        public int width() {
+            return 1;
+        }
+
+        @Override
+        public double magnitude( final double[] _values, final int _index ) {
+            return Math.abs( _values[_index] );
+        }
+
+        @Override
+        public void divide( final double[] _a, final int _ai, final double[] _b, final int _bi ) {
+            _a[_ai] /= _b[_bi];
+        }
+
+        @Override
+        public void subtractProduct( final double[] _a, final int _ai, final double[] _m, final int _mi, final double[] _b, final int _bi ) {
+            _a[_ai] -= _m[_mi] * _b[_bi];
+        }
+    };
+
+    private final SparseLUAnalysis analysis;
+    private final int size;
+    private final double[][] lu;       // the compressed rows of the combined L and U factors, in pivot order...
+    private final double[] work;       // a working row, in full, all zeros between refactorings...
+    private int factorizations;
+    private boolean valid;
+
+
+    /**
+     * Creates a new instance of this class that analyzes and factors the given matrix.  Throws an <code>IllegalArgumentException</code> if the
+     * matrix is missing or is singular.
+     *
+     * @param _matrix the matrix to factor
+     */
+    public SparseLUFactorization( final TreeMatrix _matrix ) {
+
+        if( _matrix == null )
+            throw new IllegalArgumentException( "Matrix is missing" );
+
+        size = _matrix.size();
+        lu = new double[size][];
+        analysis = new SparseLUAnalysis( size, _matrix.entryCount(), _matrix::rowIterator, ( s, into, i ) -> into[i] = _matrix.getValue( s ),
+                REAL, lu );
+        work = new double[size];
+        factorizations = 1;
+        valid = true;
+    }
+
+
+    /**
+     * Computes the factors of the given matrix, which must have the same pattern of entries (in the same value store slots) as the matrix this
+     * instance was created with, reusing the pivot order and fill-in found then.  Returns false (leaving this instance unusable until it is
+     * successfully refactored) if any pivot is too small to use; the caller should then create a new instance for the given matrix.  Throws an
+     * <code>IllegalArgumentException</code> if the matrix is missing, or isn't the same size or doesn't have the same number of entries as the matrix
+     * this instance was created with.
+     *
+     * @param _matrix the matrix to factor
+     * @return true if the matrix was factored, or false if the pivot order wasn't usable for it
+     */
+    public boolean refactor( final TreeMatrix _matrix ) {
+
+        if( (_matrix == null) || !analysis.matches( _matrix.size(), _matrix.entryCount() ) )
+            throw new IllegalArgumentException( "Matrix is missing or doesn't match the analyzed matrix" );
+
+        // compute the factors a row at a time, in the working row: load the row's values, eliminate each column of L with the finished rows above,
+        // and then gather the row's possibly nonzero entries back into its compressed row...
+        valid = false;
+        double[] x = work;
+        for( int i = 0; i < size; i++ ) {
+
+            int[] cols = analysis.filled[i];
+            int[] entries = analysis.entries[i];
+            int[] slots = analysis.entrySlots[i];
+            for( int e = 0; e < entries.length; e++ )
+                x[cols[entries[e]]] = _matrix.getValue( slots[e] );
+
+            int d = analysis.diagonals[i];
+            for( int p = 0; p < d; p++ ) {
+
+                // the multiplier for column k, checking that the pivot isn't too small in comparison with the entry it eliminates...
+                int k = cols[p];
+                double[] pivotRow = lu[k];
+                int pd = analysis.diagonals[k];
+                double pivot = pivotRow[pd];
+                if( Math.abs( pivot ) < PIVOT_THRESHOLD * Math.abs( x[k] ) ) {
+                    for( int j : cols )
+                        x[j] = MatrixStuff.PURE_ZERO;
+                    return false;
+                }
+                double m = x[k] / pivot;
+                x[k] = m;
+                if( m == MatrixStuff.PURE_ZERO )
+                    continue;
+
+                int[] pivotCols = analysis.filled[k];
+                for( int q = pd + 1; q < pivotCols.length; q++ )
+                    x[pivotCols[q]] -= m * pivotRow[q];
+            }
+
+            double[] row = lu[i];
+            for( int p = 0; p < cols.length; p++ ) {
+                row[p] = x[cols[p]];
+                x[cols[p]] = MatrixStuff.PURE_ZERO;
+            }
+            if( row[d] == MatrixStuff.PURE_ZERO )
+                return false;
+        }
+        valid = true;
+        factorizations++;
+        return true;
+    }
+
+
+    /**
+     * Returns the number of rows (and columns) in the factored matrix.
+     *
+     * @return the number of rows (and columns) in the factored matrix
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns the number of possibly nonzero entries in the factors (including the diagonal), which is the number of entries in the factored matrix
+     * plus the fill-in.
+     *
+     * @return the number of possibly nonzero entries in the factors
+     */
+    public int getFactorEntryCount() {
+        return analysis.getFactorEntryCount();
+    }
+
+
+    /**
+     * Returns the number of times a matrix has been factored by this instance, including the first time (when it was created).
+     *
+     * @return the number of times a matrix has been factored
+     */
+    public int getFactorizations() {
+        return factorizations;
+    }
+
+
+    /**
+     * Solves the system Ax = b, where A is the factored matrix and b is the given array of constants, and returns x in a new array.  Throws an
+     * <code>IllegalArgumentException</code> if the given array is missing or is not the same length as the size of the factored matrix, or an
+     * <code>IllegalStateException</code> if the last refactoring failed.
+     *
+     * @param _constants the right-hand side (b) of the system to solve
+     * @return the solution (x) of the system
+     */
+    @Override
+    public double[] solve( final double[] _constants ) {
+
+        checkConstants( _constants );
+
+        // apply the row permutation...
+        double[] x = new double[size];
+        for( int i = 0; i < size; i++ )
+            x[i] = _constants[analysis.pivots[i]];
+
+        // forward substitution with the unit lower triangular factor, a row at a time...
+        for( int i = 0; i < size; i++ ) {
+            double[] row = lu[i];
+            int[] cols = analysis.filled[i];
+            double sum = x[i];
+            for( int p = 0; p < analysis.diagonals[i]; p++ )
+                sum -= row[p] * x[cols[p]];
+            x[i] = sum;
+        }
+
+        // backward substitution with the upper triangular factor...
+        for( int i = size - 1; i >= 0; i-- ) {
+            double[] row = lu[i];
+            int[] cols = analysis.filled[i];
+            int d = analysis.diagonals[i];
+            double sum = x[i];
+            for( int p = d + 1; p < cols.length; p++ )
+                sum -= row[p] * x[cols[p]];
+            x[i] = sum / row[d];
+        }
+
+        return x;
+    }
+
+
+    /**
+     * Solves the system A<sup>T</sup>x = b, where A is the factored matrix and b is the given array of constants, and returns x in a new array.
+     * Throws an <code>IllegalArgumentException</code> if the given array is missing or is not the same length as the size of the factored matrix, or
+     * an <code>IllegalStateException</code> if the last refactoring failed.
+     *
+     * @param _constants the right-hand side (b) of the system to solve
+     * @return the solution (x) of the transposed system
+     */
+    @Override
+    public double[] solveTransposed( final double[] _constants ) {
+
+        checkConstants( _constants );
+
+        // PA = LU, so A^T = U^T L^T P; first solve U^T y = b, a row of U at a time...
+        double[] y = _constants.clone();
+        for( int i = 0; i < size; i++ ) {
+            double[] row = lu[i];
+            int[] cols = analysis.filled[i];
+            int d = analysis.diagonals[i];
+            y[i] /= row[d];
+            double yi = y[i];
+            if( yi != MatrixStuff.PURE_ZERO )
+                for( int p = d + 1; p < cols.length; p++ )
+                    y[cols[p]] -= row[p] * yi;
+        }
+
+        // then L^T z = y, a row of L at a time from the bottom (each row's z is done once the rows below it are)...
+        for( int i = size - 1; i >= 0; i-- ) {
+            double[] row = lu[i];
+            int[] cols = analysis.filled[i];
+            double yi = y[i];
+            if( yi != MatrixStuff.PURE_ZERO )
+                for( int p = 0; p < analysis.diagonals[i]; p++ )
+                    y[cols[p]] -= row[p] * yi;
+        }
+
+        // and finally undo the permutation...
+        double[] x = new double[size];
+        for( int i = 0; i < size; i++ )
+            x[analysis.pivots[i]] = y[i];
+        return x;
+    }
+
+
+    private void checkConstants( final double[] _constants ) {
+
+        if( !valid )
+            throw new IllegalStateException( "The last refactoring failed, so there is no factorization to solve with" );
+
+        if( (_constants == null) || (_constants.length != size) )
+            throw new IllegalArgumentException( "Constants missing or of wrong length" );
+    }
+}
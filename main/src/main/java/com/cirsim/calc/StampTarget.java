@@ -0,0 +1,72 @@
+package com.cirsim.calc;
+
+/**
+ * Implemented by classes that components stamp their contributions to a circuit's modified nodal analysis (MNA) equations into (see
+ * {@link com.cirsim.components.Component#stamp(StampTarget, int[])}).  Rows and columns are the same thing in MNA: each row is the equation for the
+ * unknown in the same column.  A row (or column) of -1 stands for the reference node, whose voltage is zero by definition and which has no
+ * equation, so anything stamped into it is simply dropped; the convenience methods here take care of that, so components needn't.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public interface StampTarget {
+
+
+    /**
+     * Adds the given value to the coefficient at the given row and column.  The row and column are never -1.
+     *
+     * @param _row the row (equation) to add to
+     * @param _col the column (unknown) to add to
+     * @param _value the value to add
+     */
+    void add( final int _row, final int _col, final double _value );
+
+
+    /**
+     * Adds the given value to the constant (right-hand side) of the given row.  The row is never -1.
+     *
+     * @param _row the row (equation) to add to
+     * @param _value the value to add
+     */
+    void addConstant( final int _row, final double _value );
+
+
+    /**
+     * Stamps the given conductance between the two given nodes: a current of g(Va - Vb) leaving node a and entering node b.
+     *
+     * @param _a the row of one node, or -1 for the reference node
+     * @param _b the row of the other node, or -1 for the reference node
+     * @param _conductance the conductance between the nodes
+     */
+    default void addConductance( final int _a, final int _b, final double _conductance ) {
+        if( _a >= 0 )
+            add( _a, _a, _conductance );
+        if( _b >= 0 )
+            add( _b, _b, _conductance );
+        if( (_a >= 0) && (_b >= 0) ) {
+            add( _a, _b, -_conductance );
+            add( _b, _a, -_conductance );
+        }
+    }
+
+
+    /**
+     * Stamps a voltage source of the given voltage between the two given nodes, with its current (flowing from the + node through the source to the
+     * - node) as the unknown of the given branch row, whose equation fixes Vplus - Vminus at the given voltage.
+     *
+     * @param _plus the row of the + node, or -1 for the reference node
+     * @param _minus the row of the - node, or -1 for the reference node
+     * @param _branch the row of the source's current
+     * @param _volts the voltage of the source
+     */
+    default void addVoltageSource( final int _plus, final int _minus, final int _branch, final double _volts ) {
+        if( _plus >= 0 ) {
+            add( _plus, _branch, 1 );
+            add( _branch, _plus, 1 );
+        }
+        if( _minus >= 0 ) {
+            add( _minus, _branch, -1 );
+            add( _branch, _minus, -1 );
+        }
+        addConstant( _branch, _volts );
+    }
+}
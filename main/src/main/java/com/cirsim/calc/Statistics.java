@@ -0,0 +1,104 @@
+package com.cirsim.calc;
+
+/**
+ * Accumulates the count, mean, standard deviation, minimum and maximum of a series of values, in a single pass and in constant memory (by Welford's
+ * method), and merges accumulations made separately (by Chan's method), so that a series may be accumulated in parallel pieces.  Instances of this
+ * class are mutable, and are not threadsafe.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class Statistics {
+
+    private long count;
+    private double mean;
+    private double sumOfSquares;   // the sum of the squared differences from the mean...
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+
+    /**
+     * Adds the given value to this accumulation.
+     *
+     * @param _value the value to add
+     */
+    public void add( final double _value ) {
+        count++;
+        double delta = _value - mean;
+        mean += delta / count;
+        sumOfSquares += delta * (_value - mean);
+        min = Math.min( min, _value );
+        max = Math.max( max, _value );
+    }
+
+
+    /**
+     * Merges the given accumulation into this one, as if all the values added to it had been added to this one.
+     *
+     * @param _other the accumulation to merge into this one
+     */
+    public void merge( final Statistics _other ) {
+
+        if( _other.count == 0 )
+            return;
+
+        long total = count + _other.count;
+        double delta = _other.mean - mean;
+        mean += delta * _other.count / total;
+        sumOfSquares += _other.sumOfSquares + delta * delta * ((double) count * _other.count / total);
+        count = total;
+        min = Math.min( min, _other.min );
+        max = Math.max( max, _other.max );
+    }
+
+
+    /**
+     * Returns a copy of this accumulation.
+     *
+     * @return a copy of this accumulation
+     */
+    public Statistics copy() {
+        Statistics result = new Statistics();
+        result.merge( this );
+        return result;
+    }
+
+
+    public long getCount() {
+        return count;
+    }
+
+
+    /**
+     * Returns the mean of the values accumulated, or zero if there are none.
+     *
+     * @return the mean of the values accumulated
+     */
+    public double getMean() {
+        return mean;
+    }
+
+
+    /**
+     * Returns the (sample) standard deviation of the values accumulated, or zero if there are fewer than two.
+     *
+     * @return the standard deviation of the values accumulated
+     */
+    public double getStandardDeviation() {
+        return (count < 2) ? 0 : Math.sqrt( sumOfSquares / (count - 1) );
+    }
+
+
+    public double getMin() {
+        return min;
+    }
+
+
+    public double getMax() {
+        return max;
+    }
+
+
+    public String toString() {
+        return String.format( "mean %g, sd %g, min %g, max %g (%d values)", mean, getStandardDeviation(), min, max, count );
+    }
+}
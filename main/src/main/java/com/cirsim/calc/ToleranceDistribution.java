@@ -0,0 +1,97 @@
+package com.cirsim.calc;
+
+import com.cirsim.components.Component;
+import com.cirsim.components.Resistor;
+import com.cirsim.values.ResistorTechnology;
+import com.cirsim.values.Tolerance;
+
+import java.util.SplittableRandom;
+
+/**
+ * The statistical distributions of component values within their tolerance bands, as sampled by {@link MonteCarloAnalysis}.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public enum ToleranceDistribution {
+
+    /**
+     * Values are equally likely anywhere within the tolerance band.  This is the conservative choice, for components made by processes whose spread
+     * of values isn't well controlled, or isn't known.
+     */
+    UNIFORM,
+
+    /**
+     * Values are normally distributed around the middle of the tolerance band, with the band's edges three standard deviations away (and values
+     * beyond them discarded, as the manufacturer's testing would).  This suits components made by well controlled processes, such as thin film and
+     * metal film resistors, most of which are well within their tolerance.
+     */
+    GAUSSIAN;
+
+
+    /**
+     * Returns a factor to scale a component's value by, sampled from this distribution within the given tolerance band, using the given random number
+     * generator.
+     *
+     * @param _tolerance the tolerance band to sample within
+     * @param _random the random number generator to sample with
+     * @return the factor to scale a component's value by
+     */
+    public double sample( final Tolerance _tolerance, final SplittableRandom _random ) {
+
+        double low = _tolerance.getLowerPercent();
+        double high = _tolerance.getHigherPercent();
+        if( low == high )
+            return 1 + low / 100;
+
+        double percent;
+        if( this == UNIFORM )
+            percent = low + (high - low) * _random.nextDouble();
+        else {
+            double middle = (low + high) / 2;
+            double sigma = (high - low) / 6;
+            do {
+                percent = middle + sigma * gaussian( _random );
+            } while( (percent < low) || (percent > high) );
+        }
+        return 1 + percent / 100;
+    }
+
+
+    /**
+     * Returns the distribution of the given component's value: Gaussian for resistors made by the well controlled thin film, metal film, foil and
+     * wire wound processes, and uniform for everything else (including resistors of unspecified type).
+     *
+     * @param _component the component to get the distribution for
+     * @return the distribution of the given component's value
+     */
+    public static ToleranceDistribution of( final Component _component ) {
+
+        if( !(_component instanceof Resistor) )
+            return UNIFORM;
+
+        ResistorTechnology technology = ((Resistor) _component).getResistorType().getType();
+        switch( technology ) {
+            case THIN_FILM:
+            case METAL_FILM:
+            case FOIL:
+            case WIRE_WOUND:
+                return GAUSSIAN;
+            default:
+                return UNIFORM;
+        }
+    }
+
+
+    /**
+     * Returns a standard normal deviate, by the Marsaglia polar method.
+     */
+    private static double gaussian( final SplittableRandom _random ) {
+        double u, v, s;
+        do {
+            u = 2 * _random.nextDouble() - 1;
+            v = 2 * _random.nextDouble() - 1;
+            s = u * u + v * v;
+        } while( (s >= 1) || (s == 0) );
+        return u * Math.sqrt( -2 * Math.log( s ) / s );
+    }
+}
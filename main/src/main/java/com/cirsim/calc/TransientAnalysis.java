@@ -0,0 +1,265 @@
+package com.cirsim.calc;
+
+import com.cirsim.components.ReactiveComponent;
+
+/**
+ * Simulates a circuit over time (a <i>transient analysis</i>), starting either from its DC operating point or with every reactive component
+ * discharged (see {@link TransientOptions}), and returning the solution of its equations at each of a series of time points.
+ * <p>
+ * At each time point, the derivative of each reactive component's state is approximated by an integration formula (see
+ * {@link IntegrationMethod}) as a linear function of its new state and its past states, which turns each reactive component into a resistive
+ * <i>companion model</i> (see {@link ReactiveComponent}); the equations of the resulting resistive circuit are then assembled (see
+ * {@link MNAAssembler}) and solved for the new time point.
+ * <p>
+ * The step size between time points is chosen adaptively, and this is by far the most important thing for the speed of a long analysis: the
+ * steps are small where the states change quickly and large where they change slowly.  After each step the local truncation error of each state is
+ * estimated, by comparing its computed value with the value predicted by extrapolating a quadratic through the three previous time points (Milne's
+ * device).  A step whose error is larger than the tolerance is rejected and retried with a smaller step; otherwise the step size is grown as much as
+ * the error allows, up to doubling it.  The step size is left alone if it could only grow a little, because the circuit's matrix depends only on
+ * the step size: so long as the step size is unchanged, the matrix is too, and its factorization can be reused for step after step, leaving only
+ * the assembly of the constants and a pair of triangular solves.  When the step size does change, the new matrix is refactored reusing the pivot
+ * order and fill-in of the previous one (see {@link SparseLUFactorization}), and analyzed afresh only if that pivot order turns out to be unusable.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class TransientAnalysis {
+
+    private static final double INITIAL_STEP_FRACTION = 1e-3;   // the first step, as a fraction of the maximum step...
+    private static final double MIN_STEP_FRACTION = 1e-12;      // the smallest step, as a fraction of the duration of the analysis...
+    private static final double MAX_GROWTH = 2;                 // the most the step size may grow in one step...
+    private static final double MIN_GROWTH = 1.5;               // the least the step size may grow in one step, if it grows at all...
+    private static final double MIN_SHRINK = 0.25;              // the most the step size may shrink in one step...
+    private static final double SAFETY = 0.9;                   // the fraction of the step size the error estimate allows that we actually use...
+
+    private final CircuitGraph graph;
+    private final TransientOptions options;
+    private final MNAAssembler assembler;
+    private final ReactiveComponent[] reactive;   // the reactive components...
+    private final int[] reactiveBranches;         // the branch of each reactive component...
+    private final int[][] reactiveRows;           // the rows of each reactive component's unknowns...
+
+    private SparseLUFactorization factorization;
+    private double factoredCoefficient;
+    private int analyses;
+    private int factorizations;
+
+
+    /**
+     * Creates a new instance of this class to simulate the circuit with the given graph, with the given options.  Throws an
+     * <code>IllegalArgumentException</code> if the graph or options are missing, or the graph has no unknowns or has nonlinear components.
+     *
+     * @param _graph the graph of the circuit to simulate
+     * @param _options the options controlling the simulation
+     */
+    public TransientAnalysis( final CircuitGraph _graph, final TransientOptions _options ) {
+
+        if( _graph == null )
+            throw new IllegalArgumentException( "Circuit graph is missing" );
+
+        if( _options == null )
+            throw new IllegalArgumentException( "Options are missing" );
+
+        if( _graph.getNonlinearCount() > 0 )
+            throw new IllegalArgumentException( "Circuit has nonlinear components, which transient analysis doesn't support" );
+
+        graph = _graph;
+        options = _options;
+        assembler = new MNAAssembler( graph );
+
+        int n = graph.getReactiveCount();
+        reactive = new ReactiveComponent[n];
+        reactiveBranches = new int[n];
+        reactiveRows = new int[n][];
+        int i = 0;
+        for( CircuitGraph.Branch branch : graph.getBranches() )
+            if( branch.isReactive() ) {
+                reactive[i] = (ReactiveComponent) branch.getComponent();
+                reactiveBranches[i] = branch.getIndex();
+                reactiveRows[i++] = assembler.getBranchRows( branch.getIndex() );
+            }
+    }
+
+
+    /**
+     * Simulates the circuit from time zero to the given stop time (in seconds), with steps no larger than the given maximum, and returns the results.
+     * Throws an <code>IllegalArgumentException</code> if the stop time or maximum step isn't positive, or if the circuit's equations are singular
+     * at any time point (as they are, for instance, for a node connected only to capacitors).
+     *
+     * @param _stop the time to simulate until
+     * @param _maxStep the largest step to take
+     * @return the results of the simulation
+     */
+    public TransientResult run( final double _stop, final double _maxStep ) {
+
+        if( !(_stop > 0) )
+            throw new IllegalArgumentException( "Invalid stop time: " + _stop );
+
+        if( !(_maxStep > 0) )
+            throw new IllegalArgumentException( "Invalid maximum step: " + _maxStep );
+
+        int n = reactive.length;
+        double minStep = _stop * MIN_STEP_FRACTION;
+        double[] histories = new double[graph.getBranchCount()];
+        TransientResult result = new TransientResult( assembler );
+        factorization = null;
+        analyses = 0;
+        factorizations = 0;
+
+        // find the initial solution; when starting with zero states, that's the limit of a backward Euler step from zero as the step vanishes...
+        double[] states = new double[n];
+        double[] values;
+        if( options.isZeroInitialState() )
+            values = solve( 1 / minStep, histories );
+        else {
+            values = solve( 0, null );
+            states = states( values );
+        }
+        result.add( 0, values );
+
+        // the derivatives of the states are zero at the DC operating point, and unknown (but unused) when starting with zero states...
+        double[] derivatives = new double[n];
+        double[] previous = new double[n];     // the states at the previous time point...
+        double[] previous2 = new double[n];    // the states at the time point before that...
+        double time = 0;
+        double previousTime = 0;
+        double previousTime2 = 0;
+        int points = 1;
+        int rejected = 0;
+        double h = Math.min( _maxStep, _stop ) * INITIAL_STEP_FRACTION;
+
+        while( time < _stop ) {
+
+            // don't step past the end...
+            if( time + h > _stop )
+                h = _stop - time;
+
+            // work out the integration formula's coefficient and each component's history...
+            boolean firstOrder = (points == 1);
+            double coefficient;
+            if( firstOrder ) {
+                coefficient = 1 / h;
+                for( int i = 0; i < n; i++ )
+                    histories[reactiveBranches[i]] = -states[i] / h;
+            }
+            else if( options.getMethod() == IntegrationMethod.TRAPEZOIDAL ) {
+                coefficient = 2 / h;
+                for( int i = 0; i < n; i++ )
+                    histories[reactiveBranches[i]] = -coefficient * states[i] - derivatives[i];
+            }
+            else {
+                double rho = h / (time - previousTime);
+                coefficient = (1 + 2 * rho) / (h * (1 + rho));
+                double a1 = -(1 + rho) / h;
+                double a2 = rho * rho / (h * (1 + rho));
+                for( int i = 0; i < n; i++ )
+                    histories[reactiveBranches[i]] = a1 * states[i] + a2 * previous[i];
+            }
+
+            double[] newValues = solve( coefficient, histories );
+            double[] newStates = states( newValues );
+
+            // estimate the local truncation error (once we have enough history to predict from), and reject the step if it's too large...
+            double ratio = -1;
+            if( !firstOrder && (points >= 3) ) {
+                ratio = errorRatio( newStates, states, previous, previous2, time + h, time, previousTime, previousTime2 );
+                if( (ratio > 1) && (h > minStep) ) {
+                    h = Math.max( minStep, h * Math.max( MIN_SHRINK, SAFETY / Math.cbrt( ratio ) ) );
+                    rejected++;
+                    continue;
+                }
+            }
+
+            // accept the step...
+            for( int i = 0; i < n; i++ )
+                derivatives[i] = coefficient * newStates[i] + histories[reactiveBranches[i]];
+            previous2 = previous;
+            previous = states;
+            states = newStates;
+            previousTime2 = previousTime;
+            previousTime = time;
+            time = (_stop - (time + h) < minStep) ? _stop : time + h;
+            points++;
+            result.add( time, newValues );
+
+            // grow the step size if the error allows it to grow enough to be worth refactoring...
+            if( ratio >= 0 ) {
+                double growth = (ratio == 0) ? MAX_GROWTH : Math.min( MAX_GROWTH, SAFETY / Math.cbrt( ratio ) );
+                if( growth >= MIN_GROWTH )
+                    h *= growth;
+            }
+            h = Math.min( h, _maxStep );
+        }
+
+        result.setCounts( rejected, analyses, factorizations );
+        return result;
+    }
+
+
+    /**
+     * Returns the largest ratio of any state's estimated local truncation error to its tolerance.
+     */
+    private double errorRatio( final double[] _new, final double[] _current, final double[] _previous, final double[] _previous2,
+                               final double _t, final double _t0, final double _t1, final double _t2 ) {
+
+        // the weights of the three past points in the quadratic through them, evaluated at the new time point...
+        double w0 = (_t - _t1) * (_t - _t2) / ((_t0 - _t1) * (_t0 - _t2));
+        double w1 = (_t - _t0) * (_t - _t2) / ((_t1 - _t0) * (_t1 - _t2));
+        double w2 = (_t - _t0) * (_t - _t1) / ((_t2 - _t0) * (_t2 - _t1));
+
+        // the error is a fixed fraction of the difference between the corrector (the integration formula) and the predictor...
+        double fraction = (options.getMethod() == IntegrationMethod.TRAPEZOIDAL) ? 1.0 / 13.0 : 2.0 / 11.0;
+
+        double result = 0;
+        for( int i = 0; i < _new.length; i++ ) {
+            double predicted = w0 * _current[i] + w1 * _previous[i] + w2 * _previous2[i];
+            double error = fraction * Math.abs( _new[i] - predicted );
+            double tolerance = options.getRelativeTolerance() * Math.max( Math.abs( _new[i] ), Math.abs( _current[i] ) )
+                    + options.getAbsoluteTolerance();
+            result = Math.max( result, error / tolerance );
+        }
+        return result;
+    }
+
+
+    /**
+     * Assembles and solves the circuit's equations with the given companion model coefficient and histories (null for DC), factoring the matrix only
+     * if the coefficient has changed since it was last factored.
+     */
+    private double[] solve( final double _coefficient, final double[] _histories ) {
+
+        assembler.assemble( _coefficient, _histories );
+
+        if( (factorization == null) || (_coefficient != factoredCoefficient) ) {
+            if( (factorization == null) || !factorization.refactor( assembler.getMatrix() ) ) {
+                factorization = new SparseLUFactorization( assembler.getMatrix() );
+                analyses++;
+            }
+            factoredCoefficient = _coefficient;
+            factorizations++;
+        }
+        return factorization.solve( assembler.getConstants() );
+    }
+
+
+    private double[] states( final double[] _values ) {
+        double[] result = new double[reactive.length];
+        for( int i = 0; i < result.length; i++ )
+            result[i] = reactive[i].getState( _values, reactiveRows[i] );
+        return result;
+    }
+
+
+    public CircuitGraph getGraph() {
+        return graph;
+    }
+
+
+    /**
+     * Returns the assembler of the circuit's equations, which describes the unknowns in the results.
+     *
+     * @return the assembler of the circuit's equations
+     */
+    public MNAAssembler getAssembler() {
+        return assembler;
+    }
+}
@@ -0,0 +1,71 @@
+package com.cirsim.calc;
+
+/**
+ * Instances of this class hold the options controlling how a {@link TransientAnalysis} goes about simulating a circuit over time.  Instances are
+ * immutable.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class TransientOptions {
+
+    /**
+     * The default options: trapezoidal integration, with a relative tolerance of 0.1% and an absolute tolerance of a microvolt (or microamp),
+     * starting from the circuit's DC operating point.
+     */
+    public static final TransientOptions DEFAULT = new TransientOptions( IntegrationMethod.TRAPEZOIDAL, 1e-3, 1e-6, false );
+
+
+    private final IntegrationMethod method;
+    private final double relativeTolerance;
+    private final double absoluteTolerance;
+    private final boolean zeroInitialState;
+
+
+    /**
+     * Creates a new instance of this class with the given options.  Throws an <code>IllegalArgumentException</code> if the method is missing, or
+     * either tolerance isn't positive.
+     *
+     * @param _method the method to integrate with
+     * @param _relativeTolerance the largest acceptable local truncation error in any state, relative to the magnitude of that state
+     * @param _absoluteTolerance the largest acceptable local truncation error in a state whose magnitude is near zero
+     * @param _zeroInitialState true to start with every capacitor discharged and no current in every inductor, rather than from the DC operating
+     *                          point
+     */
+    public TransientOptions( final IntegrationMethod _method, final double _relativeTolerance, final double _absoluteTolerance,
+                             final boolean _zeroInitialState ) {
+
+        if( _method == null )
+            throw new IllegalArgumentException( "Integration method is missing" );
+
+        if( !(_relativeTolerance > 0) )
+            throw new IllegalArgumentException( "Invalid relative tolerance: " + _relativeTolerance );
+
+        if( !(_absoluteTolerance > 0) )
+            throw new IllegalArgumentException( "Invalid absolute tolerance: " + _absoluteTolerance );
+
+        method = _method;
+        relativeTolerance = _relativeTolerance;
+        absoluteTolerance = _absoluteTolerance;
+        zeroInitialState = _zeroInitialState;
+    }
+
+
+    public IntegrationMethod getMethod() {
+        return method;
+    }
+
+
+    public double getRelativeTolerance() {
+        return relativeTolerance;
+    }
+
+
+    public double getAbsoluteTolerance() {
+        return absoluteTolerance;
+    }
+
+
+    public boolean isZeroInitialState() {
+        return zeroInitialState;
+    }
+}
@@ -0,0 +1,131 @@
+package com.cirsim.calc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Instances of this class hold the results of a {@link TransientAnalysis}: the solution of the circuit's equations at each accepted time point, in
+ * time order (starting at time zero), along with some information about what it took to get them.  Instances are immutable once the analysis that
+ * creates them is finished.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class TransientResult {
+
+    private final MNAAssembler assembler;
+    private final List<Double> times = new ArrayList<>();
+    private final List<double[]> values = new ArrayList<>();
+    private int rejectedSteps;
+    private int analyses;
+    private int factorizations;
+
+
+    TransientResult( final MNAAssembler _assembler ) {
+        assembler = _assembler;
+    }
+
+
+    void add( final double _time, final double[] _values ) {
+        times.add( _time );
+        values.add( _values );
+    }
+
+
+    void setCounts( final int _rejectedSteps, final int _analyses, final int _factorizations ) {
+        rejectedSteps = _rejectedSteps;
+        analyses = _analyses;
+        factorizations = _factorizations;
+    }
+
+
+    /**
+     * Returns the number of time points in these results, including the initial one (at time zero).
+     *
+     * @return the number of time points
+     */
+    public int size() {
+        return times.size();
+    }
+
+
+    /**
+     * Returns the time (in seconds) of the given time point.
+     *
+     * @param _point the index of the time point
+     * @return the time of the given time point
+     */
+    public double getTime( final int _point ) {
+        return times.get( _point );
+    }
+
+
+    public List<Double> getTimes() {
+        return Collections.unmodifiableList( times );
+    }
+
+
+    /**
+     * Returns a copy of the values (the unknowns, in the order given by {@link MNAAssembler#getUnknown(int)}) at the given time point.
+     *
+     * @param _point the index of the time point
+     * @return the values at the given time point
+     */
+    public double[] getValues( final int _point ) {
+        return values.get( _point ).clone();
+    }
+
+
+    /**
+     * Returns the voltage at the given node of the circuit's graph at the given time point.
+     *
+     * @param _point the index of the time point
+     * @param _node the index of the node
+     * @return the voltage at the given node at the given time point
+     */
+    public double getNodeVoltage( final int _point, final int _node ) {
+        int column = assembler.getNodeColumn( _node );
+        return (column < 0) ? 0 : values.get( _point )[column];
+    }
+
+
+    /**
+     * Returns the number of steps that were accepted, which is one less than the number of time points.
+     *
+     * @return the number of steps that were accepted
+     */
+    public int getAcceptedSteps() {
+        return times.size() - 1;
+    }
+
+
+    /**
+     * Returns the number of steps that were rejected (and retried with a smaller step size) because their local truncation error was too large.
+     *
+     * @return the number of steps that were rejected
+     */
+    public int getRejectedSteps() {
+        return rejectedSteps;
+    }
+
+
+    /**
+     * Returns the number of times the circuit's matrix was analyzed (its pivot order and fill-in determined); see {@link SparseLUFactorization}.
+     *
+     * @return the number of times the circuit's matrix was analyzed
+     */
+    public int getAnalyses() {
+        return analyses;
+    }
+
+
+    /**
+     * Returns the number of times the circuit's matrix was factored.  The matrix changes only when the step size does, so this is usually far fewer
+     * than the number of steps.
+     *
+     * @return the number of times the circuit's matrix was factored
+     */
+    public int getFactorizations() {
+        return factorizations;
+    }
+}
@@ -0,0 +1,137 @@
+package com.cirsim.calc;
+
+import java.util.List;
+
+/**
+ * Implements {@link Factorization} for a matrix that differs from an already factored matrix by a small number of rank-one updates (see
+ * {@link RankOneUpdate}), without refactoring.  This is the Sherman-Morrison-Woodbury formula: if A' = A + UV<sup>T</sup>, where U and V each have
+ * k columns, then
+ * <p>
+ *     A'<sup>-1</sup>b = A<sup>-1</sup>b - Z (I + V<sup>T</sup>Z)<sup>-1</sup> V<sup>T</sup>A<sup>-1</sup>b, &nbsp; where Z = A<sup>-1</sup>U.
+ * <p>
+ * Creating an instance costs k solves with the original factorization (to get Z) plus the factorization of the tiny k x k "capacitance" matrix
+ * I + V<sup>T</sup>Z.  Each solve thereafter costs one solve with the original factorization plus O(nk) work.  When one or a few components change
+ * value (as in a tolerance analysis, or a sweep of a component's value), this is far cheaper than refactoring the whole matrix.
+ * <p>
+ * The numerical stability of this approach is good so long as the updated matrix is not much worse conditioned than the original.  If an update
+ * drives the updated matrix close to singular, refactoring is the better choice.  For sweeping a single component's value, see
+ * {@link RankOneSweep}, which is cheaper still.
+ * <p>
+ * Instances of this class are threadsafe if the original factorization is.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class UpdatedFactorization implements Factorization {
+
+    private final Factorization original;
+    private final RankOneUpdate[] updates;
+    private final double[][] z;              // z[j] = A^-1 (delta_j u_j)...
+    private final LUFactorization capacitance;
+
+    private double[][] w;                    // w[j] = A^-T v_j, computed the first time it's needed...
+
+
+    /**
+     * Creates a new instance of this class representing the given factorization, updated by the given rank-one updates.  Throws an
+     * <code>IllegalArgumentException</code> if the factorization or updates are missing, if there are no updates, if any update has an index that
+     * is out of range for the factorization, or if the updated matrix is singular.
+     *
+     * @param _original the factorization of the original matrix
+     * @param _updates the updates to apply to the original matrix
+     */
+    public UpdatedFactorization( final Factorization _original, final List<RankOneUpdate> _updates ) {
+
+        if( _original == null )
+            throw new IllegalArgumentException( "Original factorization is missing" );
+
+        if( (_updates == null) || _updates.isEmpty() )
+            throw new IllegalArgumentException( "Updates are missing" );
+
+        original = _original;
+        updates = _updates.toArray( new RankOneUpdate[_updates.size()] );
+        int n = original.size();
+        int k = updates.length;
+        for( RankOneUpdate update : updates )
+            if( (update == null) || !update.fits( n ) )
+                throw new IllegalArgumentException( "Update is missing or doesn't fit the factored matrix" );
+
+        z = new double[k][];
+        for( int j = 0; j < k; j++ )
+            z[j] = original.solve( updates[j].scaledU( n ) );
+
+        double[][] c = new double[k][k];
+        for( int i = 0; i < k; i++ )
+            for( int j = 0; j < k; j++ )
+                c[i][j] = ((i == j) ? 1 : 0) + updates[i].vDot( z[j] );
+        capacitance = new LUFactorization( c );
+    }
+
+
+    /**
+     * Returns the number of rows (and columns) in the factored matrix.
+     *
+     * @return the number of rows (and columns) in the factored matrix
+     */
+    @Override
+    public int size() {
+        return original.size();
+    }
+
+
+    /**
+     * Solves the system A'x = b, where A' is the updated matrix and b is the given array of constants, and returns x in a new array.  Throws an
+     * <code>IllegalArgumentException</code> if the given array is missing or is not the same length as the size of the factored matrix.
+     *
+     * @param _constants the right-hand side (b) of the system to solve
+     * @return the solution (x) of the system
+     */
+    @Override
+    public double[] solve( final double[] _constants ) {
+
+        double[] y = original.solve( _constants );
+        double[] t = new double[updates.length];
+        for( int i = 0; i < updates.length; i++ )
+            t[i] = updates[i].vDot( y );
+        double[] s = capacitance.solve( t );
+        for( int j = 0; j < updates.length; j++ )
+            for( int i = 0; i < y.length; i++ )
+                y[i] -= z[j][i] * s[j];
+        return y;
+    }
+
+
+    /**
+     * Solves the system A'<sup>T</sup>x = b, where A' is the updated matrix and b is the given array of constants, and returns x in a new array.
+     * Throws an <code>IllegalArgumentException</code> if the given array is missing or is not the same length as the size of the factored matrix.
+     * The first transposed solve costs k extra transposed solves with the original factorization.
+     *
+     * @param _constants the right-hand side (b) of the system to solve
+     * @return the solution (x) of the transposed system
+     */
+    @Override
+    public double[] solveTransposed( final double[] _constants ) {
+
+        // A'^T = A^T + V U^T, and its capacitance matrix I + U^T A^-T V is the transpose of ours...
+        double[][] w = getW();
+        double[] y = original.solveTransposed( _constants );
+        double[] t = new double[updates.length];
+        for( int i = 0; i < updates.length; i++ )
+            t[i] = updates[i].scaledUDot( y );
+        double[] s = capacitance.solveTransposed( t );
+        for( int j = 0; j < updates.length; j++ )
+            for( int i = 0; i < y.length; i++ )
+                y[i] -= w[j][i] * s[j];
+        return y;
+    }
+
+
+    private synchronized double[][] getW() {
+        if( w == null ) {
+            double[][] result = new double[updates.length][];
+            for( int j = 0; j < updates.length; j++ )
+                result[j] = original.solveTransposed( updates[j].v( original.size() ) );
+            w = result;
+        }
+        return w;
+    }
+}
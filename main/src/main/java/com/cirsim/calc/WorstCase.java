@@ -0,0 +1,96 @@
+package com.cirsim.calc;
+
+/**
+ * Instances of this class hold the results of a {@link WorstCaseAnalysis} for one output (the voltage at one node): its nominal value, its lowest
+ * and highest values over all the combinations of component values within their tolerances, the <i>corners</i> (the scale factor of each branch's
+ * component) where those extremes are found, and the sensitivities of the output to each component's scale factor at the nominal values.
+ * Instances are immutable.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class WorstCase {
+
+    private final String node;
+    private final double nominal;
+    private final double min;
+    private final double max;
+    private final double[] minScales;
+    private final double[] maxScales;
+    private final double[] sensitivities;
+
+
+    WorstCase( final String _node, final double _nominal, final double _min, final double _max, final double[] _minScales,
+               final double[] _maxScales, final double[] _sensitivities ) {
+        node = _node;
+        nominal = _nominal;
+        min = _min;
+        max = _max;
+        minScales = _minScales;
+        maxScales = _maxScales;
+        sensitivities = _sensitivities;
+    }
+
+
+    /**
+     * Returns the name of the node whose voltage is the output.
+     *
+     * @return the name of the output's node
+     */
+    public String getNode() {
+        return node;
+    }
+
+
+    public double getNominal() {
+        return nominal;
+    }
+
+
+    public double getMin() {
+        return min;
+    }
+
+
+    public double getMax() {
+        return max;
+    }
+
+
+    /**
+     * Returns a copy of the scale factor of each branch's component (indexed by branch, and one for components without a tolerance) at the corner
+     * where the output is lowest.
+     *
+     * @return the corner where the output is lowest
+     */
+    public double[] getMinScales() {
+        return minScales.clone();
+    }
+
+
+    /**
+     * Returns a copy of the scale factor of each branch's component (indexed by branch, and one for components without a tolerance) at the corner
+     * where the output is highest.
+     *
+     * @return the corner where the output is highest
+     */
+    public double[] getMaxScales() {
+        return maxScales.clone();
+    }
+
+
+    /**
+     * Returns the derivative of the output with respect to the scale factor of the given branch's component, at the nominal values (zero for
+     * components without a tolerance).
+     *
+     * @param _branch the index of the branch
+     * @return the sensitivity of the output to the given branch's component
+     */
+    public double getSensitivity( final int _branch ) {
+        return sensitivities[_branch];
+    }
+
+
+    public String toString() {
+        return node + ": nominal " + nominal + ", min " + min + ", max " + max;
+    }
+}
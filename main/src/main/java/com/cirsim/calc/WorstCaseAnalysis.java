@@ -0,0 +1,182 @@
+package com.cirsim.calc;
+
+import com.cirsim.components.TolerancedComponent;
+import com.cirsim.values.Tolerance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the extreme values of a circuit's DC outputs (node voltages) over all the combinations of component values within their tolerances (see
+ * {@link TolerancedComponent}).  Checking every <i>corner</i> (every combination of each component at one end of its tolerance band or the other)
+ * would take 2<sup>N</sup> solutions for N toleranced components, which is hopeless for all but the smallest circuits.  Instead, this analysis:
+ * <ol>
+ *     <li>computes the sensitivity of each output to every component's value, by the adjoint method (see {@link SensitivityAnalysis}): one
+ *     factorization in all, and one extra substitution per output;</li>
+ *     <li>picks, for each output, the corner with every component at the end of its band that raises the output (for the highest value) or lowers
+ *     it (for the lowest); and</li>
+ *     <li>solves just those corners (two per output, fewer if outputs share corners), in parallel on a {@link ForkJoinPool}.</li>
+ * </ol>
+ * The corners are chosen by the signs of the sensitivities at the nominal values, so they are the true worst cases whenever each output changes
+ * monotonically with each component's value across its tolerance band, as it nearly always does in practice.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class WorstCaseAnalysis {
+
+    private final CircuitGraph graph;
+    private final int[] varied;                // the branches with toleranced components...
+    private final Tolerance[] tolerances;      // the tolerance of each varied branch's component...
+
+
+    /**
+     * Creates a new instance of this class to analyze the circuit with the given graph.  Throws an <code>IllegalArgumentException</code> if the graph
+     * is missing, or has nonlinear components.
+     *
+     * @param _graph the graph of the circuit to analyze
+     */
+    public WorstCaseAnalysis( final CircuitGraph _graph ) {
+
+        if( _graph == null )
+            throw new IllegalArgumentException( "Circuit graph is missing" );
+
+        if( _graph.getNonlinearCount() > 0 )
+            throw new IllegalArgumentException( "Circuit has nonlinear components, which worst case analysis doesn't support" );
+
+        graph = _graph;
+        varied = graph.getBranches().stream().filter( branch -> branch.getComponent() instanceof TolerancedComponent )
+                .mapToInt( CircuitGraph.Branch::getIndex ).toArray();
+        tolerances = new Tolerance[varied.length];
+        for( int i = 0; i < varied.length; i++ )
+            tolerances[i] = ((TolerancedComponent) graph.getBranch( varied[i] ).getComponent()).getTolerance();
+    }
+
+
+    /**
+     * Returns the worst cases of the voltages at the nodes with the given names, solving the corners in parallel on the common fork/join pool.
+     *
+     * @param _nodes the names of the nodes whose voltages are the outputs
+     * @return the worst cases of the outputs, in the same order
+     */
+    public List<WorstCase> run( final String... _nodes ) {
+        return run( Arrays.asList( _nodes ), ForkJoinPool.commonPool() );
+    }
+
+
+    /**
+     * Returns the worst cases of the voltages at the nodes with the given names, solving the corners in parallel on the given fork/join pool.  Throws
+     * an <code>IllegalArgumentException</code> if the nodes or pool are missing, any node doesn't exist, or the circuit's equations are singular.
+     *
+     * @param _nodes the names of the nodes whose voltages are the outputs
+     * @param _pool the fork/join pool to solve the corners in
+     * @return the worst cases of the outputs, in the same order
+     */
+    public List<WorstCase> run( final List<String> _nodes, final ForkJoinPool _pool ) {
+
+        if( (_nodes == null) || (_pool == null) )
+            throw new IllegalArgumentException( "Nodes or fork/join pool missing" );
+
+        int[] nodes = new int[_nodes.size()];
+        for( int i = 0; i < nodes.length; i++ ) {
+            nodes[i] = graph.getNode( _nodes.get( i ) );
+            if( nodes[i] < 0 )
+                throw new IllegalArgumentException( "No node named '" + _nodes.get( i ) + "'" );
+        }
+
+        // solve at the nominal values, and get the sensitivities...
+        SensitivityAnalysis sensitivity = new SensitivityAnalysis( graph );
+        double[] voltages = sensitivity.getNodeVoltages();
+
+        // find each output's sensitivities, and from them its two corners (solving each distinct corner only once); a corner is identified by which
+        // varied components it moves (bit 2i), and which of those it moves to the higher end of their bands (bit 2i + 1)...
+        double[][] sensitivities = new double[nodes.length][];
+        int[][] outputCorners = new int[nodes.length][2];
+        List<double[]> corners = new ArrayList<>();
+        Map<BitSet, Integer> cornerIndices = new HashMap<>();
+        for( int o = 0; o < nodes.length; o++ ) {
+
+            sensitivities[o] = sensitivity.getScaleDerivatives( nodes[o] );
+
+            for( int end = 0; end < 2; end++ ) {
+                BitSet key = new BitSet( varied.length << 1 );
+                for( int i = 0; i < varied.length; i++ ) {
+                    double s = sensitivities[o][varied[i]];
+                    if( s != 0 ) {
+                        key.set( i << 1 );
+                        key.set( (i << 1) + 1, (s > 0) == (end == 1) );
+                    }
+                }
+                Integer index = cornerIndices.get( key );
+                if( index == null ) {
+                    index = corners.size();
+                    corners.add( scales( key ) );
+                    cornerIndices.put( key, index );
+                }
+                outputCorners[o][end] = index;
+            }
+        }
+
+        // solve the corners in parallel...
+        double[][] cornerVoltages = new double[corners.size()][];
+        ConcurrentLinkedQueue<ScaledSolver> idle = new ConcurrentLinkedQueue<>();
+        try {
+            _pool.submit( () -> IntStream.range( 0, corners.size() ).parallel().forEach( c -> {
+                ScaledSolver solver = idle.poll();
+                if( solver == null )
+                    solver = new ScaledSolver( graph );
+                System.arraycopy( corners.get( c ), 0, solver.getScales(), 0, graph.getBranchCount() );
+                cornerVoltages[c] = solver.getAssembler().getNodeVoltages( solver.solve() );
+                idle.add( solver );
+            } ) ).get();
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Worst case analysis was interrupted" );
+        }
+        catch( ExecutionException e ) {
+            if( e.getCause() instanceof RuntimeException )
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException( "Worst case analysis failed", e.getCause() );
+        }
+
+        List<WorstCase> result = new ArrayList<>();
+        for( int o = 0; o < nodes.length; o++ ) {
+            int low = outputCorners[o][0];
+            int high = outputCorners[o][1];
+            result.add( new WorstCase( _nodes.get( o ), voltages[nodes[o]], cornerVoltages[low][nodes[o]], cornerVoltages[high][nodes[o]],
+                    corners.get( low ), corners.get( high ), sensitivities[o] ) );
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the scale factor of each branch's component at the corner identified by the given key (see {@link #run(List, ForkJoinPool)}).
+     */
+    private double[] scales( final BitSet _key ) {
+        double[] result = new double[graph.getBranchCount()];
+        Arrays.fill( result, 1 );
+        for( int i = 0; i < varied.length; i++ )
+            if( _key.get( i << 1 ) )
+                result[varied[i]] = 1 + (_key.get( (i << 1) + 1 ) ? tolerances[i].getHigherPercent() : tolerances[i].getLowerPercent()) / 100;
+        return result;
+    }
+
+
+    /**
+     * Returns the number of toleranced components, whose values are varied by this analysis.
+     *
+     * @return the number of toleranced components
+     */
+    public int getVariedCount() {
+        return varied.length;
+    }
+}
@@ -0,0 +1,111 @@
+package com.cirsim.components;
+
+import com.cirsim.Circuit;
+import com.cirsim.Token;
+import com.cirsim.calc.StampTarget;
+import com.cirsim.nets.Terminals;
+import com.cirsim.values.AScalar;
+import com.cirsim.values.AssumedUnit;
+import com.cirsim.values.Tolerance;
+import com.cirsim.values.Units;
+import com.cirsim.values.Value;
+import com.cirsim.values.ValuesFactory;
+import com.google.common.collect.Sets;
+
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A capacitor, whose state is the voltage across it (from terminal 1 to terminal 2).
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class Capacitor extends AComponent implements ReactiveComponent {
+
+
+    private AScalar   capacitance;
+    private Tolerance tolerance;
+
+
+    public Capacitor( final ListIterator<Token> _tokenIterator, final Circuit _circuit ) {
+        super( _circuit );
+
+        // get our default values, which also creates factories...
+        Set<Value> defaults = Sets.newHashSet(
+                new AssumedUnit( 0, Units.CAPACITANCE ),
+                new Tolerance( 0, 0 ) );
+
+        // get any specified values, along with defaults for unspecified values...
+        Map<Class<? extends Value>, Value> values = ValuesFactory.getValues( defaults, _tokenIterator, _circuit );
+
+        // store the values we got...
+        capacitance = (AssumedUnit) values.get( AssumedUnit.class );
+        tolerance   = (Tolerance)   values.get( Tolerance.class   );
+
+        // create our terminals...
+        terminals = Terminals.getTwoTerminalInstance( this );
+    }
+
+
+    private Capacitor( final Capacitor _original, final Circuit _circuit ) {
+        super( _circuit );
+        capacitance = _original.capacitance;
+        tolerance   = _original.tolerance;
+        terminals = Terminals.getTwoTerminalInstance( this );
+    }
+
+
+    @Override
+    public Component copy( final Circuit _circuit ) {
+        return new Capacitor( this, _circuit );
+    }
+
+
+    @Override
+    public Units getExpectedUnit() {
+        return Units.CAPACITANCE;
+    }
+
+
+    @Override
+    public int getBranchCount() {
+        return 0;
+    }
+
+
+    @Override
+    public double getState( final double[] _values, final int[] _rows ) {
+        return ((_rows[0] < 0) ? 0 : _values[_rows[0]]) - ((_rows[1] < 0) ? 0 : _values[_rows[1]]);
+    }
+
+
+    /**
+     * Stamps this capacitor's companion model, the current C * dv/dt = C * (a0 * v + h): a conductance of C * a0 in parallel with a current source of
+     * C * h, between the nodes its two terminals are on.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this capacitor's terminal voltages
+     * @param _coefficient the coefficient (a0) of the new voltage in its derivative
+     * @param _history the history term (h) of the derivative
+     */
+    @Override
+    public void stamp( final StampTarget _target, final int[] _rows, final double _coefficient, final double _history ) {
+        double c = capacitance.getValue();
+        _target.addConductance( _rows[0], _rows[1], c * _coefficient );
+        if( _rows[0] >= 0 )
+            _target.addConstant( _rows[0], -c * _history );
+        if( _rows[1] >= 0 )
+            _target.addConstant( _rows[1], c * _history );
+    }
+
+
+    public AScalar getCapacitance() {
+        return capacitance;
+    }
+
+
+    public Tolerance getTolerance() {
+        return tolerance;
+    }
+}
@@ -1,5 +1,8 @@
 package com.cirsim.components;
 
+import com.cirsim.Circuit;
+import com.cirsim.calc.StampTarget;
+import com.cirsim.nets.Terminals;
 import com.cirsim.values.Units;
 
 /**
@@ -8,4 +11,40 @@ import com.cirsim.values.Units;
 public interface Component {
 
     Units getExpectedUnit();
+
+    Terminals getTerminals();
+
+
+    /**
+     * Returns a new component with the same values as this one, belonging to the given circuit, with its terminals not yet connected to any net.
+     * The values of components are immutable, so they are shared with the copy.
+     *
+     * @param _circuit the circuit the copy belongs to
+     * @return a copy of this component
+     */
+    Component copy( final Circuit _circuit );
+
+
+    /**
+     * Returns the number of branch unknowns this component adds to the circuit's modified nodal analysis equations, beyond the voltages at its
+     * terminals.  This is zero for components whose currents are a function of their terminal voltages (like resistors), and one for each current
+     * that isn't (like the current through a voltage source).
+     *
+     * @return the number of branch unknowns this component adds
+     */
+    int getBranchCount();
+
+
+    /**
+     * Stamps this component's contribution to the circuit's modified nodal analysis equations into the given target.  The given rows are the rows
+     * (and columns) of this component's unknowns: first the voltage at each of its terminals, in terminal order ("1", "2", ...), with -1 for a
+     * terminal on the reference node; then its branch unknowns (see {@link #getBranchCount()}).
+     * <p>
+     * Implementations must make the same sequence of stamps (calls to {@link StampTarget#add(int, int, double)}) every time they're given the same
+     * rows, whatever their values (even zero), as assemblers precompute where each stamp lands (see {@link com.cirsim.calc.MNAAssembler}).
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this component's unknowns
+     */
+    void stamp( final StampTarget _target, final int[] _rows );
 }
@@ -3,10 +3,13 @@ package com.cirsim.components;
 import com.cirsim.Circuit;
 import com.cirsim.TokenType;
 import com.cirsim.Token;
+import com.cirsim.util.Symbols;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 
@@ -15,7 +18,9 @@ import java.util.Map;
  */
 public class ComponentFactory {
 
-    private static final Map<String, Class<? extends Component>> components = getComponents();
+    // the names of the component types, and the constructor of each, by the id of its name...
+    private static final Symbols typeNames = new Symbols();
+    private static final List<Constructor<? extends Component>> constructors = getConstructors();
 
     /**
      * Using tokens in the given token list iterator, tests first to see if the next tokens represent a component, and if so, instantiate it.  Returns
@@ -34,27 +39,29 @@ public class ComponentFactory {
         }
         else {
             Token type = _tokenIterator.next();
-            if( type.is( TokenType.TYPE ) ) {
-                return getComponent( type, _tokenIterator, _circuit );
-            }
-            else {
+            if( !type.is( TokenType.TYPE ) ) {
                 _circuit.getCircuitFactory().postError( "Token is not a type", type );
                 return null;
             }
+
+            // if it's not a component type, put the type back for someone else to deal with...
+            if( typeNames.find( type.getValue() ) < 0 ) {
+                _tokenIterator.previous();
+                return null;
+            }
+            return getComponent( type, _tokenIterator, _circuit );
         }
     }
 
 
     private static Component getComponent( final Token _token, final ListIterator<Token> _tokenIterator, final Circuit _circuit ) {
-        String typeName = _token.getValue();
-        Class<? extends Component> klass = components.get( typeName );
-        if( klass != null ) {
+        int id = typeNames.find( _token.getValue() );
+        if( id >= 0 ) {
 
             try {
-                Constructor<? extends Component> ctor = klass.getConstructor( ListIterator.class, Circuit.class );
-                return ctor.newInstance( _tokenIterator, _circuit );
+                return constructors.get( id ).newInstance( _tokenIterator, _circuit );
             }
-            catch( NoSuchMethodException | IllegalAccessException | InstantiationException | InvocationTargetException e ) {
+            catch( IllegalAccessException | InstantiationException | InvocationTargetException e ) {
                 e.printStackTrace();
                 return null;  // we don't care why it didn't work, just that it didn't...
             }
@@ -63,13 +70,29 @@ public class ComponentFactory {
     }
 
 
-    private static Map<String, Class<? extends Component>> getComponents() {
+    /**
+     * Returns the constructor of each component type, by the id of its name, looking each one up just once rather than for every component made.
+     */
+    private static List<Constructor<? extends Component>> getConstructors() {
 
-        Map<String, Class<? extends Component>> result = new HashMap<>();
+        Map<String, Class<? extends Component>> classes = new LinkedHashMap<>();
 
-        result.put( "Resistor",             Resistor.class             );
-        result.put( "FixedDCVoltageSource", FixedDCVoltageSource.class );
+        classes.put( "Resistor",             Resistor.class             );
+        classes.put( "FixedDCVoltageSource", FixedDCVoltageSource.class );
+        classes.put( "Capacitor",            Capacitor.class            );
+        classes.put( "Inductor",             Inductor.class             );
+        classes.put( "Diode",                Diode.class                );
 
+        List<Constructor<? extends Component>> result = new ArrayList<>();
+        for( Map.Entry<String, Class<? extends Component>> entry : classes.entrySet() ) {
+            try {
+                typeNames.intern( entry.getKey() );
+                result.add( entry.getValue().getConstructor( ListIterator.class, Circuit.class ) );
+            }
+            catch( NoSuchMethodException _e ) {
+                throw new IllegalStateException( "Component type " + entry.getKey() + " has no token constructor", _e );
+            }
+        }
         return result;
     }
 }
@@ -0,0 +1,140 @@
+package com.cirsim.components;
+
+import com.cirsim.Circuit;
+import com.cirsim.Token;
+import com.cirsim.calc.StampTarget;
+import com.cirsim.nets.Terminals;
+import com.cirsim.values.AScalar;
+import com.cirsim.values.AssumedUnit;
+import com.cirsim.values.Units;
+import com.cirsim.values.Value;
+import com.cirsim.values.ValuesFactory;
+import com.google.common.collect.Sets;
+
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An ideal junction diode, whose current (from terminal 1, the anode, to terminal 2, the cathode) is given by the Shockley equation
+ * I<sub>s</sub>(e<sup>v/V<sub>t</sub></sup> - 1), with an emission coefficient of one and the thermal voltage at 300K.  Its one value is its
+ * saturation current (I<sub>s</sub>), which defaults to 10fA.
+ * <p>
+ * Above a forward voltage of 40 thermal voltages (about a volt), the exponential is continued as a straight line, so that the iterates of a Newton
+ * solution far from the operating point can't overflow.  A small conductance (GMIN, as in SPICE) is always in parallel with the junction, so that a
+ * reverse biased diode never leaves a node floating.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class Diode extends AComponent implements NonlinearComponent {
+
+    private static final double THERMAL_VOLTAGE = 0.025852;   // kT/q at 300K...
+    private static final double MAX_EXPONENT = 40;              // the largest exponent evaluated before continuing linearly...
+    private static final double GMIN = 1e-12;                   // the conductance in parallel with the junction...
+
+
+    private AScalar saturationCurrent;
+
+
+    public Diode( final ListIterator<Token> _tokenIterator, final Circuit _circuit ) {
+        super( _circuit );
+
+        // get our default values, which also creates factories...
+        Set<Value> defaults = Sets.newHashSet(
+                new AssumedUnit( 1e-14, Units.CURRENT ) );
+
+        // get any specified values, along with defaults for unspecified values...
+        Map<Class<? extends Value>, Value> values = ValuesFactory.getValues( defaults, _tokenIterator, _circuit );
+
+        // store the values we got...
+        saturationCurrent = (AssumedUnit) values.get( AssumedUnit.class );
+
+        // create our terminals (terminal 1 is the anode)...
+        terminals = Terminals.getTwoTerminalInstance( this );
+    }
+
+
+    private Diode( final Diode _original, final Circuit _circuit ) {
+        super( _circuit );
+        saturationCurrent = _original.saturationCurrent;
+        terminals = Terminals.getTwoTerminalInstance( this );
+    }
+
+
+    @Override
+    public Component copy( final Circuit _circuit ) {
+        return new Diode( this, _circuit );
+    }
+
+
+    @Override
+    public Units getExpectedUnit() {
+        return Units.CURRENT;
+    }
+
+
+    @Override
+    public int getBranchCount() {
+        return 0;
+    }
+
+
+    /**
+     * Stamps this diode's linearization about the voltage across it in the given solution: its conductance at that voltage, in parallel with the
+     * current source that makes up the difference between the conductance's current and the diode's.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this diode's anode and cathode voltages
+     * @param _values the solution to linearize about, or null to linearize about zero volts
+     */
+    @Override
+    public void stamp( final StampTarget _target, final int[] _rows, final double[] _values ) {
+
+        double v = voltage( _values, _rows[0] ) - voltage( _values, _rows[1] );
+        double g = getConductance( v );
+        double source = getCurrent( v ) - g * v;
+
+        _target.addConductance( _rows[0], _rows[1], g );
+        if( _rows[0] >= 0 )
+            _target.addConstant( _rows[0], -source );
+        if( _rows[1] >= 0 )
+            _target.addConstant( _rows[1], source );
+    }
+
+
+    /**
+     * Returns the current through this diode, from anode to cathode, with the given voltage across it.
+     *
+     * @param _volts the voltage from anode to cathode
+     * @return the current through this diode
+     */
+    @Override
+    public double getCurrent( final double _volts ) {
+        double x = _volts / THERMAL_VOLTAGE;
+        double is = saturationCurrent.getValue();
+        double junction = (x <= MAX_EXPONENT) ? is * Math.expm1( x ) : is * (Math.exp( MAX_EXPONENT ) * (1 + x - MAX_EXPONENT) - 1);
+        return junction + GMIN * _volts;
+    }
+
+
+    /**
+     * Returns the derivative of this diode's current with respect to the voltage across it, at the given voltage.
+     *
+     * @param _volts the voltage from anode to cathode
+     * @return the conductance of this diode at the given voltage
+     */
+    public double getConductance( final double _volts ) {
+        double x = Math.min( _volts / THERMAL_VOLTAGE, MAX_EXPONENT );
+        return saturationCurrent.getValue() * Math.exp( x ) / THERMAL_VOLTAGE + GMIN;
+    }
+
+
+    private static double voltage( final double[] _values, final int _row ) {
+        return ((_values == null) || (_row < 0)) ? 0 : _values[_row];
+    }
+
+
+    public AScalar getSaturationCurrent() {
+        return saturationCurrent;
+    }
+}
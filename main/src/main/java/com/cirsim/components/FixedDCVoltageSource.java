@@ -2,23 +2,60 @@ package com.cirsim.components;
 
 import com.cirsim.Circuit;
 import com.cirsim.Token;
+import com.cirsim.calc.StampTarget;
+import com.cirsim.nets.Terminals;
+import com.cirsim.values.AssumedUnit;
 import com.cirsim.values.Tolerance;
 import com.cirsim.values.Units;
+import com.cirsim.values.Value;
+import com.cirsim.values.ValuesFactory;
+import com.google.common.collect.Sets;
 
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Tom Dilatush  tom@dilatush.com
  */
-public class FixedDCVoltageSource extends AComponent implements Component {
+public class FixedDCVoltageSource extends AComponent implements TolerancedComponent {
 
 
     private double volts;
     private Tolerance tolerance;
 
 
-    protected FixedDCVoltageSource( final ListIterator<Token> _tokenIterator, final Circuit _circuit ) {
+    public FixedDCVoltageSource( final ListIterator<Token> _tokenIterator, final Circuit _circuit ) {
         super( _circuit );
+
+        // get our default values, which also creates factories...
+        Set<Value> defaults = Sets.newHashSet(
+                new AssumedUnit( 0, Units.VOLTAGE ),
+                new Tolerance( 0, 0 ) );
+
+        // get any specified values, along with defaults for unspecified values...
+        Map<Class<? extends Value>, Value> values = ValuesFactory.getValues( defaults, _tokenIterator, _circuit );
+
+        // store the values we got...
+        volts     = ((AssumedUnit) values.get( AssumedUnit.class )).getValue();
+        tolerance = (Tolerance)    values.get( Tolerance.class   );
+
+        // create our terminals (terminal 1 is the positive terminal)...
+        terminals = Terminals.getTwoTerminalInstance( this );
+    }
+
+
+    private FixedDCVoltageSource( final FixedDCVoltageSource _original, final Circuit _circuit ) {
+        super( _circuit );
+        volts     = _original.volts;
+        tolerance = _original.tolerance;
+        terminals = Terminals.getTwoTerminalInstance( this );
+    }
+
+
+    @Override
+    public Component copy( final Circuit _circuit ) {
+        return new FixedDCVoltageSource( this, _circuit );
     }
 
 
@@ -26,4 +63,65 @@ public class FixedDCVoltageSource extends AComponent implements Component {
     public Units getExpectedUnit() {
         return Units.VOLTAGE;
     }
+
+
+    @Override
+    public int getBranchCount() {
+        return 1;
+    }
+
+
+    /**
+     * Stamps this source between the nodes its terminals are on, with its current as its one branch unknown.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this source's + and - terminal voltages, and of its current
+     */
+    @Override
+    public void stamp( final StampTarget _target, final int[] _rows ) {
+        stampValue( _target, _rows, volts );
+    }
+
+
+    /**
+     * Stamps a source with the given voltage in place of this one's, between the nodes its terminals are on.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this source's + and - terminal voltages, and of its current
+     * @param _value the voltage to stamp
+     */
+    @Override
+    public void stampValue( final StampTarget _target, final int[] _rows, final double _value ) {
+        _target.addVoltageSource( _rows[0], _rows[1], _rows[2], _value );
+    }
+
+
+    /**
+     * Stamps the derivative of this source's voltage with respect to itself, which is just one, into its branch equation's constant (the connections
+     * to its nodes don't depend on the voltage at all).  This holds at any voltage, including zero.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this source's + and - terminal voltages, and of its current
+     * @param _value the voltage this source is stamped with
+     */
+    @Override
+    public void stampDerivative( final StampTarget _target, final int[] _rows, final double _value ) {
+        _target.addConstant( _rows[2], 1 );
+    }
+
+
+    @Override
+    public double getNominalValue() {
+        return volts;
+    }
+
+
+    public double getVolts() {
+        return volts;
+    }
+
+
+    public Tolerance getTolerance() {
+        return tolerance;
+    }
 }
@@ -0,0 +1,108 @@
+package com.cirsim.components;
+
+import com.cirsim.Circuit;
+import com.cirsim.Token;
+import com.cirsim.calc.StampTarget;
+import com.cirsim.nets.Terminals;
+import com.cirsim.values.AScalar;
+import com.cirsim.values.AssumedUnit;
+import com.cirsim.values.Tolerance;
+import com.cirsim.values.Units;
+import com.cirsim.values.Value;
+import com.cirsim.values.ValuesFactory;
+import com.google.common.collect.Sets;
+
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An inductor, whose state is the current through it (from terminal 1 to terminal 2), which is its one branch unknown.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class Inductor extends AComponent implements ReactiveComponent {
+
+
+    private AScalar   inductance;
+    private Tolerance tolerance;
+
+
+    public Inductor( final ListIterator<Token> _tokenIterator, final Circuit _circuit ) {
+        super( _circuit );
+
+        // get our default values, which also creates factories...
+        Set<Value> defaults = Sets.newHashSet(
+                new AssumedUnit( 0, Units.INDUCTANCE ),
+                new Tolerance( 0, 0 ) );
+
+        // get any specified values, along with defaults for unspecified values...
+        Map<Class<? extends Value>, Value> values = ValuesFactory.getValues( defaults, _tokenIterator, _circuit );
+
+        // store the values we got...
+        inductance = (AssumedUnit) values.get( AssumedUnit.class );
+        tolerance  = (Tolerance)   values.get( Tolerance.class   );
+
+        // create our terminals...
+        terminals = Terminals.getTwoTerminalInstance( this );
+    }
+
+
+    private Inductor( final Inductor _original, final Circuit _circuit ) {
+        super( _circuit );
+        inductance = _original.inductance;
+        tolerance  = _original.tolerance;
+        terminals = Terminals.getTwoTerminalInstance( this );
+    }
+
+
+    @Override
+    public Component copy( final Circuit _circuit ) {
+        return new Inductor( this, _circuit );
+    }
+
+
+    @Override
+    public Units getExpectedUnit() {
+        return Units.INDUCTANCE;
+    }
+
+
+    @Override
+    public int getBranchCount() {
+        return 1;
+    }
+
+
+    @Override
+    public double getState( final double[] _values, final int[] _rows ) {
+        return _values[_rows[2]];
+    }
+
+
+    /**
+     * Stamps this inductor's companion model, with its current as its one branch unknown and the branch equation v = L * di/dt = L * (a0 * i + h):
+     * a voltage source of L * h in series with a resistance of L * a0, between the nodes its two terminals are on.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this inductor's terminal voltages, and of its current
+     * @param _coefficient the coefficient (a0) of the new current in its derivative
+     * @param _history the history term (h) of the derivative
+     */
+    @Override
+    public void stamp( final StampTarget _target, final int[] _rows, final double _coefficient, final double _history ) {
+        double l = inductance.getValue();
+        _target.addVoltageSource( _rows[0], _rows[1], _rows[2], l * _history );
+        _target.add( _rows[2], _rows[2], -l * _coefficient );
+    }
+
+
+    public AScalar getInductance() {
+        return inductance;
+    }
+
+
+    public Tolerance getTolerance() {
+        return tolerance;
+    }
+}
@@ -0,0 +1,51 @@
+package com.cirsim.components;
+
+import com.cirsim.calc.StampTarget;
+
+/**
+ * Implemented by components whose current is a nonlinear function of the voltages at their terminals (such as a diode).  A circuit with any such
+ * component can't be solved directly; instead, its equations are solved iteratively by Newton's method (see {@link com.cirsim.calc.NewtonSolver}),
+ * which on each iteration has every nonlinear component stamp its <i>linearization</i> about the latest solution: the conductance given by the
+ * derivative of its current at that solution, in parallel with the current source that makes the linearization exact there.  The matrix those stamps
+ * make is the Jacobian of the circuit's equations at that solution, and solving with it gives the next Newton iterate.
+ * <p>
+ * Nonlinear components stamp their linearization about zero volts (see {@link #stamp(StampTarget, int[], double[])}) when stamped without a
+ * solution, as {@link #stamp(StampTarget, int[])} does.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public interface NonlinearComponent extends Component {
+
+
+    /**
+     * Stamps this component's linearization about the given solution of a circuit's equations (or about zero volts, if the solution is null) into the
+     * given target.  As for {@link #stamp(StampTarget, int[])}, the sequence of stamps must not depend on the solution.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this component's unknowns
+     * @param _values the solution to linearize about, or null to linearize about zero volts
+     */
+    void stamp( final StampTarget _target, final int[] _rows, final double[] _values );
+
+
+    /**
+     * Returns the current through this component, from its first terminal to its second, with the given voltage across it (from its first terminal
+     * to its second).
+     *
+     * @param _volts the voltage across this component
+     * @return the current through this component
+     */
+    double getCurrent( final double _volts );
+
+
+    /**
+     * Stamps this component's linearization about zero volts.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this component's unknowns
+     */
+    @Override
+    default void stamp( final StampTarget _target, final int[] _rows ) {
+        stamp( _target, _rows, null );
+    }
+}
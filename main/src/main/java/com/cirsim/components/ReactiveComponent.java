@@ -0,0 +1,53 @@
+package com.cirsim.components;
+
+import com.cirsim.calc.StampTarget;
+
+/**
+ * Implemented by components whose behavior depends on the rate of change of some quantity (their <i>state</i>): the voltage across a capacitor, or
+ * the current through an inductor.  In a time-domain analysis, the derivative of each component's state at the new time point is approximated by an
+ * integration formula as a linear function of its (unknown) new state and of its known past states: dx/dt = a0 * x + h, where the coefficient a0
+ * is the same for every component (it depends only on the step size and integration method), and the history h is particular to each component.
+ * Given those, the component stamps its <i>companion model</i>: the linear (resistive) equivalent of the component at the new time point.
+ * <p>
+ * At DC, every derivative is zero (a0 and h are both zero), so capacitors are open circuits and inductors short circuits; that is what
+ * {@link #stamp(StampTarget, int[])} stamps.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public interface ReactiveComponent extends Component {
+
+
+    /**
+     * Returns this component's state, given the solution to a circuit's equations and the rows of this component's unknowns in them (see
+     * {@link #stamp(StampTarget, int[])}).
+     *
+     * @param _values the solution to the circuit's equations
+     * @param _rows the rows of this component's unknowns
+     * @return this component's state
+     */
+    double getState( final double[] _values, final int[] _rows );
+
+
+    /**
+     * Stamps this component's companion model, in which the derivative of its state is a0 * x + h, into the given target.  As for
+     * {@link #stamp(StampTarget, int[])}, the sequence of stamps must not depend on the values of the coefficient or the history.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this component's unknowns
+     * @param _coefficient the coefficient (a0) of the new state in the derivative
+     * @param _history the history term (h) of the derivative
+     */
+    void stamp( final StampTarget _target, final int[] _rows, final double _coefficient, final double _history );
+
+
+    /**
+     * Stamps this component's DC model: its companion model with a derivative of zero.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this component's unknowns
+     */
+    @Override
+    default void stamp( final StampTarget _target, final int[] _rows ) {
+        stamp( _target, _rows, 0, 0 );
+    }
+}
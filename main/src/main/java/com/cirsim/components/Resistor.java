@@ -1,6 +1,7 @@
 package com.cirsim.components;
 
 import com.cirsim.Circuit;
+import com.cirsim.calc.StampTarget;
 import com.cirsim.nets.Terminals;
 import com.cirsim.values.*;
 import com.google.common.collect.Sets;
@@ -13,7 +14,7 @@ import java.util.Set;
 /**
  * @author Tom Dilatush  tom@dilatush.com
  */
-public class Resistor extends AComponent implements Component {
+public class Resistor extends AComponent implements TolerancedComponent {
 
 
     private AScalar      resistance;
@@ -46,12 +47,78 @@ public class Resistor extends AComponent implements Component {
     }
 
 
+    private Resistor( final Resistor _original, final Circuit _circuit ) {
+        super( _circuit );
+        resistance       = _original.resistance;
+        powerDissipation = _original.powerDissipation;
+        tolerance        = _original.tolerance;
+        resistorType     = _original.resistorType;
+        terminals = Terminals.getTwoTerminalInstance( this );
+    }
+
+
+    @Override
+    public Component copy( final Circuit _circuit ) {
+        return new Resistor( this, _circuit );
+    }
+
+
     @Override
     public Units getExpectedUnit() {
         return Units.RESISTANCE;
     }
 
 
+    @Override
+    public int getBranchCount() {
+        return 0;
+    }
+
+
+    /**
+     * Stamps this resistor's conductance between the nodes its two terminals are on.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this resistor's terminal voltages
+     */
+    @Override
+    public void stamp( final StampTarget _target, final int[] _rows ) {
+        stampValue( _target, _rows, resistance.getValue() );
+    }
+
+
+    /**
+     * Stamps the conductance of a resistor with the given resistance in place of this one's, between the nodes its two terminals are on.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this resistor's terminal voltages
+     * @param _value the resistance to stamp
+     */
+    @Override
+    public void stampValue( final StampTarget _target, final int[] _rows, final double _value ) {
+        _target.addConductance( _rows[0], _rows[1], 1 / _value );
+    }
+
+
+    /**
+     * Stamps the derivative of the conductance of a resistor with the given resistance R, 1/R, with respect to R: -1/R<sup>2</sup>.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this resistor's terminal voltages
+     * @param _value the resistance this resistor is stamped with
+     */
+    @Override
+    public void stampDerivative( final StampTarget _target, final int[] _rows, final double _value ) {
+        _target.addConductance( _rows[0], _rows[1], -1 / (_value * _value) );
+    }
+
+
+    @Override
+    public double getNominalValue() {
+        return resistance.getValue();
+    }
+
+
     public AScalar getResistance() {
         return resistance;
     }
@@ -0,0 +1,68 @@
+package com.cirsim.components;
+
+import com.cirsim.calc.StampTarget;
+import com.cirsim.values.Tolerance;
+
+/**
+ * Implemented by components whose DC behavior is determined by a single value (such as a resistor's resistance, or a source's voltage) that is only
+ * known to within a {@link Tolerance}.  Analyses that explore the effects of those tolerances (such as Monte Carlo analysis) stamp these components
+ * with their values scaled by a factor within their tolerance band, rather than changing the components themselves, so that many variations of a
+ * circuit may be analyzed at once.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public interface TolerancedComponent extends Component {
+
+
+    /**
+     * Returns the nominal value of this component, the value its scale factor scales (for instance, a resistor's resistance).
+     *
+     * @return the nominal value of this component
+     */
+    double getNominalValue();
+
+
+    /**
+     * Returns the tolerance of this component's value.
+     *
+     * @return the tolerance of this component's value
+     */
+    Tolerance getTolerance();
+
+
+    /**
+     * Stamps this component, as {@link #stamp(StampTarget, int[])} does, but with its value scaled by the given factor (for instance, 1.05 for a value
+     * 5% above nominal).  The sequence of stamps must not depend on the factor.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this component's unknowns
+     * @param _scale the factor to scale this component's value by
+     */
+    default void stamp( final StampTarget _target, final int[] _rows, final double _scale ) {
+        stampValue( _target, _rows, getNominalValue() * _scale );
+    }
+
+
+    /**
+     * Stamps this component, as {@link #stamp(StampTarget, int[])} does, but with the given value in place of its nominal value (for instance, as a
+     * DC sweep does, which may sweep a component whose nominal value is zero).  The sequence of stamps must not depend on the value.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this component's unknowns
+     * @param _value the value to stamp this component with
+     */
+    void stampValue( final StampTarget _target, final int[] _rows, final double _value );
+
+
+    /**
+     * Stamps the derivative, with respect to this component's value, of what {@link #stampValue(StampTarget, int[], double)} stamps at the given
+     * value.  Given the solution x of a circuit's equations Ax = b, and the solution y of the adjoint equations A<sup>T</sup>y = c, the derivative of
+     * the output c<sup>T</sup>x with respect to this component's value is -y<sup>T</sup>(A'x - b'), where A' and b' are what this method stamps (see
+     * {@link com.cirsim.calc.SensitivityAnalysis}).  Unlike the other stamping methods, this one may skip stamps whose derivative is zero.
+     *
+     * @param _target the target to stamp into
+     * @param _rows the rows of this component's unknowns
+     * @param _value the value this component is stamped with
+     */
+    void stampDerivative( final StampTarget _target, final int[] _rows, final double _value );
+}
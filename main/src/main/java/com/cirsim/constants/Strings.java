@@ -6,4 +6,5 @@ package com.cirsim.constants;
 public class Strings {
 
     public static final String SIM_FILE_EXT = ".sim";
+    public static final String COMPILED_FILE_EXT = ".simc";
 }
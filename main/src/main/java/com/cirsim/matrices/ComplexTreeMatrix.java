@@ -0,0 +1,230 @@
+package com.cirsim.matrices;
+
+/**
+ * A square sparse matrix of complex numbers, the complex counterpart of {@link TreeMatrix}, intended for the matrices of AC circuit simulations: each
+ * row's entries are indexed by a {@link TreeIndex} (keyed by column), and the values of all the entries in all the rows are held (real and imaginary
+ * parts interleaved) in a single shared {@link ComplexValueStore}.  As with {@link TreeMatrix}, once an entry exists it stays put (whatever its
+ * value) until the matrix is cleared, so callers that rebuild the matrix over and over (as an AC sweep does, at every frequency) may look up the slot
+ * of each entry once, and thereafter write the entries' values with no searches at all.
+ * <p>
+ * The size of the matrix is limited by the key range of {@link TreeIndex}, to 4,094 rows and columns.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class ComplexTreeMatrix implements MemoryInstrumentation {
+
+    private static final int MAX_SIZE = TreeIndex.MAX_ENTRIES - 1;
+    private static final int MIN_ROW_ENTRIES = 4;   // circuit matrices rarely have fewer than this many entries per row...
+
+    private final int size;
+    private final TreeIndex[] rows;
+    private final ComplexValueStore store;
+
+
+    /**
+     * Creates a new, empty (all zero) instance of this class with the given number of rows and columns.  Throws an
+     * <code>IllegalArgumentException</code> if the given size is less than one, or greater than 4,094.
+     *
+     * @param _size the number of rows (and columns) in the matrix
+     */
+    public ComplexTreeMatrix( final int _size ) {
+
+        if( (_size < 1) || (_size > MAX_SIZE) )
+            throw new IllegalArgumentException( "Matrix size out of bounds: " + _size );
+
+        size = _size;
+        rows = new TreeIndex[size];
+        for( int i = 0; i < size; i++ )
+            rows[i] = new TreeIndex( Math.min( MIN_ROW_ENTRIES, size ), size );
+        long maxEntries = Math.min( (long) size * size, 0xFFFFFE );
+        store = new ComplexValueStore( (int) Math.min( maxEntries, (long) MIN_ROW_ENTRIES * size ), (int) maxEntries );
+    }
+
+
+    /**
+     * Returns the slot in this matrix's value store that holds the entry at the given row and column, creating the entry (with a value of zero) if it
+     * doesn't already exist.  The slot stays the same until the matrix is cleared.  Throws an <code>IllegalArgumentException</code> if the row or
+     * column is out of bounds.
+     *
+     * @param _row the row of the entry
+     * @param _col the column of the entry
+     * @return the slot holding the entry at the given row and column
+     */
+    public int getSlot( final int _row, final int _col ) {
+
+        checkBounds( _row, _col );
+
+        TreeIndex row = rows[_row];
+        int slot = row.get( _col );
+        if( slot == Index.VALUE_NULL ) {
+            slot = store.create();
+            row.put( _col, slot );
+        }
+        return slot;
+    }
+
+
+    /**
+     * Sets the value in the given slot of this matrix's value store (see {@link #getSlot(int, int)}) to the given complex number.
+     *
+     * @param _slot the slot to set the value of
+     * @param _real the real part of the value
+     * @param _imaginary the imaginary part of the value
+     */
+    public void putValue( final int _slot, final double _real, final double _imaginary ) {
+        store.put( _slot, _real, _imaginary );
+    }
+
+
+    /**
+     * Adds the given complex number to the value in the given slot of this matrix's value store (see {@link #getSlot(int, int)}).
+     *
+     * @param _slot the slot to add to
+     * @param _real the real part of the value to add
+     * @param _imaginary the imaginary part of the value to add
+     */
+    public void addValue( final int _slot, final double _real, final double _imaginary ) {
+        store.add( _slot, _real, _imaginary );
+    }
+
+
+    public double getReal( final int _slot ) {
+        return store.getReal( _slot );
+    }
+
+
+    public double getImaginary( final int _slot ) {
+        return store.getImaginary( _slot );
+    }
+
+
+    /**
+     * Copies the value in the given slot of this matrix's value store into the given array at the given index (the real part) and the next one (the
+     * imaginary part).
+     *
+     * @param _slot the slot to copy the value of
+     * @param _into the array to copy the value into
+     * @param _index the index in the array to copy the real part to
+     */
+    public void getValue( final int _slot, final double[] _into, final int _index ) {
+        store.get( _slot, _into, _index );
+    }
+
+
+    /**
+     * Returns an iterator over the entries in the given row, in column order.  The iterator's keys are the columns, and its values are the slots of
+     * the entries in this matrix's value store.
+     *
+     * @param _row the row to iterate over
+     * @return an iterator over the entries in the given row
+     */
+    public IndexIterator rowIterator( final int _row ) {
+        checkBounds( _row, 0 );
+        return rows[_row].iterator();
+    }
+
+
+    /**
+     * Sets every existing entry to zero, without changing the pattern of entries.
+     */
+    public void zero() {
+        for( TreeIndex row : rows ) {
+            IndexIterator it = row.iterator();
+            while( it.hasNext() ) {
+                it.next();
+                store.put( it.value(), MatrixStuff.PURE_ZERO, MatrixStuff.PURE_ZERO );
+            }
+        }
+    }
+
+
+    /**
+     * Returns the product of this matrix and the given vector, in a new array; both the vector and the product hold the real and imaginary parts of
+     * each entry interleaved.  Throws an <code>IllegalArgumentException</code> if the vector is missing or is not twice the size of this matrix.
+     *
+     * @param _vector the vector to multiply by, interleaved
+     * @return the product of this matrix and the given vector, interleaved
+     */
+    public double[] multiply( final double[] _vector ) {
+
+        if( (_vector == null) || (_vector.length != size << 1) )
+            throw new IllegalArgumentException( "Vector missing or of wrong length" );
+
+        double[] result = new double[size << 1];
+        for( int i = 0; i < size; i++ ) {
+            IndexIterator it = rows[i].iterator();
+            double re = 0;
+            double im = 0;
+            while( it.hasNext() ) {
+                it.next();
+                double ar = store.getReal( it.value() );
+                double ai = store.getImaginary( it.value() );
+                double xr = _vector[it.key() << 1];
+                double xi = _vector[(it.key() << 1) + 1];
+                re += ar * xr - ai * xi;
+                im += ar * xi + ai * xr;
+            }
+            result[i << 1] = re;
+            result[(i << 1) + 1] = im;
+        }
+        return result;
+    }
+
+
+    /**
+     * Removes all entries from this matrix, and releases the memory that held them.
+     */
+    public void clear() {
+        for( TreeIndex row : rows )
+            row.clear();
+        store.clear();
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns the number of entries in this matrix (including any that exist, but whose value is zero).
+     *
+     * @return the number of entries in this matrix
+     */
+    public int entryCount() {
+        int result = 0;
+        for( TreeIndex row : rows )
+            result += row.size();
+        return result;
+    }
+
+
+    private void checkBounds( final int _row, final int _col ) {
+        if( (_row < 0) || (_row >= size) || (_col < 0) || (_col >= size) )
+            throw new IllegalArgumentException( "Matrix row or column out of bounds: " + _row + ", " + _col );
+    }
+
+
+    @Override
+    public long memoryAllocated() {
+        return memoryUsed() + memoryUnused();
+    }
+
+
+    @Override
+    public long memoryUsed() {
+        long result = store.memoryUsed();
+        for( TreeIndex row : rows )
+            result += row.memoryUsed();
+        return result;
+    }
+
+
+    @Override
+    public long memoryUnused() {
+        long result = store.memoryUnused();
+        for( TreeIndex row : rows )
+            result += row.memoryUnused();
+        return result;
+    }
+}
@@ -0,0 +1,182 @@
+package com.cirsim.matrices;
+
+/**
+ * A sparse vector of complex numbers, the complex counterpart of {@link TreeVector}: its entries are indexed by a {@link TreeIndex}, and their
+ * values are held (real and imaginary parts interleaved) in a {@link ComplexValueStore}.  Entries that are zero take no memory at all.  Vectors
+ * like this are the right-hand sides of AC circuit equations, which are usually zero everywhere but at the few rows their sources touch.
+ * <p>
+ * The length of the vector is limited by the key range of {@link TreeIndex}, to 4,095 entries.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class ComplexTreeVector implements MemoryInstrumentation {
+
+    private final ComplexValueStore store;
+    private final TreeIndex index;
+    private final int length;
+
+
+    /**
+     * Creates a new, all zero, instance of this class with the given minimum number of nonzero entries (used to compute the initial storage size)
+     * and length.  Throws an <code>IllegalArgumentException</code> if the minimum number of entries is negative or greater than the length, or the
+     * length is less than one or greater than 4,095.
+     *
+     * @param _minEntries the minimum number of entries to store
+     * @param _length the length of this vector
+     */
+    public ComplexTreeVector( final int _minEntries, final int _length ) {
+
+        if( (_length < 1) || (_length > TreeIndex.MAX_ENTRIES) )
+            throw new IllegalArgumentException( "Vector length out of bounds: " + _length );
+
+        store = new ComplexValueStore( _minEntries, _length );
+        index = new TreeIndex( _minEntries, _length );
+        length = _length;
+    }
+
+
+    /**
+     * Returns the real part of the entry at the given index.  Throws an <code>IndexOutOfBoundsException</code> if the index is out of bounds.
+     *
+     * @param _index the index of the entry
+     * @return the real part of the entry
+     */
+    public double getReal( final int _index ) {
+        int slot = slot( _index );
+        return (slot == Index.VALUE_NULL) ? MatrixStuff.PURE_ZERO : store.getReal( slot );
+    }
+
+
+    /**
+     * Returns the imaginary part of the entry at the given index.  Throws an <code>IndexOutOfBoundsException</code> if the index is out of bounds.
+     *
+     * @param _index the index of the entry
+     * @return the imaginary part of the entry
+     */
+    public double getImaginary( final int _index ) {
+        int slot = slot( _index );
+        return (slot == Index.VALUE_NULL) ? MatrixStuff.PURE_ZERO : store.getImaginary( slot );
+    }
+
+
+    /**
+     * Sets the entry at the given index to the given complex number; setting it to zero removes it.  Throws an
+     * <code>IndexOutOfBoundsException</code> if the index is out of bounds.
+     *
+     * @param _index the index of the entry
+     * @param _real the real part of the value
+     * @param _imaginary the imaginary part of the value
+     */
+    public void set( final int _index, final double _real, final double _imaginary ) {
+
+        int slot = slot( _index );
+        if( (_real == MatrixStuff.PURE_ZERO) && (_imaginary == MatrixStuff.PURE_ZERO) ) {
+            if( slot != Index.VALUE_NULL ) {
+                index.remove( _index );
+                store.delete( slot );
+            }
+            return;
+        }
+
+        if( slot == Index.VALUE_NULL ) {
+            slot = store.create();
+            index.put( _index, slot );
+        }
+        store.put( slot, _real, _imaginary );
+    }
+
+
+    /**
+     * Adds the given complex number to the entry at the given index.  Throws an <code>IndexOutOfBoundsException</code> if the index is out of bounds.
+     *
+     * @param _index the index of the entry
+     * @param _real the real part of the value to add
+     * @param _imaginary the imaginary part of the value to add
+     */
+    public void add( final int _index, final double _real, final double _imaginary ) {
+        set( _index, getReal( _index ) + _real, getImaginary( _index ) + _imaginary );
+    }
+
+
+    /**
+     * Copies this vector's entries into the given array, which holds the real and imaginary parts of each entry interleaved (so it must be twice this
+     * vector's length), with each entry's index mapped through the given permutation (or not, if it's null); entries that are zero are not copied.
+     * Throws an <code>IllegalArgumentException</code> if the array is missing or the wrong length.
+     *
+     * @param _into the array to copy into
+     * @param _permutation the position in the array of each index of this vector, or null to copy each entry to its own index
+     */
+    public void scatter( final double[] _into, final int[] _permutation ) {
+
+        if( (_into == null) || (_into.length != length << 1) )
+            throw new IllegalArgumentException( "Array missing or of wrong length" );
+
+        IndexIterator it = index.iterator();
+        while( it.hasNext() ) {
+            it.next();
+            int i = (_permutation == null) ? it.key() : _permutation[it.key()];
+            store.get( it.value(), _into, i << 1 );
+        }
+    }
+
+
+    /**
+     * Returns a new array with this vector's entries, with the real and imaginary parts of each entry interleaved.
+     *
+     * @return the entries of this vector, interleaved
+     */
+    public double[] toArray() {
+        double[] result = new double[length << 1];
+        scatter( result, null );
+        return result;
+    }
+
+
+    /**
+     * Returns the number of nonzero entries in this vector.
+     *
+     * @return the number of nonzero entries
+     */
+    public int nonZeroEntryCount() {
+        return index.size();
+    }
+
+
+    /**
+     * Clears all entries in the vector to pure zeros, and releases all memory previously allocated to hold values.
+     */
+    public void clear() {
+        store.clear();
+        index.clear();
+    }
+
+
+    public int length() {
+        return length;
+    }
+
+
+    private int slot( final int _index ) {
+        if( (_index < 0) || (_index >= length) )
+            throw new IndexOutOfBoundsException( "Vector index out of bounds: " + _index );
+        return index.get( _index );
+    }
+
+
+    @Override
+    public long memoryAllocated() {
+        return store.memoryAllocated() + index.memoryAllocated();
+    }
+
+
+    @Override
+    public long memoryUsed() {
+        return store.memoryUsed() + index.memoryUsed();
+    }
+
+
+    @Override
+    public long memoryUnused() {
+        return store.memoryUnused() + index.memoryUnused();
+    }
+}
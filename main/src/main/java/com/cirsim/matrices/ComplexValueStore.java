@@ -0,0 +1,253 @@
+package com.cirsim.matrices;
+
+import java.util.Arrays;
+
+import static com.cirsim.util.Numbers.closestBinaryPower;
+
+/**
+ * Provides a simple key/value store for complex numbers, the complex counterpart of {@link ExpandingValueStore}, intended for the vectors and
+ * matrices of AC (frequency domain) circuit simulations, where the number of values will be limited to 2^24.  Each value's real and imaginary parts
+ * are held side by side (interleaved) in a single block of doubles, so that reading or writing a value touches one cache line rather than two, and
+ * a value costs no more than two doubles: there are no per-value objects at all.  The blocks are allocated as they're needed, just as
+ * {@link ExpandingValueStore}'s are, so small stores stay small.
+ * <p>
+ * Deleted slots are chained together through their real parts (with the same NaN encoding as {@link ExpandingValueStore}), so NaNs may not be
+ * stored.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class ComplexValueStore implements MemoryInstrumentation {
+
+    private static final int MIN_INITIAL_BLOCK_SIZE = 4;  // set low so that sparsely populated vectors take little room...
+    private static final int MIN_BLOCK_SIZE         = 32; // to keep us from having a block array filled with really tiny blocks on small stores...
+    private static final int NULL                   = 0xFFFFFF;
+    private static final int MAX_ENTRIES            = 0xFFFFFF;
+    private static final int SLOT_MASK              = 0xFFFFFF;
+    private static final long NAN_EXPONENT          = 0x7FF0_0000_0100_0000L;  // bit 24 is set so that a zero slot value won't look like an INF...
+    private static final long LONG_SLOT_MASK        = (long) SLOT_MASK;
+
+    // we assume 64 bit pointers and 8 byte alignment, to be conservative...
+    private static final long MEMORY_FIXED_OVERHEAD = 16 + 8 * 8; // for object overhead, the ints, and pointer to the blocks array...
+
+
+    private final int blockSize;           // the number of values (not doubles) in each block...
+    private final int initialBlockSize;
+    private final double[][] blocks;       // each block holds the real and imaginary parts of each of its values, interleaved...
+    private final int offsetMask;
+    private final int blockOffsetShift;
+
+    private int nextSlot;
+    private int deletedSlots = NULL;
+    private int size;
+
+
+    /**
+     * Creates a new instance of this class that is initially configured to store the given minimum number of entries, but which can expand
+     * automatically to store the given maximum number of entries (see {@link ExpandingValueStore#ExpandingValueStore(int, int)}).
+     *
+     * @param _minEntries the minimum number of entries to store (used to compute initial store size)
+     * @param _maxEntries the maximum number of entries to store
+     */
+    public ComplexValueStore( final int _minEntries, final int _maxEntries ) {
+
+        if( _minEntries < 0 )
+            throw new IllegalArgumentException( "Min entries out of bounds: " + _minEntries );
+
+        if( (_maxEntries > MAX_ENTRIES) || (_maxEntries < _minEntries) )
+            throw new IllegalArgumentException( "Max entries out of bounds: " + _maxEntries );
+
+        blockSize = closestBinaryPower( Math.max( MIN_BLOCK_SIZE, _maxEntries >>> 5 ) );
+        blocks = new double[(_maxEntries + blockSize - 1) / blockSize][];
+        initialBlockSize = closestBinaryPower( Math.max( MIN_INITIAL_BLOCK_SIZE, _minEntries ) );
+        offsetMask = blockSize - 1;
+        blockOffsetShift = Integer.numberOfTrailingZeros( blockSize );
+    }
+
+
+    /**
+     * Creates a new slot to contain a complex value, initializes that value to a pure zero, and returns the new key.
+     *
+     * @return the key for the new storage slot
+     */
+    public int create() {
+
+        size++;
+
+        // if we have any deleted slots, return one of them, undeleted...
+        if( deletedSlots != NULL ) {
+            int newSlot = deletedSlots;
+            double[] block = blocks[newSlot >>> blockOffsetShift];
+            int offset = (newSlot & offsetMask) << 1;
+            deletedSlots = SLOT_MASK & (int) Double.doubleToRawLongBits( block[offset] );
+            block[offset] = MatrixStuff.PURE_ZERO;
+            block[offset + 1] = MatrixStuff.PURE_ZERO;
+            return newSlot;
+        }
+
+        // there are no deleted slots, so we're going to allocate the next never-used one...
+        int block = nextSlot >>> blockOffsetShift;
+        int offset = nextSlot & offsetMask;
+
+        if( block >= blocks.length )
+            throw new IllegalStateException( "Value store is completely full" );
+
+        // make a new block if necessary, or expand the initial block as required...
+        if( blocks[block] == null )
+            blocks[block] = new double[((block == 0) ? Math.min( initialBlockSize, blockSize ) : blockSize) << 1];
+        else if( (block == 0) && ((offset << 1) >= blocks[0].length) )
+            blocks[0] = Arrays.copyOf( blocks[0], blocks[0].length << 1 );
+
+        return nextSlot++;
+    }
+
+
+    /**
+     * Deletes the storage slot with the given key.
+     *
+     * @param _key the key for the storage slot to delete
+     */
+    public void delete( final int _key ) {
+
+        double[] block = block( _key );
+        int offset = (_key & offsetMask) << 1;
+        block[offset] = Double.longBitsToDouble( NAN_EXPONENT | (LONG_SLOT_MASK & deletedSlots) );
+        block[offset + 1] = MatrixStuff.PURE_ZERO;
+        deletedSlots = _key;
+        size--;
+    }
+
+
+    /**
+     * Returns the real part of the value in the storage slot with the given key.
+     *
+     * @param _key the key for the storage slot
+     * @return the real part of the value in the slot
+     */
+    public double getReal( final int _key ) {
+        return block( _key )[(_key & offsetMask) << 1];
+    }
+
+
+    /**
+     * Returns the imaginary part of the value in the storage slot with the given key.
+     *
+     * @param _key the key for the storage slot
+     * @return the imaginary part of the value in the slot
+     */
+    public double getImaginary( final int _key ) {
+        return block( _key )[((_key & offsetMask) << 1) + 1];
+    }
+
+
+    /**
+     * Copies the value in the storage slot with the given key into the given array at the given index (the real part) and the next one (the
+     * imaginary part).
+     *
+     * @param _key the key for the storage slot
+     * @param _into the array to copy the value into
+     * @param _index the index in the array to copy the real part to
+     */
+    public void get( final int _key, final double[] _into, final int _index ) {
+        double[] block = block( _key );
+        int offset = (_key & offsetMask) << 1;
+        _into[_index] = block[offset];
+        _into[_index + 1] = block[offset + 1];
+    }
+
+
+    /**
+     * Sets the value in the storage slot with the given key to the given complex number.
+     *
+     * @param _key the key for the storage slot
+     * @param _real the real part of the value
+     * @param _imaginary the imaginary part of the value
+     */
+    public void put( final int _key, final double _real, final double _imaginary ) {
+
+        if( Double.isNaN( _real ) || Double.isNaN( _imaginary ) )
+            throw new IllegalArgumentException( "Attempted to store NaN: " + _real + ", " + _imaginary );
+
+        double[] block = block( _key );
+        int offset = (_key & offsetMask) << 1;
+        block[offset] = _real;
+        block[offset + 1] = _imaginary;
+    }
+
+
+    /**
+     * Adds the given complex number to the value in the storage slot with the given key.
+     *
+     * @param _key the key for the storage slot
+     * @param _real the real part of the value to add
+     * @param _imaginary the imaginary part of the value to add
+     */
+    public void add( final int _key, final double _real, final double _imaginary ) {
+        double[] block = block( _key );
+        int offset = (_key & offsetMask) << 1;
+        block[offset] += _real;
+        block[offset + 1] += _imaginary;
+    }
+
+
+    /**
+     * Returns the block holding the storage slot with the given key, checking that the slot exists.
+     */
+    private double[] block( final int _key ) {
+
+        if( (_key < 0) || (_key >= nextSlot) )
+            throw new IllegalArgumentException( "Key out of range: " + _key );
+
+        double[] block = blocks[_key >>> blockOffsetShift];
+        if( Double.isNaN( block[(_key & offsetMask) << 1] ) )
+            throw new IllegalArgumentException( "Slot has been deleted: " + _key );
+
+        return block;
+    }
+
+
+    /**
+     * Clears all values from this store and releases all memory previously allocated to hold values.
+     */
+    public void clear() {
+        Arrays.fill( blocks, null );
+        size = 0;
+        nextSlot = 0;
+        deletedSlots = NULL;
+    }
+
+
+    /**
+     * Returns the number of values in this store.
+     *
+     * @return the number of values in this store
+     */
+    public int size() {
+        return size;
+    }
+
+
+    @Override
+    public long memoryAllocated() {
+        long result = MEMORY_FIXED_OVERHEAD + 8 * blocks.length + 16;
+        for( double[] block : blocks )
+            if( block != null )
+                result += 8 * block.length + 16;
+        return result;
+    }
+
+
+    @Override
+    public long memoryUsed() {
+        return memoryAllocated() - memoryUnused();
+    }
+
+
+    @Override
+    public long memoryUnused() {
+        long doubles = 0;
+        for( double[] block : blocks )
+            if( block != null )
+                doubles += block.length;
+        return 8 * (doubles - 2L * size);
+    }
+}
@@ -403,6 +403,11 @@ public class TreeIndex implements Index, MemoryInstrumentation {
 
 
         private Ref toMinimum( final Ref _from ) {
+
+            // an empty tree (or subtree) has no minimum...
+            if( _from.isNULL() )
+                return _from;
+
             Ref x = _from;
             while( x.notNULL() ) {
                 x = x.leftChild();
@@ -0,0 +1,296 @@
+package com.cirsim.matrices;
+
+/**
+ * Implements {@link Matrix} as a square sparse matrix of real numbers, intended for the matrices of circuit simulations: each row's entries are
+ * indexed by a {@link TreeIndex} (keyed by column), and the values of all the entries in all the rows are held in a single shared
+ * {@link ExpandingValueStore}.  Entries that have never been written take no memory at all.  Once an entry has been written, it stays in the matrix
+ * (even if its value becomes zero) until the matrix is cleared, so that the <i>pattern</i> of a matrix that is repeatedly zeroed and rebuilt (as
+ * circuit matrices are, on every time step or Newton iteration) stays put, and rebuilding it allocates nothing.
+ * <p>
+ * The size of the matrix is limited by the key range of {@link TreeIndex}, to 4,094 rows and columns.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class TreeMatrix implements Matrix, MemoryInstrumentation {
+
+    private static final int MAX_SIZE = TreeIndex.MAX_ENTRIES - 1;
+    private static final int MIN_ROW_ENTRIES = 4;   // circuit matrices rarely have fewer than this many entries per row...
+
+    private final int size;
+    private final TreeIndex[] rows;
+    private final ExpandingValueStore store;
+
+
+    /**
+     * Creates a new, empty (all zero) instance of this class with the given number of rows and columns.  Throws an
+     * <code>IllegalArgumentException</code> if the given size is less than one, or greater than 4,094.
+     *
+     * @param _size the number of rows (and columns) in the matrix
+     */
+    public TreeMatrix( final int _size ) {
+
+        if( (_size < 1) || (_size > MAX_SIZE) )
+            throw new IllegalArgumentException( "Matrix size out of bounds: " + _size );
+
+        size = _size;
+        rows = new TreeIndex[size];
+        for( int i = 0; i < size; i++ )
+            rows[i] = new TreeIndex( Math.min( MIN_ROW_ENTRIES, size ), size );
+        long maxEntries = Math.min( (long) size * size, 0xFFFFFE );
+        store = new ExpandingValueStore( (int) Math.min( maxEntries, (long) MIN_ROW_ENTRIES * size ), (int) maxEntries );
+    }
+
+
+    /**
+     * Adds the given value to the entry at the given row and column, creating the entry if it doesn't already exist.  Throws an
+     * <code>IllegalArgumentException</code> if the row or column is out of bounds.
+     *
+     * @param _row the row of the entry to add to
+     * @param _col the column of the entry to add to
+     * @param _value the value to add
+     */
+    public void add( final int _row, final int _col, final double _value ) {
+        int slot = getSlot( _row, _col );
+        store.put( slot, store.get( slot ) + _value );
+    }
+
+
+    /**
+     * Sets the entry at the given row and column to the given value, creating the entry if it doesn't already exist.  Throws an
+     * <code>IllegalArgumentException</code> if the row or column is out of bounds.
+     *
+     * @param _row the row of the entry to set
+     * @param _col the column of the entry to set
+     * @param _value the value to set
+     */
+    public void set( final int _row, final int _col, final double _value ) {
+        store.put( getSlot( _row, _col ), _value );
+    }
+
+
+    /**
+     * Returns the value of the entry at the given row and column, which is zero if the entry doesn't exist.  Throws an
+     * <code>IllegalArgumentException</code> if the row or column is out of bounds.
+     *
+     * @param _row the row of the entry to get
+     * @param _col the column of the entry to get
+     * @return the value of the entry at the given row and column
+     */
+    public double get( final int _row, final int _col ) {
+        checkBounds( _row, _col );
+        int slot = rows[_row].get( _col );
+        return (slot == Index.VALUE_NULL) ? MatrixStuff.PURE_ZERO : store.get( slot );
+    }
+
+
+    /**
+     * Returns true if the entry at the given row and column exists (whether or not its value is zero).
+     *
+     * @param _row the row of the entry to check
+     * @param _col the column of the entry to check
+     * @return true if the entry at the given row and column exists
+     */
+    public boolean has( final int _row, final int _col ) {
+        checkBounds( _row, _col );
+        return rows[_row].get( _col ) != Index.VALUE_NULL;
+    }
+
+
+    /**
+     * Sets every existing entry to zero, without changing the pattern of entries (and without allocating or releasing any memory).
+     */
+    public void zero() {
+        for( TreeIndex row : rows ) {
+            IndexIterator it = row.iterator();
+            while( it.hasNext() ) {
+                it.next();
+                store.put( it.value(), MatrixStuff.PURE_ZERO );
+            }
+        }
+    }
+
+
+    /**
+     * Removes all entries from this matrix, and releases the memory that held them.
+     */
+    public void clear() {
+        for( TreeIndex row : rows )
+            row.clear();
+        store.clear();
+    }
+
+
+    /**
+     * Returns the product of this matrix and the given vector, in a new array.  Throws an <code>IllegalArgumentException</code> if the vector is
+     * missing or is not the same length as the size of this matrix.
+     *
+     * @param _vector the vector to multiply by
+     * @return the product of this matrix and the given vector
+     */
+    public double[] multiply( final double[] _vector ) {
+
+        if( (_vector == null) || (_vector.length != size) )
+            throw new IllegalArgumentException( "Vector missing or of wrong length" );
+
+        double[] result = new double[size];
+        for( int i = 0; i < size; i++ ) {
+            IndexIterator it = rows[i].iterator();
+            double sum = 0;
+            while( it.hasNext() ) {
+                it.next();
+                sum += store.get( it.value() ) * _vector[it.key()];
+            }
+            result[i] = sum;
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns a new dense array with the values of this matrix.
+     *
+     * @return the values of this matrix, in a dense array
+     */
+    public double[][] toArray() {
+        double[][] result = new double[size][size];
+        for( int i = 0; i < size; i++ ) {
+            IndexIterator it = rows[i].iterator();
+            while( it.hasNext() ) {
+                it.next();
+                result[i][it.key()] = store.get( it.value() );
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns an iterator over the entries in the given row, in column order.  The iterator's keys are the columns, and its values are the slots of
+     * the entries in this matrix's value store (see {@link #getValue(int)}).
+     *
+     * @param _row the row to iterate over
+     * @return an iterator over the entries in the given row
+     */
+    public IndexIterator rowIterator( final int _row ) {
+        checkBounds( _row, 0 );
+        return rows[_row].iterator();
+    }
+
+
+    /**
+     * Returns the value in the given slot of this matrix's value store, as returned by a row iterator.
+     *
+     * @param _slot the slot to get the value from
+     * @return the value in the given slot
+     */
+    public double getValue( final int _slot ) {
+        return store.get( _slot );
+    }
+
+
+    /**
+     * Sets the value in the given slot of this matrix's value store (see {@link #getSlot(int, int)}).  This is the fast path for matrices that are
+     * rebuilt over and over with the same pattern: no search is needed to find the entry.
+     *
+     * @param _slot the slot to set the value of
+     * @param _value the value to set
+     */
+    public void putValue( final int _slot, final double _value ) {
+        store.put( _slot, _value );
+    }
+
+
+    /**
+     * Adds the given value to the value in the given slot of this matrix's value store (see {@link #getSlot(int, int)}), without any search.
+     *
+     * @param _slot the slot to add to
+     * @param _value the value to add
+     */
+    public void addValue( final int _slot, final double _value ) {
+        store.put( _slot, store.get( _slot ) + _value );
+    }
+
+
+    /**
+     * Returns the slot in this matrix's value store that holds the entry at the given row and column, creating the entry (with a value of zero) if it
+     * doesn't already exist.  The slot stays the same until the matrix is cleared, so callers that rebuild the matrix repeatedly may look up their
+     * slots once and then use {@link #putValue(int, double)} and {@link #addValue(int, double)}.  Throws an <code>IllegalArgumentException</code> if
+     * the row or column is out of bounds.
+     *
+     * @param _row the row of the entry
+     * @param _col the column of the entry
+     * @return the slot holding the entry at the given row and column
+     */
+    public int getSlot( final int _row, final int _col ) {
+
+        checkBounds( _row, _col );
+
+        TreeIndex row = rows[_row];
+        int slot = row.get( _col );
+        if( slot == Index.VALUE_NULL ) {
+            slot = store.create();
+            row.put( _col, slot );
+        }
+        return slot;
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns the number of entries in this matrix (including any that exist, but whose value is zero).
+     *
+     * @return the number of entries in this matrix
+     */
+    public int entryCount() {
+        int result = 0;
+        for( TreeIndex row : rows )
+            result += row.size();
+        return result;
+    }
+
+
+    private void checkBounds( final int _row, final int _col ) {
+        if( (_row < 0) || (_row >= size) || (_col < 0) || (_col >= size) )
+            throw new IllegalArgumentException( "Matrix row or column out of bounds: " + _row + ", " + _col );
+    }
+
+
+    /**
+     * Returns a value in the range 0..1 (inclusive) that indicates how much of the memory allocated by this instance is actually in use.
+     *
+     * @return the memory utilization factor for this instance
+     */
+    @Override
+    public double memoryUtilization() {
+        long allocated = memoryAllocated();
+        return (allocated == 0) ? 1 : (double) memoryUsed() / allocated;
+    }
+
+
+    @Override
+    public long memoryAllocated() {
+        return memoryUsed() + memoryUnused();
+    }
+
+
+    @Override
+    public long memoryUsed() {
+        long result = store.memoryUsed();
+        for( TreeIndex row : rows )
+            result += row.memoryUsed();
+        return result;
+    }
+
+
+    @Override
+    public long memoryUnused() {
+        long result = store.memoryUnused();
+        for( TreeIndex row : rows )
+            result += row.memoryUnused();
+        return result;
+    }
+}
@@ -1,7 +1,21 @@
 package com.cirsim.nets;
 
+import java.util.List;
+
 /**
  * @author Tom Dilatush  tom@dilatush.com
  */
 public interface Net {
+
+    String getName();
+
+    List<Wire> getWires();
+
+    /**
+     * Returns the nets exported by subcircuit instances that this net is joined to (by naming them as "instance.net" in this net's definition).
+     * Electrically, this net and all the nets joined to it are a single node.
+     *
+     * @return the exported nets this net is joined to
+     */
+    List<Net> getJoinedNets();
 }
@@ -2,8 +2,11 @@ package com.cirsim.nets;
 
 import com.cirsim.Circuit;
 import com.cirsim.Token;
+import com.cirsim.TokenType;
+import com.cirsim.components.Component;
 
 import java.util.ListIterator;
+import java.util.Map;
 
 /**
  * @author Tom Dilatush  tom@dilatush.com
@@ -13,13 +16,118 @@ public class NetFactory {
 
     /**
      * Using tokens in the given token list iterator, tests first to see if the next tokens represent a net, and if so, instantiate it.  Returns
-     * null if the tokens do not represent a net, with the token list iterator's cursor unchanged.
+     * null if the tokens do not represent a net, with the token list iterator's cursor unchanged.  A net is the type "Net" followed by any number of
+     * values, each naming a terminal in the form "component.terminal" (for example, "R1.2" or "VS1.+").  Each named terminal is wired to the new
+     * net; any terminal that can't be found, or that is already wired to another net, is reported as an error.  A value may also name a net
+     * exported by a subcircuit instance, in the form "instance.net" (for example, "Battery.minus"), in which case that net is joined to the new
+     * net.
      *
+     * @param _label the label (name) of the net
      * @param _tokenIterator token list iterator
      * @param _circuit the circuit that the net will belong to, if one is instantiated
      * @return the net instantiated, or null if the the tokens do not represent a net
      */
-    public static Net getInstance( ListIterator<Token> _tokenIterator, Circuit _circuit ) {
-        return null;
+    public static Net getInstance( final String _label, final ListIterator<Token> _tokenIterator, final Circuit _circuit ) {
+
+        if( !_tokenIterator.hasNext() )
+            return null;
+
+        Token type = _tokenIterator.next();
+        if( !type.is( TokenType.TYPE ) || !"Net".equals( type.getValue() ) ) {
+            _tokenIterator.previous();
+            return null;
+        }
+
+        SimpleNet net = new SimpleNet( _label );
+
+        // wire up all the terminals we're given...
+        while( _tokenIterator.hasNext() ) {
+
+            Token token = _tokenIterator.next();
+            if( !token.is( TokenType.VALUE ) ) {
+                _tokenIterator.previous();
+                break;
+            }
+
+            String spec = token.getValue();
+            int dot = spec.lastIndexOf( '.' );
+            if( (dot <= 0) || (dot == spec.length() - 1) ) {
+                _circuit.getCircuitFactory().postError( "Expected terminal in the form 'component.terminal', got '" + spec + "'", token );
+                continue;
+            }
+
+            String componentName = spec.substring( 0, dot );
+            String terminalName = spec.substring( dot + 1 );
+            Component component = _circuit.getComponent( componentName );
+
+            // if it's not a component, it may be a subcircuit instance's exported net...
+            if( (component == null) && _circuit.hasSubcircuit( componentName ) ) {
+                Circuit subcircuit = _circuit.getSubcircuit( componentName );
+                if( subcircuit.isExported( terminalName ) )
+                    net.join( subcircuit.getNet( terminalName ) );
+                else
+                    _circuit.getCircuitFactory().postError( "Subcircuit '" + componentName + "' does not export '" + terminalName + "'", token );
+                continue;
+            }
+
+            if( component == null ) {
+                _circuit.getCircuitFactory().postError( "Unknown component '" + componentName + "'", token );
+                continue;
+            }
+            if( (component.getTerminals() == null) || !component.getTerminals().has( terminalName ) ) {
+                _circuit.getCircuitFactory().postError( "Component '" + componentName + "' has no terminal '" + terminalName + "'", token );
+                continue;
+            }
+
+            Terminal terminal = component.getTerminals().get( terminalName );
+            if( terminal.getWire() != null ) {
+                _circuit.getCircuitFactory().postError( "Terminal '" + spec + "' is already connected to net '"
+                        + terminal.getWire().getNet().getName() + "'", token );
+                continue;
+            }
+
+            Wire wire = new Wire( component, net );
+            terminal.setWire( wire );
+            net.add( wire );
+        }
+
+        return net;
+    }
+
+
+    /**
+     * Returns a copy of the given net, wired to the same terminals of the copies of the components it is wired to, and joined to the copies of the
+     * nets it is joined to.  The given maps take each original component, and each original net already copied, to its copy; the copy of the given
+     * net is added to the map of nets.
+     *
+     * @param _net the net to copy
+     * @param _components the copies of the components, keyed by the originals
+     * @param _nets the copies of the nets, keyed by the originals
+     * @return the copy of the given net
+     */
+    public static Net copy( final Net _net, final Map<Component, Component> _components, final Map<Net, Net> _nets ) {
+
+        SimpleNet result = new SimpleNet( _net.getName() );
+
+        // wire up the copy of each terminal the original is wired to...
+        for( Wire wire : _net.getWires() ) {
+            Component original = wire.getComponent();
+            Component component = _components.get( original );
+            for( int i = 0; i < original.getTerminals().size(); i++ ) {
+                if( original.getTerminals().get( i ).getWire() == wire ) {
+                    Wire copy = new Wire( component, result );
+                    component.getTerminals().get( i ).setWire( copy );
+                    result.add( copy );
+                    break;
+                }
+            }
+        }
+
+        // join the copies of the nets the original is joined to (which, being in subcircuit instances, were copied first)...
+        for( Net joined : _net.getJoinedNets() )
+            result.join( _nets.getOrDefault( joined, joined ) );
+
+        _nets.put( _net, result );
+        return result;
     }
 }
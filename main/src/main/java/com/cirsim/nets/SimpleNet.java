@@ -1,7 +1,49 @@
 package com.cirsim.nets;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * @author Tom Dilatush  tom@dilatush.com
  */
 public class SimpleNet implements Net {
+
+
+    private final String name;
+    private final List<Wire> wires = new ArrayList<>();
+    private final List<Net> joinedNets = new ArrayList<>();
+
+
+    public SimpleNet( final String _name ) {
+        name = _name;
+    }
+
+
+    void add( final Wire _wire ) {
+        wires.add( _wire );
+    }
+
+
+    void join( final Net _net ) {
+        joinedNets.add( _net );
+    }
+
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+
+    @Override
+    public List<Wire> getWires() {
+        return Collections.unmodifiableList( wires );
+    }
+
+
+    @Override
+    public List<Net> getJoinedNets() {
+        return Collections.unmodifiableList( joinedNets );
+    }
 }
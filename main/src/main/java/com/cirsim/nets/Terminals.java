@@ -1,106 +1,151 @@
 package com.cirsim.nets;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.cirsim.components.Component;
+import com.cirsim.util.Symbols;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 /**
+ * The terminals of a component, in terminal order, each of which may be named by any of several aliases.  The aliases are the same for every
+ * component with the same number of terminals, so they're kept just once, in a table shared by all those components; each component holds only an
+ * array of its terminals, which can also be got directly by index (as circuit analysis does).
+ *
  * @author Tom Dilatush  tom@dilatush.com
  */
 public class Terminals {
 
-    private final Map<String, Terminal> terminals;
+    private static final Symbols TWO_TERMINAL_NAMES = new Symbols();
+    private static final int[] TWO_TERMINAL_INDICES;   // the index of the terminal each name (by its id) is an alias of...
+
+    static {
+        String[][] aliases = { { "1", "t", "top", "l", "left", "+", "plus" }, { "2", "b", "bottom", "r", "right", "-", "minus" } };
+        int count = 0;
+        for( String[] names : aliases )
+            count += names.length;
+        TWO_TERMINAL_INDICES = new int[count];
+        for( int i = 0; i < aliases.length; i++ )
+            for( String name : aliases[i] )
+                TWO_TERMINAL_INDICES[TWO_TERMINAL_NAMES.intern( name )] = i;
+    }
+
+    private final Terminal[] terminals;
+    private final Symbols names;
+    private final int[] indices;
 
 
     public static Terminals getTwoTerminalInstance( final Component _component ) {
+        Terminal[] terminals = { new TerminalImpl( _component ), new TerminalImpl( _component ) };
+        return new Terminals( terminals, TWO_TERMINAL_NAMES, TWO_TERMINAL_INDICES );
+    }
 
-        Map<String, Terminal> terminals = Maps.newHashMap();
 
-        Terminal terminal1 = new TerminalImpl( _component );
-        Lists.newArrayList( "1", "t", "top", "l", "left", "+", "plus" ).forEach( ( name ) -> {
-            terminals.put( name, terminal1 );
-        } );
+    private Terminals( final Terminal[] _terminals, final Symbols _names, final int[] _indices ) {
+        terminals = _terminals;
+        names = _names;
+        indices = _indices;
+    }
 
-        Terminal terminal2 = new TerminalImpl( _component );
-        Lists.newArrayList( "2", "b", "bottom", "r", "right", "-", "minus" ).forEach( ( name ) -> {
-            terminals.put( name, terminal2 );
-        } );
 
-        return new Terminals( terminals );
+    public Terminal get( final String _name ) {
+        int id = (_name == null) ? -1 : names.find( _name );
+        if( id < 0 )
+            throw new IllegalArgumentException( "Terminal name does not exist" );
+        return terminals[indices[id]];
     }
 
 
-    private Terminals( final Map<String, Terminal> _terminals ) {
-        terminals = _terminals;
+    /**
+     * Returns the terminal with the given index (in terminal order, so that terminal "1" has index 0).  Throws an
+     * <code>IllegalArgumentException</code> if there is no such terminal.
+     *
+     * @param _index the index of the terminal
+     * @return the terminal with the given index
+     */
+    public Terminal get( final int _index ) {
+        if( (_index < 0) || (_index >= terminals.length) )
+            throw new IllegalArgumentException( "No terminal with index: " + _index );
+        return terminals[_index];
     }
 
 
-    public Terminal get( final String _name ) {
-        Terminal result = terminals.get( _name );
-        if( result == null )
-            throw new IllegalArgumentException( "Terminal name does not exist" );
-        return result;
+    /**
+     * Returns the index (in terminal order) of the given terminal, or -1 if it isn't one of these terminals.
+     *
+     * @param _terminal the terminal to find
+     * @return the index of the given terminal, or -1 if it isn't one of these terminals
+     */
+    public int indexOf( final Terminal _terminal ) {
+        for( int i = 0; i < terminals.length; i++ )
+            if( terminals[i] == _terminal )
+                return i;
+        return -1;
     }
 
 
     public Wire getWire( final String _name ) {
 
-        if( !terminals.containsKey( _name ))
+        if( !has( _name ))
             throw new IllegalArgumentException( "No terminal by this name: " + _name );
 
-        return terminals.get( _name ).getWire();
+        return get( _name ).getWire();
     }
 
 
     public Net getNet( final String _name ) {
 
-        if( !terminals.containsKey( _name ))
+        if( !has( _name ))
             throw new IllegalArgumentException( "No terminal by this name: " + _name );
 
-        return terminals.get( _name ).getWire().getNet();
+        return get( _name ).getWire().getNet();
     }
 
 
     public Terminal getOtherTerminal( final Terminal _terminal ) {
 
-        if( terminals.size() != 2 )
-            throw new IllegalStateException( "getOtherTerminal called with invalid number of terminals: " + terminals.size() );
+        if( terminals.length != 2 )
+            throw new IllegalStateException( "getOtherTerminal called with invalid number of terminals: " + terminals.length );
 
-        if( !terminals.containsValue( _terminal ) )
+        int index = indexOf( _terminal );
+        if( index < 0 )
             throw new IllegalArgumentException( "Terminal does not exist in this component" );
 
-        Collection<Terminal> ts = terminals.values();
-        for( Terminal t : ts ) {
-            if( t != _terminal )
-                return t;
-        }
+        return terminals[1 - index];
+    }
+
 
-        // this should be impossible to reach...
+    /**
+     * Returns one of the names of the given terminal (a terminal may have several), or null if it isn't one of these terminals.
+     *
+     * @param _terminal the terminal to name
+     * @return a name of the given terminal, or null if it isn't one of these terminals
+     */
+    public String getName( final Terminal _terminal ) {
+        int index = indexOf( _terminal );
+        for( int id = 0; (index >= 0) && (id < indices.length); id++ )
+            if( indices[id] == index )
+                return names.getName( id );
         return null;
     }
 
 
     public boolean has( final String _name ) {
-        return terminals.containsKey( _name );
+        return (_name != null) && (names.find( _name ) >= 0);
     }
 
 
     public List<Terminal> getAll() {
-        return new ArrayList<>( terminals.values() );
+        return new ArrayList<>( Arrays.asList( terminals ) );
     }
 
 
     public boolean isEmpty() {
-        return terminals.isEmpty();
+        return terminals.length == 0;
     }
 
 
     public int size() {
-        return terminals.size();
+        return terminals.length;
     }
 }
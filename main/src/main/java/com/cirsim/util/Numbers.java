@@ -7,6 +7,9 @@ package com.cirsim.util;
  */
 public class Numbers {
 
+    // Dekker's splitting constant for doubles: 2^27 + 1...
+    private static final double SPLITTER = 134217729.0d;
+
 
     /**
      * Compares the two given doubles and returns true if they are equal to within the given epsilon (see explanation below).  This method should
@@ -111,6 +114,53 @@ public class Numbers {
     }
 
 
+    /**
+     * Returns the given initial value plus the dot product of the two given arrays, computed as if the arithmetic were carried out in twice the
+     * working (double) precision, and then rounded once to a double.  This is the "Dot2" algorithm of Ogita, Rump, and Oishi: each product is split
+     * into its rounded value and its exact rounding error (using Dekker's splitting), each sum is likewise split (using Knuth's TwoSum), and all the
+     * rounding errors are accumulated separately and added back in at the end.
+     * <p>
+     * The main use for this is computing residuals (b - Ax) in iterative refinement, where the terms very nearly cancel and an ordinary dot product
+     * would return mostly rounding noise.  To compute such a residual, pass b as the initial value, a row of A, and the <i>negated</i> x.
+     * <p>
+     * Throws an <code>IllegalArgumentException</code> if either array is missing, or if they are of different lengths.
+     *
+     * @param _initial the value to add the dot product to
+     * @param _a one of the arrays to compute the dot product of
+     * @param _b the other array to compute the dot product of
+     * @return the given initial value plus the dot product of the given arrays
+     */
+    public static double compensatedDotProduct( final double _initial, final double[] _a, final double[] _b ) {
+
+        if( (_a == null) || (_b == null) || (_a.length != _b.length) )
+            throw new IllegalArgumentException( "Arrays missing or of different lengths" );
+
+        double sum = _initial;
+        double err = 0.0d;
+        for( int i = 0; i < _a.length; i++ ) {
+
+            // the product, and its exact rounding error (Dekker's TwoProduct)...
+            double p = _a[i] * _b[i];
+            double ah = SPLITTER * _a[i];
+            ah = ah - (ah - _a[i]);
+            double al = _a[i] - ah;
+            double bh = SPLITTER * _b[i];
+            bh = bh - (bh - _b[i]);
+            double bl = _b[i] - bh;
+            double pe = al * bl - (((p - ah * bh) - al * bh) - ah * bl);
+
+            // the sum, and its exact rounding error (Knuth's TwoSum)...
+            double s = sum + p;
+            double z = s - sum;
+            double se = (sum - (s - z)) + (p - z);
+
+            sum = s;
+            err += pe + se;
+        }
+        return sum + err;
+    }
+
+
     public static int hash( final int _hash, final int _n ) {
         return ((_hash << 5) - _hash) ^ _n;
     }
@@ -0,0 +1,112 @@
+package com.cirsim.util;
+
+import java.util.Arrays;
+
+/**
+ * A table of symbols (names), each interned as a dense integer id: the first name added gets id 0, the next id 1, and so on.  Code that works with
+ * many named things can then keep them in arrays indexed by id, rather than in maps keyed by name, and compare names by comparing ids.  Each name
+ * is held just once, as the instance first added, so the table can also be used to share one instance of each name among many holders.
+ * <p>
+ * Names are found through an open-addressed hash table of ids, so looking one up neither boxes nor allocates.  Instances of this class are not
+ * safe for use by multiple threads, except that a table that is no longer being added to may be shared freely.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public final class Symbols {
+
+    private String[] names = new String[8];   // the name of each id...
+    private int[] slots = new int[16];        // the hash table: each slot holds an id plus one, or zero if it's empty...
+    private int size;
+
+
+    /**
+     * Returns the id of the given name, adding it to this table if it isn't there already.  Throws an <code>IllegalArgumentException</code> if the
+     * name is missing.
+     *
+     * @param _name the name to intern
+     * @return the id of the given name
+     */
+    public int intern( final String _name ) {
+
+        int slot = slot( _name );
+        if( slots[slot] != 0 )
+            return slots[slot] - 1;
+
+        // grow the names as needed, and the hash table to keep it no more than half full...
+        if( size == names.length )
+            names = Arrays.copyOf( names, 2 * size );
+        names[size] = _name;
+        slots[slot] = ++size;
+        if( 2 * size > slots.length )
+            rehash();
+        return size - 1;
+    }
+
+
+    /**
+     * Returns the id of the given name, or -1 if it isn't in this table.  Throws an <code>IllegalArgumentException</code> if the name is missing.
+     *
+     * @param _name the name to find
+     * @return the id of the given name, or -1 if there is none
+     */
+    public int find( final String _name ) {
+        return slots[slot( _name )] - 1;
+    }
+
+
+    /**
+     * Returns the name with the given id.  Throws an <code>IndexOutOfBoundsException</code> if there's no such id.
+     *
+     * @param _id the id of the name
+     * @return the name with the given id
+     */
+    public String getName( final int _id ) {
+        if( (_id < 0) || (_id >= size) )
+            throw new IndexOutOfBoundsException( "No symbol with id " + _id );
+        return names[_id];
+    }
+
+
+    /**
+     * Returns the number of names in this table, which is also the next id it will give out.
+     *
+     * @return the number of names in this table
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns the slot of the hash table that holds the given name, or the empty slot it would go in if it isn't there.
+     */
+    private int slot( final String _name ) {
+
+        if( _name == null )
+            throw new IllegalArgumentException( "Symbol name is missing" );
+
+        int mask = slots.length - 1;
+        int slot = spread( _name.hashCode() ) & mask;
+        while( (slots[slot] != 0) && !names[slots[slot] - 1].equals( _name ) )
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+
+    private void rehash() {
+        slots = new int[2 * slots.length];
+        int mask = slots.length - 1;
+        for( int id = 0; id < size; id++ ) {
+            int slot = spread( names[id].hashCode() ) & mask;
+            while( slots[slot] != 0 )
+                slot = (slot + 1) & mask;
+            slots[slot] = id + 1;
+        }
+    }
+
+
+    // mixes the high bits of the hash code into the low ones, as the table's size is a power of two...
+    private static int spread( final int _hash ) {
+        return _hash ^ (_hash >>> 16);
+    }
+}
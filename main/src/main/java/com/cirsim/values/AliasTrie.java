@@ -0,0 +1,70 @@
+package com.cirsim.values;
+
+import java.util.Arrays;
+
+/**
+ * A trie of aliases (such as the names of multipliers or units), each with a non-negative integer id, matched without regard to case.  Walking the
+ * trie a character at a time lets a scanner match aliases in place, without making substrings of what it's scanning; the ids (an index into an
+ * array of multipliers, say, or an enum's ordinal) let it get what an alias stands for without boxing.  The fan-out of each node is tiny, so its
+ * children are simply kept in arrays, in the order they were added.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+final class AliasTrie {
+
+    private static final AliasTrie[] NO_CHILDREN = new AliasTrie[0];
+
+    private char[] keys = new char[0];               // the (upper case) characters leading to our children...
+    private AliasTrie[] children = NO_CHILDREN;      // our children, in the same order as their characters...
+    private int id = -1;                             // the id of the alias ending at this node, or -1 if none does...
+
+
+    /**
+     * Adds the given alias, with the given id.  Throws an <code>IllegalArgumentException</code> if the id is negative, or an
+     * <code>IllegalStateException</code> if the alias has been added already.
+     */
+    void add( final String _alias, final int _id ) {
+
+        if( _id < 0 )
+            throw new IllegalArgumentException( "Alias id is negative: " + _id );
+
+        AliasTrie node = this;
+        for( int i = 0; i < _alias.length(); i++ ) {
+            char c = Character.toUpperCase( _alias.charAt( i ) );
+            AliasTrie child = node.child( c );
+            if( child == null ) {
+                child = new AliasTrie();
+                int n = node.keys.length;
+                node.keys = Arrays.copyOf( node.keys, n + 1 );
+                node.children = Arrays.copyOf( node.children, n + 1 );
+                node.keys[n] = c;
+                node.children[n] = child;
+            }
+            node = child;
+        }
+
+        if( node.id >= 0 )
+            throw new IllegalStateException( "Alias used more than once: " + _alias );
+        node.id = _id;
+    }
+
+
+    /**
+     * Returns the child of this node for the given character (in either case), or null if there is none.
+     */
+    AliasTrie child( final char _c ) {
+        char c = Character.toUpperCase( _c );
+        for( int i = 0; i < keys.length; i++ )
+            if( keys[i] == c )
+                return children[i];
+        return null;
+    }
+
+
+    /**
+     * Returns the id of the alias that ends at this node, or -1 if none does.
+     */
+    int getId() {
+        return id;
+    }
+}
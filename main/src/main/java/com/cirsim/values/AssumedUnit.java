@@ -22,4 +22,11 @@ public class AssumedUnit extends AScalar implements Value {
         boolean unitRequired = false;
         return (AssumedUnit) getInstance( _spec, _unit, unitRequired );
     }
+
+
+    @Override
+    public AssumedUnit getInstance( final ValueSpec _spec, final Units _unit ) {
+        boolean unitRequired = false;
+        return (AssumedUnit) getInstance( _spec, _unit, unitRequired );
+    }
 }
@@ -2,6 +2,7 @@ package com.cirsim.values;
 
 import com.google.common.collect.Maps;
 
+import java.util.Arrays;
 import java.util.Map;
 
 /**
@@ -11,6 +12,8 @@ public final class Multipliers {
 
 
     private static final Map<String, Double> multipliers = Maps.newHashMap();
+    private static final AliasTrie trie = new AliasTrie();   // the same aliases, for scanning in place (see ValueSpec)...
+    private static double[] values = new double[0];           // the multiplier of each alias in the trie, by its id...
 
 
     public static boolean contains( final String _key ) {
@@ -31,6 +34,22 @@ public final class Multipliers {
     }
 
 
+    /**
+     * Returns a trie of all the multipliers' aliases, with ids that {@link #get(int)} takes to their multipliers.
+     */
+    static AliasTrie getTrie() {
+        return trie;
+    }
+
+
+    /**
+     * Returns the multiplier with the given id (from the trie of aliases).
+     */
+    static double get( final int _id ) {
+        return values[_id];
+    }
+
+
     static {
         addMultiplier( 1E-15, "f", "femto"         );
         addMultiplier( 1E-12, "p", "pico"          );
@@ -50,6 +69,11 @@ public final class Multipliers {
         if( (_aliases == null) || (_aliases.length == 0) )
             throw new IllegalStateException( "No aliases supplied" );
 
+        // all the aliases share one id in the trie...
+        int id = values.length;
+        values = Arrays.copyOf( values, id + 1 );
+        values[id] = _multiplier;
+
         // for each alias...
         for( String alias : _aliases ) {
 
@@ -61,6 +85,7 @@ public final class Multipliers {
                 throw new IllegalStateException( "Alias used more than once: " + alias );
 
             multipliers.put( alias, _multiplier );
+            trie.add( alias, id );
         }
     }
 }
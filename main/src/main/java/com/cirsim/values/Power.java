@@ -22,4 +22,11 @@ public class Power extends RequiredUnit implements Value {
         boolean unitRequired = true;
         return (Power) getInstance( _spec, _unit, unitRequired );
     }
+
+
+    @Override
+    public Power getInstance( final ValueSpec _spec, final Units _unit ) {
+        boolean unitRequired = true;
+        return (Power) getInstance( _spec, _unit, unitRequired );
+    }
 }
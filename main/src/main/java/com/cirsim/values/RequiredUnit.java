@@ -22,4 +22,11 @@ public class RequiredUnit extends AScalar implements Value {
         boolean unitRequired = true;
         return (RequiredUnit) getInstance( _spec, _unit, unitRequired );
     }
+
+
+    @Override
+    public RequiredUnit getInstance( final ValueSpec _spec, final Units _unit ) {
+        boolean unitRequired = true;
+        return (RequiredUnit) getInstance( _spec, _unit, unitRequired );
+    }
 }
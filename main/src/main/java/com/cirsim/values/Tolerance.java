@@ -1,18 +1,11 @@
 package com.cirsim.values;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * @author Tom Dilatush  tom@dilatush.com
  */
 public class Tolerance implements Value {
 
 
-    private static final Pattern PATTERN
-            = Pattern.compile( "(?:(\\+\\-|\\+|\\-|)(\\d+(?:\\.\\d*)?))(?:(\\+|\\-)(\\d+(?:\\.\\d*)?))?%" );
-
-
     private final double lowerPercent;
     private final double higherPercent;
 
@@ -43,41 +36,15 @@ public class Tolerance implements Value {
         if( _spec == null )
             return null;
 
-        // see if the spec meets the sniff test...
-        Matcher mat = PATTERN.matcher( _spec );
-        if( !mat.matches() )
-            return null;
-
-        // see what we got in our match (it will be either one or two numbers with leading +s and -s)...
-        String sign1 = mat.group( 1 );
-        String numb1 = mat.group( 2 );
-        String sign2 = mat.group( 3 );
-        String numb2 = mat.group( 4 );
-
-        // if we got just one number...
-        if( sign2 == null ) {
-
-            // we must have either no sign or a +- sign...
-            if( "".equals( sign1 ) || "+-".equals( sign1 ) ) {
-
-                double percent = Double.parseDouble( numb1 );
-                return new Tolerance( -percent, percent );
-            }
-            else
-                return null;
-        }
+        return getInstance( new ValueSpec( _spec ), _unit );
+    }
 
-        // or if we got two numbers...
-        else {
 
-            // some things are not allowed...
-            if( "+-".equals( sign1 ) || sign1.equals( sign2 ) )
-                return null;
+    @Override
+    public Tolerance getInstance( final ValueSpec _spec, final Units _unit ) {
 
-            double p1 = Double.parseDouble( numb1 ) * ("-".equals( sign1 ) ? -1 : 1);
-            double p2 = Double.parseDouble( numb2 ) * ("-".equals( sign2 ) ? -1 : 1);
-            return new Tolerance( p1 < p2 ? p1 : p2, p1 < p2 ? p2 : p1 );
-        }
+        // the spec has already checked the format and the signs (see ValueSpec), so all we have to do is look...
+        return ((_spec != null) && _spec.isTolerance()) ? new Tolerance( _spec.getLowerPercent(), _spec.getHigherPercent() ) : null;
     }
 
 
@@ -13,7 +13,8 @@ public enum Units {
     CAPACITANCE( "f", "farad", "farads" ),
     INDUCTANCE( "h", "henry", "henrys", "henries" ),
     POWER( "w", "watt", "watts" ),
-    VOLTAGE( "v", "volt", "volts" );
+    VOLTAGE( "v", "volt", "volts" ),
+    CURRENT( "a", "amp", "amps", "ampere", "amperes" );
 
 
     private final Set<String> unitStrings = Sets.newHashSet();
@@ -29,4 +30,25 @@ public enum Units {
             unitStrings.add( string.toUpperCase() );
         }
     }
+
+
+    /**
+     * Returns a trie of all the units' names, with their units' ordinals as ids.
+     */
+    static AliasTrie getTrie() {
+        return Trie.INSTANCE;
+    }
+
+
+    // the trie is built only once all the units have been constructed...
+    private static final class Trie {
+
+        private static final AliasTrie INSTANCE = new AliasTrie();
+
+        static {
+            for( Units unit : values() )
+                for( String name : unit.unitStrings )
+                    INSTANCE.add( name, unit.ordinal() );
+        }
+    }
 }
@@ -8,5 +8,19 @@ public interface Value {
 
     Value getInstance( final String _spec, final Units _unit );
 
+
+    /**
+     * Returns an instance for the given value specification, already scanned, or null if the specification isn't one of this type of value.  Types
+     * of values that the scan has nothing to say about just look at its text.
+     *
+     * @param _spec the scanned value specification
+     * @param _unit the unit of the value
+     * @return the instance, or null if the specification isn't valid for this type of value
+     */
+    default Value getInstance( final ValueSpec _spec, final Units _unit ) {
+        return getInstance( _spec.getText(), _unit );
+    }
+
+
     Units getUnit();
 }
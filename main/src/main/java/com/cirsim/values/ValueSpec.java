@@ -0,0 +1,276 @@
+package com.cirsim.values;
+
+import java.util.Arrays;
+
+/**
+ * A value specification (the text of a value token, such as "4.7 kohms" or "+50-20%"), classified and parsed once by a hand-written scanner, so
+ * that each kind of value can make its instance from the results without looking at the text again.  The scanner makes no substrings, and
+ * matches multipliers and units by walking tries of their aliases (see {@link Multipliers} and {@link Units}) as it goes.
+ * <p>
+ * A <i>scalar</i> is a number (digits, optionally followed by a decimal point and more digits) followed by an optional multiplier and then a unit,
+ * with any whitespace anywhere ignored.  Where the characters after the number could be split into a multiplier and a unit in more than one way,
+ * the split with the shortest multiplier wins.  A <i>tolerance</i> is one number with an optional "+-" sign, or two numbers with opposite signs
+ * (the first of which may be omitted), followed by a "%", with no whitespace at all.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public final class ValueSpec {
+
+    private static final Units[] UNITS = Units.values();
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+            1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+    private static final long MAX_EXACT = 1L << 53;   // the largest mantissa that a double holds exactly...
+
+    private final String text;
+    private final double[] scalars = new double[2 * UNITS.length];   // the scalar for each unit, unit assumed then unit required, or NaN...
+    private double lowerPercent = Double.NaN;
+    private double higherPercent = Double.NaN;
+
+    private int position;   // the position of the scanner in the text...
+
+
+    /**
+     * Creates a new instance of this class by scanning the given value specification.  Throws an <code>IllegalArgumentException</code> if the
+     * specification is missing.
+     *
+     * @param _text the value specification
+     */
+    public ValueSpec( final String _text ) {
+
+        if( _text == null )
+            throw new IllegalArgumentException( "Value specification is missing" );
+
+        text = _text;
+        Arrays.fill( scalars, Double.NaN );
+        scanScalar();
+        scanTolerance();
+    }
+
+
+    /**
+     * Scans the text as a scalar, recording its value for each unit that it could be a scalar of.
+     */
+    private void scanScalar() {
+
+        position = 0;
+        skipWhitespace();
+        double number = scanNumber( true );
+        if( Double.isNaN( number ) )
+            return;
+
+        // try each multiplier that the rest starts with, shortest first; each unit takes the first one that leaves exactly its name...
+        int rest = position;
+        AliasTrie multiplier = Multipliers.getTrie();
+        while( multiplier != null ) {
+
+            skipWhitespace();
+            if( multiplier.getId() >= 0 ) {
+                double value = number * Multipliers.get( multiplier.getId() );
+
+                // nothing after the multiplier is a scalar of any unit, so long as the unit isn't required...
+                if( position == text.length() ) {
+                    for( int i = 0; i < UNITS.length; i++ )
+                        if( Double.isNaN( scalars[i] ) )
+                            scalars[i] = value;
+                }
+                else {
+                    int unit = scanUnit();
+                    if( unit >= 0 ) {
+                        if( Double.isNaN( scalars[unit] ) )
+                            scalars[unit] = value;
+                        if( Double.isNaN( scalars[UNITS.length + unit] ) )
+                            scalars[UNITS.length + unit] = value;
+                    }
+                }
+            }
+
+            if( position == text.length() )
+                break;
+            multiplier = multiplier.child( text.charAt( position++ ) );
+        }
+        position = rest;
+    }
+
+
+    /**
+     * Returns the ordinal of the unit whose name is exactly the text from the scanner's position to the end (ignoring whitespace), or -1 if there is
+     * none.  The scanner's position is left where it was.
+     */
+    private int scanUnit() {
+
+        AliasTrie node = Units.getTrie();
+        for( int i = position; (node != null) && (i < text.length()); i++ )
+            if( !isWhitespace( text.charAt( i ) ) )
+                node = node.child( text.charAt( i ) );
+        return (node == null) ? -1 : node.getId();
+    }
+
+
+    /**
+     * Scans the text as a tolerance, recording its lower and higher percentages.
+     */
+    private void scanTolerance() {
+
+        position = 0;
+        int sign1 = scanSign( true );
+        double number1 = scanNumber( false );
+        if( Double.isNaN( number1 ) )
+            return;
+
+        // just one number, which must have no sign or a "+-" sign...
+        if( (position == text.length() - 1) && (text.charAt( position ) == '%') ) {
+            if( (sign1 == 0) || (sign1 == 2) ) {
+                lowerPercent = -number1;
+                higherPercent = number1;
+            }
+            return;
+        }
+
+        // or two numbers, with opposite signs (if the first has any)...
+        int sign2 = scanSign( false );
+        if( sign2 == 0 )
+            return;
+        double number2 = scanNumber( false );
+        if( Double.isNaN( number2 ) || (position != text.length() - 1) || (text.charAt( position ) != '%') || (sign1 == 2) || (sign1 == sign2) )
+            return;
+
+        double p1 = (sign1 < 0) ? -number1 : number1;
+        double p2 = (sign2 < 0) ? -number2 : number2;
+        lowerPercent = (p1 < p2) ? p1 : p2;
+        higherPercent = (p1 < p2) ? p2 : p1;
+    }
+
+
+    /**
+     * Scans an optional sign, returning -1 for "-", 1 for "+", 2 for "+-" (if that's allowed), or 0 for none.
+     */
+    private int scanSign( final boolean _plusMinus ) {
+
+        if( position >= text.length() )
+            return 0;
+
+        char c = text.charAt( position );
+        if( _plusMinus && (c == '+') && (position + 1 < text.length()) && (text.charAt( position + 1 ) == '-') ) {
+            position += 2;
+            return 2;
+        }
+        if( (c == '+') || (c == '-') ) {
+            position++;
+            return (c == '+') ? 1 : -1;
+        }
+        return 0;
+    }
+
+
+    /**
+     * Scans a number (digits, optionally followed by a decimal point and more digits), optionally ignoring whitespace in and after it, and returns
+     * its value, or NaN if there's no number at the scanner's position.  The value is the same as <code>Double.parseDouble()</code> would give; it's
+     * computed directly when the digits fit exactly in a double, and only otherwise are the digits collected into a string to be parsed.
+     */
+    private double scanNumber( final boolean _skipWhitespace ) {
+
+        int start = position;
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean exact = true;
+        boolean point = false;
+        while( position < text.length() ) {
+
+            char c = text.charAt( position );
+            if( (c >= '0') && (c <= '9') ) {
+                if( mantissa < MAX_EXACT / 10 )
+                    mantissa = mantissa * 10 + (c - '0');
+                else
+                    exact = false;
+                digits++;
+                if( point )
+                    fractionDigits++;
+            }
+            else if( (c == '.') && !point && (digits > 0) )
+                point = true;
+            else if( !_skipWhitespace || !isWhitespace( c ) )
+                break;
+            position++;
+        }
+
+        if( digits == 0 ) {
+            position = start;
+            return Double.NaN;
+        }
+
+        if( exact && (mantissa <= MAX_EXACT) && (fractionDigits < POWERS_OF_TEN.length) )
+            return mantissa / POWERS_OF_TEN[fractionDigits];
+
+        StringBuilder number = new StringBuilder();
+        for( int i = start; i < position; i++ )
+            if( !isWhitespace( text.charAt( i ) ) )
+                number.append( text.charAt( i ) );
+        return Double.parseDouble( number.toString() );
+    }
+
+
+    private void skipWhitespace() {
+        while( (position < text.length()) && isWhitespace( text.charAt( position ) ) )
+            position++;
+    }
+
+
+    // the whitespace ignored in scalars: space, tab, newline, vertical tab, form feed, and carriage return...
+    private static boolean isWhitespace( final char _c ) {
+        return (_c == ' ') || ((_c >= '\t') && (_c <= '\r'));
+    }
+
+
+    /**
+     * Returns the text of this value specification.
+     *
+     * @return the text of this value specification
+     */
+    public String getText() {
+        return text;
+    }
+
+
+    /**
+     * Returns the value of this specification as a scalar of the given unit (with its multiplier applied), or NaN if it isn't a scalar of that unit.
+     * If the unit is required, a scalar with no unit isn't one of the given unit; otherwise it is.
+     *
+     * @param _unit the unit of the scalar
+     * @param _required true if the specification must name the unit
+     * @return the value of the scalar, or NaN if this isn't one
+     */
+    public double getScalar( final Units _unit, final boolean _required ) {
+        return (_unit == null) ? Double.NaN : scalars[(_required ? UNITS.length : 0) + _unit.ordinal()];
+    }
+
+
+    /**
+     * Returns true if this specification is a tolerance.
+     *
+     * @return true if this specification is a tolerance
+     */
+    public boolean isTolerance() {
+        return !Double.isNaN( lowerPercent );
+    }
+
+
+    /**
+     * Returns the lower percentage of this tolerance, or NaN if this specification isn't a tolerance.
+     *
+     * @return the lower percentage of this tolerance
+     */
+    public double getLowerPercent() {
+        return lowerPercent;
+    }
+
+
+    /**
+     * Returns the higher percentage of this tolerance, or NaN if this specification isn't a tolerance.
+     *
+     * @return the higher percentage of this tolerance
+     */
+    public double getHigherPercent() {
+        return higherPercent;
+    }
+}
@@ -24,7 +24,8 @@ public class ValuesFactory {
         Token token = null;
         while( _tokenIterator.hasNext() && (token = _tokenIterator.next()).is( TokenType.VALUE ) ) {
 
-            String spec = token.getValue();
+            // scan the specification just once, however many types we try it as...
+            ValueSpec spec = new ValueSpec( token.getValue() );
 
             // iterate over the possible value types until (and if) we get one that works...
             boolean gotValue = false;
@@ -52,7 +53,7 @@ public class ValuesFactory {
 
             // if we didn't find a value, we've got an invalid spec...
             if( !gotValue ) {
-                _circuit.getCircuitFactory().postWarning( "Invalid value specfication '" + spec + "'", token );
+                _circuit.getCircuitFactory().postWarning( "Invalid value specfication '" + spec.getText() + "'", token );
             }
         }
 
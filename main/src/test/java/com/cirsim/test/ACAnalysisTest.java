@@ -0,0 +1,185 @@
+package com.cirsim.test;
+
+import com.cirsim.calc.ACAnalysis;
+import com.cirsim.calc.ACResult;
+import com.cirsim.calc.CircuitGraph;
+import com.cirsim.calc.ComplexSparseLUFactorization;
+import com.cirsim.calc.NewtonOptions;
+import com.cirsim.calc.NewtonSolver;
+import com.cirsim.components.Diode;
+import com.cirsim.matrices.ComplexTreeMatrix;
+import com.cirsim.matrices.ComplexTreeVector;
+import com.cirsim.matrices.ComplexValueStore;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class ACAnalysisTest {
+
+
+    @Test
+    public void lowPass() throws IOException {
+
+        // out / in = 1 / (1 + j omega RC), with RC = 1ms...
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.RC" );
+        int out = graph.getNode( "out" );
+        ACResult result = new ACAnalysis( graph, "V1" ).run( 1, 1e6, 20 );
+        assertEquals( 121, result.size() );
+        assertEquals( 1e6, result.getFrequency( 120 ), 0 );
+        for( int i = 0; i < result.size(); i++ ) {
+            double wrc = 2 * Math.PI * result.getFrequency( i ) * 1e-3;
+            assertEquals( 1 / Math.sqrt( 1 + wrc * wrc ), result.getMagnitude( i, out ), 1e-9 );
+            assertEquals( -Math.toDegrees( Math.atan( wrc ) ), result.getPhase( i, out ), 1e-6 );
+            assertEquals( 1, result.getMagnitude( i, graph.getNode( "Vcc" ) ), 1e-12 );
+        }
+    }
+
+
+    @Test
+    public void highPass() throws IOException {
+
+        // the voltage across the inductor is j omega L / (R + j omega L)...
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.RL" );
+        int out = graph.getNode( "out" );
+        double[] frequencies = { 0, 10, 159.15494309189535, 1e4 };
+        ACResult result = new ACAnalysis( graph, "V1" ).run( frequencies, ForkJoinPool.commonPool() );
+        for( int i = 0; i < frequencies.length; i++ ) {
+            double wl = 2 * Math.PI * frequencies[i] * 10e-3;
+            assertEquals( wl / Math.hypot( 10, wl ), result.getMagnitude( i, out ), 1e-9 );
+        }
+        assertEquals( 45, result.getPhase( 2, out ), 1e-6 );
+    }
+
+
+    @Test
+    public void linearized() throws IOException {
+
+        // the diode is a resistance of 1/g at its operating point, in parallel with R2...
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Clipper" );
+        int out = graph.getNode( "out" );
+        NewtonSolver solver = new NewtonSolver( graph, NewtonOptions.DEFAULT );
+        double vd = solver.getAssembler().getNodeVoltages( solver.solve() )[out];
+        Diode diode = null;
+        for( CircuitGraph.Branch branch : graph.getBranches() )
+            if( branch.isNonlinear() )
+                diode = (Diode) branch.getComponent();
+        double g = diode.getConductance( vd ) + 1 / 10000.0;
+        double expected = (1 / g) / (1000 + 1 / g);
+
+        ACResult result = new ACAnalysis( graph, "V1" ).run( new double[] { 0, 1e3 }, ForkJoinPool.commonPool() );
+        assertEquals( expected, result.getMagnitude( 0, out ), 1e-6 * expected );
+        assertEquals( expected, result.getMagnitude( 1, out ), 1e-6 * expected );
+    }
+
+
+    @Test
+    public void parallel() throws IOException {
+
+        // the results don't depend on how many threads solve them...
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.RC" );
+        ACAnalysis analysis = new ACAnalysis( graph, "V1" );
+        double[] frequencies = new double[500];
+        for( int i = 0; i < frequencies.length; i++ )
+            frequencies[i] = 10 * i;
+        ACResult one = analysis.run( frequencies, new ForkJoinPool( 1 ) );
+        ACResult many = analysis.run( frequencies, new ForkJoinPool( 4 ) );
+        int out = graph.getNode( "out" );
+        for( int i = 0; i < frequencies.length; i++ ) {
+            assertEquals( one.getReal( i, out ), many.getReal( i, out ), 0 );
+            assertEquals( one.getImaginary( i, out ), many.getImaginary( i, out ), 0 );
+        }
+    }
+
+
+    @Test
+    public void factorization() {
+
+        // a random sparse complex matrix, diagonally dominant enough to keep its pivot order as its values change...
+        int n = 40;
+        Random random = new Random( 17 );
+        int[][] entries = new int[n * 4][];
+        for( int e = 0; e < entries.length; e++ )
+            entries[e] = (e < n) ? new int[] { e, e } : new int[] { random.nextInt( n ), random.nextInt( n ) };
+        ComplexTreeMatrix a = matrix( n, entries, random );
+        ComplexTreeMatrix b = matrix( n, entries, random );
+
+        ComplexSparseLUFactorization analyzed = new ComplexSparseLUFactorization( a );
+        ComplexSparseLUFactorization shared = new ComplexSparseLUFactorization( analyzed );
+        assertTrue( shared.refactor( b ) );
+        assertTrue( analyzed.getFactorEntryCount() >= a.entryCount() );
+
+        ComplexTreeVector rhs = new ComplexTreeVector( 2, n );
+        rhs.set( 3, 1, -2 );
+        rhs.set( 30, 0, 0.5 );
+        check( a, analyzed.solve( rhs ), rhs.toArray() );
+        check( b, shared.solve( rhs.toArray() ), rhs.toArray() );
+
+        // values for which the pivot order is unusable are refused, and leave nothing behind to spoil the next refactoring...
+        ComplexTreeMatrix small = new ComplexTreeMatrix( 2 );
+        int[][] slots = { { small.getSlot( 0, 0 ), small.getSlot( 0, 1 ) }, { small.getSlot( 1, 0 ), small.getSlot( 1, 1 ) } };
+        small.putValue( slots[0][0], 4, 1 );
+        small.putValue( slots[0][1], 1, 0 );
+        small.putValue( slots[1][0], 1, 0 );
+        small.putValue( slots[1][1], 3, -1 );
+        ComplexSparseLUFactorization factors = new ComplexSparseLUFactorization( small );
+        small.putValue( slots[0][0], 1e-6, 0 );
+        assertFalse( factors.refactor( small ) );
+        small.putValue( slots[0][0], 2, 2 );
+        assertTrue( factors.refactor( small ) );
+        double[] constants = { 1, 0, 0, 1 };
+        check( small, factors.solve( constants ), constants );
+    }
+
+
+    private static ComplexTreeMatrix matrix( final int _n, final int[][] _entries, final Random _random ) {
+        ComplexTreeMatrix result = new ComplexTreeMatrix( _n );
+        for( int[] entry : _entries ) {
+            double scale = (entry[0] == entry[1]) ? 10 : 1;
+            result.addValue( result.getSlot( entry[0], entry[1] ), scale * _random.nextGaussian(), scale * _random.nextGaussian() );
+        }
+        return result;
+    }
+
+
+    private static void check( final ComplexTreeMatrix _matrix, final double[] _x, final double[] _b ) {
+        double[] product = _matrix.multiply( _x );
+        for( int i = 0; i < _b.length; i++ )
+            assertEquals( _b[i], product[i], 1e-12 );
+    }
+
+
+    @Test
+    public void store() {
+
+        ComplexValueStore store = new ComplexValueStore( 0, 1000 );
+        int[] slots = new int[100];
+        for( int i = 0; i < slots.length; i++ ) {
+            slots[i] = store.create();
+            store.put( slots[i], i, -i );
+        }
+        store.delete( slots[10] );
+        store.delete( slots[20] );
+        assertEquals( 98, store.size() );
+        int reused = store.create();
+        assertTrue( (reused == slots[10]) || (reused == slots[20]) );
+        assertEquals( 0, store.getReal( reused ), 0 );
+        store.add( slots[50], 0.5, 0.25 );
+        assertEquals( 50.5, store.getReal( slots[50] ), 0 );
+        assertEquals( -49.75, store.getImaginary( slots[50] ), 0 );
+
+        ComplexTreeVector vector = new ComplexTreeVector( 0, 10 );
+        vector.set( 4, 1, 2 );
+        vector.add( 4, 1, 1 );
+        assertEquals( 2, vector.getReal( 4 ), 0 );
+        assertEquals( 3, vector.getImaginary( 4 ), 0 );
+        vector.set( 4, 0, 0 );
+        assertEquals( 0, vector.nonZeroEntryCount() );
+    }
+}
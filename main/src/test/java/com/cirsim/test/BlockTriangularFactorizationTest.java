@@ -0,0 +1,80 @@
+package com.cirsim.test;
+
+import com.cirsim.calc.BlockTriangularFactorization;
+import com.cirsim.calc.LUFactorization;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class BlockTriangularFactorizationTest {
+
+    @Test
+    public void basic() {
+
+        // three 3x3 coupled stages, each driving the next in one direction only, with the rows scrambled...
+        int stages = 3;
+        int n = 3 * stages;
+        double[][] a = new double[n][n];
+        Random random = new Random( 7 );
+        for( int s = 0; s < stages; s++ ) {
+            for( int i = 0; i < 3; i++ )
+                for( int j = 0; j < 3; j++ )
+                    a[3 * s + i][3 * s + j] = (i == j) ? 4 + random.nextDouble() : random.nextDouble() - 0.5;
+            if( s > 0 )
+                a[3 * s][3 * s - 1] = 1.5;
+        }
+        double[][] scrambled = new double[n][];
+        int[] order = { 4, 0, 8, 2, 6, 1, 7, 3, 5 };
+        for( int i = 0; i < n; i++ )
+            scrambled[i] = a[order[i]];
+
+        BlockTriangularFactorization btf = new BlockTriangularFactorization( scrambled );
+        assertEquals( stages, btf.getBlockCount() );
+        assertEquals( 3, btf.getLargestBlockSize() );
+        assertEquals( stages, btf.getLevelCount() );
+
+        LUFactorization lu = new LUFactorization( scrambled );
+        double[] b = new double[n];
+        for( int i = 0; i < n; i++ )
+            b[i] = i - 3.5;
+        double[] x = btf.solve( b );
+        double[] y = lu.solve( b );
+        double[] xt = btf.solveTransposed( b );
+        double[] yt = lu.solveTransposed( b );
+        for( int i = 0; i < n; i++ ) {
+            assertEquals( y[i], x[i], 1e-12 );
+            assertEquals( yt[i], xt[i], 1e-12 );
+        }
+    }
+
+
+    @Test
+    public void zeroDiagonal() {
+
+        // a voltage source style matrix, with zeros on the diagonal that require a row matching...
+        double[][] a = { { 0, 1, 0 }, { 1, 0, 0 }, { 0, 2, 3 } };
+        BlockTriangularFactorization btf = new BlockTriangularFactorization( a );
+        double[] x = btf.solve( new double[] { 2, 5, 13 } );
+        assertEquals( 5, x[0], 1e-15 );
+        assertEquals( 2, x[1], 1e-15 );
+        assertEquals( 3, x[2], 1e-15 );
+        assertEquals( 3, btf.getBlockCount() );
+    }
+
+
+    @Test
+    public void structurallySingular() {
+        try {
+            new BlockTriangularFactorization( new double[][] { { 1, 2 }, { 0, 0 } } );
+            fail( "Structurally singular matrix was not detected" );
+        }
+        catch( IllegalArgumentException e ) {
+            // expected...
+        }
+    }
+}
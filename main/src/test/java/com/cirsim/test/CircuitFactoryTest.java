@@ -0,0 +1,296 @@
+package com.cirsim.test;
+
+import com.cirsim.AElement;
+import com.cirsim.Circuit;
+import com.cirsim.CircuitFactory;
+import com.cirsim.components.AComponent;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class CircuitFactoryTest {
+
+
+    @Test
+    public void parallel() throws IOException {
+
+        CircuitFactory serial = new CircuitFactory();
+        serial.addDir( new File( "circuits" ) );
+        Circuit expected = (Circuit) serial.load( "com.slightlyloony.sim.test.TwoCells" );
+
+        CircuitFactory parallel = new CircuitFactory();
+        parallel.addDir( new File( "circuits" ) );
+        Circuit circuit = (Circuit) parallel.load( "com.slightlyloony.sim.test.TwoCells", new ForkJoinPool( 4 ) );
+
+        assertNotNull( circuit );
+        assertEquals( expected.getSubcircuits().keySet(), circuit.getSubcircuits().keySet() );
+        assertEquals( expected.getComponents().keySet(), circuit.getComponents().keySet() );
+        assertEquals( expected.getNets().keySet(), circuit.getNets().keySet() );
+        assertEquals( serial.getMessages(), parallel.getMessages() );
+    }
+
+
+    @Test
+    public void library() throws IOException {
+
+        Path root = makeLibrary();
+        CircuitFactory serial = new CircuitFactory();
+        serial.addDir( root.toFile() );
+        AElement expected = serial.load( "lib.Top" );
+
+        // the messages are the same, in the same order, however the work is divided up...
+        for( int threads = 1; threads <= 8; threads *= 2 ) {
+            CircuitFactory parallel = new CircuitFactory();
+            parallel.addDir( root.toFile() );
+            Circuit circuit = (Circuit) parallel.load( "lib.Top", new ForkJoinPool( threads ) );
+            assertNotNull( circuit );
+            assertEquals( ((Circuit) expected).getSubcircuits().keySet(), circuit.getSubcircuits().keySet() );
+            assertEquals( serial.getMessages(), parallel.getMessages() );
+        }
+        assertTrue( serial.getMessages().contains( "Unknown component 'R9'" ) );
+        assertTrue( serial.getMessages().contains( "Element lib.Loop contains itself" ) );
+    }
+
+
+    @Test
+    public void cache() throws IOException {
+
+        Path root = makeLibrary();
+        CircuitFactory factory = new CircuitFactory();
+        factory.addDir( root.toFile() );
+
+        // the leaf used by every cell is parsed just once, but each use is still a separate instance...
+        Circuit top = (Circuit) factory.load( "lib.Top" );
+        assertEquals( 1 + 20 + 1 + 2, factory.getParses() );
+        Circuit leaf0 = top.getSubcircuit( "X0" ).getSubcircuit( "L" );
+        Circuit leaf1 = top.getSubcircuit( "X1" ).getSubcircuit( "L" );
+        assertNotSame( leaf0, leaf1 );
+        assertNotSame( leaf0.getNet( "a" ), leaf1.getNet( "a" ) );
+        assertSame( leaf1, ((AComponent) leaf1.getComponent( "R1" )).getCircuit() );
+        assertSame( leaf1.getNet( "a" ), leaf1.getComponent( "R1" ).getTerminals().getNet( "1" ) );
+        assertSame( leaf1.getNet( "a" ), top.getSubcircuit( "X1" ).getNet( "a" ).getJoinedNets().get( 0 ) );
+        assertEquals( leaf0.getComponents().keySet(), leaf1.getComponents().keySet() );
+
+        // loading again parses only what found a circuit containing itself, and posts the same messages again...
+        String messages = factory.getMessages();
+        factory.load( "lib.Top" );
+        assertEquals( 24 + 3, factory.getParses() );
+        assertEquals( messages + messages, factory.getMessages() );
+
+        // modifying the leaf makes everything that uses it be parsed again...
+        File leaf = root.resolve( "lib" ).resolve( "Leaf.sim" ).toFile();
+        long modified = leaf.lastModified();
+        write( leaf.toPath(), "package lib\n\nLeaf: Circuit\n    R2: Resistor 3k\n    a: Net R2.1\n    b: Net R2.2\n    export a, b\n" );
+        assertTrue( leaf.setLastModified( modified + 10000 ) );
+        top = (Circuit) factory.load( "lib.Top" );
+        assertEquals( 27 + 24, factory.getParses() );
+        assertTrue( top.getSubcircuit( "X19" ).getSubcircuit( "L" ).hasComponent( "R2" ) );
+    }
+
+
+    @Test
+    public void compiled() throws IOException {
+
+        Path root = makeLibrary();
+        File cache = java.nio.file.Files.createTempDirectory( "compiled" ).toFile();
+        cache.deleteOnExit();
+        CircuitFactory first = load( root, cache, null );
+        assertEquals( 24, first.getTokenizations() );
+        for( File file : cache.listFiles() )
+            file.deleteOnExit();
+
+        // a later factory reads the tokens of unchanged sources from their compiled sources, with the same results...
+        CircuitFactory second = load( root, cache, null );
+        assertEquals( 0, second.getTokenizations() );
+        assertEquals( first.getMessages(), second.getMessages() );
+        assertEquals( first.getErrors(), second.getErrors() );
+        CircuitFactory parallel = load( root, cache, new ForkJoinPool( 4 ) );
+        assertEquals( 0, parallel.getTokenizations() );
+        assertEquals( first.getMessages(), parallel.getMessages() );
+
+        // a source whose content changes is tokenized again (whatever its time), as is one whose compiled source is corrupt...
+        write( root.resolve( "lib" ).resolve( "Leaf.sim" ),
+                "package lib\n\nLeaf: Circuit\n    R2: Resistor 3k\n    a: Net R2.1\n    b: Net R2.2\n    export a, b\n" );
+        java.nio.file.Files.write( new File( cache, "lib.Cell3.simc" ).toPath(), new byte[] { 'S', 'I', 'M', 'C', 0, 1, 32 } );
+        CircuitFactory third = load( root, cache, null );
+        assertEquals( 2, third.getTokenizations() );
+        assertEquals( first.getMessages(), third.getMessages() );
+        assertTrue( ((Circuit) third.load( "lib.Top" )).getSubcircuit( "X3" ).getSubcircuit( "L" ).hasComponent( "R2" ) );
+        assertEquals( 0, load( root, cache, null ).getTokenizations() );
+    }
+
+
+    @Test
+    public void index() throws IOException, InterruptedException {
+
+        Path root = makeLibrary();
+        CircuitFactory factory = new CircuitFactory();
+        factory.addDir( root.toFile() );
+        assertNotNull( factory.load( "lib.Leaf" ) );
+        assertFalse( exists( factory, "lib.sub.Extra" ) );
+        assertFalse( exists( factory, "lib..Leaf" ) );
+
+        // an element added (in a new package) after looking for it is found once the change is noticed, as is one removed...
+        Path sub = java.nio.file.Files.createDirectories( root.resolve( "lib" ).resolve( "sub" ) );
+        sub.toFile().deleteOnExit();
+        write( sub.resolve( "Extra.sim" ), "package lib.sub\n\nExtra: Circuit\n    R1: Resistor 1k\n" );
+        assertTrue( eventually( () -> exists( factory, "lib.sub.Extra" ) ) );
+        java.nio.file.Files.delete( sub.resolve( "Extra.sim" ) );
+        assertTrue( eventually( () -> !exists( factory, "lib.sub.Extra" ) ) );
+
+        // once closed, nothing is watched or remembered any more, but source files are still found (at once, with nothing remembered)...
+        factory.close();
+        assertFalse( exists( factory, "lib.sub.Other" ) );
+        write( sub.resolve( "Other.sim" ), "package lib.sub\n\nOther: Circuit\n    R1: Resistor 1k\n" );
+        assertTrue( exists( factory, "lib.sub.Other" ) );
+        java.nio.file.Files.delete( sub.resolve( "Other.sim" ) );
+    }
+
+
+    @Test
+    public void archive() throws IOException {
+
+        // make an archive of the library...
+        Path root = makeLibrary();
+        File zim = File.createTempFile( "library", ".zim" );
+        zim.deleteOnExit();
+        try( ZipOutputStream out = new ZipOutputStream( new FileOutputStream( zim ) ) ) {
+            for( File file : root.resolve( "lib" ).toFile().listFiles() ) {
+                out.putNextEntry( new ZipEntry( "lib/" + file.getName() ) );
+                out.write( java.nio.file.Files.readAllBytes( file.toPath() ) );
+                out.closeEntry();
+            }
+        }
+
+        CircuitFactory expected = new CircuitFactory();
+        expected.addDir( root.toFile() );
+        Circuit top = (Circuit) expected.load( "lib.Top" );
+
+        // loading from the archive, serially or concurrently, is just like loading from the directory...
+        try( CircuitFactory factory = new CircuitFactory() ) {
+            factory.addArchive( zim );
+            Circuit circuit = (Circuit) factory.load( "lib.Top" );
+            assertEquals( top.getSubcircuits().keySet(), circuit.getSubcircuits().keySet() );
+            assertEquals( expected.getMessages(), factory.getMessages() );
+            assertEquals( 24, factory.getTokenizations() );
+        }
+        try( CircuitFactory factory = new CircuitFactory() ) {
+            factory.addArchive( zim );
+            factory.load( "lib.Top", new ForkJoinPool( 4 ) );
+            assertEquals( expected.getMessages(), factory.getMessages() );
+        }
+
+        // a source directory added after the archive wins over it...
+        Path patch = java.nio.file.Files.createTempDirectory( "patch" );
+        patch.toFile().deleteOnExit();
+        Path lib = java.nio.file.Files.createDirectories( patch.resolve( "lib" ) );
+        lib.toFile().deleteOnExit();
+        write( lib.resolve( "Leaf.sim" ), "package lib\n\nLeaf: Circuit\n    R2: Resistor 3k\n    a: Net R2.1\n    b: Net R2.2\n    export a, b\n" );
+        try( CircuitFactory factory = new CircuitFactory() ) {
+            factory.addArchive( zim );
+            factory.addDir( patch.toFile() );
+            Circuit circuit = (Circuit) factory.load( "lib.Top" );
+            assertTrue( circuit.getSubcircuit( "X0" ).getSubcircuit( "L" ).hasComponent( "R2" ) );
+            assertTrue( circuit.getSubcircuit( "X0" ).hasComponent( "R1" ) );
+        }
+
+        // but not over one added after it, until the archive is closed, when the directory's is loaded instead...
+        CircuitFactory factory = new CircuitFactory();
+        factory.addDir( patch.toFile() );
+        factory.addArchive( zim );
+        assertFalse( ((Circuit) factory.load( "lib.Leaf" )).hasComponent( "R2" ) );
+        factory.close();
+        assertTrue( ((Circuit) factory.load( "lib.Leaf" )).hasComponent( "R2" ) );
+        assertFalse( factory.getMessages(), factory.isError() );
+    }
+
+
+    private boolean exists( final CircuitFactory _factory, final String _elementPath ) throws IOException {
+        try {
+            _factory.load( _elementPath );
+            return true;
+        }
+        catch( IllegalArgumentException _e ) {
+            return false;
+        }
+    }
+
+
+    /**
+     * Returns true if the given condition becomes true within a while (as changes to the file system may take a few seconds to be noticed).
+     */
+    private boolean eventually( final Condition _condition ) throws IOException, InterruptedException {
+        for( int i = 0; i < 300; i++ ) {
+            if( _condition.test() )
+                return true;
+            Thread.sleep( 100 );
+        }
+        return false;
+    }
+
+
+    private interface Condition {
+        boolean test() throws IOException;
+    }
+
+
+    private CircuitFactory load( final Path _root, final File _cache, final ForkJoinPool _pool ) throws IOException {
+        CircuitFactory result = new CircuitFactory();
+        result.addDir( _root.toFile() );
+        result.setCacheDir( _cache );
+        if( _pool == null )
+            result.load( "lib.Top" );
+        else
+            result.load( "lib.Top", _pool );
+        return result;
+    }
+
+
+    /**
+     * Returns the root of a new library of subcircuits several levels deep, with an error in one of them and a circuit that (indirectly) contains
+     * itself.
+     */
+    private Path makeLibrary() throws IOException {
+
+        Path root = java.nio.file.Files.createTempDirectory( "library" );
+        Path lib = java.nio.file.Files.createDirectories( root.resolve( "lib" ) );
+        root.toFile().deleteOnExit();
+        lib.toFile().deleteOnExit();
+        StringBuilder top = new StringBuilder( "package lib\n\nTop: Circuit\n" );
+        for( int i = 0; i < 20; i++ ) {
+            top.append( "    X" ).append( i ).append( ": Cell" ).append( i ).append( '\n' );
+            String cell = "package lib\n\nCell" + i + ": Circuit\n    R1: Resistor 1k\n    L: Leaf\n"
+                    + "    a: Net R1.1, L.a\n" + ((i == 7) ? "    b: Net R1.2, R9.1\n" : "    b: Net R1.2, L.b\n") + "    export a, b\n";
+            write( lib.resolve( "Cell" + i + ".sim" ), cell );
+        }
+        top.append( "    Y: Loop\n" );
+        write( lib.resolve( "Top.sim" ), top.toString() );
+        write( lib.resolve( "Leaf.sim" ), "package lib\n\nLeaf: Circuit\n    R1: Resistor 2k\n    a: Net R1.1\n    b: Net R1.2\n    export a, b\n" );
+        write( lib.resolve( "Loop.sim" ), "package lib\n\nLoop: Circuit\n    Z: Loop2\n" );
+        write( lib.resolve( "Loop2.sim" ), "package lib\n\nLoop2: Circuit\n    Z: Loop\n" );
+        return root;
+    }
+
+
+    private void write( final Path _path, final String _text ) throws IOException {
+        java.nio.file.Files.write( _path, _text.getBytes( StandardCharsets.UTF_8 ) );
+        _path.toFile().deleteOnExit();
+    }
+}
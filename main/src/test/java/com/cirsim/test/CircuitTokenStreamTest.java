@@ -0,0 +1,168 @@
+package com.cirsim.test;
+
+import com.cirsim.CircuitTokenStream;
+import com.cirsim.CircuitTokens;
+import com.cirsim.Token;
+import com.cirsim.TokenType;
+import com.cirsim.util.Files;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class CircuitTokenStreamTest {
+
+
+    @Test
+    public void sameAsCircuitTokens() throws IOException {
+
+        for( String name : new String[] { "Test1", "TestRun1", "Test1Err1", "Test1Err2", "Clipper" } ) {
+
+            String source = Files.readFileAsUTF8String( new File( "circuits/com/slightlyloony/sim/test/" + name + ".sim" ) );
+            CircuitTokens expected = new CircuitTokens( source );
+
+            // read the source a few characters at a time, so that tokens and comments straddle the chunks...
+            CircuitTokenStream stream = new CircuitTokenStream( new Trickle( source, 3 ) );
+            List<Token> tokens = new ArrayList<>();
+            stream.forEachRemaining( tokens::add );
+
+            assertEquals( name, expected.getTokens(), tokens );
+            assertEquals( name, expected.getMessages(), stream.getMessages() );
+            assertEquals( name, expected.getErrorsCount(), stream.getErrorsCount() );
+            assertEquals( name, expected.getWarningsCount(), stream.getWarningsCount() );
+        }
+    }
+
+
+    @Test
+    public void tokens() {
+
+        CircuitTokenStream stream = new CircuitTokenStream( new StringReader( "Import a.b\nX: Circuit /* a\n comment */\n  R1: Resistor 1k, 10%" ) );
+        Token[] expected = {
+                new Token( TokenType.KEY_IMPORT, "Import",   1,  1, true  ),
+                new Token( TokenType.VALUE,      "a.b",      1,  8, false ),
+                new Token( TokenType.LABEL,      "X",        2,  1, true  ),
+                new Token( TokenType.TYPE,       "Circuit",  2,  4, false ),
+                new Token( TokenType.LABEL,      "R1",       4,  3, true  ),
+                new Token( TokenType.TYPE,       "Resistor", 4,  7, false ),
+                new Token( TokenType.VALUE,      "1k",       4, 16, false ),
+                new Token( TokenType.VALUE,      "10%",      4, 20, false )
+        };
+        for( Token token : expected ) {
+            assertTrue( stream.hasNext() );
+            assertEquals( token, stream.next() );
+        }
+        assertFalse( stream.hasNext() );
+        assertFalse( stream.isError() );
+        assertFalse( stream.isWarning() );
+
+        // an empty source is an error...
+        stream = new CircuitTokenStream( CharBuffer.wrap( "" ) );
+        assertFalse( stream.hasNext() );
+        assertEquals( "No source to tokenize at line 1, column 1.\n", stream.getMessages() );
+    }
+
+
+    @Test
+    public void lazy() {
+
+        // a big source, of which only the first chunk should be read to get the first token...
+        StringBuilder source = new StringBuilder( "package big\n" );
+        for( int i = 0; i < 100000; i++ )
+            source.append( "    R" ).append( i ).append( ": Resistor 1k\n" );
+        Trickle trickle = new Trickle( source.toString(), Integer.MAX_VALUE );
+        CircuitTokenStream stream = new CircuitTokenStream( trickle );
+        assertEquals( TokenType.KEY_PACKAGE, stream.next().getType() );
+        assertEquals( 1, trickle.reads );
+
+        int count = 1;
+        while( stream.hasNext() ) {
+            stream.next();
+            count++;
+        }
+        assertEquals( 2 + 3 * 100000, count );
+        assertTrue( trickle.reads > 1 );
+    }
+
+
+    @Test
+    public void mapped() throws IOException {
+
+        String source = "C: Circuit\n  R1: Resistor 4.7kµ, 1/*2*/0%,  wire é wound \n";
+        File file = File.createTempFile( "mapped", ".sim" );
+        file.deleteOnExit();
+        java.nio.file.Files.write( file.toPath(), source.getBytes( StandardCharsets.UTF_8 ) );
+
+        List<Token> tokens = new ArrayList<>();
+        try( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+            CircuitTokenStream stream = new CircuitTokenStream( channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ) );
+            stream.forEachRemaining( tokens::add );
+        }
+
+        // the values (including one interrupted by a comment) are decoded from the mapping, with the same tokens as for a string...
+        assertEquals( new CircuitTokens( source ).getTokens(), tokens );
+        assertEquals( "4.7kµ", tokens.get( 4 ).getValue() );
+        assertEquals( "10%", tokens.get( 5 ).getValue() );
+        assertEquals( "wire é wound", tokens.get( 6 ).getValue() );
+
+        // malformed UTF-8 is reported when it's reached...
+        CircuitTokenStream stream = new CircuitTokenStream( ByteBuffer.wrap( new byte[] { 'a', '\n', 'b', (byte) 0xC3, '\n' } ) );
+        assertEquals( "a", stream.next().getValue() );
+        try {
+            stream.hasNext();
+            fail();
+        }
+        catch( UncheckedIOException _e ) {
+            // expected...
+        }
+    }
+
+
+    /**
+     * A source that gives out at most the given number of characters on each read, and counts the reads.
+     */
+    private static class Trickle implements Readable {
+
+        private final String source;
+        private final int most;
+        private int index;
+        private int reads;
+
+
+        private Trickle( final String _source, final int _most ) {
+            source = _source;
+            most = _most;
+        }
+
+
+        @Override
+        public int read( final CharBuffer _buffer ) {
+
+            if( index >= source.length() )
+                return -1;
+
+            int count = Math.min( Math.min( most, _buffer.remaining() ), source.length() - index );
+            _buffer.append( source, index, index + count );
+            index += count;
+            reads++;
+            return count;
+        }
+    }
+}
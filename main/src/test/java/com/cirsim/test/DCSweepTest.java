@@ -0,0 +1,93 @@
+package com.cirsim.test;
+
+import com.cirsim.calc.CircuitGraph;
+import com.cirsim.calc.DCSweep;
+import com.cirsim.calc.DCSweepWriter;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class DCSweepTest {
+
+
+    @Test
+    public void source() throws IOException {
+
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Spread" );
+        int out = graph.getNode( "out" );
+        int vcc = graph.getNode( "Vcc" );
+        DCSweep sweep = new DCSweep( graph, "V1" );
+        int[] count = new int[1];
+        sweep.run( -5, 15, 20001, ( i, v, voltages ) -> {
+            assertEquals( count[0]++, i );
+            assertEquals( v, voltages[vcc], 1e-9 );
+            assertEquals( v / 2, voltages[out], 1e-9 );
+        } );
+        assertEquals( 20001, count[0] );
+
+        // the matrix never changes, so it's factored just once...
+        assertEquals( 1, sweep.getAnalyses() );
+        assertEquals( 1, sweep.getFactorizations() );
+    }
+
+
+    @Test
+    public void zeroSource() throws IOException {
+
+        // a source whose nominal value is zero can still be swept, as it's stamped with each point's value...
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Balanced" );
+        int out = graph.getNode( "out" );
+        int[] count = new int[1];
+        new DCSweep( graph, "V3" ).run( 0, 5, 11, ( i, v, voltages ) -> {
+            assertEquals( 0.5 * i, v, 1e-12 );
+            assertEquals( v / 2, voltages[out], 1e-9 );
+            count[0]++;
+        } );
+        assertEquals( 11, count[0] );
+    }
+
+
+    @Test
+    public void resistor() throws IOException {
+
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Spread" );
+        int out = graph.getNode( "out" );
+        DCSweep sweep = new DCSweep( graph, "R2" );
+        double[] last = new double[1];
+        sweep.run( 100, 10000, 1000, ( i, r, voltages ) -> {
+            assertEquals( 10 * r / (1000 + r), voltages[out], 1e-9 );
+            last[0] = r;
+        } );
+        assertEquals( 10000, last[0], 0 );
+        assertEquals( 1, sweep.getAnalyses() );
+        assertEquals( 1000, sweep.getFactorizations() );
+    }
+
+
+    @Test
+    public void writer() throws IOException {
+
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Spread" );
+        StringWriter out = new StringWriter();
+        new DCSweep( graph, "V1" ).run( 0, 2, 3, new DCSweepWriter( out, graph, "V1", "out" ) );
+        assertEquals( "V1,out\n0.0,0.0\n1.0,0.5\n2.0,1.0\n", out.toString() );
+    }
+
+
+    @Test( expected = IllegalArgumentException.class )
+    public void negativeResistance() throws IOException {
+        new DCSweep( TestCircuits.graph( "com.slightlyloony.sim.test.Spread" ), "R1" ).run( -1, 1, 3, ( i, r, voltages ) -> { } );
+    }
+
+
+    @Test( expected = IllegalArgumentException.class )
+    public void unknownComponent() throws IOException {
+        new DCSweep( TestCircuits.graph( "com.slightlyloony.sim.test.Spread" ), "R9" );
+    }
+}
@@ -0,0 +1,109 @@
+package com.cirsim.test;
+
+import com.cirsim.Circuit;
+import com.cirsim.calc.CircuitGraph;
+import com.cirsim.calc.Equations;
+import com.cirsim.calc.LUFactorization;
+import com.cirsim.calc.MeshEquations;
+import com.cirsim.calc.NodalEquations;
+import com.cirsim.calc.SchurFactorization;
+import com.cirsim.calc.SolverOptions;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class DomainDecompositionTest {
+
+
+    private static int node( final CircuitGraph _graph, final String _name ) {
+        for( int i = 0; i < _graph.getNodeCount(); i++ )
+            if( _name.equals( _graph.getNodeName( i ) ) )
+                return i;
+        throw new AssertionError( "No node " + _name );
+    }
+
+
+    @Test
+    public void hierarchy() throws IOException {
+
+        Circuit circuit = TestCircuits.circuit( "com.slightlyloony.sim.test.TwoCells" );
+        assertEquals( 2, circuit.getSubcircuits().size() );
+
+        // the exported nets merge with the top level nets, leaving one interior node per battery...
+        CircuitGraph graph = new CircuitGraph( circuit );
+        assertEquals( 5, graph.getNodeCount() );
+        assertEquals( 5, graph.getBranchCount() );
+        assertEquals( 2, graph.getDomainCount() );
+        assertEquals( -1, graph.getNodeDomain( node( graph, "mid" ) ) );
+        assertEquals( 0, graph.getNodeDomain( node( graph, "B1.n1" ) ) );
+        assertEquals( 1, graph.getNodeDomain( node( graph, "B2.n1" ) ) );
+
+        // 2.6 volts across 10.4 ohms...
+        Equations nodal = new NodalEquations( graph );
+        double[] expected = nodal.getNodeVoltages( nodal.solve().getValues() );
+        assertEquals( 2.5, expected[node( graph, "Vcc" )], 1e-12 );
+        assertEquals( 1.25, expected[node( graph, "mid" )], 1e-12 );
+
+        for( Equations equations : new Equations[] { nodal, new MeshEquations( graph ) } ) {
+            double[] actual = equations.getNodeVoltages( equations.solveByDomains( SolverOptions.DEFAULT ).getValues() );
+            assertArrayEquals( expected, actual, 1e-12 );
+        }
+    }
+
+
+    @Test
+    public void borderedBlocks() {
+
+        // three domains of 6 unknowns each, plus 4 interface unknowns, in a scrambled order...
+        Random random = new Random( 1234 );
+        int n = 22;
+        int[] domains = new int[n];
+        for( int i = 0; i < n; i++ )
+            domains[i] = (i < 18) ? i % 3 : -1;
+        for( int i = n - 1; i > 0; i-- ) {
+            int j = random.nextInt( i + 1 );
+            int t = domains[i];
+            domains[i] = domains[j];
+            domains[j] = t;
+        }
+        double[][] a = new double[n][n];
+        for( int i = 0; i < n; i++ )
+            for( int j = 0; j < n; j++ )
+                if( (i == j) || (domains[i] < 0) || (domains[j] < 0) || (domains[i] == domains[j]) )
+                    a[i][j] = (i == j) ? 10 + random.nextDouble() : random.nextDouble() - 0.5;
+        double[] b = new double[n];
+        for( int i = 0; i < n; i++ )
+            b[i] = random.nextDouble();
+
+        SchurFactorization schur = new SchurFactorization( a, domains );
+        assertEquals( 3, schur.getDomainCount() );
+        assertEquals( 4, schur.getInterfaceSize() );
+        LUFactorization lu = new LUFactorization( a );
+        assertArrayEquals( lu.solve( b ), schur.solve( b ), 1e-12 );
+        assertArrayEquals( lu.solveTransposed( b ), schur.solveTransposed( b ), 1e-12 );
+    }
+
+
+    @Test
+    public void singularInterior() {
+
+        // domain 0's only unknown appears only in interface equations, like the current of a voltage source between two exported nets...
+        double[][] a = {
+                { 2, -1, 1 },
+                { -1, 2, -1 },
+                { 1, -1, 0 }
+        };
+        int[] domains = { -1, -1, 0 };
+        double[] b = { 0, 0, 1 };
+        SchurFactorization schur = new SchurFactorization( a, domains );
+        assertEquals( 0, schur.getDomainCount() );
+        assertEquals( 1, schur.getFoldedCount() );
+        assertArrayEquals( new LUFactorization( a ).solve( b ), schur.solve( b ), 1e-12 );
+    }
+}
@@ -0,0 +1,80 @@
+package com.cirsim.test;
+
+import com.cirsim.calc.CircuitGraph;
+import com.cirsim.calc.Equations;
+import com.cirsim.calc.Formulation;
+import com.cirsim.calc.FormulationChoice;
+import com.cirsim.calc.MeshEquations;
+import com.cirsim.calc.NodalEquations;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class FormulationTest {
+
+
+    private static int node( final CircuitGraph _graph, final String _name ) {
+        for( int i = 0; i < _graph.getNodeCount(); i++ )
+            if( _name.equals( _graph.getNodeName( i ) ) )
+                return i;
+        throw new AssertionError( "No node " + _name );
+    }
+
+
+    @Test
+    public void graph() throws IOException {
+
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Divider" );
+        assertEquals( 3, graph.getNodeCount() );
+        assertEquals( 4, graph.getBranchCount() );
+        assertEquals( 1, graph.getPartCount() );
+        assertEquals( 2, graph.getLoops().size() );
+        assertTrue( graph.isReference( node( graph, "ground" ) ) );
+        assertFalse( graph.isReference( node( graph, "n1" ) ) );
+    }
+
+
+    @Test
+    public void bothFormulationsAgree() throws IOException {
+
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Divider" );
+        Equations nodal = new NodalEquations( graph );
+        Equations mesh = new MeshEquations( graph );
+        assertEquals( 3, nodal.size() );
+        assertEquals( 2, mesh.size() );
+
+        double[] nv = nodal.getNodeVoltages( nodal.solve().getValues() );
+        double[] mv = mesh.getNodeVoltages( mesh.solve().getValues() );
+        double expected = 10 * 1200.0 / 2200.0;
+        assertEquals( 10, nv[node( graph, "Vcc" )], 1e-12 );
+        assertEquals( expected, nv[node( graph, "n1" )], 1e-12 );
+        assertEquals( 0, nv[node( graph, "ground" )], 0 );
+        for( int i = 0; i < nv.length; i++ )
+            assertEquals( nv[i], mv[i], 1e-12 );
+
+        double[] ni = nodal.getBranchCurrents( nodal.solve().getValues() );
+        double[] mi = mesh.getBranchCurrents( mesh.solve().getValues() );
+        for( int i = 0; i < ni.length; i++ )
+            assertEquals( ni[i], mi[i], 1e-15 );
+
+        // the source delivers current out of its + terminal, so the current through it (from + to -) is negative...
+        assertEquals( -10 / 2200.0, ni[0], 1e-15 );
+    }
+
+
+    @Test
+    public void choice() throws IOException {
+
+        FormulationChoice choice = new FormulationChoice( TestCircuits.graph( "com.slightlyloony.sim.test.Divider" ) );
+        assertEquals( Formulation.MESH, choice.getFormulation() );
+        assertEquals( 3, choice.getNodalUnknowns() );
+        assertEquals( 2, choice.getMeshUnknowns() );
+        assertTrue( choice.getReason().startsWith( "MESH has fewer unknowns" ) );
+        assertEquals( Formulation.MESH, choice.build().getFormulation() );
+    }
+}
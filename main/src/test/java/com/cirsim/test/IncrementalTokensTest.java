@@ -0,0 +1,105 @@
+package com.cirsim.test;
+
+import com.cirsim.CircuitTokens;
+import com.cirsim.util.Files;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class IncrementalTokensTest {
+
+
+    @Test
+    public void edits() throws IOException {
+
+        String source = Files.readFileAsUTF8String( new File( "circuits/com/slightlyloony/sim/test/Test1.sim" ) );
+        CircuitTokens tokens = new CircuitTokens( source );
+
+        // changing a value re-tokenizes just that line, and reports just that component...
+        String edited = source.replace( "R2:      Resistor 4.7k", "R2:      Resistor 5.6k" );
+        CircuitTokens updated = check( tokens, edited );
+        assertTrue( updated.isIncremental() );
+        assertEquals( Collections.singleton( "R2" ), updated.getChangedLabels() );
+
+        // adding a component shifts the lines after it...
+        edited = source.replace( "    R2:", "    R3: Resistor 1k\n    R2:" );
+        updated = check( tokens, edited );
+        assertTrue( updated.isIncremental() );
+        assertEquals( Collections.singleton( "R3" ), updated.getChangedLabels() );
+
+        // removing one, or changing the continuation line of one, are changes too...
+        updated = check( tokens, source.replace( "    R2:      Resistor 4.7k, 10%, 1/2watt, thick film\n", "" ) );
+        assertEquals( Collections.singleton( "R2" ), updated.getChangedLabels() );
+        updated = check( tokens, source.replace( "10 watts", "20 watts" ) );
+        assertEquals( Collections.singleton( "R1" ), updated.getChangedLabels() );
+
+        // opening a comment (here, one closed by a later comment's terminator) changes how everything after it is read, so it's all tokenized again...
+        updated = check( tokens, source.replace( "    R2:", "    /* R2:" ) );
+        assertFalse( updated.isIncremental() );
+        assertEquals( Collections.singleton( "R2" ), updated.getChangedLabels() );
+        updated = check( tokens, source.replace( "    R2:", "    R2: /* oops" ).replace( "*/\n//", "*\n//" ) );
+        assertTrue( updated.isWarning() );
+        assertEquals( Collections.singleton( "R2" ), updated.getChangedLabels() );
+
+        // no change at all is no change...
+        assertTrue( check( tokens, source ).getChangedLabels().isEmpty() );
+    }
+
+
+    @Test
+    public void random() throws IOException {
+
+        // a long series of random edits, each of which should give exactly the tokens that tokenizing the whole source would...
+        String[] lines = { "    R9: Resistor 1k, 5%\n", "        2 watts\n", "    /* a\n", " b */\n", "// R9\n", "    n: Net R9.1\n", "\n",
+                "    X:\n", "    use Test1\n", "  , 3\n", "    R8: Resistor /* c */ 2k\n" };
+        Random random = new Random( 42 );
+        for( String name : new String[] { "Test1", "Clipper" } ) {
+
+            String source = Files.readFileAsUTF8String( new File( "circuits/com/slightlyloony/sim/test/" + name + ".sim" ) );
+            CircuitTokens tokens = new CircuitTokens( source );
+            int incremental = 0;
+            for( int i = 0; i < 500; i++ ) {
+
+                // insert, replace, or delete a random line...
+                String[] split = source.split( "(?<=\n)", -1 );
+                int line = random.nextInt( split.length );
+                String replacement = lines[random.nextInt( lines.length )];
+                switch( random.nextInt( 3 ) ) {
+                    case 0: split[line] = replacement + split[line]; break;
+                    case 1: split[line] = replacement; break;
+                    default: split[line] = ""; break;
+                }
+                source = String.join( "", split );
+                tokens = check( tokens, source );
+                if( tokens.isIncremental() )
+                    incremental++;
+            }
+            assertTrue( name, incremental > 100 );
+        }
+    }
+
+
+    /**
+     * Returns the given tokens updated for the given source, after checking that they're the same as if the source were tokenized from scratch.
+     */
+    private CircuitTokens check( final CircuitTokens _tokens, final String _source ) {
+
+        CircuitTokens result = _tokens.update( _source );
+        CircuitTokens expected = new CircuitTokens( _source );
+        assertEquals( _source, expected.getTokens(), result.getTokens() );
+        assertEquals( _source, expected.getMessages(), result.getMessages() );
+        assertEquals( _source, expected.getErrorsCount(), result.getErrorsCount() );
+        assertEquals( _source, expected.getWarningsCount(), result.getWarningsCount() );
+        return result;
+    }
+}
@@ -0,0 +1,93 @@
+package com.cirsim.test;
+
+import com.cirsim.calc.CircuitGraph;
+import com.cirsim.calc.MNAAssembler;
+import com.cirsim.calc.NodalEquations;
+import com.cirsim.calc.Solver;
+import com.cirsim.matrices.TreeMatrix;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class MNAAssemblerTest {
+
+
+    @Test
+    public void treeMatrix() {
+
+        TreeMatrix m = new TreeMatrix( 3 );
+        m.add( 0, 0, 2 );
+        m.add( 0, 0, 3 );
+        m.add( 2, 1, -1 );
+        m.set( 1, 2, 4 );
+        assertEquals( 5, m.get( 0, 0 ), 0 );
+        assertEquals( -1, m.get( 2, 1 ), 0 );
+        assertEquals( 4, m.get( 1, 2 ), 0 );
+        assertEquals( 0, m.get( 1, 1 ), 0 );
+        assertFalse( m.has( 1, 1 ) );
+        assertEquals( 3, m.entryCount() );
+        assertArrayEquals( new double[] { 5, 12, -2 }, m.multiply( new double[] { 1, 2, 3 } ), 0 );
+
+        // zeroing keeps the pattern...
+        m.zero();
+        assertEquals( 0, m.get( 0, 0 ), 0 );
+        assertTrue( m.has( 0, 0 ) );
+        assertEquals( 3, m.entryCount() );
+
+        // slots stay put, and may be written without a search...
+        int slot = m.getSlot( 2, 1 );
+        assertEquals( slot, m.getSlot( 2, 1 ) );
+        m.addValue( slot, 1.5 );
+        m.addValue( slot, 1.5 );
+        assertEquals( 3, m.get( 2, 1 ), 0 );
+        m.putValue( slot, 7 );
+        assertEquals( 7, m.getValue( slot ), 0 );
+        assertEquals( 3, m.entryCount() );
+
+        m.clear();
+        assertEquals( 0, m.entryCount() );
+    }
+
+
+    @Test
+    public void matchesNodalEquations() throws IOException {
+
+        for( String path : new String[] { "com.slightlyloony.sim.test.Divider", "com.slightlyloony.sim.test.TwoCells" } ) {
+
+            CircuitGraph graph = TestCircuits.graph( path );
+            MNAAssembler mna = new MNAAssembler( graph );
+            double[][] expected = new NodalEquations( graph ).getAugmented();
+            assertEquals( expected.length, mna.size() );
+
+            // assembling twice must give the same result as assembling once, into the same entries...
+            int entries = mna.getMatrix().entryCount();
+            assertTrue( mna.getStampCount() >= entries );
+            for( int pass = 0; pass < 2; pass++ ) {
+                mna.assemble();
+                assertEquals( entries, mna.getMatrix().entryCount() );
+                double[][] actual = mna.toAugmented();
+                for( int i = 0; i < expected.length; i++ )
+                    assertArrayEquals( expected[i], actual[i], 0 );
+            }
+        }
+    }
+
+
+    @Test
+    public void solve() throws IOException {
+
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Divider" );
+        MNAAssembler mna = new MNAAssembler( graph );
+        mna.assemble();
+        assertEquals( "V(Vcc)", mna.getUnknown( mna.getNodeColumn( graph.getNode( "Vcc" ) ) ) );
+        assertEquals( "I(V1)", mna.getUnknown( mna.size() - 1 ) );
+
+        double[] voltages = mna.getNodeVoltages( new Solver( mna.toAugmented() ).solve().getValues() );
+        assertEquals( 10 * 1200.0 / 2200.0, voltages[graph.getNode( "n1" )], 1e-12 );
+    }
+}
@@ -0,0 +1,97 @@
+package com.cirsim.test;
+
+import com.cirsim.calc.CircuitGraph;
+import com.cirsim.calc.MonteCarloAnalysis;
+import com.cirsim.calc.MonteCarloResult;
+import com.cirsim.calc.Statistics;
+import com.cirsim.calc.ToleranceDistribution;
+import com.cirsim.values.Tolerance;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class MonteCarloAnalysisTest {
+
+
+    @Test
+    public void distributions() {
+
+        SplittableRandom random = new SplittableRandom( 1 );
+        Tolerance tolerance = new Tolerance( -5, 5 );
+        for( ToleranceDistribution distribution : ToleranceDistribution.values() ) {
+            Statistics stats = new Statistics();
+            for( int i = 0; i < 100000; i++ )
+                stats.add( distribution.sample( tolerance, random ) );
+            assertEquals( 1, stats.getMean(), 0.001 );
+            assertTrue( (stats.getMin() >= 0.95) && (stats.getMax() <= 1.05) );
+            double expected = (distribution == ToleranceDistribution.UNIFORM) ? 0.1 / Math.sqrt( 12 ) : 0.1 / 6;
+            assertEquals( expected, stats.getStandardDeviation(), expected * 0.05 );
+        }
+
+        // an asymmetric band is centered on its middle...
+        Statistics stats = new Statistics();
+        for( int i = 0; i < 10000; i++ )
+            stats.add( ToleranceDistribution.UNIFORM.sample( new Tolerance( -50, 400 ), random ) );
+        assertEquals( 2.75, stats.getMean(), 0.05 );
+    }
+
+
+    @Test
+    public void statistics() {
+
+        // merging separate accumulations gives the same result as one accumulation...
+        Statistics all = new Statistics();
+        Statistics a = new Statistics();
+        Statistics b = new Statistics();
+        for( int i = 0; i < 100; i++ ) {
+            all.add( i * i );
+            ((i < 30) ? a : b).add( i * i );
+        }
+        a.merge( b );
+        assertEquals( all.getCount(), a.getCount() );
+        assertEquals( all.getMean(), a.getMean(), 1e-9 );
+        assertEquals( all.getStandardDeviation(), a.getStandardDeviation(), 1e-9 );
+        assertEquals( 0, a.getMin(), 0 );
+        assertEquals( 99 * 99, a.getMax(), 0 );
+    }
+
+
+    @Test
+    public void divider() throws IOException {
+
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Spread" );
+        MonteCarloAnalysis analysis = new MonteCarloAnalysis( graph );
+        analysis.addLimit( "out", 4.9, 5.1 );
+
+        List<Long> progress = new ArrayList<>();
+        MonteCarloResult result = analysis.run( 5000, 12345, soFar -> progress.add( soFar.getRuns() ), new ForkJoinPool( 4 ) );
+
+        assertEquals( 5000, result.getRuns() );
+        Statistics out = result.getStatistics( "out" );
+        assertEquals( 5, out.getMean(), 0.01 );
+        assertTrue( out.getStandardDeviation() > 0.01 );
+        assertTrue( out.getMin() >= 10 * 0.99 / (1.05 + 0.99) );
+        assertTrue( out.getMax() <= 10 * 1.01 / (0.95 + 1.01) );
+        assertEquals( 10, result.getStatistics( "Vcc" ).getMean(), 0.5 );
+        assertTrue( (result.getYield() > 0.5) && (result.getYield() < 1) );
+
+        // progress streams out batch by batch, ending with every run...
+        assertTrue( progress.size() > 1 );
+        assertEquals( 5000, (long) progress.get( progress.size() - 1 ) );
+
+        // the same seed gives exactly the same results, however many threads there are...
+        MonteCarloResult serial = analysis.run( 5000, 12345, null, new ForkJoinPool( 1 ) );
+        assertEquals( out.getMean(), serial.getStatistics( "out" ).getMean(), 0 );
+        assertEquals( out.getStandardDeviation(), serial.getStatistics( "out" ).getStandardDeviation(), 0 );
+        assertEquals( result.getPasses(), serial.getPasses() );
+    }
+}
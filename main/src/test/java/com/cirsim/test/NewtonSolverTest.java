@@ -0,0 +1,139 @@
+package com.cirsim.test;
+
+import com.cirsim.calc.CircuitGraph;
+import com.cirsim.calc.DCSweep;
+import com.cirsim.calc.FormulationChoice;
+import com.cirsim.calc.NewtonOptions;
+import com.cirsim.calc.NewtonSolver;
+import com.cirsim.calc.NodalEquations;
+import com.cirsim.components.Diode;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class NewtonSolverTest {
+
+
+    private static Diode diode( final CircuitGraph _graph ) {
+        for( CircuitGraph.Branch branch : _graph.getBranches() )
+            if( branch.isNonlinear() )
+                return (Diode) branch.getComponent();
+        throw new IllegalStateException( "No diode" );
+    }
+
+
+    /**
+     * Checks that the currents into the clipper's output node sum to zero.
+     */
+    private static void checkKCL( final CircuitGraph _graph, final double _vcc, final double _out, final double _tolerance ) {
+        double in = (_vcc - _out) / 1000;
+        double out = _out / 10000 + diode( _graph ).getCurrent( _out );
+        assertEquals( in, out, _tolerance * Math.abs( in ) + 1e-12 );
+    }
+
+
+    @Test
+    public void clipper() throws IOException {
+
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Clipper" );
+        assertEquals( 1, graph.getNonlinearCount() );
+        int vcc = graph.getNode( "Vcc" );
+        int out = graph.getNode( "out" );
+
+        NewtonSolver full = new NewtonSolver( graph, new NewtonOptions( false, 100, 1e-9, 1e-12, 0.5 ) );
+        double[] v = full.getAssembler().getNodeVoltages( full.solve() );
+        assertEquals( 5, v[vcc], 1e-12 );
+        assertTrue( (v[out] > 0.6) && (v[out] < 0.8) );
+        checkKCL( graph, v[vcc], v[out], 1e-9 );
+        assertEquals( full.getIterations(), full.getFactorizations() );
+
+        // modified Newton gets the same answer with fewer factorizations...
+        NewtonSolver modified = new NewtonSolver( graph, new NewtonOptions( true, 100, 1e-9, 1e-12, 0.5 ) );
+        double[] w = modified.getAssembler().getNodeVoltages( modified.solve() );
+        assertEquals( v[out], w[out], 1e-9 );
+        assertEquals( 1, modified.getAnalyses() );
+        assertTrue( modified.getFactorizations() < full.getFactorizations() );
+
+        // starting from the solution, it converges at once, reusing the factorization...
+        double[] solution = modified.solve();
+        int factorizations = modified.getFactorizations();
+        modified.solve( solution, null );
+        assertEquals( factorizations, modified.getFactorizations() );
+    }
+
+
+    @Test
+    public void linear() throws IOException {
+
+        // a linear circuit takes the fast path: one factorization, one solution...
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Spread" );
+        NewtonSolver solver = new NewtonSolver( graph, NewtonOptions.DEFAULT );
+        double[] v = solver.getAssembler().getNodeVoltages( solver.solve() );
+        assertEquals( 5, v[graph.getNode( "out" )], 1e-12 );
+        assertEquals( 1, solver.getIterations() );
+        assertEquals( 1, solver.getFactorizations() );
+    }
+
+
+    @Test
+    public void sweep() throws IOException {
+
+        // sweeping the source through a nonlinear circuit warm starts each point from the last...
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Clipper" );
+        int out = graph.getNode( "out" );
+        DCSweep sweep = new DCSweep( graph, "V1" );
+        int points = 201;
+        sweep.run( -2, 10, points, ( i, vcc, voltages ) -> checkKCL( graph, vcc, voltages[out], 1e-5 ) );
+        assertTrue( sweep.getFactorizations() < points / 5 );
+    }
+
+
+    @Test
+    public void currents() throws IOException {
+
+        // the diode's current comes from its own I-V law at the operating point, and the currents into the output node balance...
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Clipper" );
+        NewtonSolver solver = new NewtonSolver( graph, NewtonOptions.DEFAULT );
+        double[] solution = solver.solve();
+        double[] v = solver.getAssembler().getNodeVoltages( solution );
+        double[] i = solver.getAssembler().getBranchCurrents( solution );
+        double out = v[graph.getNode( "out" )];
+        double r1 = 0;
+        double r2 = 0;
+        double d1 = 0;
+        for( CircuitGraph.Branch branch : graph.getBranches() ) {
+            switch( branch.getLabel() ) {
+                case "R1": r1 = i[branch.getIndex()]; break;
+                case "R2": r2 = i[branch.getIndex()]; break;
+                case "D1": d1 = i[branch.getIndex()]; break;
+                default: break;
+            }
+        }
+        assertEquals( diode( graph ).getCurrent( out ), d1, 0 );
+        assertTrue( d1 > 1e-3 );
+        assertEquals( r1, r2 + d1, 1e-5 * r1 );
+    }
+
+
+    @Test( expected = IllegalArgumentException.class )
+    public void noMesh() throws IOException {
+        com.cirsim.calc.MeshEquations.unknownCount( TestCircuits.graph( "com.slightlyloony.sim.test.Clipper" ) );
+    }
+
+
+    @Test( expected = IllegalArgumentException.class )
+    public void noNodal() throws IOException {
+        new NodalEquations( TestCircuits.graph( "com.slightlyloony.sim.test.Clipper" ) );
+    }
+
+
+    @Test( expected = IllegalArgumentException.class )
+    public void noFormulation() throws IOException {
+        new FormulationChoice( TestCircuits.graph( "com.slightlyloony.sim.test.Clipper" ) );
+    }
+}
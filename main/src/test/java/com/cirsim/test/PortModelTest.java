@@ -0,0 +1,112 @@
+package com.cirsim.test;
+
+import com.cirsim.Circuit;
+import com.cirsim.calc.ACAnalysis;
+import com.cirsim.calc.ACResult;
+import com.cirsim.calc.CircuitGraph;
+import com.cirsim.calc.Equations;
+import com.cirsim.calc.Formulation;
+import com.cirsim.calc.FormulationChoice;
+import com.cirsim.calc.NodalEquations;
+import com.cirsim.calc.PortModel;
+import com.cirsim.calc.PortModelCache;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class PortModelTest {
+
+
+    @Test
+    public void battery() throws IOException {
+
+        // 1.3 volts behind 0.2 ohms, between plus and minus...
+        PortModel model = PortModel.reduce( TestCircuits.circuit( "com.slightlyloony.sim.test.utility.AlkalineBattery" ), null );
+        assertEquals( 2, model.getPortCount() );
+        assertEquals( "plus", model.getPort( 0 ) );
+        assertEquals( "minus", model.getPort( 1 ) );
+        assertEquals(  5, model.getAdmittance( 0, 0 ), 1e-12 );
+        assertEquals( -5, model.getAdmittance( 0, 1 ), 1e-12 );
+        assertEquals( -5, model.getAdmittance( 1, 0 ), 1e-12 );
+        assertEquals(  5, model.getAdmittance( 1, 1 ), 1e-12 );
+        assertEquals( -6.5, model.getCurrent( 0 ), 1e-12 );
+        assertEquals(  6.5, model.getCurrent( 1 ), 1e-12 );
+
+        // at its open circuit voltage, it draws no current at all...
+        assertArrayEquals( new double[] { 0, 0 }, model.getCurrents( new double[] { 1.3, 0 } ), 1e-12 );
+    }
+
+
+    @Test
+    public void cachedInstances() throws IOException {
+
+        Circuit circuit = TestCircuits.circuit( "com.slightlyloony.sim.test.TwoCells" );
+        PortModelCache cache = new PortModelCache();
+        CircuitGraph graph = new CircuitGraph( circuit, cache );
+        assertEquals( 1, cache.getMisses() );
+        assertEquals( 1, cache.getHits() );
+        assertEquals( 1, cache.size() );
+
+        // only the top level nets remain, and the batteries' interiors are gone...
+        assertEquals( 2, graph.getPortInstances().size() );
+        assertEquals( 3, graph.getNodeCount() );
+        assertEquals( 1, graph.getBranchCount() );
+        assertEquals( 1, graph.getPartCount() );
+        assertEquals( -1, graph.getNode( "B1.n1" ) );
+
+        FormulationChoice choice = new FormulationChoice( graph );
+        assertEquals( Formulation.NODAL, choice.getFormulation() );
+        assertEquals( 2, choice.getNodalUnknowns() );
+
+        Equations nodal = choice.build();
+        double[] voltages = nodal.getNodeVoltages( nodal.solve().getValues() );
+        assertEquals( 2.5, voltages[graph.getNode( "Vcc" )], 1e-12 );
+        assertEquals( 1.25, voltages[graph.getNode( "mid" )], 1e-12 );
+
+        // and the results are the same as the flattened circuit's...
+        CircuitGraph flat = new CircuitGraph( circuit );
+        Equations flatNodal = new NodalEquations( flat );
+        double[] flatVoltages = flatNodal.getNodeVoltages( flatNodal.solve().getValues() );
+        for( String name : new String[] { "ground", "mid", "Vcc" } )
+            assertEquals( flatVoltages[flat.getNode( name )], voltages[graph.getNode( name )], 1e-12 );
+    }
+
+
+    @Test
+    public void reactive() throws IOException {
+
+        // a subcircuit with a capacitor has no (DC) port model...
+        try {
+            PortModel.reduce( TestCircuits.circuit( "com.slightlyloony.sim.test.utility.RCLoad" ), null );
+            fail( "Reactive subcircuit was reduced" );
+        }
+        catch( IllegalArgumentException _e ) {
+            // expected...
+        }
+
+        // so the cache leaves it flattened, capacitor and all...
+        Circuit circuit = TestCircuits.circuit( "com.slightlyloony.sim.test.Filtered" );
+        PortModelCache cache = new PortModelCache();
+        CircuitGraph graph = new CircuitGraph( circuit, cache );
+        assertEquals( 1, cache.getMisses() );
+        assertTrue( graph.getPortInstances().isEmpty() );
+        assertEquals( 1, graph.getReactiveCount() );
+
+        // and AC analysis sees the load's impedance fall with frequency, just as it does without the cache...
+        CircuitGraph flat = new CircuitGraph( circuit );
+        double[] frequencies = { 1, 1e3, 1e6 };
+        ACResult cached = new ACAnalysis( graph, "V1" ).run( frequencies, ForkJoinPool.commonPool() );
+        ACResult flattened = new ACAnalysis( flat, "V1" ).run( frequencies, ForkJoinPool.commonPool() );
+        int in = graph.getNode( "in" );
+        for( int i = 0; i < frequencies.length; i++ )
+            assertEquals( flattened.getMagnitude( i, flat.getNode( "in" ) ), cached.getMagnitude( i, in ), 1e-12 );
+        assertEquals( 2.0 / 3, cached.getMagnitude( 0, in ), 1e-3 );
+        assertEquals( 0.4, cached.getMagnitude( 2, in ), 1e-3 );
+    }
+}
@@ -0,0 +1,114 @@
+package com.cirsim.test;
+
+import com.cirsim.calc.CircuitGraph;
+import com.cirsim.calc.MNAAssembler;
+import com.cirsim.calc.Sensitivities;
+import com.cirsim.calc.SensitivityAnalysis;
+import com.cirsim.calc.Solver;
+import com.cirsim.components.TolerancedComponent;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class SensitivityAnalysisTest {
+
+
+    @Test
+    public void divider() throws IOException {
+
+        // out = 10 * R2 / (R1 + R2), so dout/dR1 = -10 * R2 / (R1 + R2)^2 and dout/dR2 = 10 * R1 / (R1 + R2)^2...
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Spread" );
+        Sensitivities sensitivities = new SensitivityAnalysis( graph ).getSensitivities( "out" );
+        assertEquals( 5, sensitivities.getOutput(), 1e-9 );
+
+        Map<String, Double> derivatives = sensitivities.getResistorDerivatives();
+        assertEquals( 2, derivatives.size() );
+        assertEquals( -0.0025, derivatives.get( "R1" ), 1e-12 );
+        assertEquals( 0.0025, derivatives.get( "R2" ), 1e-12 );
+
+        // the output is proportional to the source, and only depends on the ratio of the resistors...
+        int source = branch( graph, "V1" );
+        assertEquals( 0.5, sensitivities.getDerivative( source ), 1e-12 );
+        assertEquals( 1, sensitivities.getNormalized( source ), 1e-12 );
+        assertEquals( -0.5, sensitivities.getNormalized( branch( graph, "R1" ) ), 1e-12 );
+    }
+
+
+    @Test
+    public void zeroOutput() throws IOException {
+
+        // out = (5 * R2 - 5 * R1) / (R1 + R2) = 0, so dout/dR1 = -10 * R2 / (R1 + R2)^2 and dout/dR2 = 10 * R1 / (R1 + R2)^2...
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Balanced" );
+        Sensitivities sensitivities = new SensitivityAnalysis( graph ).getSensitivities( "out" );
+        assertEquals( 0, sensitivities.getOutput(), 1e-12 );
+
+        Map<String, Double> derivatives = sensitivities.getResistorDerivatives();
+        assertEquals( -0.0025, derivatives.get( "R1" ), 1e-12 );
+        assertEquals( 0.0025, derivatives.get( "R2" ), 1e-12 );
+
+        // nothing can be normalized by a zero output, and scaling a zero volt source changes nothing, but its value still moves the output...
+        for( CircuitGraph.Branch branch : graph.getBranches() )
+            assertTrue( branch.getLabel(), Double.isNaN( sensitivities.getNormalized( branch.getIndex() ) ) );
+        int zero = branch( graph, "V3" );
+        assertEquals( 0, sensitivities.getScaleDerivative( zero ), 0 );
+        assertEquals( 0.5, sensitivities.getDerivative( zero ), 1e-12 );
+        assertEquals( 0.5, sensitivities.getDerivative( branch( graph, "V1" ) ), 1e-12 );
+    }
+
+
+    @Test
+    public void finiteDifferences() throws IOException {
+
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.TwoCells" );
+        SensitivityAnalysis analysis = new SensitivityAnalysis( graph );
+        MNAAssembler assembler = new MNAAssembler( graph );
+        double[] scales = new double[graph.getBranchCount()];
+        Arrays.fill( scales, 1 );
+
+        for( String node : new String[] { "Vcc", "mid" } ) {
+            Sensitivities sensitivities = analysis.getSensitivities( node );
+            int n = graph.getNode( node );
+            for( CircuitGraph.Branch branch : graph.getBranches() ) {
+                if( !(branch.getComponent() instanceof TolerancedComponent) )
+                    continue;
+                double delta = 1e-6;
+                scales[branch.getIndex()] = 1 + delta;
+                double up = solve( assembler, scales )[n];
+                scales[branch.getIndex()] = 1 - delta;
+                double down = solve( assembler, scales )[n];
+                scales[branch.getIndex()] = 1;
+                double value = ((TolerancedComponent) branch.getComponent()).getNominalValue();
+                double expected = (up - down) / (2 * delta * value);
+                assertEquals( node + " " + branch.getLabel(), expected, sensitivities.getDerivative( branch.getIndex() ),
+                        1e-6 * Math.max( 1, Math.abs( expected ) ) );
+            }
+        }
+    }
+
+
+    @Test( expected = IllegalArgumentException.class )
+    public void unknownNode() throws IOException {
+        new SensitivityAnalysis( TestCircuits.graph( "com.slightlyloony.sim.test.Spread" ) ).getSensitivities( "nowhere" );
+    }
+
+
+    private static int branch( final CircuitGraph _graph, final String _label ) {
+        for( CircuitGraph.Branch branch : _graph.getBranches() )
+            if( branch.getLabel().equals( _label ) )
+                return branch.getIndex();
+        throw new IllegalArgumentException( "No branch labeled " + _label );
+    }
+
+
+    private static double[] solve( final MNAAssembler _assembler, final double[] _scales ) {
+        _assembler.assemble( _scales );
+        return _assembler.getNodeVoltages( new Solver( _assembler.toAugmented() ).solve().getValues() );
+    }
+}
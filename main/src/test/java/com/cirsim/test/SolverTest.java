@@ -0,0 +1,97 @@
+package com.cirsim.test;
+
+import com.cirsim.calc.FactorPrecision;
+import com.cirsim.calc.LUFactorization;
+import com.cirsim.calc.Solution;
+import com.cirsim.calc.Solver;
+import com.cirsim.calc.SolverOptions;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class SolverTest {
+
+    @Test
+    public void basic() {
+
+        // 2x + y = 5, x - y = 1 -> x = 2, y = 1...
+        double[][] augmented = { { 2, 1, 5 }, { 1, -1, 1 } };
+        Solution s = new Solver( augmented ).solve();
+        assertEquals( 2, s.get( 0 ), 1e-15 );
+        assertEquals( 1, s.get( 1 ), 1e-15 );
+        assertTrue( s.isConverged() );
+
+        // a zero in the first pivot requires pivoting...
+        augmented = new double[][] { { 0, 1, 3 }, { 1, 1, 4 } };
+        s = new Solver( augmented ).solve();
+        assertEquals( 1, s.get( 0 ), 1e-15 );
+        assertEquals( 3, s.get( 1 ), 1e-15 );
+    }
+
+
+    @Test
+    public void transposed() {
+
+        double[][] a = { { 4, 1, 0 }, { 2, 5, 1 }, { 0, 3, 6 } };
+        double[] b = { 1, 2, 3 };
+        for( FactorPrecision precision : FactorPrecision.values() ) {
+            double[] x = new LUFactorization( a, precision ).solveTransposed( b );
+            for( int j = 0; j < 3; j++ ) {
+                double sum = 0;
+                for( int i = 0; i < 3; i++ )
+                    sum += a[i][j] * x[i];
+                assertEquals( b[j], sum, (precision == FactorPrecision.DOUBLE) ? 1e-14 : 1e-5 );
+            }
+        }
+    }
+
+
+    @Test
+    public void singular() {
+        try {
+            new Solver( new double[][] { { 1, 2, 3 }, { 2, 4, 6 } } ).solve();
+            fail( "Singular matrix was not detected" );
+        }
+        catch( IllegalArgumentException e ) {
+            // expected...
+        }
+    }
+
+
+    @Test
+    public void mixedPrecisionRefinement() {
+
+        // a resistor ladder alternating milliohm traces and megohm bias resistors, as nodal equations...
+        int n = 40;
+        double[][] augmented = new double[n][n + 1];
+        Random random = new Random( 42 );
+        for( int i = 0; i < n; i++ ) {
+            double g = (i % 2 == 0) ? 1.0 / 0.001 : 1.0 / 1.0e6;
+            augmented[i][i] += g + 1.0e-6;
+            if( i + 1 < n ) {
+                augmented[i][i] += g;
+                augmented[i + 1][i + 1] += g;
+                augmented[i][i + 1] -= g;
+                augmented[i + 1][i] -= g;
+            }
+            augmented[i][n] = random.nextDouble() - 0.5;
+        }
+
+        Solution reference = new Solver( augmented, new SolverOptions( FactorPrecision.DOUBLE, 0, 0 ) ).solve();
+        Solution fast = new Solver( augmented, SolverOptions.FAST ).solve();
+        assertTrue( fast.isConverged() );
+        assertTrue( fast.getRefinements() > 0 );
+        assertTrue( fast.getBackwardError() <= reference.getBackwardError() * 4 + 1e-15 );
+        for( int i = 0; i < n; i++ )
+            assertEquals( reference.get( i ), fast.get( i ), Math.abs( reference.get( i ) ) * 1e-9 );
+
+        // without refinement, single precision factors are only good to a handful of digits...
+        Solution unrefined = new Solver( augmented, new SolverOptions( FactorPrecision.SINGLE, 0, 0 ) ).solve();
+        assertTrue( unrefined.getBackwardError() > fast.getBackwardError() );
+    }
+}
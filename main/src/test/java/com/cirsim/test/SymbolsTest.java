@@ -0,0 +1,96 @@
+package com.cirsim.test;
+
+import com.cirsim.Circuit;
+import com.cirsim.nets.Terminal;
+import com.cirsim.nets.Terminals;
+import com.cirsim.util.Symbols;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class SymbolsTest {
+
+
+    @Test
+    public void basic() {
+
+        Symbols symbols = new Symbols();
+        assertEquals( -1, symbols.find( "R1" ) );
+
+        // ids are dense, in the order names were first added, and each name is held as the instance first added...
+        String name = new String( "R1" );
+        assertEquals( 0, symbols.intern( name ) );
+        assertEquals( 1, symbols.intern( "R2" ) );
+        assertEquals( 0, symbols.intern( new String( "R1" ) ) );
+        assertSame( name, symbols.getName( 0 ) );
+        assertEquals( 2, symbols.size() );
+
+        // plenty of names, so the table has to grow several times...
+        for( int i = 0; i < 10000; i++ )
+            assertEquals( i + 2, symbols.intern( "n" + i ) );
+        for( int i = 0; i < 10000; i++ ) {
+            assertEquals( i + 2, symbols.find( "n" + i ) );
+            assertEquals( "n" + i, symbols.getName( i + 2 ) );
+        }
+        assertEquals( 1, symbols.find( "R2" ) );
+        assertEquals( -1, symbols.find( "n10000" ) );
+    }
+
+
+    @Test( expected = IndexOutOfBoundsException.class )
+    public void badId() {
+        new Symbols().getName( 0 );
+    }
+
+
+    @Test
+    public void labels() throws IOException {
+
+        // a circuit's labels have ids in the order they were defined, and its components and nets can be had by label or by id...
+        Circuit circuit = TestCircuits.circuit( "com.slightlyloony.sim.test.RC" );
+        String[] labels = { "V1", "R1", "C1", "ground", "Vcc", "out" };
+        assertEquals( labels.length, circuit.getLabelCount() );
+        for( int id = 0; id < labels.length; id++ ) {
+            assertEquals( labels[id], circuit.getLabel( id ) );
+            assertEquals( id, circuit.getLabelId( labels[id] ) );
+            assertSame( circuit.getComponent( id ), circuit.getComponent( labels[id] ) );
+            assertSame( circuit.getNet( id ), circuit.getNet( labels[id] ) );
+            assertTrue( (id < 3) == (circuit.getComponent( id ) != null) );
+            assertTrue( (id < 3) != (circuit.getNet( id ) != null) );
+        }
+        assertEquals( -1, circuit.getLabelId( "R2" ) );
+        assertNull( circuit.getComponent( "R2" ) );
+        assertFalse( circuit.hasNet( "V1" ) );
+        assertArrayEquals( new String[] { "ground", "Vcc", "out" }, circuit.getNets().keySet().toArray() );
+    }
+
+
+    @Test
+    public void terminals() throws IOException {
+
+        Circuit circuit = TestCircuits.circuit( "com.slightlyloony.sim.test.RC" );
+        Terminals terminals = circuit.getComponents().values().iterator().next().getTerminals();
+        assertEquals( 2, terminals.size() );
+        assertEquals( 2, terminals.getAll().size() );
+
+        // every alias of a terminal is the same terminal, which can also be had by its index...
+        Terminal first = terminals.get( 0 );
+        Terminal second = terminals.get( 1 );
+        for( String name : new String[] { "1", "t", "top", "l", "left", "+", "plus" } )
+            assertSame( first, terminals.get( name ) );
+        for( String name : new String[] { "2", "b", "bottom", "r", "right", "-", "minus" } )
+            assertSame( second, terminals.get( name ) );
+        assertFalse( terminals.has( "3" ) );
+        assertFalse( terminals.has( null ) );
+
+        assertEquals( 1, terminals.indexOf( second ) );
+        assertSame( first, terminals.get( terminals.getName( first ) ) );
+        assertSame( second, terminals.getOtherTerminal( first ) );
+        assertSame( first, terminals.getOtherTerminal( second ) );
+    }
+}
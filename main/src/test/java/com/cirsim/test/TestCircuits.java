@@ -0,0 +1,51 @@
+package com.cirsim.test;
+
+import com.cirsim.Circuit;
+import com.cirsim.CircuitFactory;
+import com.cirsim.calc.CircuitGraph;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Loads the test circuits (in the "circuits" directory) for the tests, failing the calling test if a circuit has errors.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+final class TestCircuits {
+
+
+    private TestCircuits() {
+    }
+
+
+    /**
+     * Returns the circuit with the given path, loaded by a factory of its own that is closed once it's loaded.
+     *
+     * @param _path the path of the circuit, such as "com.slightlyloony.sim.test.Divider"
+     * @return the loaded circuit
+     * @throws IOException on any problem reading the circuit's source
+     */
+    static Circuit circuit( final String _path ) throws IOException {
+        try( CircuitFactory circuitFactory = new CircuitFactory() ) {
+            circuitFactory.addDir( new File( "circuits" ) );
+            Circuit circuit = (Circuit) circuitFactory.load( _path );
+            assertFalse( circuitFactory.getMessages(), circuitFactory.isError() );
+            return circuit;
+        }
+    }
+
+
+    /**
+     * Returns the graph of the circuit with the given path (see {@link #circuit(String)}).
+     *
+     * @param _path the path of the circuit, such as "com.slightlyloony.sim.test.Divider"
+     * @return the graph of the loaded circuit
+     * @throws IOException on any problem reading the circuit's source
+     */
+    static CircuitGraph graph( final String _path ) throws IOException {
+        return new CircuitGraph( circuit( _path ) );
+    }
+}
@@ -0,0 +1,144 @@
+package com.cirsim.test;
+
+import com.cirsim.calc.CircuitGraph;
+import com.cirsim.calc.FormulationChoice;
+import com.cirsim.calc.Formulation;
+import com.cirsim.calc.IntegrationMethod;
+import com.cirsim.calc.LUFactorization;
+import com.cirsim.calc.SparseLUFactorization;
+import com.cirsim.calc.TransientAnalysis;
+import com.cirsim.calc.TransientOptions;
+import com.cirsim.calc.TransientResult;
+import com.cirsim.constants.Time;
+import com.cirsim.matrices.TreeMatrix;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class TransientAnalysisTest {
+
+
+    /**
+     * Checks the voltage at the output of the RC circuit (starting discharged) against the exact solution, at every time point.
+     */
+    private static TransientResult checkRC( final IntegrationMethod _method ) throws IOException {
+
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.RC" );
+        TransientOptions options = new TransientOptions( _method, 1e-4, 1e-6, true );
+        TransientResult result = new TransientAnalysis( graph, options ).run( 5 * Time.MILLISECOND, Time.MILLISECOND );
+
+        int out = graph.getNode( "out" );
+        assertEquals( 0, result.getTime( 0 ), 0 );
+        assertEquals( 0, result.getNodeVoltage( 0, out ), 1e-6 );
+        assertEquals( 5 * Time.MILLISECOND, result.getTime( result.size() - 1 ), 0 );
+        for( int p = 1; p < result.size(); p++ ) {
+            double t = result.getTime( p );
+            assertTrue( t > result.getTime( p - 1 ) );
+            assertEquals( "at " + t, 10 * (1 - Math.exp( -t / Time.MILLISECOND )), result.getNodeVoltage( p, out ), 0.01 );
+        }
+        return result;
+    }
+
+
+    @Test
+    public void trapezoidal() throws IOException {
+
+        TransientResult result = checkRC( IntegrationMethod.TRAPEZOIDAL );
+
+        // adaptive stepping should need far fewer steps than the smallest step would, and far fewer factorizations than steps...
+        assertTrue( result.getAcceptedSteps() < 200 );
+        assertTrue( result.getFactorizations() < result.getAcceptedSteps() / 2 );
+        assertEquals( 1, result.getAnalyses() );
+    }
+
+
+    @Test
+    public void gear2() throws IOException {
+        TransientResult result = checkRC( IntegrationMethod.GEAR2 );
+        assertTrue( result.getAcceptedSteps() < 400 );
+    }
+
+
+    @Test
+    public void inductor() throws IOException {
+
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.RL" );
+        assertEquals( Formulation.NODAL, new FormulationChoice( graph ).getFormulation() );
+
+        TransientOptions options = new TransientOptions( IntegrationMethod.TRAPEZOIDAL, 1e-4, 1e-9, true );
+        TransientAnalysis analysis = new TransientAnalysis( graph, options );
+        TransientResult result = analysis.run( 5 * Time.MILLISECOND, Time.MILLISECOND );
+
+        // the inductor's current is the last unknown...
+        int current = analysis.getAssembler().size() - 1;
+        assertEquals( "I(L1)", analysis.getAssembler().getUnknown( current ) );
+        for( int p = 1; p < result.size(); p++ ) {
+            double t = result.getTime( p );
+            assertEquals( "at " + t, 1 - Math.exp( -t / Time.MILLISECOND ), result.getValues( p )[current], 0.001 );
+        }
+    }
+
+
+    @Test
+    public void operatingPoint() throws IOException {
+
+        // starting from the DC operating point, nothing changes: the capacitor is fully charged...
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.RC" );
+        TransientResult result = new TransientAnalysis( graph, TransientOptions.DEFAULT ).run( Time.MILLISECOND, Time.MILLISECOND );
+        int out = graph.getNode( "out" );
+        for( int p = 0; p < result.size(); p++ )
+            assertEquals( 10, result.getNodeVoltage( p, out ), 1e-9 );
+        assertEquals( 0, result.getRejectedSteps() );
+    }
+
+
+    @Test
+    public void sparseFactorization() {
+
+        // a random sparse matrix with a strong diagonal, but entries below it that force some pivoting...
+        Random random = new Random( 42 );
+        int n = 40;
+        TreeMatrix matrix = new TreeMatrix( n );
+        for( int i = 0; i < n; i++ ) {
+            matrix.add( i, i, 1 + random.nextDouble() );
+            for( int e = 0; e < 3; e++ )
+                matrix.add( i, random.nextInt( n ), 4 * random.nextDouble() - 2 );
+        }
+        double[] b = new double[n];
+        for( int i = 0; i < n; i++ )
+            b[i] = random.nextDouble();
+
+        SparseLUFactorization sparse = new SparseLUFactorization( matrix );
+        LUFactorization dense = new LUFactorization( matrix.toArray() );
+        assertArrayEquals( dense.solve( b ), sparse.solve( b ), 1e-9 );
+        assertArrayEquals( dense.solveTransposed( b ), sparse.solveTransposed( b ), 1e-9 );
+        assertTrue( sparse.getFactorEntryCount() < n * n );
+
+        // change the values slightly (keeping the pattern), and refactor with the same pivot order...
+        for( int i = 0; i < n; i++ )
+            matrix.add( i, i, 0.01 );
+        assertTrue( sparse.refactor( matrix ) );
+        assertEquals( 2, sparse.getFactorizations() );
+        assertArrayEquals( new LUFactorization( matrix.toArray() ).solve( b ), sparse.solve( b ), 1e-9 );
+        assertArrayEquals( new LUFactorization( matrix.toArray() ).solveTransposed( b ), sparse.solveTransposed( b ), 1e-9 );
+
+        // values for which the pivot order is unusable are refused, and leave nothing behind to spoil the next refactoring...
+        TreeMatrix small = new TreeMatrix( 2 );
+        small.add( 0, 0, 4 );
+        small.add( 0, 1, 1 );
+        small.add( 1, 0, 1 );
+        small.add( 1, 1, 3 );
+        SparseLUFactorization factors = new SparseLUFactorization( small );
+        small.putValue( small.getSlot( 0, 0 ), 1e-6 );
+        assertFalse( factors.refactor( small ) );
+        small.putValue( small.getSlot( 0, 0 ), 2 );
+        assertTrue( factors.refactor( small ) );
+        assertArrayEquals( new double[] { 0.6, -0.2 }, factors.solve( new double[] { 1, 0 } ), 1e-12 );
+    }
+}
@@ -0,0 +1,72 @@
+package com.cirsim.test;
+
+import com.cirsim.calc.LUFactorization;
+import com.cirsim.calc.RankOneSweep;
+import com.cirsim.calc.RankOneUpdate;
+import com.cirsim.calc.UpdatedFactorization;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class UpdatedFactorizationTest {
+
+
+    // nodal equations for a little ladder: 1k from each node to ground, 2k between adjacent nodes, 1mA into node 0...
+    private static double[][] ladder( final double _g01 ) {
+        double g = 1 / 1000.0;
+        double s = 1 / 2000.0;
+        return new double[][] {
+                { g + _g01,  -_g01,         0 },
+                { -_g01,      g + _g01 + s, -s },
+                { 0,         -s,            g + s }
+        };
+    }
+
+
+    @Test
+    public void basic() {
+
+        double[] b = { 0.001, 0, 0 };
+        double g01 = 1 / 2000.0;
+        LUFactorization lu = new LUFactorization( ladder( g01 ) );
+
+        // change the resistor between nodes 0 and 1 from 2k to 500 ohms, and one from node 2 to ground from 1k to 10k...
+        double newG01 = 1 / 500.0;
+        UpdatedFactorization updated = new UpdatedFactorization( lu, Lists.newArrayList(
+                RankOneUpdate.admittance( 0, 1, newG01 - g01 ),
+                RankOneUpdate.admittance( 2, -1, 1 / 10000.0 - 1 / 1000.0 ) ) );
+        double[][] changed = ladder( newG01 );
+        changed[2][2] += 1 / 10000.0 - 1 / 1000.0;
+        LUFactorization reference = new LUFactorization( changed );
+
+        double[] x = updated.solve( b );
+        double[] y = reference.solve( b );
+        double[] xt = updated.solveTransposed( new double[] { 1, 2, 3 } );
+        double[] yt = reference.solveTransposed( new double[] { 1, 2, 3 } );
+        for( int i = 0; i < 3; i++ ) {
+            assertEquals( y[i], x[i], 1e-12 );
+            assertEquals( yt[i], xt[i], 1e-9 );
+        }
+    }
+
+
+    @Test
+    public void sweep() {
+
+        double[] b = { 0.001, 0, 0 };
+        double g01 = 1 / 2000.0;
+        RankOneSweep sweep = new RankOneSweep( new LUFactorization( ladder( g01 ) ), b, RankOneUpdate.admittance( 0, 1, 0 ) );
+        for( double r = 100; r <= 100000; r *= 1.5 ) {
+            double[] reference = new LUFactorization( ladder( 1 / r ) ).solve( b );
+            double[] x = sweep.solve( 1 / r - g01 );
+            for( int i = 0; i < 3; i++ ) {
+                assertEquals( reference[i], x[i], 1e-12 );
+                assertEquals( reference[i], sweep.solve( i, 1 / r - g01 ), 1e-12 );
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.cirsim.test;
+
+import com.cirsim.values.Multipliers;
+import com.cirsim.values.Units;
+import com.cirsim.values.ValueSpec;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class ValueSpecTest {
+
+
+    private static final Pattern NUM_SUFFIX = Pattern.compile( "(\\d+(?:\\.\\d*)?)(.*)" );
+    private static final Pattern TOLERANCE = Pattern.compile( "(?:(\\+\\-|\\+|\\-|)(\\d+(?:\\.\\d*)?))(?:(\\+|\\-)(\\d+(?:\\.\\d*)?))?%" );
+
+
+    @Test
+    public void basic() {
+
+        ValueSpec spec = new ValueSpec( " 4.7 k ohms " );
+        assertEquals( 4700, spec.getScalar( Units.RESISTANCE, true ), 1e-9 );
+        assertEquals( 4700, spec.getScalar( Units.RESISTANCE, false ), 1e-9 );
+        assertTrue( Double.isNaN( spec.getScalar( Units.POWER, false ) ) );
+        assertFalse( spec.isTolerance() );
+
+        // "f" is both a multiplier and a unit; the shortest multiplier wins...
+        spec = new ValueSpec( "2f" );
+        assertEquals( 2, spec.getScalar( Units.CAPACITANCE, true ), 0 );
+        assertEquals( 2, spec.getScalar( Units.CAPACITANCE, false ), 0 );
+        assertEquals( 2e-15, spec.getScalar( Units.POWER, false ), 1e-30 );
+        assertTrue( Double.isNaN( spec.getScalar( Units.POWER, true ) ) );
+
+        spec = new ValueSpec( "+50-20%" );
+        assertTrue( spec.isTolerance() );
+        assertEquals( -20, spec.getLowerPercent(), 0 );
+        assertEquals( 50, spec.getHigherPercent(), 0 );
+        assertTrue( Double.isNaN( spec.getScalar( Units.POWER, false ) ) );
+
+        assertFalse( new ValueSpec( "+ 10%" ).isTolerance() );
+        assertFalse( new ValueSpec( "" ).isTolerance() );
+    }
+
+
+    @Test
+    public void sameAsRegex() {
+
+        // random specs built from pieces likely to be confusing, each of which must give just what the regexes it replaced gave...
+        String[] pieces = { "0", "1", "2", "9", "12345678901234567890", ".", " ", "\t", "+", "-", "+-", "%", "k", "K", "m", "meg", "µ", "f", "o",
+                "ohm", "ohms", "Ω", "w", "watts", "v", "a", "amps", "h", "henries", "giga", "x", "q", "milli", "0000000000000000000000001" };
+        Random random = new Random( 42 );
+        for( int i = 0; i < 200000; i++ ) {
+
+            StringBuilder text = new StringBuilder();
+            int n = 1 + random.nextInt( 6 );
+            for( int j = 0; j < n; j++ )
+                text.append( pieces[random.nextInt( (j == 0) ? 10 : pieces.length )] );
+            String spec = text.toString();
+            ValueSpec scanned = new ValueSpec( spec );
+
+            for( Units unit : Units.values() )
+                for( boolean required : new boolean[] { false, true } )
+                    assertEquals( spec, scalar( spec, unit, required ), scanned.getScalar( unit, required ), 0 );
+
+            double[] tolerance = tolerance( spec );
+            assertEquals( spec, tolerance != null, scanned.isTolerance() );
+            if( tolerance != null ) {
+                assertEquals( spec, tolerance[0], scanned.getLowerPercent(), 0 );
+                assertEquals( spec, tolerance[1], scanned.getHigherPercent(), 0 );
+            }
+        }
+    }
+
+
+    // the scalar that the old regex parser would have found, or NaN...
+    private static double scalar( final String _spec, final Units _unit, final boolean _required ) {
+
+        Matcher mat = NUM_SUFFIX.matcher( _spec.replaceAll( "\\s", "" ) );
+        if( !mat.matches() )
+            return Double.NaN;
+
+        String multUnitStr = mat.group( 2 );
+        for( int i = 0; i <= multUnitStr.length() - (_required ? 1 : 0); i++ ) {
+            String multStr = multUnitStr.substring( 0, i );
+            String unitStr = multUnitStr.substring( i );
+            if( Multipliers.contains( multStr ) && (unitStr.isEmpty() || _unit.isUnit( unitStr )) )
+                return Double.valueOf( mat.group( 1 ) ) * Multipliers.get( multStr );
+        }
+        return Double.NaN;
+    }
+
+
+    // the tolerance that the old regex parser would have found, or null...
+    private static double[] tolerance( final String _spec ) {
+
+        Matcher mat = TOLERANCE.matcher( _spec );
+        if( !mat.matches() )
+            return null;
+
+        String sign1 = mat.group( 1 );
+        String sign2 = mat.group( 3 );
+        if( sign2 == null ) {
+            if( !"".equals( sign1 ) && !"+-".equals( sign1 ) )
+                return null;
+            double percent = Double.parseDouble( mat.group( 2 ) );
+            return new double[] { -percent, percent };
+        }
+
+        if( "+-".equals( sign1 ) || sign1.equals( sign2 ) )
+            return null;
+        double p1 = Double.parseDouble( mat.group( 2 ) ) * ("-".equals( sign1 ) ? -1 : 1);
+        double p2 = Double.parseDouble( mat.group( 4 ) ) * ("-".equals( sign2 ) ? -1 : 1);
+        return new double[] { p1 < p2 ? p1 : p2, p1 < p2 ? p2 : p1 };
+    }
+}
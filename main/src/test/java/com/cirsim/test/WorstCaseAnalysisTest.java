@@ -0,0 +1,113 @@
+package com.cirsim.test;
+
+import com.cirsim.calc.CircuitGraph;
+import com.cirsim.calc.MNAAssembler;
+import com.cirsim.calc.Solver;
+import com.cirsim.calc.WorstCase;
+import com.cirsim.calc.WorstCaseAnalysis;
+import com.cirsim.components.TolerancedComponent;
+import com.cirsim.values.Tolerance;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class WorstCaseAnalysisTest {
+
+
+    private static double[] solve( final MNAAssembler _assembler, final double[] _scales ) {
+        _assembler.assemble( _scales );
+        return _assembler.getNodeVoltages( new Solver( _assembler.toAugmented() ).solve().getValues() );
+    }
+
+
+    /**
+     * Checks the worst cases of the given nodes against the extremes found by solving every corner.
+     */
+    private static void check( final String _path, final String... _nodes ) throws IOException {
+
+        CircuitGraph graph = TestCircuits.graph( _path );
+        List<WorstCase> worst = new WorstCaseAnalysis( graph ).run( _nodes );
+        assertEquals( _nodes.length, worst.size() );
+
+        List<Integer> varied = new ArrayList<>();
+        for( CircuitGraph.Branch branch : graph.getBranches() )
+            if( branch.getComponent() instanceof TolerancedComponent )
+                varied.add( branch.getIndex() );
+
+        MNAAssembler assembler = new MNAAssembler( graph );
+        double[] scales = new double[graph.getBranchCount()];
+        Arrays.fill( scales, 1 );
+        double[] nominal = solve( assembler, scales );
+        double[] min = new double[_nodes.length];
+        double[] max = new double[_nodes.length];
+        Arrays.fill( min, Double.POSITIVE_INFINITY );
+        Arrays.fill( max, Double.NEGATIVE_INFINITY );
+        for( int corner = 0; corner < (1 << varied.size()); corner++ ) {
+            for( int i = 0; i < varied.size(); i++ ) {
+                Tolerance tolerance = ((TolerancedComponent) graph.getBranch( varied.get( i ) ).getComponent()).getTolerance();
+                double percent = (((corner >> i) & 1) == 0) ? tolerance.getLowerPercent() : tolerance.getHigherPercent();
+                scales[varied.get( i )] = 1 + percent / 100;
+            }
+            double[] v = solve( assembler, scales );
+            for( int o = 0; o < _nodes.length; o++ ) {
+                min[o] = Math.min( min[o], v[graph.getNode( _nodes[o] )] );
+                max[o] = Math.max( max[o], v[graph.getNode( _nodes[o] )] );
+            }
+        }
+
+        for( int o = 0; o < _nodes.length; o++ ) {
+            WorstCase w = worst.get( o );
+            assertEquals( _nodes[o], w.getNode() );
+            assertEquals( nominal[graph.getNode( _nodes[o] )], w.getNominal(), 1e-9 );
+            assertEquals( min[o], w.getMin(), 1e-9 );
+            assertEquals( max[o], w.getMax(), 1e-9 );
+        }
+    }
+
+
+    @Test
+    public void divider() throws IOException {
+        check( "com.slightlyloony.sim.test.Spread", "out", "Vcc" );
+    }
+
+
+    @Test
+    public void cells() throws IOException {
+        check( "com.slightlyloony.sim.test.TwoCells", "Vcc", "mid" );
+    }
+
+
+    @Test
+    public void sensitivities() throws IOException {
+
+        // the adjoint sensitivities should match finite differences...
+        CircuitGraph graph = TestCircuits.graph( "com.slightlyloony.sim.test.Spread" );
+        WorstCase w = new WorstCaseAnalysis( graph ).run( "out" ).get( 0 );
+        MNAAssembler assembler = new MNAAssembler( graph );
+        int out = graph.getNode( "out" );
+        for( CircuitGraph.Branch branch : graph.getBranches() ) {
+            double[] scales = new double[graph.getBranchCount()];
+            Arrays.fill( scales, 1 );
+            scales[branch.getIndex()] = 1 + 1e-6;
+            double up = solve( assembler, scales )[out];
+            scales[branch.getIndex()] = 1 - 1e-6;
+            double down = solve( assembler, scales )[out];
+            assertEquals( branch.getLabel(), (up - down) / 2e-6, w.getSensitivity( branch.getIndex() ), 1e-6 );
+        }
+
+        // raising R1 lowers the output, and puts the low corner at R1's high end...
+        for( CircuitGraph.Branch branch : graph.getBranches() )
+            if( "R1".equals( branch.getLabel() ) ) {
+                assertEquals( -2.5, w.getSensitivity( branch.getIndex() ), 1e-9 );
+                assertEquals( 1.05, w.getMinScales()[branch.getIndex()], 1e-12 );
+            }
+    }
+}